@@ -0,0 +1,510 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+import de.adihubba.ObjectUtils;
+
+/**
+ * A Delaunay Triangulation which keeps its whole state in flat primitive
+ * arrays instead of a graph of {@link Point} and {@link Triangle} objects.
+ * <br>
+ * Vertices are stored as parallel <code>double[]</code> arrays (x, y, z).
+ * Triangles are stored as half-edges: half-edge <code>e</code> belongs to
+ * triangle <code>e / 3</code>, starts at vertex <code>triangles[e]</code> and
+ * its twin (the same edge seen from the neighbour triangle) is
+ * <code>halfedges[e]</code>. Every triangle is stored counterclockwise.
+ * Circumcircles are never stored, they are evaluated on demand by the
+ * in-circle test. <br>
+ * The convex hull is closed by ghost triangles (the array counterpart of the
+ * half planes of {@link DelaunayTriangulation}): a ghost triangle has the
+ * {@link #GHOST} vertex at its third position and its first half-edge is the
+ * twin of a hull edge. This way every half-edge has a twin and point location
+ * or insertion never has to check for missing neighbours. <br>
+ * <br>
+ * A triangle costs 24 bytes and a vertex 28 bytes, which is roughly a tenth of
+ * the object graph of {@link DelaunayTriangulation}. The class offers the same
+ * methods as {@link DelaunayTriangulation} (materializing {@link Triangle} and
+ * {@link Point} objects only on request) plus an array-in/array-out entry
+ * point, see {@link #triangulate(double[], double[])}.
+ *
+ * @see DelaunayTriangulation
+ */
+public class ArrayDelaunayTriangulation extends HalfEdgeTriangulation {
+
+	/** the vertex index of the (infinite) ghost vertex of hull triangles */
+	public static final int GHOST = -1;
+
+	// vertex storage
+	private double[] xs;
+	private double[] ys;
+	private double[] zs;
+
+	// the Bounding Box
+	private double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * creates an empty Delaunay Triangulation.
+	 */
+	public ArrayDelaunayTriangulation() {
+		this(16);
+	}
+
+	/**
+	 * creates an empty Delaunay Triangulation with room for the given number
+	 * of vertices.
+	 *
+	 * @param expectedVertices
+	 *            number of vertices the arrays are presized for.
+	 */
+	public ArrayDelaunayTriangulation(int expectedVertices) {
+		super(expectedVertices);
+		int capacity = vertexCapacity();
+		xs = new double[capacity];
+		ys = new double[capacity];
+		zs = new double[capacity];
+	}
+
+	/**
+	 * creates a Delaunay Triangulation from all the points. Note: duplicated
+	 * points are ignored.
+	 */
+	public ArrayDelaunayTriangulation(Point[] ps) {
+		this(ObjectUtils.asReadonlyList(ps));
+	}
+
+	public ArrayDelaunayTriangulation(Collection<Point> points) {
+		this(points.size());
+		insertPoints(points);
+	}
+
+	/**
+	 * creates a Delaunay Triangulation from coordinate arrays. Note: duplicated
+	 * points are ignored, the points are inserted in spatially sorted order
+	 * (see {@link #insertPoints(double[], double[], double[])}).
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @param zs
+	 *            z-coordinates of the points, may be null
+	 */
+	public ArrayDelaunayTriangulation(double[] xs, double[] ys, double[] zs) {
+		this(xs.length);
+		insertPoints(xs, ys, zs);
+	}
+
+	/**
+	 * wraps a complete triangulation built elsewhere (see
+	 * {@link ParallelDelaunayTriangulation}). The arrays are taken over, not
+	 * copied.
+	 *
+	 * @param triangles
+	 *            the vertex triples, ghost triangles included
+	 * @param halfedges
+	 *            the twin of every half-edge
+	 * @param triangleCount
+	 *            number of triangles including ghosts, 0 if all vertices are
+	 *            collinear
+	 */
+	ArrayDelaunayTriangulation(double[] xs, double[] ys, double[] zs, int vertexCount, int[] triangles,
+			int[] halfedges, int triangleCount) {
+		super(vertexCount, triangles, halfedges, triangleCount);
+		int capacity = vertexCapacity();
+		this.xs = Arrays.copyOf(xs, capacity);
+		this.ys = Arrays.copyOf(ys, capacity);
+		this.zs = Arrays.copyOf(zs, capacity);
+		for (int v = 0; v < vertexCount; v++) {
+			updateBoundingBox(xs[v], ys[v], zs[v]);
+		}
+	}
+
+	/**
+	 * copies a triangulation without inserting its points again. Vertex i of
+	 * the copy is the i-th vertex of {@link DelaunayTriangulation#verticesIterator()},
+	 * the half planes become ghost triangles.
+	 *
+	 * @param delaunay
+	 *            the triangulation to copy
+	 * @return the copy
+	 */
+	public static ArrayDelaunayTriangulation copyOf(DelaunayTriangulation delaunay) {
+		VertexRegistry vertices = delaunay.getVertexRegistry();
+		int vertexCount = vertices.size();
+		double[] xs = new double[vertexCount];
+		double[] ys = new double[vertexCount];
+		double[] zs = new double[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			Point p = vertices.get(v);
+			xs[v] = p.getX();
+			ys[v] = p.getY();
+			zs[v] = p.getZ();
+		}
+		if (!delaunay.hasFiniteTriangles()) {
+			return new ArrayDelaunayTriangulation(xs, ys, zs, vertexCount, new int[0], new int[0], 0);
+		}
+		// the slots of the live triangles are their indices
+		TriangleRegistry registry = delaunay.getTriangleRegistry();
+		int triangleCount = registry.size();
+		int[] triangles = new int[3 * triangleCount];
+		int[] halfedges = new int[3 * triangleCount];
+		for (Triangle t : registry) {
+			int e = 3 * t.getLiveIndex();
+			for (int i = 0; i < 3; i++) {
+				Point p = t.corner(i);
+				triangles[e + i] = p == null ? GHOST : vertices.indexOf(p);
+				Triangle n = t.edgeNeighbor(i);
+				halfedges[e + i] = 3 * n.getLiveIndex() + n.edgeIndex(t.corner(i + 1), p);
+			}
+		}
+		return new ArrayDelaunayTriangulation(xs, ys, zs, vertexCount, triangles, halfedges, triangleCount);
+	}
+
+	/**
+	 * Triangulates the given coordinates.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @return the counterclockwise vertex triples of all triangles, the vertex
+	 *         indices refer to the input arrays. Duplicated points are
+	 *         represented by their first occurrence.
+	 */
+	public static int[] triangulate(double[] xs, double[] ys) {
+		ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(xs.length);
+		int[] inputToVertex = triangulation.insertPoints(xs, ys, null);
+		int[] vertexToInput = new int[triangulation.vertexCount];
+		for (int i = xs.length - 1; i >= 0; i--) {
+			vertexToInput[inputToVertex[i]] = i;
+		}
+		int[] result = triangulation.getTriangleVertices();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = vertexToInput[result[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the Voronoi cells of all vertices at once, cell v belongs to
+	 * vertex v.
+	 */
+	public VoronoiDiagram calcVoronoiDiagram() {
+		return new VoronoiDiagram(this);
+	}
+
+	/**
+	 * @return the backing x-coordinates, valid up to {@link #size()}.
+	 */
+	double[] getXs() {
+		return xs;
+	}
+
+	/**
+	 * @return the backing y-coordinates, valid up to {@link #size()}.
+	 */
+	double[] getYs() {
+		return ys;
+	}
+
+	/**
+	 * @return the backing z-coordinates, valid up to {@link #size()}.
+	 */
+	double[] getZs() {
+		return zs;
+	}
+
+	/**
+	 * @return the backing vertex triples, valid up to 3 *
+	 *         {@link #trianglesSize()}.
+	 */
+	int[] getTriangles() {
+		return triangles;
+	}
+
+	/**
+	 * @return the backing half-edge twins, valid up to 3 *
+	 *         {@link #trianglesSize()}.
+	 */
+	int[] getHalfedges() {
+		return halfedges;
+	}
+
+	public void insertPoints(Collection<Point> points) {
+		for (Point p : points) {
+			insertPoint(p);
+		}
+	}
+
+	/**
+	 * insert the points to this Delaunay Triangulation. The points are
+	 * inserted in biased randomized Hilbert order (see {@link SpatialSort}),
+	 * so every point location starts next to the previous point.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @param zs
+	 *            z-coordinates of the points, may be null
+	 * @return the vertex index of every input point (duplicated points share
+	 *         the index of the same vertex).
+	 */
+	public int[] insertPoints(double[] xs, double[] ys, double[] zs) {
+		if (ys.length != xs.length || (zs != null && zs.length != xs.length)) {
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		}
+		int[] inputToVertex = new int[xs.length];
+		for (int i : SpatialSort.brioOrder(xs, ys)) {
+			inputToVertex[i] = insertPoint(xs[i], ys[i], zs == null ? 0 : zs[i]);
+		}
+		return inputToVertex;
+	}
+
+	/**
+	 * insert the point to this Delaunay Triangulation. Note: if p is null or
+	 * already exist in this triangulation p is ignored.
+	 *
+	 * @param p
+	 *            new vertex to be inserted the triangulation.
+	 */
+	public void insertPoint(Point p) {
+		if (p != null) {
+			insertPoint(p.getX(), p.getY(), p.getZ());
+		}
+	}
+
+	/**
+	 * insert the point to this Delaunay Triangulation.
+	 *
+	 * @return the index of the new vertex, or the index of the existing vertex
+	 *         with the same x/y coordinates.
+	 */
+	public int insertPoint(double x, double y, double z) {
+		return insert(x, y, z);
+	}
+
+	/**
+	 * finds the triangle the query point falls in. If the point is outside of
+	 * the convex hull a ghost triangle whose hull edge is visible from the
+	 * point is returned.
+	 *
+	 * @return the index of the triangle, -1 if there are no triangles yet
+	 *         (less than three not collinear vertices).
+	 */
+	@Override
+	public int locate(double x, double y) {
+		if (allCollinear)
+			return -1;
+		return walk(lastTriangle, x, y, nextSeed());
+	}
+
+	/**
+	 * finds the triangles of many query points at once, see
+	 * {@link #locateAll(double[], double[], ForkJoinPool)}. Runs on the common
+	 * fork join pool.
+	 */
+	public int[] locateAll(double[] xs, double[] ys) {
+		return locateAll(xs, ys, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * finds the triangles of many query points at once. The queries are
+	 * sorted along a Hilbert curve and cut into chunks that are walked in
+	 * parallel, every walk starts at the triangle of the previous query. The
+	 * triangulation is only read, it must not be changed during the call.
+	 *
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 * @param pool
+	 *            the pool walking the chunks.
+	 * @return the triangle index of every query, as locate returns it; all -1
+	 *         while there are no triangles yet.
+	 */
+	public int[] locateAll(final double[] xs, final double[] ys, ForkJoinPool pool) {
+		final int[] result = new int[xs.length];
+		BatchLocation batch = new BatchLocation(xs, ys) {
+			@Override
+			void walk(int chunk, int from, int to) {
+				int t = lastTriangle;
+				int seed = walkSeed + chunk;
+				for (int i = from; i < to; i++) {
+					int k = order[i];
+					seed ^= seed << 13;
+					seed ^= seed >>> 17;
+					seed ^= seed << 5;
+					t = ArrayDelaunayTriangulation.this.walk(t, xs[k], ys[k], seed);
+					result[k] = t;
+				}
+			}
+		};
+		if (allCollinear) {
+			Arrays.fill(result, -1);
+			return result;
+		}
+		batch.run(pool);
+		return result;
+	}
+
+	@Override
+	public double getX(int vertex) {
+		return xs[vertex];
+	}
+
+	@Override
+	public double getY(int vertex) {
+		return ys[vertex];
+	}
+
+	@Override
+	public double getZ(int vertex) {
+		return zs[vertex];
+	}
+
+	/**
+	 * computes the z values of many query points at once, see
+	 * {@link #z(double[], double[], double[], ForkJoinPool)}. Runs on the
+	 * common fork join pool.
+	 */
+	public void z(double[] xs, double[] ys, double[] out) {
+		z(xs, ys, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * computes the z values of many query points at once. The points are
+	 * located as in {@link #locateAll(double[], double[], ForkJoinPool)} and
+	 * interpolated in parallel, without allocating per query. The
+	 * triangulation must not be changed during the call.
+	 *
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 * @param out
+	 *            receives the z values, NaN for points outside of the convex
+	 *            hull.
+	 * @param pool
+	 *            the pool walking the queries.
+	 */
+	public void z(final double[] xs, final double[] ys, final double[] out, ForkJoinPool pool) {
+		if (out.length < xs.length)
+			throw new IllegalArgumentException("out is shorter than the queries: " + out.length + " < " + xs.length);
+		BatchLocation batch = new BatchLocation(xs, ys) {
+			@Override
+			void walk(int chunk, int from, int to) {
+				int t = lastTriangle;
+				int seed = walkSeed + chunk;
+				for (int i = from; i < to; i++) {
+					int k = order[i];
+					seed ^= seed << 13;
+					seed ^= seed >>> 17;
+					seed ^= seed << 5;
+					t = ArrayDelaunayTriangulation.this.walk(t, xs[k], ys[k], seed);
+					out[k] = zOnTriangle(t, xs[k], ys[k]);
+				}
+			}
+		};
+		if (allCollinear) {
+			Arrays.fill(out, 0, xs.length, Double.NaN);
+			return;
+		}
+		batch.run(pool);
+	}
+
+	/**
+	 * @return The bounding rectange between the minimum and maximum coordinates
+	 */
+	public BoundingBox getBoundingBox() {
+		if (vertexCount == 0)
+			return null;
+		return new BoundingBox(minX, maxX, minY, maxY, minZ, maxZ);
+	}
+
+	/**
+	 * return the min point of the bounding box of this triangulation
+	 * {{x0,y0,z0}}
+	 */
+	public Point minBoundingBox() {
+		return vertexCount == 0 ? null : new Point(minX, minY, minZ);
+	}
+
+	/**
+	 * return the max point of the bounding box of this triangulation
+	 * {{x1,y1,z1}}
+	 */
+	public Point maxBoundingBox() {
+		return vertexCount == 0 ? null : new Point(maxX, maxY, maxZ);
+	}
+
+	/**
+	 * @return for every real triangle (in the order of
+	 *         {@link #getTriangleVertices()}) the indices of the triangles
+	 *         sharing its edges ab, bc and ca, -1 for hull edges.
+	 */
+	public int[] getTriangleNeighbors() {
+		int[] compactIndex = new int[triangleCount];
+		int k = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			compactIndex[t] = isGhost(t) ? -1 : k++;
+		}
+		int[] result = new int[3 * k];
+		k = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isGhost(t)) {
+				for (int i = 0; i < 3; i++) {
+					result[k++] = compactIndex[halfedges[3 * t + i] / 3];
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	void growVertices(int capacity) {
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		zs = Arrays.copyOf(zs, capacity);
+	}
+
+	@Override
+	void setVertex(int v, double x, double y, double z) {
+		xs[v] = x;
+		ys[v] = y;
+		zs[v] = z;
+		updateBoundingBox(x, y, z);
+	}
+
+	private void updateBoundingBox(double x, double y, double z) {
+		minX = Math.min(minX, x);
+		maxX = Math.max(maxX, x);
+		minY = Math.min(minY, y);
+		maxY = Math.max(maxY, y);
+		minZ = Math.min(minZ, z);
+		maxZ = Math.max(maxZ, z);
+	}
+
+	@Override
+	double vertexX(int vertex) {
+		return xs[vertex];
+	}
+
+	@Override
+	double vertexY(int vertex) {
+		return ys[vertex];
+	}
+
+	@Override
+	double orient(int a, int b, double x, double y) {
+		return GeometricPredicates.orient2d(xs[a], ys[a], xs[b], ys[b], x, y);
+	}
+
+	@Override
+	double incircle(int a, int b, int c, int d) {
+		return GeometricPredicates.incircle(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c], xs[d], ys[d]);
+	}
+}
@@ -0,0 +1,90 @@
+package de.adihubba.delauney;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The common part of the batched point location of the triangulations. <br>
+ * The queries are sorted along a Hilbert curve and cut into chunks of
+ * CHUNK_SIZE consecutive queries. Every chunk is walked by one thread, each
+ * walk starting at the triangle of the previous query, which is almost always
+ * next to the current one. The chunks run in parallel and only read the
+ * triangulation.
+ */
+abstract class BatchLocation {
+
+	/** queries walked in sequence by one task */
+	static final int CHUNK_SIZE = 1 << 12;
+
+	/** the query indices in Hilbert order */
+	final int[] order;
+
+	/**
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 */
+	BatchLocation(double[] xs, double[] ys) {
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("xs and ys differ in length: " + xs.length + " != " + ys.length);
+		}
+		order = new int[xs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		SpatialSort.hilbertSort(xs, ys, order, 0, order.length);
+	}
+
+	/**
+	 * @return the number of chunks of queryCount queries.
+	 */
+	static int chunkCount(int queryCount) {
+		return (queryCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * @return the first position in order of the chunk.
+	 */
+	static int chunkStart(int chunk) {
+		return chunk * CHUNK_SIZE;
+	}
+
+	/**
+	 * locates the queries order[from, to) one after the other.
+	 */
+	abstract void walk(int chunk, int from, int to);
+
+	/**
+	 * walks all chunks on the pool and waits for them.
+	 */
+	void run(ForkJoinPool pool) {
+		if (order.length > 0) {
+			pool.invoke(new ChunkTask(this, 0, chunkCount(order.length)));
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class ChunkTask extends RecursiveAction {
+
+		private final BatchLocation batch;
+		private final int firstChunk, lastChunk;
+
+		ChunkTask(BatchLocation batch, int firstChunk, int lastChunk) {
+			this.batch = batch;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastChunk - firstChunk == 1) {
+				int from = chunkStart(firstChunk);
+				batch.walk(firstChunk, from, Math.min(batch.order.length, from + CHUNK_SIZE));
+				return;
+			}
+			int middle = (firstChunk + lastChunk) >>> 1;
+			invokeAll(new ChunkTask(batch, firstChunk, middle), new ChunkTask(batch, middle, lastChunk));
+		}
+	}
+}
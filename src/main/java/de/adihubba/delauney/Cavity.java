@@ -0,0 +1,231 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The hole left by removing a set of vertices from a triangulation, and the
+ * triangles that fill it. <br>
+ * The cavity is made of all triangles with a removed corner. The triangles
+ * around it stay Delaunay when vertices are removed, so the hole is filled by
+ * the triangles of the Delaunay triangulation of its remaining corners that
+ * lie inside it: they are collected by a flood fill of that local
+ * triangulation which starts at the border edges and never crosses them. So
+ * every cavity is triangulated once, however many vertices were removed from
+ * it. <br>
+ * A half plane (a, b) is handled as the triangle (a, b, infinity), with the
+ * neighbors ab, bc and ca across the edges a-b, b-infinity and infinity-a.
+ * This way cavities on the convex hull need no special case: the local
+ * triangulation also brings the new hull.
+ */
+final class Cavity {
+
+	// the removed and the added triangles are tagged with the modification
+	// counter of the deletion
+	private final int mc;
+
+	// the triangles with a removed corner
+	private final List<Triangle> removed = new ArrayList<Triangle>();
+
+	// the remaining corners of the removed triangles
+	private final VertexRegistry corners = new VertexRegistry();
+
+	// the edges between a removed triangle and a kept one: edge
+	// borderEdge[i] of borderInner[i] (so the cavity is on its left) and the
+	// kept triangle borderOuter[i]
+	private final List<Triangle> borderInner = new ArrayList<Triangle>();
+	private final List<Triangle> borderOuter = new ArrayList<Triangle>();
+	private int[] borderEdge = new int[16];
+
+	// the triangles filling the cavity, and for every border edge the added
+	// triangle and its edge on it; valid after fill()
+	private final List<Triangle> added = new ArrayList<Triangle>();
+	private Triangle[] addedOnBorder;
+	private int[] addedBorderEdge;
+
+	// the local triangulation the added triangles come from
+	private DelaunayTriangulation local;
+
+	/**
+	 * collects the cavity of the removed vertices.
+	 *
+	 * @param doomed
+	 *            the vertices to remove, compared by identity.
+	 * @param seeds
+	 *            a triangle with a removed corner for every removed vertex.
+	 * @param mc
+	 *            the modification counter of the deletion, no live triangle
+	 *            may have it yet.
+	 */
+	Cavity(Set<Point> doomed, Collection<Triangle> seeds, int mc) {
+		this.mc = mc;
+		ArrayDeque<Triangle> front = new ArrayDeque<Triangle>();
+		for (Triangle t : seeds) {
+			visit(t, front);
+		}
+		// every neighbor across an edge with a removed end has a removed corner
+		while (!front.isEmpty()) {
+			Triangle t = front.pop();
+			for (int i = 0; i < 3; i++) {
+				if (doomed.contains(t.corner(i)) || doomed.contains(t.corner(i + 1))) {
+					visit(t.edgeNeighbor(i), front);
+				}
+			}
+		}
+		for (Triangle t : removed) {
+			for (int i = 0; i < 3; i++) {
+				Point p = t.corner(i);
+				if (p != null && !doomed.contains(p)) {
+					corners.add(p);
+				}
+				Triangle n = t.edgeNeighbor(i);
+				if (!isRemoved(n)) {
+					if (borderInner.size() == borderEdge.length) {
+						borderEdge = Arrays.copyOf(borderEdge, 2 * borderEdge.length);
+					}
+					borderEdge[borderInner.size()] = i;
+					borderInner.add(t);
+					borderOuter.add(n);
+				}
+			}
+		}
+	}
+
+	private void visit(Triangle t, ArrayDeque<Triangle> front) {
+		if (t.getMc() != mc) {
+			t.setMc(mc);
+			removed.add(t);
+			front.push(t);
+		}
+	}
+
+	/**
+	 * @return true if t has a removed corner.
+	 */
+	boolean isRemoved(Triangle t) {
+		return t.getMc() == mc;
+	}
+
+	/**
+	 * @return the triangles with a removed corner, half planes included.
+	 */
+	List<Triangle> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return the triangles filling the cavity, half planes included.
+	 */
+	List<Triangle> getAdded() {
+		return added;
+	}
+
+	/**
+	 * triangulates the remaining corners and collects the triangles inside the
+	 * cavity. The triangulation is not changed yet.
+	 *
+	 * @return false if the local triangulation does not match the border of
+	 *         the cavity; this only happens for cocircular points, when the
+	 *         local triangulation chose another diagonal than the kept
+	 *         triangles. The caller has to triangulate the points from
+	 *         scratch then.
+	 */
+	boolean fill() {
+		int borderSize = borderInner.size();
+		if (borderSize == 0) {
+			return false;
+		}
+		List<Point> points = new ArrayList<Point>(corners.size());
+		for (Point p : corners) {
+			points.add(p);
+		}
+		local = new DelaunayTriangulation();
+		local.insertPoints(points, true);
+
+		// a local triangle at every corner to start the search for the border
+		Triangle[] incident = new Triangle[corners.size()];
+		for (Triangle t : local.getTriangleRegistry()) {
+			for (int i = 0; i < 3; i++) {
+				Point p = t.corner(i);
+				if (p != null) {
+					incident[corners.indexOf(p)] = t;
+				}
+			}
+		}
+		addedOnBorder = new Triangle[borderSize];
+		addedBorderEdge = new int[borderSize];
+		Map<Triangle, Integer> borderEdges = new IdentityHashMap<Triangle, Integer>();
+		for (int k = 0; k < borderSize; k++) {
+			Triangle t = borderInner.get(k);
+			Point from = t.corner(borderEdge[k]);
+			Point to = t.corner(borderEdge[k] + 1);
+			Point center = from != null ? from : to;
+			Triangle start = incident[corners.indexOf(center)];
+			if (start == null) {
+				return false;
+			}
+			// turn around center until the edge from -> to shows up
+			Triangle u = start;
+			int i;
+			while ((i = u.edgeIndex(from, to)) < 0) {
+				u = u.neighbor(center);
+				if (u == start) {
+					return false;
+				}
+			}
+			addedOnBorder[k] = u;
+			addedBorderEdge[k] = i;
+			Integer mask = borderEdges.get(u);
+			borderEdges.put(u, (mask == null ? 0 : mask) | 1 << i);
+		}
+
+		// everything reachable without crossing the border is inside
+		Set<Triangle> inside = Collections.newSetFromMap(new IdentityHashMap<Triangle, Boolean>());
+		ArrayDeque<Triangle> front = new ArrayDeque<Triangle>();
+		for (Triangle t : borderEdges.keySet()) {
+			inside.add(t);
+			front.push(t);
+		}
+		while (!front.isEmpty()) {
+			Triangle t = front.pop();
+			added.add(t);
+			Integer mask = borderEdges.get(t);
+			for (int i = 0; i < 3; i++) {
+				if (mask == null || (mask & 1 << i) == 0) {
+					Triangle n = t.edgeNeighbor(i);
+					if (inside.add(n)) {
+						front.push(n);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * links the added triangles to the kept triangles around the cavity and
+	 * takes them out of the local triangulation.
+	 */
+	void splice() {
+		TriangleRegistry localTriangles = local.getTriangleRegistry();
+		for (Triangle t : added) {
+			localTriangles.remove(t);
+			t.setMc(mc);
+		}
+		for (int k = 0; k < addedOnBorder.length; k++) {
+			Triangle t = addedOnBorder[k];
+			int i = addedBorderEdge[k];
+			Triangle kept = borderOuter.get(k);
+			t.setEdgeNeighbor(i, kept);
+			kept.setEdgeNeighbor(kept.edgeIndex(t.corner(i + 1), t.corner(i)), t);
+		}
+		local = null;
+	}
+}
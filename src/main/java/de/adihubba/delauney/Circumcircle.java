@@ -0,0 +1,120 @@
+package de.adihubba.delauney;
+
+import java.math.BigDecimal;
+
+/**
+ * The circumcircle of a triangle in floating point, together with a bound of
+ * its rounding error that grows as the triangle gets flat. Decides whether
+ * the circle reaches a box: the floating point circle answers if the box is
+ * clearly nearer or farther than the radius, otherwise the test is repeated
+ * exactly. A point on the circle counts as inside.
+ */
+final class Circumcircle {
+
+	private final double ax, ay, bx, by, cx, cy;
+
+	// the circumcentre and the radius, both off by at most about error; NaN
+	// or infinite for a flat triangle
+	private final double centerX, centerY, radius, error;
+
+	Circumcircle(double ax, double ay, double bx, double by, double cx, double cy) {
+		this.ax = ax;
+		this.ay = ay;
+		this.bx = bx;
+		this.by = by;
+		this.cx = cx;
+		this.cy = cy;
+		double px = bx - ax, py = by - ay;
+		double qx = cx - ax, qy = cy - ay;
+		double p2 = px * px + py * py;
+		double q2 = qx * qx + qy * qy;
+		double d = 2 * (px * qy - py * qx);
+		double mx = (qy * p2 - py * q2) / d;
+		double my = (px * q2 - qx * p2) / d;
+		double l = Math.max(Math.max(Math.abs(px), Math.abs(py)), Math.max(Math.abs(qx), Math.abs(qy)));
+		error = 64 * GeometricPredicates.EPSILON
+				* (l * l * (l + Math.abs(mx) + Math.abs(my)) / Math.abs(d) + Math.abs(mx) + Math.abs(my) + Math.abs(ax)
+						+ Math.abs(ay));
+		radius = Math.sqrt(mx * mx + my * my);
+		centerX = ax + mx;
+		centerY = ay + my;
+	}
+
+	/**
+	 * @return false for a flat triangle, whose circle reaches everything.
+	 */
+	boolean isFinite() {
+		return radius + error < Double.POSITIVE_INFINITY;
+	}
+
+	double getCenterX() {
+		return centerX;
+	}
+
+	double getCenterY() {
+		return centerY;
+	}
+
+	/**
+	 * @return a radius around the floating point centre that holds all of the
+	 *         exact circle.
+	 */
+	double getOuterRadius() {
+		return radius + 4 * error + 16 * GeometricPredicates.EPSILON * radius;
+	}
+
+	/**
+	 * @return true if the circle or its inside reaches the box, borders
+	 *         included. The bounds may be infinite.
+	 */
+	boolean reaches(double minX, double maxX, double minY, double maxY) {
+		double ex = Math.max(0, Math.max(minX - centerX, centerX - maxX));
+		double ey = Math.max(0, Math.max(minY - centerY, centerY - maxY));
+		double e = Math.sqrt(ex * ex + ey * ey);
+		double slack = 4 * error + 4 * GeometricPredicates.EPSILON * (e + radius);
+		if (e > radius + slack)
+			return false;
+		if (e < radius - slack)
+			return true;
+		return reachesExactly(minX, maxX, minY, maxY);
+	}
+
+	// the circumcentre relative to a and scaled by the denominator d is
+	// (nx, ny), and the box point nearest to it is compared with the radius,
+	// times d as well
+	private boolean reachesExactly(double minX, double maxX, double minY, double maxY) {
+		BigDecimal ax = new BigDecimal(this.ax), ay = new BigDecimal(this.ay);
+		BigDecimal px = new BigDecimal(bx).subtract(ax), py = new BigDecimal(by).subtract(ay);
+		BigDecimal qx = new BigDecimal(cx).subtract(ax), qy = new BigDecimal(cy).subtract(ay);
+		BigDecimal p2 = px.multiply(px).add(py.multiply(py));
+		BigDecimal q2 = qx.multiply(qx).add(qy.multiply(qy));
+		BigDecimal d = px.multiply(qy).subtract(py.multiply(qx)).multiply(BigDecimal.valueOf(2));
+		if (d.signum() == 0)
+			return true;
+		BigDecimal nx = qy.multiply(p2).subtract(py.multiply(q2));
+		BigDecimal ny = px.multiply(q2).subtract(qx.multiply(p2));
+		if (d.signum() < 0) {
+			d = d.negate();
+			nx = nx.negate();
+			ny = ny.negate();
+		}
+		BigDecimal ex = outside(nx, minX, maxX, ax, d);
+		BigDecimal ey = outside(ny, minY, maxY, ay, d);
+		return ex.multiply(ex).add(ey.multiply(ey)).compareTo(nx.multiply(nx).add(ny.multiply(ny))) <= 0;
+	}
+
+	// how far the scaled coordinate c is outside of the scaled [min, max]
+	private static BigDecimal outside(BigDecimal c, double min, double max, BigDecimal a, BigDecimal d) {
+		if (min > Double.NEGATIVE_INFINITY) {
+			BigDecimal low = new BigDecimal(min).subtract(a).multiply(d);
+			if (c.compareTo(low) < 0)
+				return low.subtract(c);
+		}
+		if (max < Double.POSITIVE_INFINITY) {
+			BigDecimal high = new BigDecimal(max).subtract(a).multiply(d);
+			if (c.compareTo(high) > 0)
+				return c.subtract(high);
+		}
+		return BigDecimal.ZERO;
+	}
+}
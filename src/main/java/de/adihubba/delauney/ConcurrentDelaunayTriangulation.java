@@ -0,0 +1,264 @@
+package de.adihubba.delauney;
+
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A {@link DelaunayTriangulation} shared by one writer and many readers,
+ * guarded by a {@link StampedLock}. <br>
+ * Changes take the write lock. Point location and interpolation first run
+ * without any lock on an optimistic stamp: the walk is bounded (a walk
+ * through half changed triangles may run in circles), every exception is
+ * taken as a sign of a concurrent change, and the result only counts if the
+ * stamp is still valid afterwards. After OPTIMISTIC_ATTEMPTS failed attempts
+ * the query takes the read lock. No query touches the point locator (which
+ * may keep state between queries, and readers share the read lock), and
+ * optimistic readers do not fill the plane caches of the triangles; every
+ * thread starts its walks at the triangle of its own last query. <br>
+ * Other queries run under the read lock through {@link #read(Function)}. The
+ * wrapped triangulation must not be used directly any more.
+ */
+public class ConcurrentDelaunayTriangulation {
+
+	/** optimistic tries of a query before it takes the read lock */
+	private static final int OPTIMISTIC_ATTEMPTS = 2;
+
+	/** walk steps of an optimistic query: MIN_STEPS + STEP_FACTOR * sqrt(n) */
+	private static final int MIN_STEPS = 64;
+	private static final int STEP_FACTOR = 8;
+
+	private final DelaunayTriangulation delaunay;
+	private final StampedLock lock = new StampedLock();
+
+	// the triangle of the last query of every thread, where its next walk
+	// starts
+	private final ThreadLocal<Triangle> lastTriangle = new ThreadLocal<Triangle>();
+
+	/**
+	 * creates an empty triangulation.
+	 */
+	public ConcurrentDelaunayTriangulation() {
+		this(new DelaunayTriangulation());
+	}
+
+	/**
+	 * guards delaunay, which must not be used directly any more.
+	 */
+	public ConcurrentDelaunayTriangulation(DelaunayTriangulation delaunay) {
+		this.delaunay = delaunay;
+	}
+
+	/**
+	 * inserts a point under the write lock, see
+	 * {@link DelaunayTriangulation#insertPoint(Point)}.
+	 */
+	public void insertPoint(Point p) {
+		long stamp = lock.writeLock();
+		try {
+			delaunay.insertPoint(p);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * inserts the points under the write lock, see
+	 * {@link DelaunayTriangulation#insertPoints(Collection, boolean)}.
+	 */
+	public void insertPoints(Collection<Point> points, boolean spatiallySorted) {
+		long stamp = lock.writeLock();
+		try {
+			delaunay.insertPoints(points, spatiallySorted);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * deletes the points under the write lock, see
+	 * {@link DelaunayTriangulation#deletePoints(Collection)}.
+	 */
+	public int deletePoints(Collection<Point> points) {
+		long stamp = lock.writeLock();
+		try {
+			return delaunay.deletePoints(points);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * changes a height under the write lock, see
+	 * {@link DelaunayTriangulation#updateZ(double, double, double)}.
+	 */
+	public Point updateZ(double x, double y, double z) {
+		long stamp = lock.writeLock();
+		try {
+			return delaunay.updateZ(x, y, z);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * runs change on the triangulation under the write lock.
+	 */
+	public void write(Consumer<DelaunayTriangulation> change) {
+		long stamp = lock.writeLock();
+		try {
+			change.accept(delaunay);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * takes a snapshot under the write lock, see
+	 * {@link DelaunayTriangulation#snapshot()}. The lock is only held while
+	 * the changes since the last snapshot are copied.
+	 */
+	public TriangulationSnapshot snapshot() {
+		long stamp = lock.writeLock();
+		try {
+			return delaunay.snapshot();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * runs query on the triangulation under the read lock, together with the
+	 * other readers. The query must not change the triangulation, and what it
+	 * returns must not refer to triangles that may change later.
+	 */
+	public <T> T read(Function<DelaunayTriangulation, T> query) {
+		long stamp = lock.readLock();
+		try {
+			return query.apply(delaunay);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int size = delaunay.size();
+		if (lock.validate(stamp))
+			return size;
+		stamp = lock.readLock();
+		try {
+			return delaunay.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the z value of the triangulation at (x, y), see
+	 *         {@link DelaunayTriangulation#z(double, double)}; NaN outside of
+	 *         the convex hull and while all vertices are collinear.
+	 */
+	public double z(double x, double y) {
+		Point q = new Point(x, y);
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0)
+				break;
+			try {
+				Triangle t = walk(q);
+				if (t != null) {
+					double z = t.isHalfplane() ? Double.NaN : t.zValueUncached(x, y);
+					if (lock.validate(stamp)) {
+						lastTriangle.set(t);
+						return z;
+					}
+				}
+			} catch (RuntimeException e) {
+				// a concurrent change, the stamp is invalid
+			}
+		}
+		long stamp = lock.readLock();
+		try {
+			Triangle t = locate(q);
+			return t == null || t.isHalfplane() ? Double.NaN : t.zValue(x, y);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return true iff (x, y) falls inside the convex hull of the
+	 *         triangulation.
+	 */
+	public boolean contains(double x, double y) {
+		return locate(x, y).length == 3;
+	}
+
+	/**
+	 * locates (x, y).
+	 *
+	 * @return the corners of the triangle (x, y) falls in, or the two corners
+	 *         of the hull edge facing (x, y) if it is outside the convex hull;
+	 *         empty while all vertices are collinear.
+	 */
+	public Point[] locate(double x, double y) {
+		Point q = new Point(x, y);
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0)
+				break;
+			try {
+				Triangle t = walk(q);
+				if (t != null) {
+					Point[] corners = corners(t);
+					if (lock.validate(stamp)) {
+						lastTriangle.set(t);
+						return corners;
+					}
+				}
+			} catch (RuntimeException e) {
+				// a concurrent change, the stamp is invalid
+			}
+		}
+		long stamp = lock.readLock();
+		try {
+			return corners(locate(q));
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// an optimistic, bounded walk, null if it did not succeed
+	private Triangle walk(Point q) {
+		if (!delaunay.hasFiniteTriangles())
+			return null;
+		int maxSteps = MIN_STEPS + STEP_FACTOR * (int) Math.sqrt(delaunay.size());
+		return delaunay.find(q, lastTriangle.get(), maxSteps);
+	}
+
+	// locates q under the read lock, null while all vertices are collinear.
+	// Other readers may hold the lock too, so the walk starts at the last
+	// triangle of this thread or at the start triangle, never at the point
+	// locator (which keeps state between queries).
+	private Triangle locate(Point q) {
+		if (!delaunay.hasFiniteTriangles())
+			return null;
+		Triangle last = lastTriangle.get();
+		Triangle t = delaunay.find(q, last != null && last.isLive() ? last : null);
+		lastTriangle.set(t);
+		return t;
+	}
+
+	private static Point[] corners(Triangle t) {
+		if (t == null)
+			return new Point[0];
+		if (t.isHalfplane())
+			return new Point[] { t.getA(), t.getB() };
+		return new Point[] { t.getA(), t.getB(), t.getC() };
+	}
+}
@@ -0,0 +1,173 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Point location with a Delaunay hierarchy (Devillers 2002). <br>
+ * Level 0 is the indexed triangulation, every vertex of level i is also
+ * inserted into level i+1 with probability 1/RATIO. A query walks the small
+ * top level, goes down at the nearest vertex of the triangle it found and
+ * repeats the short walk on every level below. The expected location time is
+ * O(log n) whatever the distribution of the points. <br>
+ * Deleted vertices stay in the upper levels, they are still fine stepping
+ * stones: their link into level 0 is moved to a triangle of the hole.
+ */
+public class DelaunayHierarchyLocator implements PointLocator {
+
+	/** a vertex of a level is in the next level with probability 1/RATIO */
+	private static final int RATIO = 30;
+
+	/** number of levels above the indexed triangulation */
+	private static final int MAX_LEVELS = 5;
+
+	/** seed of the level choice, fixed so the hierarchy is reproducible */
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+
+	// the levels above the indexed triangulation, levels.get(0) is level 1
+	private final List<DelaunayTriangulation> levels = new ArrayList<DelaunayTriangulation>();
+
+	// down.get(i) maps a vertex of level i+1 to a triangle of level i with
+	// the vertex as a corner
+	private final List<Map<Point, Triangle>> down = new ArrayList<Map<Point, Triangle>>();
+
+	private final Random random = new Random(SEED);
+
+	// the triangles found on the upper levels by the last query, an insertion
+	// into the upper levels starts its walks there
+	private Point lastQuery;
+	private final Triangle[] lastPath = new Triangle[MAX_LEVELS + 1];
+
+	/**
+	 * creates an empty hierarchy, it indexes the vertices reported by
+	 * {@link #pointInserted}.
+	 */
+	public DelaunayHierarchyLocator() {
+	}
+
+	/**
+	 * creates a hierarchy over the current vertices of delaunay.
+	 *
+	 * @param delaunay
+	 *            triangulation to index
+	 */
+	public DelaunayHierarchyLocator(DelaunayTriangulation delaunay) {
+		Map<Point, Triangle> incident = new IdentityHashMap<Point, Triangle>();
+		for (Iterator<Triangle> it = delaunay.trianglesIterator(); it.hasNext();) {
+			Triangle t = it.next();
+			if (!t.isHalfplane()) {
+				incident.put(t.getA(), t);
+				incident.put(t.getB(), t);
+				incident.put(t.getC(), t);
+			}
+		}
+		for (Iterator<Point> it = delaunay.verticesIterator(); it.hasNext();) {
+			Point p = it.next();
+			Triangle t = incident.get(p);
+			if (t != null) {
+				pointInserted(p, t);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of levels above the indexed triangulation.
+	 */
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	@Override
+	public Triangle startTriangle(Point p) {
+		Triangle t = null;
+		for (int level = levels.size(); level >= 1; level--) {
+			DelaunayTriangulation triangulation = levels.get(level - 1);
+			if (triangulation.hasFiniteTriangles()) {
+				t = triangulation.find(p, t);
+				lastPath[level] = t;
+				t = down.get(level - 1).get(nearestCorner(t, p));
+			} else {
+				lastPath[level] = null;
+				t = null;
+			}
+			if (t != null && !t.isLive()) {
+				t = null;
+			}
+		}
+		lastQuery = p;
+		return t;
+	}
+
+	@Override
+	public void pointInserted(Point p, Triangle incident) {
+		int top = 0;
+		while (top < MAX_LEVELS && random.nextInt(RATIO) == 0) {
+			top++;
+		}
+		Triangle below = incident;
+		for (int level = 1; level <= top && below != null; level++) {
+			if (level > levels.size()) {
+				levels.add(new DelaunayTriangulation());
+				down.add(new HashMap<Point, Triangle>());
+			}
+			Triangle start = lastQuery == p ? lastPath[level] : null;
+			Triangle inserted = levels.get(level - 1).insertPoint(p, start);
+			down.get(level - 1).put(p, below);
+			below = inserted;
+		}
+		lastQuery = null;
+	}
+
+	@Override
+	public void pointsDeleted(Collection<Point> points, Collection<Triangle> addedTriangles) {
+		if (down.isEmpty() || addedTriangles.isEmpty()) {
+			return;
+		}
+		// the points and the corners of the holes lost their triangles of
+		// level 0
+		Map<Point, Triangle> level0 = down.get(0);
+		Triangle any = addedTriangles.iterator().next();
+		for (Point p : points) {
+			relink(level0, p, any);
+		}
+		for (Triangle t : addedTriangles) {
+			relink(level0, t.getA(), t);
+			relink(level0, t.getB(), t);
+			if (!t.isHalfplane()) {
+				relink(level0, t.getC(), t);
+			}
+		}
+	}
+
+	private static void relink(Map<Point, Triangle> level0, Point p, Triangle t) {
+		if (level0.containsKey(p)) {
+			level0.put(p, t);
+		}
+	}
+
+	private static Point nearestCorner(Triangle t, Point p) {
+		Point nearest = t.getA();
+		double distance = distance2(nearest, p);
+		double d = distance2(t.getB(), p);
+		if (d < distance) {
+			nearest = t.getB();
+			distance = d;
+		}
+		if (!t.isHalfplane() && distance2(t.getC(), p) < distance) {
+			nearest = t.getC();
+		}
+		return nearest;
+	}
+
+	private static double distance2(Point a, Point b) {
+		double dx = a.getX() - b.getX();
+		double dy = a.getY() - b.getY();
+		return dx * dx + dy * dy;
+	}
+}
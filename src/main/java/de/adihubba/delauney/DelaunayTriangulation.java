@@ -1,13 +1,17 @@
 package de.adihubba.delauney;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import de.adihubba.ObjectUtils;
 
@@ -61,15 +65,24 @@ public class DelaunayTriangulation {
 	private Triangle startTriangleHull;
 
 	// additional data 4/8/05 used by the iterators
-	private Set<Point> vertices;
-	private Vector<Triangle> triangles;
+	private VertexRegistry vertices;
+	private TriangleRegistry triangles;
 
-	// The triangles that were deleted in the last deletePoint iteration.
-	private Vector<Triangle> deletedTriangles;
-	// The triangles that were added in the last deletePoint iteration.
-	private Vector<Triangle> addedTriangles;
+	private int modCount = 0;
 
-	private int modCount = 0, modCount2 = 0;
+	// triangles waiting for the Delaunay test during an insertion, see flip
+	private Triangle[] flipStack = new Triangle[64];
+	private int flipStackSize;
+
+	// records created and destroyed triangles, null until a checkpoint is taken
+	private TriangleJournal journal;
+
+	// the blocks shared with the snapshots, null until the first snapshot
+	private SnapshotStore snapshots;
+
+	// the region all further points lie in, set by the streaming mode (see
+	// finalizeTriangles); a null box once the stream is finished
+	private BoundingBox streamRegion;
 
 	// the Bounding Box, {{x0,y0,z0} , {x1,y1,z1}}
 	private Point bbMin, bbMax;
@@ -77,7 +90,7 @@ public class DelaunayTriangulation {
 	/**
 	 * Index for faster point location searches
 	 */
-	private GridIndex gridIndex = null;
+	private PointLocator locator = null;
 
 	/**
 	 * creates an empty Delaunay Triangulation.
@@ -96,17 +109,49 @@ public class DelaunayTriangulation {
 
 	public DelaunayTriangulation(Collection<Point> points) {
 		modCount = 0;
-		modCount2 = 0;
 		bbMin = null;
 		bbMax = null;
-		this.vertices = new TreeSet<Point>();
-		triangles = new Vector<Triangle>();
-		deletedTriangles = null;
-		addedTriangles = new Vector<Triangle>();
+		this.vertices = new VertexRegistry(points == null ? 0 : points.size());
+		triangles = new TriangleRegistry(points == null ? 0 : 2 * points.size());
 		allCollinear = true;
 		insertPoints(points);
 	}
 
+	/**
+	 * wraps a complete triangulation built elsewhere (see {@link TinFile}).
+	 * Nothing is checked, the triangles have to be linked and Delaunay.
+	 * 
+	 * @param points
+	 *            the vertices, without duplicates
+	 * @param triangles
+	 *            the linked triangles, half planes included; empty if all
+	 *            points are collinear
+	 */
+	DelaunayTriangulation(Point[] points, Triangle[] triangles) {
+		this();
+		if (triangles.length == 0) {
+			insertPoints(Arrays.asList(points));
+			return;
+		}
+		vertices = new VertexRegistry(points.length);
+		for (Point p : points) {
+			vertices.add(p);
+			updateBoundingBox(p);
+		}
+		this.triangles = new TriangleRegistry(triangles.length);
+		for (Triangle t : triangles) {
+			this.triangles.add(t);
+			if (t.isHalfplane()) {
+				if (startTriangleHull == null)
+					startTriangleHull = t;
+			} else if (startTriangle == null) {
+				startTriangle = t;
+			}
+		}
+		currT = startTriangle;
+		allCollinear = false;
+	}
+
 	/**
 	 * the number of (different) vertices in this triangulation.
 	 * 
@@ -125,7 +170,8 @@ public class DelaunayTriangulation {
 	 *         Note: includes infinife faces!!.
 	 */
 	public int trianglesSize() {
-		this.initTriangles();
+		if (this.size() <= 2)
+			return 0;
 		return triangles.size();
 	}
 
@@ -137,7 +183,24 @@ public class DelaunayTriangulation {
 	}
 
 	public void insertPoints(Collection<Point> points) {
-		for (Point p : points) {
+		insertPoints(points, false);
+	}
+
+	/**
+	 * insert the points to this Delaunay Triangulation.
+	 * 
+	 * @param points
+	 *            new vertices to be inserted the triangulation.
+	 * @param spatiallySorted
+	 *            true to insert the points in biased randomized Hilbert order
+	 *            (see {@link SpatialSort}) instead of the given order. This is
+	 *            the bulk load mode: every point location starts next to the
+	 *            previous point, so large inputs (in particular row ordered
+	 *            grids) are triangulated much faster.
+	 */
+	public void insertPoints(Collection<Point> points, boolean spatiallySorted) {
+		Collection<Point> ordered = spatiallySorted ? SpatialSort.brioOrder(points) : points;
+		for (Point p : ordered) {
 			insertPoint(p);
 		}
 	}
@@ -150,14 +213,32 @@ public class DelaunayTriangulation {
 	 *            new vertex to be inserted the triangulation.
 	 */
 	public void insertPoint(Point p) {
-		if (vertices.contains(p))
-			return;
+		insertVertex(p);
+	}
+
+	/**
+	 * inserts p, the point location walk starts at start (if it is a live
+	 * triangle of this triangulation).
+	 * 
+	 * @return a triangle with p as a corner, null if p was a duplicate or all
+	 *         points are collinear.
+	 */
+	Triangle insertPoint(Point p, Triangle start) {
+		if (start != null && start.isLive() && !allCollinear)
+			startTriangle = start;
+		return insertVertex(p);
+	}
+
+	private Triangle insertVertex(Point p) {
+		if (streamRegion != null && p != null)
+			checkStreamRegion(p);
+		if (!vertices.add(p))
+			return null;
 		modCount++;
 		updateBoundingBox(p);
-		vertices.add(p);
 		Triangle t = insertPointSimple(p);
 		if (t == null) //
-			return;
+			return null;
 		Triangle tt = t;
 		currT = t; // recall the last point for - fast (last) update iterator.
 		do {
@@ -165,464 +246,623 @@ public class DelaunayTriangulation {
 			tt = tt.getCaTriangle();
 		} while (tt != t && !tt.isHalfplane());
 
-		// Update index with changed triangles
-		if (gridIndex != null)
-			gridIndex.updateIndex(getLastUpdatedTriangles());
+		// Update index with changed triangles, the flips keep p as c of t
+		if (locator != null)
+			locator.pointInserted(p, t);
+		return t;
 	}
 
 	/**
-	 * Deletes the given point from this.
+	 * Deletes the given point from this, see {@link #deletePoints(Collection)}.
 	 * 
 	 * @param pointToDelete
 	 *            The given point to delete.
-	 * 
-	 *            Implementation of the Mostafavia, Gold & Dakowicz algorithm
-	 *            (2002).
-	 * 
-	 *            By Eyal Roth & Doron Ganel (2009).
 	 */
 	public void deletePoint(Point pointToDelete) {
+		deletePoints(Collections.singletonList(pointToDelete));
+	}
 
-		// Finding the triangles to delete.
-		Vector<Point> pointsVec = findConnectedVertices(pointToDelete, true);
-		if (pointsVec == null) {
-			return;
-		}
-
-		while (pointsVec.size() >= 3) {
-			// Getting a triangle to add, and saving it.
-			Triangle triangle = findTriangle(pointsVec, pointToDelete);
-			addedTriangles.add(triangle);
-
-			// Finding the point on the diagonal (pointToDelete,p)
-			Point p = findDiagonal(triangle, pointToDelete);
+	/**
+	 * deletes all vertices inside box (borders included), see
+	 * {@link #deletePoints(Collection)}.
+	 * 
+	 * @return the number of deleted vertices.
+	 */
+	public int deleteRegion(BoundingBox box) {
+		final List<Point> inside = new ArrayList<Point>();
+		forEachVertexIn(box, new Consumer<Point>() {
+			@Override
+			public void accept(Point p) {
+				inside.add(p);
+			}
+		});
+		return deletePoints(inside);
+	}
 
-			for (Point tmpP : pointsVec) {
-				if (tmpP.equals(p)) {
-					pointsVec.removeElement(tmpP);
+	/**
+	 * deletes the given points from this in one pass. All triangles with a
+	 * deleted corner are removed and every resulting hole (see {@link Cavity})
+	 * is triangulated once from its remaining corners, so deleting k points
+	 * costs about as much as the triangles around them, not k single deletes.
+	 * Points on the convex hull may be deleted as well. Points that are not
+	 * vertices of this are ignored.
+	 * 
+	 * @param points
+	 *            the points to delete.
+	 * @return the number of deleted vertices.
+	 */
+	public int deletePoints(Collection<Point> points) {
+		Set<Point> doomed = Collections.newSetFromMap(new IdentityHashMap<Point, Boolean>());
+		for (Point p : points) {
+			Point vertex = p == null ? null : vertices.lookup(p);
+			if (vertex != null)
+				doomed.add(vertex);
+		}
+		if (doomed.isEmpty())
+			return 0;
+		modCount++;
+		if (allCollinear || vertices.size() - doomed.size() < 3) {
+			rebuild(doomed);
+			return doomed.size();
+		}
+		Cavity cavity = new Cavity(doomed, Arrays.asList(incidentTriangles(doomed.toArray(new Point[doomed.size()]))), modCount);
+		if (cavity.getRemoved().size() == triangles.size() || !cavity.fill() || !keepsFiniteTriangle(cavity)) {
+			rebuild(doomed);
+			return doomed.size();
+		}
+		cavity.splice();
+		for (Triangle t : cavity.getRemoved()) {
+			triangles.remove(t);
+			triangleDestroyed(t);
+		}
+		for (Triangle t : cavity.getAdded()) {
+			triangles.add(t);
+			triangleCreated(t);
+		}
+		for (Point p : doomed)
+			vertices.remove(p);
+		currT = cavity.getAdded().get(0);
+		if (!startTriangle.isLive())
+			startTriangle = currT;
+		if (!startTriangleHull.isLive()) {
+			for (Triangle t : cavity.getAdded()) {
+				if (t.isHalfplane()) {
+					startTriangleHull = t;
 					break;
 				}
 			}
 		}
-		// updating the trangulation
-		deleteUpdate(pointToDelete);
-		for (Triangle t : deletedTriangles) {
-			if (t == startTriangle) {
-				startTriangle = addedTriangles.elementAt(0);
-				break;
-			}
-		}
-		triangles.removeAll(deletedTriangles);
-		triangles.addAll(addedTriangles);
-		vertices.remove(pointToDelete);
-		addedTriangles.removeAllElements();
-		deletedTriangles.removeAllElements();
+		if (locator != null)
+			locator.pointsDeleted(doomed, cavity.getAdded());
+		return doomed.size();
 	}
 
 	/**
-	 * return a point from the trangulation that is close to pointToDelete
+	 * changes the height of the vertex at (x, y) in place. The triangulation
+	 * only depends on x and y, so nothing is retriangulated: only the cached
+	 * planes of the triangles around the vertex are dropped. The modification
+	 * counter does not change.
 	 * 
-	 * @param pointToDelete
-	 *            the point that the user wants to delete
-	 * @return a point from the trangulation that is close to pointToDelete By
-	 *         Eyal Roth & Doron Ganel (2009).
+	 * @param x
+	 *            x-coordinate of the vertex.
+	 * @param y
+	 *            y-coordinate of the vertex.
+	 * @param z
+	 *            the new height.
+	 * @return the updated vertex, null if (x, y) is no vertex of this.
 	 */
-	public Point findClosePoint(Point pointToDelete) {
-		Triangle triangle = find(pointToDelete);
-		Point p1 = triangle.getA();
-		Point p2 = triangle.getB();
-		double d1 = p1.distance(pointToDelete);
-		double d2 = p2.distance(pointToDelete);
-		if (triangle.isHalfplane()) {
-			if (d1 <= d2) {
-				return p1;
-			} else {
-				return p2;
-			}
-		} else {
-			Point p3 = triangle.getC();
-
-			double d3 = p3.distance(pointToDelete);
-			if (d1 <= d2 && d1 <= d3) {
-				return p1;
-			} else if (d2 <= d1 && d2 <= d3) {
-				return p2;
-			} else {
-				return p3;
-			}
-		}
+	public Point updateZ(double x, double y, double z) {
+		Point vertex = vertices.lookup(new Point(x, y));
+		if (vertex == null)
+			return null;
+		if (setZ(vertex, z))
+			updateZRange();
+		vertices.touch(vertex);
+		if (!allCollinear)
+			invalidatePlanes(vertex, incidentTriangle(vertex, null));
+		return vertex;
 	}
 
-	// updates the trangulation after the triangles to be deleted and
-	// the triangles to be added were found
-	// by Doron Ganel & Eyal Roth(2009)
-	private void deleteUpdate(Point pointToDelete) {
-		for (Triangle addedTriangle1 : addedTriangles) {
-			// update between addedd triangles and deleted triangles
-			for (Triangle deletedTriangle : deletedTriangles) {
-				if (shareSegment(addedTriangle1, deletedTriangle)) {
-					updateNeighbor(addedTriangle1, deletedTriangle, pointToDelete);
-				}
+	/**
+	 * changes the heights of many vertices in place, see
+	 * {@link #updateZ(double, double, double)}. The vertices are located in
+	 * Hilbert order; when a large part of the vertices changes, the triangles
+	 * are scanned once instead. A vertex given more than once gets its last
+	 * height.
+	 * 
+	 * @param xs
+	 *            x-coordinates of the vertices.
+	 * @param ys
+	 *            y-coordinates of the vertices.
+	 * @param zs
+	 *            the new heights.
+	 * @return the updated vertices, each once, in the order of their first
+	 *         occurrence; coordinates that are no vertex of this are skipped.
+	 *         Whoever mirrors the vertices (e.g. the points of a mesh) only has
+	 *         to patch these.
+	 */
+	public List<Point> updateZ(double[] xs, double[] ys, double[] zs) {
+		if (xs.length != ys.length || xs.length != zs.length)
+			throw new IllegalArgumentException("xs, ys and zs differ in length: " + xs.length + ", " + ys.length + ", " + zs.length);
+		Set<Point> updated = Collections.newSetFromMap(new IdentityHashMap<Point, Boolean>());
+		List<Point> result = new ArrayList<Point>();
+		Point probe = new Point();
+		boolean shrunk = false;
+		for (int i = 0; i < xs.length; i++) {
+			probe.setX(xs[i]);
+			probe.setY(ys[i]);
+			Point vertex = vertices.lookup(probe);
+			if (vertex == null)
+				continue;
+			shrunk |= setZ(vertex, zs[i]);
+			if (updated.add(vertex)) {
+				vertices.touch(vertex);
+				result.add(vertex);
 			}
 		}
-		for (Triangle addedTriangle1 : addedTriangles) {
-			// update between added triangles
-			for (Triangle addedTriangle2 : addedTriangles) {
-				if ((addedTriangle1 != addedTriangle2) && (shareSegment(addedTriangle1, addedTriangle2))) {
-					updateNeighbor(addedTriangle1, addedTriangle2);
-				}
+		if (shrunk)
+			updateZRange();
+		if (allCollinear || result.isEmpty())
+			return result;
+		if (result.size() > vertices.size() / 8) {
+			for (Triangle t : triangles) {
+				if (updated.contains(t.getA()) || updated.contains(t.getB()) || (!t.isHalfplane() && updated.contains(t.getC())))
+					t.invalidatePlane();
 			}
+		} else {
+			Point[] ps = result.toArray(new Point[result.size()]);
+			Triangle[] incident = incidentTriangles(ps);
+			for (int i = 0; i < ps.length; i++)
+				invalidatePlanes(ps[i], incident[i]);
 		}
+		return result;
+	}
 
-		// Update index with changed triangles
-		if (gridIndex != null)
-			gridIndex.updateIndex(addedTriangles.iterator());
+	// changes the height of the vertex and grows the bounding box; true if
+	// the vertex held the lowest or highest z and moved away from it, then
+	// the z range has to be computed again
+	private boolean setZ(Point vertex, double z) {
+		double old = vertex.getZ();
+		vertex.setZ(z);
+		updateBoundingBox(vertex);
+		return (old == bbMin.getZ() && z > old) || (old == bbMax.getZ() && z < old);
+	}
 
+	// computes the z range of the bounding box from all vertices
+	private void updateZRange() {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (Point p : vertices) {
+			min = Math.min(min, p.getZ());
+			max = Math.max(max, p.getZ());
+		}
+		bbMin.setZ(min);
+		bbMax.setZ(max);
 	}
 
-	// checks if the 2 triangles shares a segment
-	// by Doron Ganel & Eyal Roth(2009)
-	private boolean shareSegment(Triangle t1, Triangle t2) {
-		int counter = 0;
-		Point t1P1 = t1.getA();
-		Point t1P2 = t1.getB();
-		Point t1P3 = t1.getC();
-		Point t2P1 = t2.getA();
-		Point t2P2 = t2.getB();
-		Point t2P3 = t2.getC();
+	// drops the cached planes of all triangles around the vertex p, t is one
+	// of them
+	private static void invalidatePlanes(Point p, Triangle t) {
+		Triangle u = t;
+		do {
+			u.invalidatePlane();
+			u = u.neighbor(p);
+		} while (u != t);
+	}
 
-		if (t1P1.equals(t2P1)) {
-			counter++;
-		}
-		if (t1P1.equals(t2P2)) {
-			counter++;
+	// false if the remaining vertices are collinear, then the half planes are
+	// linked like in the first steps of the construction
+	private boolean keepsFiniteTriangle(Cavity cavity) {
+		for (Triangle t : cavity.getAdded()) {
+			if (!t.isHalfplane())
+				return true;
 		}
-		if (t1P1.equals(t2P3)) {
-			counter++;
+		for (Triangle t : triangles) {
+			if (!t.isHalfplane() && !cavity.isRemoved(t))
+				return true;
 		}
-		if (t1P2.equals(t2P1)) {
-			counter++;
-		}
-		if (t1P2.equals(t2P2)) {
-			counter++;
-		}
-		if (t1P2.equals(t2P3)) {
-			counter++;
+		return false;
+	}
+
+	// a triangle with a corner in every point, result[i] for ps[i]; the points
+	// are located in Hilbert order, each walk starting at the triangle of the
+	// previous one
+	Triangle[] incidentTriangles(Point[] ps) {
+		double[] xs = new double[ps.length];
+		double[] ys = new double[ps.length];
+		int[] order = new int[ps.length];
+		for (int i = 0; i < ps.length; i++) {
+			xs[i] = ps[i].getX();
+			ys[i] = ps[i].getY();
+			order[i] = i;
 		}
-		if (t1P3.equals(t2P1)) {
-			counter++;
+		SpatialSort.hilbertSort(xs, ys, order, 0, order.length);
+		Triangle[] result = new Triangle[ps.length];
+		Triangle t = null;
+		for (int i : order) {
+			t = incidentTriangle(ps[i], t);
+			result[i] = t;
 		}
-		if (t1P3.equals(t2P2)) {
-			counter++;
+		return result;
+	}
+
+	// a live triangle with the vertex p as a corner, the search starts at
+	// start or at the locator if start is null
+	private Triangle incidentTriangle(Point p, Triangle start) {
+		Triangle t = start == null ? find(p) : find(p, start);
+		if (hasCorner(t, p))
+			return t;
+		Triangle[] neighbors = { t.getAbTriangle(), t.getBcTriangle(), t.getCaTriangle() };
+		for (Triangle n : neighbors) {
+			if (hasCorner(n, p))
+				return n;
 		}
-		if (t1P3.equals(t2P3)) {
-			counter++;
+		for (Triangle n : triangles) {
+			if (hasCorner(n, p))
+				return n;
 		}
-		if (counter >= 2)
-			return true;
-		else
-			return false;
+		throw new IllegalStateException("no triangle has the vertex " + p);
 	}
 
-	// update the neighbors of the addedTriangle and deletedTriangle
-	// we assume the 2 triangles share a segment
-	// by Doron Ganel & Eyal Roth(2009)
-	private void updateNeighbor(Triangle addedTriangle, Triangle deletedTriangle, Point pointToDelete) {
-		Point delA = deletedTriangle.getA();
-		Point delB = deletedTriangle.getB();
-		Point delC = deletedTriangle.getC();
-		Point addA = addedTriangle.getA();
-		Point addB = addedTriangle.getB();
-		Point addC = addedTriangle.getC();
+	private static boolean hasCorner(Triangle t, Point p) {
+		return t.getA() == p || t.getB() == p || (!t.isHalfplane() && t.getC() == p);
+	}
 
-		// updates the neighbor of the deleted triangle to point to the added
-		// triangle
-		// setting the neighbor of the added triangle
-		if (pointToDelete.equals(delA)) {
-			deletedTriangle.getBcTriangle().switchneighbors(deletedTriangle, addedTriangle);
-			// AB-BC || BA-BC
-			if ((addA.equals(delB) && addB.equals(delC)) || (addB.equals(delB) && addA.equals(delC))) {
-				addedTriangle.setAbTriangle(deletedTriangle.getBcTriangle());
-			}
-			// AC-BC || CA-BC
-			else if ((addA.equals(delB) && addC.equals(delC)) || (addC.equals(delB) && addA.equals(delC))) {
-				addedTriangle.setCanext(deletedTriangle.getBcTriangle());
-			}
-			// BC-BC || CB-BC
-			else {
-				addedTriangle.setBcTriangle(deletedTriangle.getBcTriangle());
-			}
-		} else if (pointToDelete.equals(delB)) {
-			deletedTriangle.getCaTriangle().switchneighbors(deletedTriangle, addedTriangle);
-			// AB-AC || BA-AC
-			if ((addA.equals(delA) && addB.equals(delC)) || (addB.equals(delA) && addA.equals(delC))) {
-				addedTriangle.setAbTriangle(deletedTriangle.getCaTriangle());
-			}
-			// AC-AC || CA-AC
-			else if ((addA.equals(delA) && addC.equals(delC)) || (addC.equals(delA) && addA.equals(delC))) {
-				addedTriangle.setCanext(deletedTriangle.getCaTriangle());
-			}
-			// BC-AC || CB-AC
-			else {
-				addedTriangle.setBcTriangle(deletedTriangle.getCaTriangle());
-			}
-		}
-		// equals c
-		else {
-			deletedTriangle.getAbTriangle().switchneighbors(deletedTriangle, addedTriangle);
-			// AB-AB || BA-AB
-			if ((addA.equals(delA) && addB.equals(delB)) || (addB.equals(delA) && addA.equals(delB))) {
-				addedTriangle.setAbTriangle(deletedTriangle.getAbTriangle());
-			}
-			// AC-AB || CA-AB
-			else if ((addA.equals(delA) && addC.equals(delB)) || (addC.equals(delA) && addA.equals(delB))) {
-				addedTriangle.setCanext(deletedTriangle.getAbTriangle());
-			}
-			// BC-AB || CB-AB
-			else {
-				addedTriangle.setBcTriangle(deletedTriangle.getAbTriangle());
-			}
+	// triangulates the vertices that are not doomed from scratch, for the
+	// degenerate cases the cavities can not handle
+	private void rebuild(Set<Point> doomed) {
+		List<Point> remaining = new ArrayList<Point>(vertices.size());
+		for (Point p : vertices) {
+			if (!doomed.contains(p))
+				remaining.add(p);
 		}
+		for (Triangle t : triangles)
+			triangleDestroyed(t);
+		triangles.clear();
+		vertices.clear();
+		allCollinear = true;
+		firstP = lastP = null;
+		firstT = lastT = currT = null;
+		startTriangle = startTriangleHull = null;
+		// the locator is told about the new triangles once at the end
+		PointLocator index = locator;
+		locator = null;
+		insertPoints(remaining, true);
+		locator = index;
+		if (locator != null)
+			locator.pointsDeleted(doomed, triangles.toList());
 	}
 
-	// update the neighbors of the 2 added Triangle s
-	// we assume the 2 triangles share a segment
-	// by Doron Ganel & Eyal Roth(2009)
-	private void updateNeighbor(Triangle addedTriangle1, Triangle addedTriangle2) {
-		Point A1 = addedTriangle1.getA();
-		Point B1 = addedTriangle1.getB();
-		Point C1 = addedTriangle1.getC();
-		Point A2 = addedTriangle2.getA();
-		Point B2 = addedTriangle2.getB();
-		Point C2 = addedTriangle2.getC();
-
-		// A1-A2
-		if (A1.equals(A2)) {
-			// A1B1-A2B2
-			if (B1.equals(B2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// A1B1-A2C2
-			else if (B1.equals(C2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// A1C1-A2B2
-			else if (C1.equals(B2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// A1C1-A2C2
-			else {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-		}
-		// A1-B2
-		else if (A1.equals(B2)) {
-			// A1B1-B2A2
-			if (B1.equals(A2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// A1B1-B2C2
-			else if (B1.equals(C2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
+	/**
+	 * return the vertex of the trangulation that is nearest to pointToDelete
+	 * 
+	 * @param pointToDelete
+	 *            the point that the user wants to delete
+	 * @return the vertex nearest to pointToDelete, see
+	 *         {@link #findNearestVertex(double, double)}. By Eyal Roth & Doron
+	 *         Ganel (2009).
+	 */
+	public Point findClosePoint(Point pointToDelete) {
+		return findNearestVertex(pointToDelete.getX(), pointToDelete.getY());
+	}
 
-			}
-			// A1C1-B2A2
-			else if (C1.equals(A2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// A1C1-B2C2
-			else {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-		}
-		// A1-C2
-		else if (A1.equals(C2)) {
-			// A1B1-C2A2
-			if (B1.equals(A2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// A1B1-C2B2
-			if (B1.equals(B2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// A1C1-C2A2
-			if (C1.equals(A2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// A1C1-C2B2
-			else {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-		}
-		// B1-A2
-		else if (B1.equals(A2)) {
-			// B1A1-A2B2
-			if (A1.equals(B2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// B1A1-A2C2
-			else if (A1.equals(C2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// B1C1-A2B2
-			else if (C1.equals(B2)) {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// B1C1-A2C2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
+	/**
+	 * finds the vertex nearest to (x, y). The nearest vertex is a corner of a
+	 * triangle whose circumcircle contains the query (it would be a neighbor
+	 * of the query if it was inserted), so only these triangles around the
+	 * located one are checked.
+	 * 
+	 * @param x
+	 *            x-coordinate of the query point
+	 * @param y
+	 *            y-coordinate of the query point
+	 * @return the nearest vertex, null if this is empty.
+	 */
+	public Point findNearestVertex(double x, double y) {
+		Point[] nearest = findNearestVertices(x, y, 1);
+		return nearest.length == 0 ? null : nearest[0];
+	}
+
+	/**
+	 * finds the k vertices nearest to (x, y). The search starts at the
+	 * triangles whose circumcircle contains the query and expands over the
+	 * Delaunay edges in the order of the distance to the query: the i-th
+	 * nearest vertex is a neighbor of the query or of one of the i - 1 nearer
+	 * ones, so every vertex is found when its turn comes and only about 6k
+	 * vertices are looked at.
+	 * 
+	 * @param x
+	 *            x-coordinate of the query point
+	 * @param y
+	 *            y-coordinate of the query point
+	 * @param k
+	 *            the number of vertices to find
+	 * @return the min(k, size()) nearest vertices, nearest first.
+	 */
+	public Point[] findNearestVertices(double x, double y, int k) {
+		checkNeighborCount(k);
+		Point q = new Point(x, y);
+		// a stream has cut its links to the finalized part, so there all
+		// remaining vertices are checked (as while they are collinear)
+		Triangle t = allCollinear || streamRegion != null ? null : find(q);
+		Point[] out = new Point[Math.min(k, size())];
+		findNearest(q, t, out, 0, out.length, new NearestQueue<Triangle>(), new ArrayList<Triangle>());
+		return out;
+	}
+
+	/**
+	 * finds the nearest vertex of many query points at once, see
+	 * {@link #findNearestVerticesAll(double[], double[], int, ForkJoinPool)}.
+	 * Runs on the common fork join pool.
+	 * 
+	 * @return the nearest vertex of every query, null if this is empty.
+	 */
+	public Point[] findNearestVertexAll(double[] xs, double[] ys) {
+		Point[][] nearest = findNearestVerticesAll(xs, ys, 1, ForkJoinPool.commonPool());
+		Point[] result = new Point[nearest.length];
+		for (int i = 0; i < result.length; i++) {
+			if (nearest[i].length > 0)
+				result[i] = nearest[i][0];
 		}
-		// B1-B2
-		else if (B1.equals(B2)) {
-			// B1A1-B2A2
-			if (A1.equals(A2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// B1A1-B2C2
-			else if (A1.equals(C2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// B1C1-B2A2
-			else if (C1.equals(A2)) {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
+		return result;
+	}
+
+	/**
+	 * finds the k nearest vertices of many query points at once, see
+	 * {@link #findNearestVerticesAll(double[], double[], int, ForkJoinPool)}.
+	 * Runs on the common fork join pool.
+	 */
+	public Point[][] findNearestVerticesAll(double[] xs, double[] ys, int k) {
+		return findNearestVerticesAll(xs, ys, k, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * finds the k nearest vertices of many query points at once (see
+	 * {@link #findNearestVertices(double, double, int)}). The queries are
+	 * located like in {@link #findAll(double[], double[], ForkJoinPool)} and
+	 * every chunk reuses its search queue. The triangulation is only read, it
+	 * must not be changed during the call.
+	 * 
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 * @param k
+	 *            the number of vertices to find per query.
+	 * @param pool
+	 *            the pool walking the chunks.
+	 * @return the min(k, size()) nearest vertices of every query, nearest
+	 *         first.
+	 */
+	public Point[][] findNearestVerticesAll(final double[] xs, final double[] ys, final int k, ForkJoinPool pool) {
+		checkNeighborCount(k);
+		final Point[][] result = new Point[xs.length][];
+		final Triangle[] starts = new Triangle[BatchLocation.chunkCount(xs.length)];
+		final int count = Math.min(k, size());
+		BatchLocation batch = new BatchLocation(xs, ys) {
+			@Override
+			void walk(int chunk, int from, int to) {
+				NearestQueue<Triangle> queue = new NearestQueue<Triangle>();
+				List<Triangle> region = new ArrayList<Triangle>();
+				Point q = new Point();
+				Triangle t = starts[chunk];
+				for (int i = from; i < to; i++) {
+					int j = order[i];
+					q.setX(xs[j]);
+					q.setY(ys[j]);
+					if (t != null)
+						t = find(q, t);
+					result[j] = new Point[count];
+					findNearest(q, t, result[j], 0, count, queue, region);
+				}
 			}
-			// B1C1-B2C2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
+		};
+		// see findNearestVertices for streams
+		if (!allCollinear && streamRegion == null)
+			findChunkStarts(batch, xs, ys, starts);
+		batch.run(pool);
+		return result;
+	}
+
+	private static void checkNeighborCount(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("at least one neighbor has to be searched: " + k);
+	}
+
+	// writes the count nearest vertices of q to out[offset...], t is the
+	// triangle q falls in, null while all vertices are collinear
+	private void findNearest(Point q, Triangle t, Point[] out, int offset, int count, NearestQueue<Triangle> queue,
+			List<Triangle> region) {
+		if (count == 0)
+			return;
+		queue.clear();
+		if (t == null) {
+			for (Point p : vertices)
+				offerNearest(queue, p, q, null);
+		} else {
+			// the triangles whose circumcircle contains q, they are connected
+			region.clear();
+			region.add(t);
+			for (int i = 0; i < region.size(); i++) {
+				Triangle u = region.get(i);
+				for (int j = 0; j < 3; j++) {
+					Point p = u.corner(j);
+					if (p != null)
+						offerNearest(queue, p, q, u);
+					Triangle n = u.edgeNeighbor(j);
+					if (!region.contains(n) && conflicts(n, q))
+						region.add(n);
+				}
 			}
 		}
-		// B1-C2
-		else if (B1.equals(C2)) {
-			// B1A1-C2A2
-			if (A1.equals(A2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// B1A1-C2B2
-			if (A1.equals(B2)) {
-				addedTriangle1.setAbTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// B1C1-C2A2
-			if (C1.equals(A2)) {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// B1C1-C2B2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
+		for (int found = 0; found < count; found++) {
+			queue.poll();
+			Point p = vertices.get(queue.polledId());
+			out[offset + found] = p;
+			Triangle start = queue.polledHint();
+			if (start == null || found + 1 == count)
+				continue;
+			Triangle u = start;
+			do {
+				for (int j = 0; j < 3; j++) {
+					Point c = u.corner(j);
+					if (c != null && c != p)
+						offerNearest(queue, c, q, u);
+				}
+				u = u.neighbor(p);
+			} while (u != start);
 		}
-		// C1-A2
-		else if (C1.equals(A2)) {
-			// C1A1-A2B2
-			if (A1.equals(B2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// C1A1-A2C2
-			else if (A1.equals(C2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// C1B1-A2B2
-			else if (B1.equals(B2)) {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// C1B1-A2C2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
+	}
+
+	private void offerNearest(NearestQueue<Triangle> queue, Point p, Point q, Triangle t) {
+		queue.offer(vertices.indexOf(p), p.distance2(q), t);
+	}
+
+	// true if q is inside the circumcircle of t, or on the outer side of
+	// the edge of a half plane
+	private static boolean conflicts(Triangle t, Point q) {
+		if (t.isHalfplane())
+			return GeometricPredicates.orient2d(t.getA(), t.getB(), q) >= 0;
+		return t.circumcircleContains(q);
+	}
+
+	/**
+	 * calls action for every triangle (no half plane) that overlaps the x/y
+	 * extent of box, borders included. The search starts at the triangle of
+	 * the centre of box (found through the locator, if any) and spreads over
+	 * the neighbors that overlap box too, so only the triangles in the range
+	 * and their direct neighbors are looked at. If the centre is outside of
+	 * the convex hull the hull is searched for a triangle in the range first.
+	 * The triangulation must not be changed by action.
+	 * 
+	 * @param box
+	 *            the range
+	 * @param action
+	 *            called once for every triangle in the range
+	 * @return the number of triangles in the range
+	 */
+	public int forEachTriangleIn(BoundingBox box, Consumer<Triangle> action) {
+		return searchRange(box, action, null);
+	}
+
+	/**
+	 * calls action for every vertex inside the x/y extent of box, borders
+	 * included. The vertices are collected from the triangles in the range,
+	 * see {@link #forEachTriangleIn(BoundingBox, Consumer)}. The
+	 * triangulation must not be changed by action.
+	 * 
+	 * @param box
+	 *            the range
+	 * @param action
+	 *            called once for every vertex in the range
+	 * @return the number of vertices in the range
+	 */
+	public int forEachVertexIn(BoundingBox box, Consumer<Point> action) {
+		if (box.isNull())
+			return 0;
+		if (allCollinear) {
+			int count = 0;
+			for (Point p : vertices) {
+				if (inRange(p, box)) {
+					action.accept(p);
+					count++;
+				}
 			}
+			return count;
 		}
-		// C1-B2
-		else if (C1.equals(B2)) {
-			// C1A1-B2A2
-			if (A1.equals(A2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
-			}
-			// C1A1-B2C2
-			else if (A1.equals(C2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// C1B1-B2A2
-			else if (B1.equals(A2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setAbTriangle(addedTriangle1);
+		return searchRange(box, null, action);
+	}
+
+	private int searchRange(BoundingBox box, Consumer<Triangle> triangleAction, Consumer<Point> vertexAction) {
+		if (box.isNull() || allCollinear)
+			return 0;
+		Triangle start = rangeStart(box);
+		if (start == null)
+			return 0;
+		IntHashSet seenTriangles = new IntHashSet();
+		IntHashSet seenVertices = new IntHashSet();
+		ArrayDeque<Triangle> front = new ArrayDeque<Triangle>();
+		seenTriangles.add(start.getLiveIndex());
+		front.push(start);
+		int count = 0;
+		while (!front.isEmpty()) {
+			Triangle t = front.pop();
+			if (triangleAction != null) {
+				triangleAction.accept(t);
+				count++;
 			}
-			// C1B1-B2C2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
+			for (int i = 0; i < 3; i++) {
+				Point p = t.corner(i);
+				if (vertexAction != null && inRange(p, box) && seenVertices.add(vertices.indexOf(p))) {
+					vertexAction.accept(p);
+					count++;
+				}
+				Triangle n = t.edgeNeighbor(i);
+				if (!n.isHalfplane() && !seenTriangles.contains(n.getLiveIndex()) && overlaps(n, box)) {
+					seenTriangles.add(n.getLiveIndex());
+					front.push(n);
+				}
 			}
 		}
-		// C1-C2
-		else if (C1.equals(C2)) {
-			// C1A1-C2A2
-			if (A1.equals(A2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// C1A1-C2B2
-			if (A1.equals(B2)) {
-				addedTriangle1.setCanext(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
-			}
-			// C1B1-C2A2
-			if (B1.equals(A2)) {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setCanext(addedTriangle1);
-			}
-			// C1B1-C2B2
-			else {
-				addedTriangle1.setBcTriangle(addedTriangle2);
-				addedTriangle2.setBcTriangle(addedTriangle1);
+		return count;
+	}
+
+	// a triangle overlapping box, null if box misses the convex hull
+	private Triangle rangeStart(BoundingBox box) {
+		Triangle t = find(new Point((box.minX() + box.maxX()) / 2, (box.minY() + box.maxY()) / 2));
+		if (t == null) {
+			// the centre is in the finalized part of a stream
+			for (Triangle u : triangles) {
+				if (!u.isHalfplane() && overlaps(u, box))
+					return u;
 			}
+			return null;
 		}
+		if (!t.isHalfplane())
+			return t;
+		// box meets the hull only if a hull edge crosses box or the hull is
+		// inside box, either way a triangle on the hull overlaps box
+		Triangle h = t;
+		do {
+			if (overlaps(h.getAbTriangle(), box))
+				return h.getAbTriangle();
+			h = h.getBcTriangle();
+		} while (h != t);
+		return null;
 	}
 
-	// finds the a point on the triangle that if connect it to "point" (creating
-	// a segment)
-	// the other two points of the triangle will be to the left and to the right
-	// of the segment
-	// by Doron Ganel & Eyal Roth(2009)
-	private Point findDiagonal(Triangle triangle, Point point) {
-		Point p1 = triangle.getA();
-		Point p2 = triangle.getB();
-		Point p3 = triangle.getC();
-
-		if ((p1.pointLineTest(point, p3) == Point.LEFT) && (p2.pointLineTest(point, p3) == Point.RIGHT))
-			return p3;
-		if ((p3.pointLineTest(point, p2) == Point.LEFT) && (p1.pointLineTest(point, p2) == Point.RIGHT))
-			return p2;
-		if ((p2.pointLineTest(point, p1) == Point.LEFT) && (p3.pointLineTest(point, p1) == Point.RIGHT))
-			return p1;
-		return null;
+	private static boolean inRange(Point p, BoundingBox box) {
+		return p.getX() >= box.minX() && p.getX() <= box.maxX() && p.getY() >= box.minY() && p.getY() <= box.maxY();
+	}
+
+	// separating axis test of the (counterclockwise) triangle t and box
+	private static boolean overlaps(Triangle t, BoundingBox box) {
+		Point a = t.getA(), b = t.getB(), c = t.getC();
+		if (Math.max(a.getX(), Math.max(b.getX(), c.getX())) < box.minX()
+				|| Math.min(a.getX(), Math.min(b.getX(), c.getX())) > box.maxX()
+				|| Math.max(a.getY(), Math.max(b.getY(), c.getY())) < box.minY()
+				|| Math.min(a.getY(), Math.min(b.getY(), c.getY())) > box.maxY())
+			return false;
+		return !separates(a, b, box) && !separates(b, c, box) && !separates(c, a, box);
+	}
+
+	// true if all of box is strictly right of the line from p to q
+	private static boolean separates(Point p, Point q, BoundingBox box) {
+		double dx = q.getX() - p.getX(), dy = q.getY() - p.getY();
+		// the corner of box that is farthest to the left of the line
+		double x = dy < 0 ? box.maxX() : box.minX();
+		double y = dx > 0 ? box.maxY() : box.minY();
+		return dx * (y - p.getY()) - dy * (x - p.getX()) < 0;
+	}
+
+	/**
+	 * Calculates the Voronoi cells of all vertices at once, see
+	 * {@link VoronoiDiagram}. Cell i belongs to the i-th vertex of
+	 * {@link #verticesIterator()}.
+	 * 
+	 * @return the Voronoi diagram of the vertices
+	 */
+	public VoronoiDiagram calcVoronoiDiagram() {
+		return new VoronoiDiagram(this);
 	}
 
 	/**
@@ -735,27 +975,39 @@ public class DelaunayTriangulation {
 	 *         only a half plane - returns an empty iterator
 	 */
 	public Iterator<Triangle> getLastUpdatedTriangles() {
-		Vector<Triangle> tmp = new Vector<Triangle>();
+		List<Triangle> tmp = new ArrayList<Triangle>();
 		if (this.trianglesSize() > 1) {
-			Triangle t = currT;
-			allTriangles(t, tmp, this.modCount);
+			allTriangles(currT, tmp, this.modCount);
 		}
 		return tmp.iterator();
 	}
 
-	private void allTriangles(Triangle curr, Vector<Triangle> front, int mc) {
-		if (curr != null && curr.getMc() == mc && !front.contains(curr)) {
-			front.add(curr);
-			allTriangles(curr.getAbTriangle(), front, mc);
-			allTriangles(curr.getBcTriangle(), front, mc);
-			allTriangles(curr.getCaTriangle(), front, mc);
+	// collects the triangles with modification counter mc connected to start
+	private void allTriangles(Triangle start, List<Triangle> result, int mc) {
+		if (start == null || start.getMc() != mc)
+			return;
+		Set<Triangle> seen = Collections.newSetFromMap(new IdentityHashMap<Triangle, Boolean>());
+		ArrayDeque<Triangle> front = new ArrayDeque<Triangle>();
+		seen.add(start);
+		front.push(start);
+		while (!front.isEmpty()) {
+			Triangle curr = front.pop();
+			result.add(curr);
+			pushUpdated(curr.getAbTriangle(), seen, front, mc);
+			pushUpdated(curr.getBcTriangle(), seen, front, mc);
+			pushUpdated(curr.getCaTriangle(), seen, front, mc);
 		}
 	}
 
+	private static void pushUpdated(Triangle t, Set<Triangle> seen, ArrayDeque<Triangle> front, int mc) {
+		if (t != null && t.getMc() == mc && seen.add(t))
+			front.push(t);
+	}
+
 	private Triangle insertPointSimple(Point p) {
 		// nPoints++;
 		if (!allCollinear) {
-			Triangle t = find(startTriangle, p);
+			Triangle t = find(p);
 			if (t.isHalfplane())
 				startTriangle = extendOutside(t, p);
 			else
@@ -800,8 +1052,8 @@ public class DelaunayTriangulation {
 
 		switch (res) {
 		case Point.INFRONTOFA:
-			t = new Triangle(firstP, p);
-			tp = new Triangle(p, firstP);
+			t = triangles.add(new Triangle(firstP, p));
+			tp = triangles.add(new Triangle(p, firstP));
 			t.setAbTriangle(tp);
 			tp.setAbTriangle(t);
 			t.setBcTriangle(tp);
@@ -814,8 +1066,8 @@ public class DelaunayTriangulation {
 			firstP = p;
 			break;
 		case Point.BEHINDB:
-			t = new Triangle(p, lastP);
-			tp = new Triangle(lastP, p);
+			t = triangles.add(new Triangle(p, lastP));
+			tp = triangles.add(new Triangle(lastP, p));
 			t.setAbTriangle(tp);
 			tp.setAbTriangle(t);
 			t.setBcTriangle(lastT);
@@ -831,8 +1083,8 @@ public class DelaunayTriangulation {
 			u = firstT;
 			while (p.isGreater(u.getA()))
 				u = u.getCaTriangle();
-			t = new Triangle(p, u.getB());
-			tp = new Triangle(u.getB(), p);
+			t = triangles.add(new Triangle(p, u.getB()));
+			tp = triangles.add(new Triangle(u.getB(), p));
 			u.setB(p);
 			u.getAbTriangle().setA(p);
 			t.setAbTriangle(tp);
@@ -861,9 +1113,9 @@ public class DelaunayTriangulation {
 			ps = p2;
 			pb = p1;
 		}
-		firstT = new Triangle(pb, ps);
+		firstT = triangles.add(new Triangle(pb, ps));
 		lastT = firstT;
-		Triangle t = new Triangle(ps, pb);
+		Triangle t = triangles.add(new Triangle(ps, pb));
 		firstT.setAbTriangle(t);
 		t.setAbTriangle(firstT);
 		firstT.setBcTriangle(t);
@@ -882,10 +1134,10 @@ public class DelaunayTriangulation {
 		if (h1 != null)
 			return h1;
 
-		h1 = new Triangle(t.getC(), t.getA(), p);
-		h2 = new Triangle(t.getB(), t.getC(), p);
+		triangleDestroyed(t);
+		h1 = triangles.add(new Triangle(t.getC(), t.getA(), p));
+		h2 = triangles.add(new Triangle(t.getB(), t.getC(), p));
 		t.setC(p);
-		t.circumcircle();
 		h1.setAbTriangle(t.getCaTriangle());
 		h1.setBcTriangle(t);
 		h1.setCanext(h2);
@@ -896,6 +1148,9 @@ public class DelaunayTriangulation {
 		h2.getAbTriangle().switchneighbors(t, h2);
 		t.setBcTriangle(h2);
 		t.setCanext(h1);
+		triangleCreated(t);
+		triangleCreated(h1);
+		triangleCreated(h2);
 		return t;
 	}
 
@@ -913,8 +1168,8 @@ public class DelaunayTriangulation {
 	private Triangle extendOutside(Triangle t, Point p) {
 
 		if (p.pointLineTest(t.getA(), t.getB()) == Point.ONSEGMENT) {
-			Triangle dg = new Triangle(t.getA(), t.getB(), p);
-			Triangle hp = new Triangle(p, t.getB());
+			Triangle dg = triangles.add(new Triangle(t.getA(), t.getB(), p));
+			Triangle hp = triangles.add(new Triangle(p, t.getB()));
 			t.setB(p);
 			dg.setAbTriangle(t.getAbTriangle());
 			dg.getAbTriangle().switchneighbors(t, dg);
@@ -926,6 +1181,7 @@ public class DelaunayTriangulation {
 			hp.getBcTriangle().setCanext(hp);
 			hp.setCanext(t);
 			t.setBcTriangle(hp);
+			triangleCreated(dg);
 			return dg;
 		}
 		Triangle ccT = extendcounterclock(t, p);
@@ -937,79 +1193,131 @@ public class DelaunayTriangulation {
 	}
 
 	private Triangle extendcounterclock(Triangle t, Point p) {
+		while (true) {
+			// the first triangle is shared by both extend directions
+			if (t.isHalfplane()) {
+				t.setHalfplane(false);
+				t.setC(p);
+				triangleCreated(t);
+			}
 
-		t.setHalfplane(false);
-		t.setC(p);
-		t.circumcircle();
-
-		Triangle tca = t.getCaTriangle();
+			Triangle tca = t.getCaTriangle();
 
-		if (p.pointLineTest(tca.getA(), tca.getB()) >= Point.RIGHT) {
-			Triangle nT = new Triangle(t.getA(), p);
-			nT.setAbTriangle(t);
-			t.setCanext(nT);
-			nT.setCanext(tca);
-			tca.setBcTriangle(nT);
-			return nT;
+			if (p.pointLineTest(tca.getA(), tca.getB()) >= Point.RIGHT) {
+				Triangle nT = triangles.add(new Triangle(t.getA(), p));
+				nT.setAbTriangle(t);
+				t.setCanext(nT);
+				nT.setCanext(tca);
+				tca.setBcTriangle(nT);
+				return nT;
+			}
+			t = tca;
 		}
-		return extendcounterclock(tca, p);
 	}
 
 	private Triangle extendclock(Triangle t, Point p) {
+		while (true) {
+			// the first triangle is shared by both extend directions
+			if (t.isHalfplane()) {
+				t.setHalfplane(false);
+				t.setC(p);
+				triangleCreated(t);
+			}
 
-		t.setHalfplane(false);
-		t.setC(p);
-		t.circumcircle();
-
-		Triangle tbc = t.getBcTriangle();
+			Triangle tbc = t.getBcTriangle();
 
-		if (p.pointLineTest(tbc.getA(), tbc.getB()) >= Point.RIGHT) {
-			Triangle nT = new Triangle(p, t.getB());
-			nT.setAbTriangle(t);
-			t.setBcTriangle(nT);
-			nT.setBcTriangle(tbc);
-			tbc.setCanext(nT);
-			return nT;
+			if (p.pointLineTest(tbc.getA(), tbc.getB()) >= Point.RIGHT) {
+				Triangle nT = triangles.add(new Triangle(p, t.getB()));
+				nT.setAbTriangle(t);
+				t.setBcTriangle(nT);
+				nT.setBcTriangle(tbc);
+				tbc.setCanext(nT);
+				return nT;
+			}
+			t = tbc;
 		}
-		return extendclock(tbc, p);
 	}
 
+	/**
+	 * restores the Delaunay property after the insertion of t.getC(). The
+	 * stack holds triangles whose c is the new point, each stands for its
+	 * (suspicious) a,b edge. A flip reuses both triangles, so no objects are
+	 * allocated and the stack replaces the recursion.
+	 */
 	private void flip(Triangle t, int mc) {
-		Triangle u = t.getAbTriangle();
-		Triangle v;
-		t.setMc(mc);
-		if (u.isHalfplane() || !u.circumcircleContains(t.getC()))
-			return;
+		pushFlip(t);
+		while (flipStackSize > 0) {
+			t = flipStack[--flipStackSize];
+			flipStack[flipStackSize] = null;
+
+			Triangle u = t.getAbTriangle();
+			t.setMc(mc);
+			if (u.isHalfplane() || !u.circumcircleContains(t.getC()))
+				continue;
+
+			// x is the vertex of u opposite to the edge a,b of t. uToT is the
+			// neighbor of u along a,x (moves to t), uKeep the one along x,b.
+			Point x;
+			Triangle uToT, uKeep;
+			if (t.getA() == u.getA()) {
+				x = u.getB();
+				uToT = u.getAbTriangle();
+				uKeep = u.getBcTriangle();
+			} else if (t.getA() == u.getB()) {
+				x = u.getC();
+				uToT = u.getBcTriangle();
+				uKeep = u.getCaTriangle();
+			} else if (t.getA() == u.getC()) {
+				x = u.getA();
+				uToT = u.getCaTriangle();
+				uKeep = u.getAbTriangle();
+			} else {
+				throw new RuntimeException("Error in flip.");
+			}
 
-		if (t.getA() == u.getA()) {
-			v = new Triangle(u.getB(), t.getB(), t.getC());
-			v.setAbTriangle(u.getBcTriangle());
-			t.setAbTriangle(u.getAbTriangle());
-		} else if (t.getA() == u.getB()) {
-			v = new Triangle(u.getC(), t.getB(), t.getC());
-			v.setAbTriangle(u.getCaTriangle());
-			t.setAbTriangle(u.getBcTriangle());
-		} else if (t.getA() == u.getC()) {
-			v = new Triangle(u.getA(), t.getB(), t.getC());
-			v.setAbTriangle(u.getAbTriangle());
-			t.setAbTriangle(u.getCaTriangle());
-		} else {
-			throw new RuntimeException("Error in flip.");
+			// u becomes (x, b, p), t becomes (a, x, p)
+			triangleDestroyed(t);
+			triangleDestroyed(u);
+			Triangle tBc = t.getBcTriangle();
+			u.setA(x);
+			u.setB(t.getB());
+			u.setC(t.getC());
+			u.setAbTriangle(uKeep);
+			u.setBcTriangle(tBc);
+			u.setCanext(t);
+			u.setMc(mc);
+			tBc.switchneighbors(t, u);
+
+			t.setB(x);
+			t.setAbTriangle(uToT);
+			t.setBcTriangle(u);
+			uToT.switchneighbors(u, t);
+			triangleCreated(t);
+			triangleCreated(u);
+
+			currT = u;
+			pushFlip(u);
+			pushFlip(t);
 		}
+	}
+
+	// t got new corners or was added, tell the journal and the snapshots
+	private void triangleCreated(Triangle t) {
+		if (journal != null)
+			journal.created(t);
+		triangles.touch(t);
+	}
 
-		v.setMc(mc);
-		v.setBcTriangle(t.getBcTriangle());
-		v.getAbTriangle().switchneighbors(u, v);
-		v.getBcTriangle().switchneighbors(t, v);
-		t.setBcTriangle(v);
-		v.setCanext(t);
-		t.setB(v.getA());
-		t.getAbTriangle().switchneighbors(u, t);
-		t.circumcircle();
+	private void triangleDestroyed(Triangle t) {
+		if (journal != null)
+			journal.destroyed(t);
+	}
 
-		currT = v;
-		flip(t, mc);
-		flip(v, mc);
+	private void pushFlip(Triangle t) {
+		if (flipStackSize == flipStack.length) {
+			flipStack = Arrays.copyOf(flipStack, 2 * flipStackSize);
+		}
+		flipStack[flipStackSize++] = t;
 	}
 
 	/**
@@ -1045,14 +1353,15 @@ public class DelaunayTriangulation {
 		// If triangulation has a spatial index try to use it as the starting
 		// triangle
 		Triangle searchTriangle = startTriangle;
-		if (gridIndex != null) {
-			Triangle indexTriangle = gridIndex.findCellTriangleOf(p);
+		if (locator != null) {
+			Triangle indexTriangle = locator.startTriangle(p);
 			if (indexTriangle != null)
 				searchTriangle = indexTriangle;
 		}
 
 		// Search for the point's triangle starting from searchTriangle
-		return find(searchTriangle, p);
+		Triangle t = find(searchTriangle, p);
+		return t != null ? t : findByScan(p);
 	}
 
 	/**
@@ -1070,10 +1379,88 @@ public class DelaunayTriangulation {
 		if (start == null)
 			start = this.startTriangle;
 		Triangle T = find(start, p);
-		return T;
+		return T != null ? T : findByScan(p);
+	}
+
+	/**
+	 * finds the triangles of many query points at once, see
+	 * {@link #findAll(double[], double[], ForkJoinPool)}. Runs on the common
+	 * fork join pool.
+	 */
+	public Triangle[] findAll(double[] xs, double[] ys) {
+		return findAll(xs, ys, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * finds the triangles of many query points at once. The queries are
+	 * sorted along a Hilbert curve and cut into chunks that are walked in
+	 * parallel, every walk starts at the triangle of the previous query. The
+	 * triangulation is only read, it must not be changed during the call.
+	 * 
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 * @param pool
+	 *            the pool walking the chunks.
+	 * @return the triangle of every query, as find(Point) returns it; all null
+	 *         while there are less than three non collinear vertices, null in
+	 *         the finalized part of a stream.
+	 */
+	public Triangle[] findAll(final double[] xs, final double[] ys, ForkJoinPool pool) {
+		final Triangle[] result = new Triangle[xs.length];
+		final Triangle[] starts = new Triangle[BatchLocation.chunkCount(xs.length)];
+		BatchLocation batch = new BatchLocation(xs, ys) {
+			@Override
+			void walk(int chunk, int from, int to) {
+				Point q = new Point();
+				Triangle t = starts[chunk];
+				for (int i = from; i < to; i++) {
+					int k = order[i];
+					q.setX(xs[k]);
+					q.setY(ys[k]);
+					Triangle found = find(q, t);
+					if (found != null)
+						t = found;
+					result[k] = found;
+				}
+			}
+		};
+		if (allCollinear)
+			return result;
+		findChunkStarts(batch, xs, ys, starts);
+		batch.run(pool);
+		return result;
+	}
+
+	// the first walk of every chunk starts at the locator, which may not be
+	// thread safe
+	private void findChunkStarts(BatchLocation batch, double[] xs, double[] ys, Triangle[] starts) {
+		for (int c = 0; c < starts.length; c++) {
+			int k = batch.order[BatchLocation.chunkStart(c)];
+			starts[c] = find(new Point(xs[k], ys[k]));
+		}
+	}
+
+	/**
+	 * like {@link #find(Point, Triangle)}, but gives up after maxSteps
+	 * triangles. Meant for readers that may walk while another thread changes
+	 * the triangulation, where the walk could run in circles.
+	 * 
+	 * @return the triangle that point p is in, null if the walk took too
+	 *         long.
+	 */
+	Triangle find(Point p, Triangle start, int maxSteps) {
+		if (start == null || !start.isLive())
+			start = this.startTriangle;
+		return find(start, p, maxSteps);
 	}
 
 	private static Triangle find(Triangle curr, Point p) {
+		return find(curr, p, Integer.MAX_VALUE);
+	}
+
+	private static Triangle find(Triangle curr, Point p, int maxSteps) {
 		if (p == null)
 			return null;
 		Triangle nextT;
@@ -1081,37 +1468,75 @@ public class DelaunayTriangulation {
 			nextT = findnext2(p, curr);
 			if (nextT == null || nextT.isHalfplane())
 				return curr;
+			if (!nextT.isLive())
+				return null;
 			curr = nextT;
 		}
-		while (true) {
+		for (int steps = 0; steps < maxSteps; steps++) {
 			nextT = findnext1(p, curr);
 			if (nextT == null)
 				return curr;
+			// the walk ran into the part finalized by the streaming mode
+			if (!nextT.isLive())
+				return null;
 			if (nextT.isHalfplane())
 				return nextT;
 			curr = nextT;
 		}
+		return null;
+	}
+
+	// the half plane p is in or the live triangle containing p, found by
+	// checking all of them; for walks that ran into the finalized part of a
+	// stream. The hull comes first, as a sweep inserts outside of it. Null if
+	// p lies in the finalized part.
+	private Triangle findByScan(Point p) {
+		Triangle curr = startTriangleHull;
+		do {
+			if (p.pointLineTest(curr.getA(), curr.getB()) == Point.LEFT)
+				return curr;
+			curr = curr.getBcTriangle();
+		} while (curr != startTriangleHull);
+		for (Triangle t : triangles) {
+			if (!t.isHalfplane() && t.contains(p))
+				return t;
+		}
+		return null;
 	}
 
 	/*
-	 * assumes v is NOT an halfplane! returns the next triangle for find.
+	 * assumes v is NOT an halfplane! returns the next triangle for find. The
+	 * finalized triangles of a stream (which are not live) come last.
 	 */
 	private static Triangle findnext1(Point p, Triangle v) {
-		if (p.pointLineTest(v.getA(), v.getB()) == Point.RIGHT && !v.getAbTriangle().isHalfplane())
+		boolean ab = p.pointLineTest(v.getA(), v.getB()) == Point.RIGHT;
+		boolean bc = p.pointLineTest(v.getB(), v.getC()) == Point.RIGHT;
+		boolean ca = p.pointLineTest(v.getC(), v.getA()) == Point.RIGHT;
+		if (ab && isLiveTriangle(v.getAbTriangle()))
 			return v.getAbTriangle();
-		if (p.pointLineTest(v.getB(), v.getC()) == Point.RIGHT && !v.getBcTriangle().isHalfplane())
+		if (bc && isLiveTriangle(v.getBcTriangle()))
 			return v.getBcTriangle();
-		if (p.pointLineTest(v.getC(), v.getA()) == Point.RIGHT && !v.getCaTriangle().isHalfplane())
+		if (ca && isLiveTriangle(v.getCaTriangle()))
 			return v.getCaTriangle();
-		if (p.pointLineTest(v.getA(), v.getB()) == Point.RIGHT)
+		if (ab && v.getAbTriangle().isLive())
 			return v.getAbTriangle();
-		if (p.pointLineTest(v.getB(), v.getC()) == Point.RIGHT)
+		if (bc && v.getBcTriangle().isLive())
 			return v.getBcTriangle();
-		if (p.pointLineTest(v.getC(), v.getA()) == Point.RIGHT)
+		if (ca && v.getCaTriangle().isLive())
+			return v.getCaTriangle();
+		if (ab)
+			return v.getAbTriangle();
+		if (bc)
+			return v.getBcTriangle();
+		if (ca)
 			return v.getCaTriangle();
 		return null;
 	}
 
+	private static boolean isLiveTriangle(Triangle t) {
+		return !t.isHalfplane() && t.isLive();
+	}
+
 	/** assumes v is an halfplane! - returns another (none halfplane) triangle */
 	private static Triangle findnext2(Point p, Triangle v) {
 		if (v.getAbTriangle() != null && !v.getAbTriangle().isHalfplane())
@@ -1123,63 +1548,6 @@ public class DelaunayTriangulation {
 		return null;
 	}
 
-	/*
-	 * Receives a point and returns all the points of the triangles that shares
-	 * point as a corner (Connected vertices to this point).
-	 * 
-	 * Set saveTriangles to true if you wish to save the triangles that were
-	 * found.
-	 * 
-	 * By Doron Ganel & Eyal Roth
-	 */
-	private Vector<Point> findConnectedVertices(Point point, boolean saveTriangles) {
-		Set<Point> pointsSet = new HashSet<Point>();
-		Vector<Point> pointsVec = new Vector<Point>();
-		Vector<Triangle> localTriangles = null;
-		// Getting one of the neigh
-		Triangle triangle = find(point);
-
-		// Validating find result.
-		if (!triangle.isCorner(point)) {
-			System.err
-					.println("findConnectedVertices: Could not find connected vertices since the first found triangle doesn't"
-							+ " share the given point.");
-			return null;
-		}
-
-		localTriangles = findTriangleNeighborhood(triangle, point);
-		if (localTriangles == null) {
-			System.err.println("Error: can't delete a point on the perimeter");
-			return null;
-		}
-		if (saveTriangles) {
-			deletedTriangles = localTriangles;
-		}
-
-		for (Triangle tmpTriangle : localTriangles) {
-			Point point1 = tmpTriangle.getA();
-			Point point2 = tmpTriangle.getB();
-			Point point3 = tmpTriangle.getC();
-
-			if (point1.equals(point) && !pointsSet.contains(point2)) {
-				pointsSet.add(point2);
-				pointsVec.add(point2);
-			}
-
-			if (point2.equals(point) && !pointsSet.contains(point3)) {
-				pointsSet.add(point3);
-				pointsVec.add(point3);
-			}
-
-			if (point3.equals(point) && !pointsSet.contains(point1)) {
-				pointsSet.add(point1);
-				pointsVec.add(point1);
-			}
-		}
-
-		return pointsVec;
-	}
-
 	// Walks on a consistent side of triangles until a cycle is achieved.
 	// By Doron Ganel & Eyal Roth
 	// changed to public by Udi
@@ -1205,60 +1573,6 @@ public class DelaunayTriangulation {
 		return localTriangles;
 	}
 
-	/*
-	 * find triangle to be added to the triangulation
-	 * 
-	 * By: Doron Ganel & Eyal Roth
-	 */
-	private Triangle findTriangle(Vector<Point> pointsVec, Point p) {
-		Point[] arrayPoints = new Point[pointsVec.size()];
-		pointsVec.toArray(arrayPoints);
-
-		int size = arrayPoints.length;
-		if (size < 3) {
-			return null;
-		}
-		// if we left with 3 points we return the triangle
-		else if (size == 3) {
-			return new Triangle(arrayPoints[0], arrayPoints[1], arrayPoints[2]);
-		} else {
-			for (int i = 0; i <= size - 1; i++) {
-				Point p1 = arrayPoints[i];
-				int j = i + 1;
-				int k = i + 2;
-				if (j >= size) {
-					j = 0;
-					k = 1;
-				}
-				// check IndexOutOfBound
-				else if (k >= size)
-					k = 0;
-				Point p2 = arrayPoints[j];
-				Point p3 = arrayPoints[k];
-				// check if the triangle is not re-entrant and not encloses p
-				Triangle t = new Triangle(p1, p2, p3);
-				if ((calcDet(p1, p2, p3) >= 0) && !t.contains(p)) {
-					if (!t.fallInsideCircumcircle(arrayPoints))
-						return t;
-				}
-				// if there are only 4 points use contains that refers to point
-				// on boundary as outside
-				if (size == 4 && (calcDet(p1, p2, p3) >= 0) && !t.containsBoundaryIsOutside(p)) {
-					if (!t.fallInsideCircumcircle(arrayPoints))
-						return t;
-				}
-			}
-		}
-		return null;
-	}
-
-	// TODO: Move this to triangle.
-	// checks if the triangle is not re-entrant
-	private double calcDet(Point A, Point B, Point P) {
-		return (A.getX() * (B.getY() - P.getY())) - (A.getY() * (B.getX() - P.getX()))
-				+ (B.getX() * P.getY() - B.getY() * P.getX());
-	}
-
 	/**
 	 * 
 	 * @param p
@@ -1268,7 +1582,7 @@ public class DelaunayTriangulation {
 
 	public boolean contains(Point p) {
 		Triangle tt = find(p);
-		return !tt.isHalfplane();
+		return tt != null && !tt.isHalfplane();
 	}
 
 	/**
@@ -1289,11 +1603,10 @@ public class DelaunayTriangulation {
 	 * @param q
 	 *            Query point
 	 * @return the q point with updated Z value (z value is as given the
-	 *         triangulation).
+	 *         triangulation, NaN outside of the convex hull).
 	 */
 	public Point z(Point q) {
-		Triangle t = find(q);
-		return t.getZ(q);
+		return new Point(q.getX(), q.getY(), z(q.getX(), q.getY()));
 	}
 
 	/**
@@ -1302,13 +1615,70 @@ public class DelaunayTriangulation {
 	 *            - X cordination of the query point
 	 * @param y
 	 *            - Y cordination of the query point
-	 * @return the q point with updated Z value (z value is as given the
-	 *         triangulation).
+	 * @return the z value of the triangulation at (x, y), NaN outside of the
+	 *         convex hull (like the batch version).
 	 */
 	public double z(double x, double y) {
-		Point q = new Point(x, y);
-		Triangle t = find(q);
-		return t.zValue(q);
+		if (allCollinear)
+			return Double.NaN;
+		Triangle t = find(new Point(x, y));
+		if (t == null || t.isHalfplane())
+			return Double.NaN;
+		return t.zValue(x, y);
+	}
+
+	/**
+	 * computes the z values of many query points at once, see
+	 * {@link #z(double[], double[], double[], ForkJoinPool)}. Runs on the
+	 * common fork join pool.
+	 */
+	public void z(double[] xs, double[] ys, double[] out) {
+		z(xs, ys, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * computes the z values of many query points at once. The points are
+	 * located as in {@link #findAll(double[], double[], ForkJoinPool)} and
+	 * interpolated on the cached planes of their triangles, in parallel and
+	 * without allocating per query. The triangulation must not be changed
+	 * during the call.
+	 * 
+	 * @param xs
+	 *            x-coordinates of the queries.
+	 * @param ys
+	 *            y-coordinates of the queries.
+	 * @param out
+	 *            receives the z values, NaN for points outside of the convex
+	 *            hull or in the finalized part of a stream.
+	 * @param pool
+	 *            the pool walking the queries.
+	 */
+	public void z(final double[] xs, final double[] ys, final double[] out, ForkJoinPool pool) {
+		if (out.length < xs.length)
+			throw new IllegalArgumentException("out is shorter than the queries: " + out.length + " < " + xs.length);
+		final Triangle[] starts = new Triangle[BatchLocation.chunkCount(xs.length)];
+		BatchLocation batch = new BatchLocation(xs, ys) {
+			@Override
+			void walk(int chunk, int from, int to) {
+				Point q = new Point();
+				Triangle t = starts[chunk];
+				for (int i = from; i < to; i++) {
+					int k = order[i];
+					q.setX(xs[k]);
+					q.setY(ys[k]);
+					Triangle found = find(q, t);
+					if (found != null)
+						t = found;
+					out[k] = found == null || found.isHalfplane() ? Double.NaN : found.zValue(xs[k], ys[k]);
+				}
+			}
+		};
+		if (allCollinear) {
+			Arrays.fill(out, 0, xs.length, Double.NaN);
+			return;
+		}
+		findChunkStarts(batch, xs, ys, starts);
+		batch.run(pool);
 	}
 
 	private void updateBoundingBox(Point p) {
@@ -1358,15 +1728,15 @@ public class DelaunayTriangulation {
 	}
 
 	/**
-	 * computes the current set (vector) of all triangles and return an iterator
-	 * to them.
+	 * returns an iterator to the current set of all triangles. The set is
+	 * maintained during the updates, so this does not walk the triangulation.
+	 * The iterator fails if the triangulation is changed while iterating.
 	 * 
 	 * @return an iterator to the current set of all triangles.
 	 */
 	public Iterator<Triangle> trianglesIterator() {
 		if (this.size() <= 2)
-			triangles = new Vector<Triangle>();
-		initTriangles();
+			return Collections.<Triangle> emptyList().iterator();
 		return triangles.iterator();
 	}
 
@@ -1398,6 +1768,7 @@ public class DelaunayTriangulation {
 
 	/**
 	 * returns an iterator to the set of points compusing this triangulation.
+	 * The points are iterated in insertion order.
 	 * 
 	 * @return iterator to the set of points compusing this triangulation.
 	 */
@@ -1405,36 +1776,6 @@ public class DelaunayTriangulation {
 		return this.vertices.iterator();
 	}
 
-	private void initTriangles() {
-		if (modCount == modCount2)
-			return;
-		if (this.size() > 2) {
-			modCount2 = modCount;
-			Vector<Triangle> front = new Vector<Triangle>();
-			triangles = new Vector<Triangle>();
-			front.add(this.startTriangle);
-			while (front.size() > 0) {
-				Triangle t = front.remove(0);
-				if (t.isMark() == false) {
-					t.setMark(true);
-					triangles.add(t);
-					if (t.getAbTriangle() != null && !t.getAbTriangle().isMark()) {
-						front.add(t.getAbTriangle());
-					}
-					if (t.getBcTriangle() != null && !t.getBcTriangle().isMark()) {
-						front.add(t.getBcTriangle());
-					}
-					if (t.getCaTriangle() != null && !t.getCaTriangle().isMark()) {
-						front.add(t.getCaTriangle());
-					}
-				}
-			}
-			for (int i = 0; i < triangles.size(); i++) {
-				triangles.elementAt(i).setMark(false);
-			}
-		}
-	}
-
 	/**
 	 * Index the triangulation using a grid index
 	 * 
@@ -1444,21 +1785,293 @@ public class DelaunayTriangulation {
 	 *            number of grid cells in a column
 	 */
 	public void indexData(int xCellCount, int yCellCount) {
-		gridIndex = new GridIndex(this, xCellCount, yCellCount);
+		if (streamRegion != null)
+			throw new IllegalStateException("a streamed triangulation can not be indexed");
+		locator = new GridIndex(this, xCellCount, yCellCount);
 	}
 
 	/**
 	 * Remove any existing spatial indexing
 	 */
 	public void removeIndex() {
-		gridIndex = null;
+		locator = null;
+	}
+
+	/**
+	 * Index the triangulation with the given point locator. It is used by
+	 * find and by every insertion, and it is kept up to date by insertPoint
+	 * and the deletions.
+	 * 
+	 * @param locator
+	 *            the index, e.g. a {@link QuadtreeLocator} or a
+	 *            {@link DelaunayHierarchyLocator} built on this
+	 *            triangulation; null removes the index
+	 */
+	public void setPointLocator(PointLocator locator) {
+		if (streamRegion != null && locator != null)
+			throw new IllegalStateException("a streamed triangulation can not be indexed");
+		this.locator = locator;
+	}
+
+	/**
+	 * @return the point locator indexing this triangulation, null if there is
+	 *         none.
+	 */
+	public PointLocator getPointLocator() {
+		return locator;
+	}
+
+	/**
+	 * @return true if there is a triangle to walk on, false while all points
+	 *         are collinear.
+	 */
+	boolean hasFiniteTriangles() {
+		return !allCollinear;
+	}
+
+	/**
+	 * @return the live triangles, half planes included, also while there are
+	 *         less than three vertices.
+	 */
+	TriangleRegistry getTriangleRegistry() {
+		return triangles;
+	}
+
+	/**
+	 * @return the vertices, indexed densely.
+	 */
+	VertexRegistry getVertexRegistry() {
+		return vertices;
+	}
+
+	/**
+	 * returns a checkpoint of the triangle journal. The first call starts the
+	 * journal; from then on every insertPoint and deletePoint records the
+	 * finite triangles it creates and destroys.
+	 * 
+	 * @return the current journal position.
+	 */
+	public long journalCheckpoint() {
+		if (journal == null)
+			journal = new TriangleJournal();
+		return journal.position();
+	}
+
+	/**
+	 * computes the finite triangles created and destroyed since checkpoint,
+	 * over any number of insertions and deletions. Use getTo() of the result
+	 * as the next checkpoint.
+	 * 
+	 * @param checkpoint
+	 *            a position returned by journalCheckpoint() or getTo(), not
+	 *            older than the last trimJournal.
+	 * @return the net changes since checkpoint.
+	 */
+	public TriangleChanges getChangesSince(long checkpoint) {
+		if (journal == null)
+			throw new IllegalStateException("the journal was not started, call journalCheckpoint() first");
+		return journal.changesSince(checkpoint);
+	}
+
+	/**
+	 * frees the journal entries before checkpoint, older checkpoints become
+	 * invalid.
+	 * 
+	 * @param checkpoint
+	 *            the oldest checkpoint still in use.
+	 */
+	public void trimJournal(long checkpoint) {
+		if (journal != null)
+			journal.trim(checkpoint);
+	}
+
+	/**
+	 * stops the triangle journal and frees its entries.
+	 */
+	public void stopJournal() {
+		journal = null;
+	}
+
+	/**
+	 * returns an immutable view of the current state: the vertices with their
+	 * heights, the triangles and their neighbors in the layout of
+	 * {@link ArrayDelaunayTriangulation}. The snapshot may be read from any
+	 * thread while this triangulation keeps changing. <br>
+	 * The first call copies the whole triangulation into blocks. From then on
+	 * this triangulation collects the slots it changes, and the next snapshot
+	 * only writes these (copying each touched block once) and shares all
+	 * other blocks with the previous snapshots. So a snapshot costs about as
+	 * much as the changes since the last one.
+	 * 
+	 * @return the snapshot.
+	 */
+	public TriangulationSnapshot snapshot() {
+		if (streamRegion != null)
+			throw new IllegalStateException("a streamed triangulation has no snapshots");
+		if (snapshots == null) {
+			snapshots = new SnapshotStore();
+			vertices.trackChanges();
+			triangles.trackChanges();
+		}
+		return snapshots.snapshot(this);
+	}
+
+	/**
+	 * the streaming mode for sorted or spatially coherent input: hands the
+	 * triangles no later point can change to the sink and drops them. A
+	 * triangle is final once its circumcircle does not reach the region of
+	 * the later points, as a point outside of the circumcircle keeps the
+	 * triangle. With it the vertices no remaining triangle uses are dropped,
+	 * so for a sweep the memory only holds the triangles near the sweep line,
+	 * whatever the number of points. <br>
+	 * From the first call on every inserted point has to lie in the region,
+	 * which may only shrink from call to call. The half planes along the
+	 * convex hull are kept for the points outside of it, until
+	 * {@link #finalizeAll(Consumer)} ends the stream. The triangles and
+	 * vertices of the triangulation, its iterators and its queries only cover
+	 * what is left; find returns null in the finalized part. Streaming does
+	 * not go together with a point locator or with snapshots. <br>
+	 * Every call checks all remaining triangles, so it pays to call it after
+	 * some thousand points rather than after each one.
+	 * 
+	 * @param region
+	 *            contains all points inserted from now on
+	 * @param sink
+	 *            receives the final (finite) triangles, it may keep them and
+	 *            their corners but not walk to their neighbors, as these links
+	 *            are cut
+	 * @return the number of triangles finalized.
+	 */
+	public int finalizeTriangles(BoundingBox region, Consumer<Triangle> sink) {
+		if (region == null || region.isNull())
+			throw new IllegalArgumentException("no region, finalizeAll ends the stream");
+		checkStreamable();
+		if (streamRegion != null
+				&& (region.minX() < streamRegion.minX() || region.maxX() > streamRegion.maxX()
+						|| region.minY() < streamRegion.minY() || region.maxY() > streamRegion.maxY()))
+			throw new IllegalArgumentException("the region " + region + " is not inside of the previous region "
+					+ streamRegion);
+		streamRegion = new BoundingBox(region);
+		if (allCollinear)
+			return 0;
+
+		List<Triangle> done = new ArrayList<Triangle>();
+		for (Triangle t : triangles) {
+			if (!t.isHalfplane() && !circumcircleReaches(t, region))
+				done.add(t);
+		}
+		if (done.isEmpty())
+			return 0;
+		modCount++;
+		for (Triangle t : done) {
+			sink.accept(t);
+		}
+		Set<Point> unused = Collections.newSetFromMap(new IdentityHashMap<Point, Boolean>());
+		for (Triangle t : done) {
+			triangles.remove(t);
+			triangleDestroyed(t);
+			unused.add(t.getA());
+			unused.add(t.getB());
+			unused.add(t.getC());
+		}
+		// the remaining triangles still see their finalized neighbors (for the
+		// Delaunay test of the flips), but these do not link any further, so
+		// the finalized part can be collected
+		for (Triangle t : done) {
+			for (int i = 0; i < 3; i++) {
+				Triangle n = t.edgeNeighbor(i);
+				if (n != null && !n.isLive())
+					t.setEdgeNeighbor(i, null);
+			}
+		}
+		for (Triangle t : triangles) {
+			unused.remove(t.getA());
+			unused.remove(t.getB());
+			if (!t.isHalfplane())
+				unused.remove(t.getC());
+		}
+		for (Point p : unused) {
+			vertices.remove(p);
+		}
+
+		if (!startTriangle.isLive()) {
+			startTriangle = null;
+			for (Triangle t : triangles) {
+				if (startTriangle == null || startTriangle.isHalfplane() && !t.isHalfplane())
+					startTriangle = t;
+			}
+		}
+		if (currT == null || !currT.isLive())
+			currT = startTriangle;
+		return done.size();
+	}
+
+	/**
+	 * the streaming mode for points sorted by x, see
+	 * {@link #finalizeTriangles(BoundingBox, Consumer)}: all points inserted
+	 * from now on have an x of at least sweepX.
+	 */
+	public int finalizeTriangles(double sweepX, Consumer<Triangle> sink) {
+		return finalizeTriangles(new BoundingBox(sweepX, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, 0, 0), sink);
+	}
+
+	/**
+	 * ends the stream, see {@link #finalizeTriangles(BoundingBox, Consumer)}:
+	 * hands all remaining finite triangles to the sink and drops everything.
+	 * No points can be inserted afterwards.
+	 * 
+	 * @return the number of triangles finalized.
+	 */
+	public int finalizeAll(Consumer<Triangle> sink) {
+		checkStreamable();
+		int count = 0;
+		if (!allCollinear) {
+			for (Triangle t : triangles) {
+				if (!t.isHalfplane()) {
+					sink.accept(t);
+					count++;
+				}
+			}
+		}
+		for (Triangle t : triangles)
+			triangleDestroyed(t);
+		triangles.clear();
+		vertices.clear();
+		allCollinear = true;
+		firstP = lastP = null;
+		firstT = lastT = currT = null;
+		startTriangle = startTriangleHull = null;
+		streamRegion = new BoundingBox();
+		modCount++;
+		return count;
+	}
+
+	private void checkStreamable() {
+		if (streamRegion != null && streamRegion.isNull())
+			throw new IllegalStateException("the stream was finished already");
+		if (locator != null || snapshots != null)
+			throw new IllegalStateException("streaming does not go together with a point locator or snapshots");
+	}
+
+	private void checkStreamRegion(Point p) {
+		if (streamRegion.isNull())
+			throw new IllegalStateException("the stream was finished already");
+		if (p.getX() < streamRegion.minX() || p.getX() > streamRegion.maxX() || p.getY() < streamRegion.minY()
+				|| p.getY() > streamRegion.maxY())
+			throw new IllegalArgumentException("the point " + p + " is outside of the streaming region " + streamRegion);
+	}
+
+	// true if the circumcircle of the finite triangle t may reach the region
+	private static boolean circumcircleReaches(Triangle t, BoundingBox region) {
+		Circumcircle circle = new Circumcircle(t.getA().getX(), t.getA().getY(), t.getB().getX(), t.getB().getY(),
+				t.getC().getX(), t.getC().getY());
+		return circle.reaches(region.minX(), region.maxX(), region.minY(), region.maxY());
 	}
 
 	public List<Triangle> getTriangulation() {
 		if (this.size() <= 2)
-			triangles = new Vector<Triangle>();
-		initTriangles();
-		List<Triangle> triangulation = new ArrayList<Triangle>(triangles);
-		return triangulation;
+			return new ArrayList<Triangle>();
+		return triangles.toList();
 	}
 }
@@ -0,0 +1,355 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+
+/**
+ * Robust orientation and in-circle predicates after J. R. Shewchuk, "Adaptive
+ * Precision Floating-Point Arithmetic and Fast Robust Geometric Predicates"
+ * (1997). <br>
+ * Both predicates first evaluate their determinant in plain floating point
+ * and compare it against an error bound. Only if the rounded result could
+ * have the wrong sign (nearly collinear or nearly cocircular points) the
+ * determinant is evaluated again, exactly, with floating-point expansions.
+ * So the sign of the result is always correct, while well separated points
+ * cost just a few additional multiplications.
+ */
+public final class GeometricPredicates {
+
+	/** 2^-53, half an ulp of 1.0 */
+	static final double EPSILON = 1.1102230246251565E-16;
+
+	/** 2^27 + 1, splits a double into two non-overlapping halves */
+	private static final double SPLITTER = 134217729.0;
+
+	private static final double CCW_ERRBOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+	private static final double ICC_ERRBOUND = (10.0 + 96.0 * EPSILON) * EPSILON;
+
+	/**
+	 * scratch expansions of the exact in-circle test, cocircular input (like
+	 * grids) needs it for most tests.
+	 */
+	private static final ThreadLocal<double[][]> INCIRCLE_BUFFERS = ThreadLocal.withInitial(() -> new double[][] {
+			new double[4], new double[8], new double[16], new double[16], new double[32], new double[32],
+			new double[32], new double[64], new double[96] });
+
+	private GeometricPredicates() {
+	}
+
+	/**
+	 * @return a positive value if a, b, c are in counterclockwise order (c
+	 *         lies left of the directed line a-b), a negative value if they
+	 *         are in clockwise order and 0 if they are collinear. The sign is
+	 *         exact for finite coordinates, the value approximates twice the
+	 *         signed area of the triangle.
+	 */
+	public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+		double detleft = (ax - cx) * (by - cy);
+		double detright = (ay - cy) * (bx - cx);
+		double det = detleft - detright;
+		double detsum;
+		if (detleft > 0) {
+			if (detright <= 0)
+				return det;
+			detsum = detleft + detright;
+		} else if (detleft < 0) {
+			if (detright >= 0)
+				return det;
+			detsum = -detleft - detright;
+		} else {
+			return det;
+		}
+		if (det >= CCW_ERRBOUND * detsum || -det >= CCW_ERRBOUND * detsum)
+			return det;
+		// NaN or infinite terms: the expansions cannot help, answer like plain floating point
+		if (!(detsum < Double.POSITIVE_INFINITY))
+			return det;
+		return orient2dExact(ax, ay, bx, by, cx, cy);
+	}
+
+	/**
+	 * @see #orient2d(double, double, double, double, double, double)
+	 */
+	public static double orient2d(Point a, Point b, Point c) {
+		return orient2d(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY());
+	}
+
+	/**
+	 * @return a positive value if d lies inside the circle through a, b, c, a
+	 *         negative value if it lies outside and 0 if the four points are
+	 *         cocircular. The signs are reversed if a, b, c are in clockwise
+	 *         order. The sign is exact for finite coordinates.
+	 */
+	public static double incircle(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+			double dy) {
+		double adx = ax - dx, ady = ay - dy;
+		double bdx = bx - dx, bdy = by - dy;
+		double cdx = cx - dx, cdy = cy - dy;
+
+		double bdxcdy = bdx * cdy, cdxbdy = cdx * bdy;
+		double alift = adx * adx + ady * ady;
+		double cdxady = cdx * ady, adxcdy = adx * cdy;
+		double blift = bdx * bdx + bdy * bdy;
+		double adxbdy = adx * bdy, bdxady = bdx * ady;
+		double clift = cdx * cdx + cdy * cdy;
+
+		double det = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy) + clift * (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+				+ (Math.abs(cdxady) + Math.abs(adxcdy)) * blift + (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+		double errbound = ICC_ERRBOUND * permanent;
+		if (det > errbound || -det > errbound)
+			return det;
+		if (!(errbound < Double.POSITIVE_INFINITY))
+			return det;
+		return incircleExact(ax, ay, bx, by, cx, cy, dx, dy);
+	}
+
+	/**
+	 * @see #incircle(double, double, double, double, double, double, double,
+	 *      double)
+	 */
+	public static double incircle(Point a, Point b, Point c, Point d) {
+		return incircle(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY(), d.getX(), d.getY());
+	}
+
+	private static double orient2dExact(double ax, double ay, double bx, double by, double cx, double cy) {
+		double acx = ax - cx, bcx = bx - cx;
+		double acy = ay - cy, bcy = by - cy;
+		if (twoDiffTail(ax, cx, acx) == 0 && twoDiffTail(bx, cx, bcx) == 0 && twoDiffTail(ay, cy, acy) == 0
+				&& twoDiffTail(by, cy, bcy) == 0) {
+			// the differences are exact, so is the difference of their products
+			double[] h = new double[4];
+			int length = twoTwoDiff(acx, bcy, acy, bcx, h);
+			while (length > 1 && h[length - 1] == 0) {
+				length--;
+			}
+			return h[length - 1];
+		}
+		double[] acxe = difference(ax, cx), acye = difference(ay, cy);
+		double[] bcxe = difference(bx, cx), bcye = difference(by, cy);
+		return sign(sum(product(acxe, bcye), negate(product(acye, bcxe))));
+	}
+
+	private static double incircleExact(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+			double dy) {
+		double adx = ax - dx, bdx = bx - dx, cdx = cx - dx;
+		double ady = ay - dy, bdy = by - dy, cdy = cy - dy;
+		if (twoDiffTail(ax, dx, adx) == 0 && twoDiffTail(bx, dx, bdx) == 0 && twoDiffTail(cx, dx, cdx) == 0
+				&& twoDiffTail(ay, dy, ady) == 0 && twoDiffTail(by, dy, bdy) == 0 && twoDiffTail(cy, dy, cdy) == 0) {
+			return incircleExactDifferences(adx, ady, bdx, bdy, cdx, cdy);
+		}
+
+		double[] adxe = difference(ax, dx), adye = difference(ay, dy);
+		double[] bdxe = difference(bx, dx), bdye = difference(by, dy);
+		double[] cdxe = difference(cx, dx), cdye = difference(cy, dy);
+
+		double[] alift = sum(product(adxe, adxe), product(adye, adye));
+		double[] blift = sum(product(bdxe, bdxe), product(bdye, bdye));
+		double[] clift = sum(product(cdxe, cdxe), product(cdye, cdye));
+		double[] bc = sum(product(bdxe, cdye), negate(product(cdxe, bdye)));
+		double[] ca = sum(product(cdxe, adye), negate(product(adxe, cdye)));
+		double[] ab = sum(product(adxe, bdye), negate(product(bdxe, adye)));
+
+		return sign(sum(sum(product(alift, bc), product(blift, ca)), product(clift, ab)));
+	}
+
+	/**
+	 * the exact in-circle determinant for exactly representable coordinate
+	 * differences, with fixed size expansions and without allocations.
+	 */
+	private static double incircleExactDifferences(double adx, double ady, double bdx, double bdy, double cdx,
+			double cdy) {
+		double[][] buffers = INCIRCLE_BUFFERS.get();
+		double[] cross = buffers[0], temp8 = buffers[1], temp16a = buffers[2], temp16b = buffers[3];
+		double[] adet = buffers[4], bdet = buffers[5], cdet = buffers[6], abdet = buffers[7], fin = buffers[8];
+
+		int crossLength = twoTwoDiff(bdx, cdy, cdx, bdy, cross);
+		int alength = lift(cross, crossLength, adx, ady, temp8, temp16a, temp16b, adet);
+		crossLength = twoTwoDiff(cdx, ady, adx, cdy, cross);
+		int blength = lift(cross, crossLength, bdx, bdy, temp8, temp16a, temp16b, bdet);
+		crossLength = twoTwoDiff(adx, bdy, bdx, ady, cross);
+		int clength = lift(cross, crossLength, cdx, cdy, temp8, temp16a, temp16b, cdet);
+
+		int ablength = sum(adet, alength, bdet, blength, abdet);
+		int length = sum(abdet, ablength, cdet, clength, fin);
+		return fin[length - 1];
+	}
+
+	/**
+	 * @return the length of h = e * (x^2 + y^2)
+	 */
+	private static int lift(double[] e, int elength, double x, double y, double[] temp8, double[] temp16a,
+			double[] temp16b, double[] h) {
+		int length = scale(e, elength, x, temp8);
+		int xlength = scale(temp8, length, x, temp16a);
+		length = scale(e, elength, y, temp8);
+		int ylength = scale(temp8, length, y, temp16b);
+		return sum(temp16a, xlength, temp16b, ylength, h);
+	}
+
+	// exact arithmetic on expansions: arrays of non-overlapping doubles in
+	// increasing order of magnitude, their exact sum is the represented value
+
+	/**
+	 * @return the component with the largest magnitude, it has the sign of
+	 *         the whole expansion.
+	 */
+	private static double sign(double[] e) {
+		return e[e.length - 1];
+	}
+
+	private static double[] difference(double a, double b) {
+		double x = a - b;
+		double y = twoDiffTail(a, b, x);
+		return y == 0 ? new double[] { x } : new double[] { y, x };
+	}
+
+	private static double[] negate(double[] e) {
+		double[] h = new double[e.length];
+		for (int i = 0; i < e.length; i++) {
+			h[i] = -e[i];
+		}
+		return h;
+	}
+
+	private static double[] sum(double[] e, double[] f) {
+		double[] h = new double[e.length + f.length];
+		return Arrays.copyOf(h, sum(e, e.length, f, f.length, h));
+	}
+
+	private static double[] product(double[] e, double[] f) {
+		double[] h = new double[2 * e.length];
+		h = Arrays.copyOf(h, scale(e, e.length, f[0], h));
+		for (int i = 1; i < f.length; i++) {
+			double[] scaled = new double[2 * e.length];
+			h = sum(h, Arrays.copyOf(scaled, scale(e, e.length, f[i], scaled)));
+		}
+		return h;
+	}
+
+	/**
+	 * writes the expansion a * b - c * d to h (4 components, some of them may
+	 * be zero).
+	 *
+	 * @return the length of h
+	 */
+	private static int twoTwoDiff(double a, double b, double c, double d, double[] h) {
+		double a1 = a * b, a0 = twoProductTail(a, b, a1);
+		double b1 = c * d, b0 = twoProductTail(c, d, b1);
+		// (a1, a0) - b0
+		double i = a0 - b0;
+		h[0] = twoDiffTail(a0, b0, i);
+		double j = a1 + i;
+		double k = twoSumTail(a1, i, j);
+		// (j, k) - b1
+		i = k - b1;
+		h[1] = twoDiffTail(k, b1, i);
+		h[3] = j + i;
+		h[2] = twoSumTail(j, i, h[3]);
+		return 4;
+	}
+
+	/**
+	 * merges the expansions e and f into h, which needs room for elength +
+	 * flength components.
+	 *
+	 * @return the length of h
+	 */
+	private static int sum(double[] e, int elength, double[] f, int flength, double[] h) {
+		int eindex = 0, findex = 0, hindex = 0;
+		double q = 0;
+		while (eindex < elength || findex < flength) {
+			double next;
+			if (findex == flength) {
+				next = e[eindex++];
+			} else if (eindex == elength) {
+				next = f[findex++];
+			} else {
+				double enow = e[eindex], fnow = f[findex];
+				if ((fnow > enow) == (fnow > -enow)) {
+					next = enow;
+					eindex++;
+				} else {
+					next = fnow;
+					findex++;
+				}
+			}
+			double x = q + next;
+			double tail = twoSumTail(q, next, x);
+			q = x;
+			if (tail != 0) {
+				h[hindex++] = tail;
+			}
+		}
+		if (q != 0 || hindex == 0) {
+			h[hindex++] = q;
+		}
+		return hindex;
+	}
+
+	/**
+	 * writes the expansion e * b to h, which needs room for 2 elength
+	 * components.
+	 *
+	 * @return the length of h
+	 */
+	private static int scale(double[] e, int elength, double b, double[] h) {
+		int hindex = 0;
+		double q = e[0] * b;
+		double tail = twoProductTail(e[0], b, q);
+		if (tail != 0) {
+			h[hindex++] = tail;
+		}
+		for (int i = 1; i < elength; i++) {
+			double product1 = e[i] * b;
+			double product0 = twoProductTail(e[i], b, product1);
+			double sum = q + product0;
+			tail = twoSumTail(q, product0, sum);
+			if (tail != 0) {
+				h[hindex++] = tail;
+			}
+			q = product1 + sum;
+			tail = sum - (q - product1);
+			if (tail != 0) {
+				h[hindex++] = tail;
+			}
+		}
+		if (q != 0 || hindex == 0) {
+			h[hindex++] = q;
+		}
+		return hindex;
+	}
+
+	/**
+	 * @return the rounding error of x = a - b
+	 */
+	private static double twoDiffTail(double a, double b, double x) {
+		double bvirt = a - x;
+		double avirt = x + bvirt;
+		return (a - avirt) + (bvirt - b);
+	}
+
+	/**
+	 * @return the rounding error of x = a + b
+	 */
+	private static double twoSumTail(double a, double b, double x) {
+		double bvirt = x - a;
+		double avirt = x - bvirt;
+		return (a - avirt) + (b - bvirt);
+	}
+
+	/**
+	 * @return the rounding error of x = a * b
+	 */
+	private static double twoProductTail(double a, double b, double x) {
+		double c = SPLITTER * a;
+		double ahi = c - (c - a);
+		double alo = a - ahi;
+		c = SPLITTER * b;
+		double bhi = c - (c - b);
+		double blo = b - bhi;
+		double err1 = x - ahi * bhi;
+		double err2 = err1 - alo * bhi;
+		double err3 = err2 - ahi * blo;
+		return alo * blo - err3;
+	}
+}
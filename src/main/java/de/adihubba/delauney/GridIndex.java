@@ -1,6 +1,9 @@
 package de.adihubba.delauney;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by IntelliJ IDEA. User: Aviad Segev Date: 22/11/2009 Time: 20:10:04
@@ -26,8 +29,10 @@ import java.util.Iterator;
  * rebuilding of the whole index. Since triangulation is mostly always used for
  * static raster data, and usually is never updated outside the initial zone
  * (only refininf existing triangles) this is never an issue in real life.
+ * For clustered data or a growing region use {@link QuadtreeLocator} or
+ * {@link DelaunayHierarchyLocator}.
  */
-public class GridIndex {
+public class GridIndex implements PointLocator {
 	/**
 	 * The triangulation of the index
 	 */
@@ -107,8 +112,8 @@ public class GridIndex {
 	private void init(DelaunayTriangulation delaunay, int xCellCount, int yCellCount, BoundingBox region) {
 		indexDelaunay = delaunay;
 		indexRegion = region;
-		xSize = region.getWidth() / yCellCount;
-		ySize = region.getHeight() / xCellCount;
+		xSize = region.getWidth() / xCellCount;
+		ySize = region.getHeight() / yCellCount;
 
 		// The grid will hold a trinagle for each cell, so a point (x,y) will
 		// lie
@@ -125,12 +130,36 @@ public class GridIndex {
 	 * 
 	 * @param point
 	 *            a query point
-	 * @return a triangle at the same cell of the point
+	 * @return a triangle at the same cell of the point, null if the point is
+	 *         outside the indexed region
 	 */
 	public Triangle findCellTriangleOf(Point point) {
-		int xIndex = (int) ((point.getX() - indexRegion.minX()) / xSize);
-		int yIndex = (int) ((point.getY() - indexRegion.minY()) / ySize);
-		return grid[xIndex][yIndex];
+		if (point.getX() < indexRegion.minX() || point.getX() > indexRegion.maxX() || point.getY() < indexRegion.minY()
+				|| point.getY() > indexRegion.maxY())
+			return null;
+		return grid[xCell(point.getX())][yCell(point.getY())];
+	}
+
+	@Override
+	public Triangle startTriangle(Point p) {
+		Triangle t = findCellTriangleOf(p);
+		return t != null && t.isLive() ? t : null;
+	}
+
+	@Override
+	public void pointInserted(Point p, Triangle incident) {
+		updateIndex(indexDelaunay.getLastUpdatedTriangles());
+	}
+
+	@Override
+	public void pointsDeleted(Collection<Point> points, Collection<Triangle> addedTriangles) {
+		List<Triangle> finite = new ArrayList<Triangle>(addedTriangles.size());
+		for (Triangle t : addedTriangles) {
+			if (!t.isHalfplane()) {
+				finite.add(t);
+			}
+		}
+		updateIndex(finite.iterator());
 	}
 
 	/**
@@ -163,8 +192,7 @@ public class GridIndex {
 		// Bad news - the updated region lies outside the indexed region.
 		// The whole index must be recalculated
 		if (!indexRegion.contains(updatedRegion)) {
-			init(indexDelaunay, (int) (indexRegion.getWidth() / xSize), (int) (indexRegion.getHeight() / ySize),
-					indexRegion.unionWith(updatedRegion));
+			init(indexDelaunay, grid.length, grid[0].length, indexRegion.unionWith(updatedRegion));
 		} else {
 			// Find the cell region to be updated
 			PointInt minInvalidCell = getCellOf(updatedRegion.getMinPoint());
@@ -231,7 +259,7 @@ public class GridIndex {
 		else
 			// Otherwise we can take an adjacent cell triangle that is still
 			// valid
-			return grid[Math.min(0, minInvalidCell.getX())][Math.min(0, minInvalidCell.getY())];
+			return grid[Math.max(0, minInvalidCell.getX() - 1)][Math.max(0, minInvalidCell.getY() - 1)];
 	}
 
 	/**
@@ -242,9 +270,19 @@ public class GridIndex {
 	 * @return cell covering the coordinate
 	 */
 	private PointInt getCellOf(Point coordinate) {
-		int xCell = (int) ((coordinate.getX() - indexRegion.minX()) / xSize);
-		int yCell = (int) ((coordinate.getY() - indexRegion.minY()) / ySize);
-		return new PointInt(xCell, yCell);
+		return new PointInt(xCell(coordinate.getX()), yCell(coordinate.getY()));
+	}
+
+	// the cell column of x, points on the max border belong to the last cell
+	private int xCell(double x) {
+		int cell = (int) ((x - indexRegion.minX()) / xSize);
+		return Math.max(0, Math.min(grid.length - 1, cell));
+	}
+
+	// the cell row of y, points on the max border belong to the last cell
+	private int yCell(double y) {
+		int cell = (int) ((y - indexRegion.minY()) / ySize);
+		return Math.max(0, Math.min(grid[0].length - 1, cell));
 	}
 
 	/**
@@ -0,0 +1,770 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The half-edge engine of {@link ArrayDelaunayTriangulation} and
+ * {@link QuantizedDelaunayTriangulation}: the triangle arrays (see
+ * {@link ArrayDelaunayTriangulation} for their layout), the incremental
+ * insertion with edge flips and the point location by a stochastic walk. <br>
+ * The subclasses store the vertices and evaluate the predicates. The engine
+ * only hands them vertex indices and query points in the coordinates the
+ * vertices are stored in (the grid of a quantized triangulation), so the
+ * predicates may be exact in any arithmetic.
+ */
+abstract class HalfEdgeTriangulation {
+
+	// one outgoing half-edge for every vertex (-1 as long as it is collinear)
+	private int[] vertexEdge;
+	int vertexCount;
+
+	// triangle storage, see ArrayDelaunayTriangulation
+	int[] triangles;
+	int[] halfedges;
+	int triangleCount;
+
+	// for degenerate case! vertices collected as long as all are collinear
+	boolean allCollinear = true;
+	private int[] collinear = new int[16];
+	private int collinearCount;
+
+	// the triangle the last insertion ended in, point location starts there
+	int lastTriangle = -1;
+
+	// stack of half-edges which have to be checked by the in-circle test
+	private int[] edgeStack = new int[64];
+	private int edgeStackSize;
+
+	// seed of the stochastic walk
+	int walkSeed = 0x2545F491;
+
+	private int modCount = 0;
+
+	/**
+	 * creates an empty triangulation with room for the given number of
+	 * vertices, see {@link #vertexCapacity()}.
+	 */
+	HalfEdgeTriangulation(int expectedVertices) {
+		int capacity = Math.max(expectedVertices, 4);
+		vertexEdge = new int[capacity];
+		triangles = new int[6 * capacity];
+		halfedges = new int[6 * capacity];
+	}
+
+	/**
+	 * takes over a complete triangulation built elsewhere, the arrays are not
+	 * copied.
+	 *
+	 * @param triangleCount
+	 *            number of triangles including ghosts, 0 if all vertices are
+	 *            collinear
+	 */
+	HalfEdgeTriangulation(int vertexCount, int[] triangles, int[] halfedges, int triangleCount) {
+		this.vertexCount = vertexCount;
+		this.triangles = triangles;
+		this.halfedges = halfedges;
+		this.triangleCount = triangleCount;
+		vertexEdge = new int[Math.max(vertexCount, 4)];
+		Arrays.fill(vertexEdge, -1);
+
+		if (triangleCount == 0) {
+			collinear = new int[Math.max(vertexCount, 16)];
+			for (int v = 0; v < vertexCount; v++) {
+				collinear[v] = v;
+			}
+			collinearCount = vertexCount;
+			return;
+		}
+		allCollinear = false;
+		collinear = null;
+		for (int t = 0; t < triangleCount; t++) {
+			if (isGhost(t))
+				continue;
+			if (lastTriangle < 0)
+				lastTriangle = t;
+			for (int e = 3 * t; e < 3 * t + 3; e++) {
+				vertexEdge[triangles[e]] = e;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of vertices the subclass has to store until
+	 *         {@link #growVertices(int)} is called.
+	 */
+	final int vertexCapacity() {
+		return vertexEdge.length;
+	}
+
+	/**
+	 * makes room for capacity vertices.
+	 */
+	abstract void growVertices(int capacity);
+
+	/**
+	 * stores the new vertex v at (x, y), in the coordinates of the vertices.
+	 */
+	abstract void setVertex(int v, double x, double y, double z);
+
+	/**
+	 * @return the x coordinate of vertex the predicates work on.
+	 */
+	abstract double vertexX(int vertex);
+
+	/**
+	 * @return the y coordinate of vertex the predicates work on.
+	 */
+	abstract double vertexY(int vertex);
+
+	/**
+	 * @return a positive value if (x, y) lies left of the directed line from
+	 *         vertex a to vertex b, a negative value if it lies right of it
+	 *         and 0 if the points are collinear. The sign must be exact.
+	 */
+	abstract double orient(int a, int b, double x, double y);
+
+	/**
+	 * @return a positive value if vertex d lies inside the circle through the
+	 *         counterclockwise vertices a, b, c, a negative value if it lies
+	 *         outside and 0 if it is on the circle. The sign must be exact.
+	 */
+	abstract double incircle(int a, int b, int c, int d);
+
+	/**
+	 * finds the triangle the query point falls in. If the point is outside of
+	 * the convex hull a ghost triangle whose hull edge is visible from the
+	 * point is returned.
+	 *
+	 * @return the index of the triangle, -1 if there are no triangles yet
+	 *         (less than three not collinear vertices).
+	 */
+	public abstract int locate(double x, double y);
+
+	public abstract double getX(int vertex);
+
+	public abstract double getY(int vertex);
+
+	public abstract double getZ(int vertex);
+
+	/**
+	 * the number of (different) vertices in this triangulation.
+	 */
+	public int size() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return the number of triangles in the triangulation. <br />
+	 *         Note: includes the ghost triangles around the hull (like the half
+	 *         planes of {@link DelaunayTriangulation#trianglesSize()}).
+	 */
+	public int trianglesSize() {
+		return triangleCount;
+	}
+
+	/**
+	 * returns the changes counter for this triangulation
+	 */
+	public int getModeCounter() {
+		return modCount;
+	}
+
+	/**
+	 * returns true iff the triangle is a ghost triangle outside of the hull.
+	 */
+	public boolean isGhost(int t) {
+		return triangles[3 * t + 2] == ArrayDelaunayTriangulation.GHOST;
+	}
+
+	/**
+	 * returns the i-th (0, 1 or 2) vertex of the triangle t.
+	 */
+	public int getTriangleVertex(int t, int i) {
+		return triangles[3 * t + i];
+	}
+
+	/**
+	 * returns the triangle sharing the i-th edge (0: ab, 1: bc, 2: ca) of the
+	 * triangle t.
+	 */
+	public int getNeighbor(int t, int i) {
+		return halfedges[3 * t + i] / 3;
+	}
+
+	/**
+	 *
+	 * @param p
+	 *            query point
+	 * @return true iff p is within this triangulation (in its 2D convex hull).
+	 */
+	public boolean contains(Point p) {
+		return contains(p.getX(), p.getY());
+	}
+
+	/**
+	 * @return true iff (x,y) falls inside this triangulation (in its 2D convex
+	 *         hull).
+	 */
+	public boolean contains(double x, double y) {
+		int t = locate(x, y);
+		return t >= 0 && !isGhost(t);
+	}
+
+	/**
+	 *
+	 * @param q
+	 *            Query point
+	 * @return the q point with updated Z value (z value is as given the
+	 *         triangulation).
+	 */
+	public Point z(Point q) {
+		return new Point(q.getX(), q.getY(), z(q.getX(), q.getY()));
+	}
+
+	/**
+	 * @return z (height) value approximation given by the triangle (x,y) falls
+	 *         in, NaN if (x,y) is outside of the convex hull.
+	 */
+	public double z(double x, double y) {
+		return zOnTriangle(locate(x, y), x, y);
+	}
+
+	// the z value of (x, y) on the plane of the triangle t, NaN for ghosts
+	double zOnTriangle(int t, double x, double y) {
+		if (t < 0 || isGhost(t))
+			return Double.NaN;
+		int e0 = 3 * t;
+		int a = triangles[e0], b = triangles[e0 + 1], c = triangles[e0 + 2];
+		double x1 = getX(a), y1 = getY(a), x2 = getX(b), y2 = getY(b), x3 = getX(c), y3 = getY(c);
+		double det = (x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1);
+		double l2 = ((x - x1) * (y3 - y1) - (x3 - x1) * (y - y1)) / det;
+		double l3 = ((x2 - x1) * (y - y1) - (x - x1) * (y2 - y1)) / det;
+		double za = getZ(a);
+		return za + l2 * (getZ(b) - za) + l3 * (getZ(c) - za);
+	}
+
+	/**
+	 * @return the counterclockwise vertex triples of all real triangles.
+	 */
+	public int[] getTriangleVertices() {
+		int[] result = new int[3 * realTriangleCount()];
+		int k = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isGhost(t)) {
+				System.arraycopy(triangles, 3 * t, result, k, 3);
+				k += 3;
+			}
+		}
+		return result;
+	}
+
+	int realTriangleCount() {
+		int count = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isGhost(t))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * creates {@link Triangle} objects for the current triangulation. The
+	 * ghost triangles are returned as half planes, the neighbours are linked
+	 * like in {@link DelaunayTriangulation#getTriangulation()}.
+	 */
+	public List<Triangle> getTriangulation() {
+		List<Triangle> result = new ArrayList<Triangle>(triangleCount);
+		if (allCollinear)
+			return result;
+		Point[] points = createPoints();
+		Triangle[] objects = new Triangle[triangleCount];
+		for (int t = 0; t < triangleCount; t++) {
+			int e0 = 3 * t;
+			if (isGhost(t))
+				objects[t] = new Triangle(points[triangles[e0]], points[triangles[e0 + 1]]);
+			else
+				objects[t] = new Triangle(points[triangles[e0]], points[triangles[e0 + 1]], points[triangles[e0 + 2]]);
+		}
+		for (int t = 0; t < triangleCount; t++) {
+			int e0 = 3 * t;
+			objects[t].setAbTriangle(objects[halfedges[e0] / 3]);
+			objects[t].setBcTriangle(objects[halfedges[e0 + 1] / 3]);
+			objects[t].setCanext(objects[halfedges[e0 + 2] / 3]);
+			result.add(objects[t]);
+		}
+		return result;
+	}
+
+	/**
+	 * computes the current set of all triangles and return an iterator to
+	 * them.
+	 */
+	public Iterator<Triangle> trianglesIterator() {
+		return getTriangulation().iterator();
+	}
+
+	/**
+	 * returns an iterator to the set of points compusing this triangulation.
+	 */
+	public Iterator<Point> verticesIterator() {
+		return new Iterator<Point>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < vertexCount;
+			}
+
+			@Override
+			public Point next() {
+				if (next >= vertexCount)
+					throw new NoSuchElementException();
+				int v = next++;
+				return new Point(getX(v), getY(v), getZ(v));
+			}
+		};
+	}
+
+	private Point[] createPoints() {
+		Point[] points = new Point[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			points[v] = new Point(getX(v), getY(v), getZ(v));
+		}
+		return points;
+	}
+
+	/**
+	 * inserts the point (x, y), given in the coordinates of the vertices.
+	 *
+	 * @return the index of the new vertex, or the index of the existing vertex
+	 *         at (x, y).
+	 */
+	int insert(double x, double y, double z) {
+		if (allCollinear) {
+			return insertWhileCollinear(x, y, z);
+		}
+
+		int t = walk(lastTriangle, x, y, nextSeed());
+		if (isGhost(t)) {
+			int p = addVertex(x, y, z);
+			insertOutside(t, p);
+			return p;
+		}
+
+		int e0 = 3 * t;
+		int a = triangles[e0], b = triangles[e0 + 1], c = triangles[e0 + 2];
+		if (isVertexAt(a, x, y))
+			return a;
+		if (isVertexAt(b, x, y))
+			return b;
+		if (isVertexAt(c, x, y))
+			return c;
+
+		int p = addVertex(x, y, z);
+		if (orient(a, b, x, y) == 0) {
+			insertOnEdge(e0, p);
+		} else if (orient(b, c, x, y) == 0) {
+			insertOnEdge(e0 + 1, p);
+		} else if (orient(c, a, x, y) == 0) {
+			insertOnEdge(e0 + 2, p);
+		} else {
+			insertInside(t, p);
+		}
+		return p;
+	}
+
+	private boolean isVertexAt(int v, double x, double y) {
+		return vertexX(v) == x && vertexY(v) == y;
+	}
+
+	private int insertWhileCollinear(double x, double y, double z) {
+		for (int i = 0; i < collinearCount; i++) {
+			if (isVertexAt(collinear[i], x, y))
+				return collinear[i];
+		}
+		int p = addVertex(x, y, z);
+		if (collinearCount >= 2 && orient(collinear[0], collinear[1], x, y) != 0) {
+			startTriangulation(p);
+			return p;
+		}
+		if (collinearCount == collinear.length) {
+			collinear = Arrays.copyOf(collinear, 2 * collinearCount);
+		}
+		collinear[collinearCount++] = p;
+		return p;
+	}
+
+	/**
+	 * builds the first triangles as a fan from the (first not collinear)
+	 * vertex q to the chain of collinear vertices. This is the only
+	 * triangulation of these points, so no flips are needed.
+	 */
+	private void startTriangulation(int q) {
+		// sort the chain along the line
+		final int first = collinear[0];
+		final double dx = vertexX(collinear[1]) - vertexX(first), dy = vertexY(collinear[1]) - vertexY(first);
+		int k = collinearCount;
+		double[] projection = new double[k];
+		for (int i = 0; i < k; i++) {
+			int v = collinear[i];
+			projection[i] = (vertexX(v) - vertexX(first)) * dx + (vertexY(v) - vertexY(first)) * dy;
+		}
+		Integer[] order = new Integer[k];
+		for (int i = 0; i < k; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(projection[i], projection[j]));
+		int[] chain = new int[k];
+		for (int i = 0; i < k; i++) {
+			chain[i] = collinear[order[i]];
+		}
+		// q must be left of the chain so the fan is counterclockwise
+		if (orient(chain[0], chain[k - 1], vertexX(q), vertexY(q)) < 0) {
+			for (int i = 0, j = k - 1; i < j; i++, j--) {
+				int tmp = chain[i];
+				chain[i] = chain[j];
+				chain[j] = tmp;
+			}
+		}
+
+		// real triangles (P_i, P_i+1, q)
+		int[] fan = new int[k - 1];
+		for (int i = 0; i < k - 1; i++) {
+			fan[i] = addTriangle(chain[i], chain[i + 1], q);
+			if (i > 0) {
+				link(3 * fan[i] + 2, 3 * fan[i - 1] + 1);
+			}
+			vertexEdge[chain[i]] = 3 * fan[i];
+		}
+		vertexEdge[chain[k - 1]] = 3 * fan[k - 2] + 1;
+		vertexEdge[q] = 3 * fan[0] + 2;
+
+		// hull in counterclockwise order: P_0 ... P_k-1, q
+		int[] hull = Arrays.copyOf(chain, k + 1);
+		hull[k] = q;
+		int[] ghosts = new int[k + 1];
+		for (int i = 0; i <= k; i++) {
+			int from = hull[i], to = hull[(i + 1) % (k + 1)];
+			ghosts[i] = addTriangle(to, from, ArrayDelaunayTriangulation.GHOST);
+		}
+		for (int i = 0; i < k - 1; i++) {
+			link(3 * fan[i], 3 * ghosts[i]);
+		}
+		link(3 * fan[k - 2] + 1, 3 * ghosts[k - 1]);
+		link(3 * fan[0] + 2, 3 * ghosts[k]);
+		for (int i = 0; i <= k; i++) {
+			link(3 * ghosts[i] + 2, 3 * ghosts[(i + 1) % (k + 1)] + 1);
+		}
+
+		allCollinear = false;
+		collinear = null;
+		collinearCount = 0;
+		lastTriangle = fan[0];
+		modCount++;
+	}
+
+	/**
+	 * splits the real triangle t into three triangles around p.
+	 */
+	private void insertInside(int t, int p) {
+		int e0 = 3 * t;
+		int a = triangles[e0], b = triangles[e0 + 1], c = triangles[e0 + 2];
+		int hab = halfedges[e0], hbc = halfedges[e0 + 1], hca = halfedges[e0 + 2];
+
+		setTriangle(t, a, b, p);
+		int t1 = addTriangle(b, c, p);
+		int t2 = addTriangle(c, a, p);
+
+		link(e0, hab);
+		link(3 * t1, hbc);
+		link(3 * t2, hca);
+		link(e0 + 1, 3 * t1 + 2);
+		link(3 * t1 + 1, 3 * t2 + 2);
+		link(3 * t2 + 1, e0 + 2);
+
+		vertexEdge[a] = e0;
+		vertexEdge[b] = 3 * t1;
+		vertexEdge[c] = 3 * t2;
+		vertexEdge[p] = e0 + 2;
+
+		pushEdge(e0);
+		pushEdge(3 * t1);
+		pushEdge(3 * t2);
+		legalize();
+		lastTriangle = t;
+		modCount++;
+	}
+
+	/**
+	 * splits the half-edge e (of a real triangle) and its twin at p.
+	 */
+	private void insertOnEdge(int e, int p) {
+		int t = e / 3;
+		int f = halfedges[e];
+		int u = f / 3;
+
+		int a = triangles[e], b = triangles[next(e)], c = triangles[prev(e)];
+		int d = triangles[prev(f)];
+		int hen = halfedges[next(e)], hep = halfedges[prev(e)];
+		int hfn = halfedges[next(f)], hfp = halfedges[prev(f)];
+
+		// the ghost vertex stays at the third position of ghost triangles
+		setTriangle(t, c, a, p);
+		int t2 = addTriangle(b, c, p);
+		setTriangle(u, b, p, d);
+		int u2 = addTriangle(p, a, d);
+
+		int t1e = 3 * t, t2e = 3 * t2, u1e = 3 * u, u2e = 3 * u2;
+		link(t1e, hep);
+		link(t1e + 1, u2e);
+		link(t1e + 2, t2e + 1);
+		link(t2e, hen);
+		link(t2e + 2, u1e);
+		link(u1e + 1, u2e + 2);
+		link(u1e + 2, hfp);
+		link(u2e + 1, hfn);
+
+		vertexEdge[p] = t1e + 2;
+		vertexEdge[a] = t1e + 1;
+		vertexEdge[b] = t2e;
+		vertexEdge[c] = t1e;
+		if (d != ArrayDelaunayTriangulation.GHOST) {
+			vertexEdge[d] = u1e + 2;
+		}
+
+		pushEdge(t1e);
+		pushEdge(t2e);
+		if (d != ArrayDelaunayTriangulation.GHOST) {
+			pushEdge(u1e + 2);
+			pushEdge(u2e + 1);
+		}
+		legalize();
+		lastTriangle = t;
+		modCount++;
+	}
+
+	/**
+	 * inserts p outside the hull. The ghost triangle g (whose hull edge is
+	 * visible from p) becomes a real triangle, then the hull is extended in
+	 * both directions as long as the hull edges are visible from p.
+	 */
+	private void insertOutside(int g, int p) {
+		int g0 = 3 * g;
+		int v = triangles[g0], u = triangles[g0 + 1];
+		int prevGhostEdge = halfedges[g0 + 1];
+		int nextGhostEdge = halfedges[g0 + 2];
+
+		triangles[g0 + 2] = p;
+		int ghostA = addTriangle(p, u, ArrayDelaunayTriangulation.GHOST);
+		int ghostB = addTriangle(v, p, ArrayDelaunayTriangulation.GHOST);
+		int a0 = 3 * ghostA, b0 = 3 * ghostB;
+		link(a0, g0 + 1);
+		link(a0 + 1, prevGhostEdge);
+		link(a0 + 2, b0 + 1);
+		link(b0, g0 + 2);
+		link(b0 + 2, nextGhostEdge);
+		pushEdge(g0);
+
+		double px = vertexX(p), py = vertexY(p);
+
+		// walk forward along the hull, ghostB = (v, p, GHOST)
+		while (true) {
+			int n0 = halfedges[b0 + 2] - 1;
+			int x = triangles[n0];
+			if (orient(v, x, px, py) >= 0)
+				break;
+			int nextNext = halfedges[n0 + 2];
+			triangles[n0 + 2] = p;
+			link(n0 + 1, halfedges[b0]);
+			triangles[b0] = x;
+			link(b0, n0 + 2);
+			link(b0 + 2, nextNext);
+			vertexEdge[v] = n0 + 1;
+			pushEdge(n0);
+			v = x;
+		}
+
+		// walk backward along the hull, ghostA = (p, u, GHOST)
+		while (true) {
+			int q0 = halfedges[a0 + 1] - 2;
+			int w = triangles[q0 + 1];
+			if (orient(w, u, px, py) >= 0)
+				break;
+			int prevPrev = halfedges[q0 + 1];
+			triangles[q0 + 2] = p;
+			link(q0 + 2, halfedges[a0]);
+			triangles[a0 + 1] = w;
+			link(a0, q0 + 1);
+			link(a0 + 1, prevPrev);
+			vertexEdge[u] = q0;
+			pushEdge(q0);
+			u = w;
+		}
+
+		vertexEdge[v] = b0;
+		vertexEdge[u] = a0 + 1;
+		vertexEdge[p] = a0;
+		legalize();
+		lastTriangle = g;
+		modCount++;
+	}
+
+	/**
+	 * restores the Delaunay property for all half-edges on the edge stack.
+	 * Every half-edge on the stack belongs to a real triangle whose third
+	 * vertex is the vertex just inserted.
+	 */
+	private void legalize() {
+		while (edgeStackSize > 0) {
+			int a = edgeStack[--edgeStackSize];
+			int b = halfedges[a];
+			int a0 = a - a % 3;
+			int b0 = b - b % 3;
+			if (triangles[b0 + 2] == ArrayDelaunayTriangulation.GHOST)
+				continue;
+
+			int al = a0 + (a + 1) % 3;
+			int ar = a0 + (a + 2) % 3;
+			int bl = b0 + (b + 2) % 3;
+			int p0 = triangles[ar], pr = triangles[a], pl = triangles[al], p1 = triangles[bl];
+			if (!inCircle(pr, pl, p0, p1))
+				continue;
+
+			// flip the edge pr-pl to p0-p1
+			triangles[a] = p1;
+			triangles[b] = p0;
+			int hbl = halfedges[bl];
+			int har = halfedges[ar];
+			link(a, hbl);
+			link(b, har);
+			link(ar, bl);
+			int br = b0 + (b + 1) % 3;
+			vertexEdge[pr] = br;
+			vertexEdge[pl] = al;
+
+			pushEdge(a);
+			pushEdge(br);
+		}
+	}
+
+	private void pushEdge(int e) {
+		if (edgeStackSize == edgeStack.length) {
+			edgeStack = Arrays.copyOf(edgeStack, 2 * edgeStackSize);
+		}
+		edgeStack[edgeStackSize++] = e;
+	}
+
+	/**
+	 * @return the next seed of the walk of a single query.
+	 */
+	int nextSeed() {
+		int seed = walkSeed;
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		walkSeed = seed;
+		return seed;
+	}
+
+	/**
+	 * walks from the triangle t to the triangle of (x, y), given in the
+	 * coordinates of the vertices. The seed picks the edge tested first, so
+	 * the walk cannot cycle.
+	 */
+	int walk(int t, double x, double y, int seed) {
+		if (isGhost(t)) {
+			t = halfedges[3 * t] / 3;
+		}
+		while (true) {
+			int e0 = 3 * t;
+			seed ^= seed << 13;
+			seed ^= seed >>> 17;
+			seed ^= seed << 5;
+			int r = (seed >>> 1) % 3;
+			int next = -1;
+			for (int i = 0; i < 3; i++) {
+				int e = e0 + (r + i) % 3;
+				if (orient(triangles[e], triangles[next(e)], x, y) < 0) {
+					next = halfedges[e] / 3;
+					break;
+				}
+			}
+			if (next < 0)
+				break;
+			t = next;
+			if (isGhost(t))
+				break;
+		}
+		return t;
+	}
+
+	/**
+	 * @return true iff the edge a-b of the counterclockwise triangle a, b, c
+	 *         has to be flipped to c-d, i.e. vertex d lies strictly inside the
+	 *         circumcircle. If d lies on the circle the edge is flipped iff the
+	 *         lexicographically smallest of the four vertices is c or d, as if
+	 *         the smaller a point the more it were perturbed into the circle.
+	 *         So cocircular points are triangulated the same way whatever the
+	 *         insertion order, which the tiles of {@link TiledTriangulationBuilder}
+	 *         rely on.
+	 */
+	private boolean inCircle(int a, int b, int c, int d) {
+		double det = incircle(a, b, c, d);
+		if (det != 0)
+			return det > 0;
+		int min = isLess(c, d) ? c : d;
+		return isLess(min, a) && isLess(min, b);
+	}
+
+	private boolean isLess(int u, int v) {
+		double ux = vertexX(u), vx = vertexX(v);
+		return ux < vx || (ux == vx && vertexY(u) < vertexY(v));
+	}
+
+	private int addVertex(double x, double y, double z) {
+		if (vertexCount == vertexEdge.length) {
+			int capacity = 2 * vertexCount;
+			vertexEdge = Arrays.copyOf(vertexEdge, capacity);
+			growVertices(capacity);
+		}
+		int v = vertexCount++;
+		vertexEdge[v] = -1;
+		setVertex(v, x, y, z);
+		return v;
+	}
+
+	private int addTriangle(int a, int b, int c) {
+		if (3 * triangleCount + 3 > triangles.length) {
+			int capacity = 2 * triangles.length;
+			triangles = Arrays.copyOf(triangles, capacity);
+			halfedges = Arrays.copyOf(halfedges, capacity);
+		}
+		int t = triangleCount++;
+		setTriangle(t, a, b, c);
+		return t;
+	}
+
+	private void setTriangle(int t, int a, int b, int c) {
+		int e0 = 3 * t;
+		triangles[e0] = a;
+		triangles[e0 + 1] = b;
+		triangles[e0 + 2] = c;
+	}
+
+	private void link(int a, int b) {
+		halfedges[a] = b;
+		halfedges[b] = a;
+	}
+
+	private static int next(int e) {
+		return (e % 3 == 2) ? e - 2 : e + 1;
+	}
+
+	private static int prev(int e) {
+		return (e % 3 == 0) ? e + 2 : e - 1;
+	}
+}
@@ -0,0 +1,69 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+
+/**
+ * A set of non negative ints, open addressing with linear probing on a
+ * primitive array. Used to remember the vertices or triangles (by index) a
+ * search has already seen without boxing them.
+ */
+final class IntHashSet {
+
+	private static final int FREE = -1;
+
+	private int[] slots = new int[64];
+	private int size;
+
+	IntHashSet() {
+		Arrays.fill(slots, FREE);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if value was not in the set yet.
+	 */
+	boolean add(int value) {
+		if (2 * (size + 1) > slots.length) {
+			int[] old = slots;
+			slots = new int[2 * old.length];
+			Arrays.fill(slots, FREE);
+			for (int v : old) {
+				if (v != FREE) {
+					slots[slot(v)] = v;
+				}
+			}
+		}
+		int slot = slot(value);
+		if (slots[slot] == value) {
+			return false;
+		}
+		slots[slot] = value;
+		size++;
+		return true;
+	}
+
+	boolean contains(int value) {
+		return slots[slot(value)] == value;
+	}
+
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(slots, FREE);
+			size = 0;
+		}
+	}
+
+	// the slot holding value, or the free slot where it belongs
+	private int slot(int value) {
+		int mask = slots.length - 1;
+		int h = value * 0x9E3779B9;
+		int slot = (h ^ h >>> 16) & mask;
+		while (slots[slot] != FREE && slots[slot] != value) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,169 @@
+package de.adihubba.delauney;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A read-only triangulation served from a memory-mapped {@link TinFile}, see
+ * {@link TinFile#map(java.nio.file.Path)}. The vertices and triangles stay in
+ * the file, so opening costs the same for any size and the heap holds nothing
+ * of the triangulation. The indices are the ones of
+ * {@link ArrayDelaunayTriangulation}.
+ * <br>
+ * Points are located by jump and walk: the walk starts at the nearest of a
+ * few sampled triangles and crosses the edges that separate the triangle
+ * from the query point. A view is immutable and may be read from several
+ * threads.
+ */
+public final class MappedTin {
+
+	private final int vertexCount, triangleCount;
+	private final DoubleBuffer xs, ys, zs;
+	private final IntBuffer triangles, halfedges;
+
+	// real triangles the walks may start at
+	private final int[] starts;
+
+	MappedTin(int vertexCount, int triangleCount, DoubleBuffer xs, DoubleBuffer ys, DoubleBuffer zs,
+			IntBuffer triangles, IntBuffer halfedges) {
+		this.vertexCount = vertexCount;
+		this.triangleCount = triangleCount;
+		this.xs = xs;
+		this.ys = ys;
+		this.zs = zs;
+		this.triangles = triangles;
+		this.halfedges = halfedges;
+		this.starts = sampleStarts();
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int size() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return the number of triangles, ghost triangles included.
+	 */
+	public int trianglesSize() {
+		return triangleCount;
+	}
+
+	/**
+	 * returns true iff the triangle is a ghost triangle outside of the hull.
+	 */
+	public boolean isGhost(int t) {
+		return triangles.get(3 * t + 2) == ArrayDelaunayTriangulation.GHOST;
+	}
+
+	/**
+	 * returns the i-th (0, 1 or 2) vertex of the triangle t.
+	 */
+	public int getTriangleVertex(int t, int i) {
+		return triangles.get(3 * t + i);
+	}
+
+	/**
+	 * returns the triangle sharing the i-th edge (0: ab, 1: bc, 2: ca) of the
+	 * triangle t.
+	 */
+	public int getNeighbor(int t, int i) {
+		return halfedges.get(3 * t + i) / 3;
+	}
+
+	public double getX(int vertex) {
+		return xs.get(vertex);
+	}
+
+	public double getY(int vertex) {
+		return ys.get(vertex);
+	}
+
+	public double getZ(int vertex) {
+		return zs.get(vertex);
+	}
+
+	/**
+	 * @return the triangle containing (x, y), -1 if (x, y) is outside of the
+	 *         convex hull.
+	 */
+	public int locate(double x, double y) {
+		if (starts.length == 0)
+			return -1;
+		int t = nearestStart(x, y);
+		// the visibility walk does not cycle in a Delaunay triangulation
+		walk: while (true) {
+			for (int i = 0; i < 3; i++) {
+				int a = triangles.get(3 * t + i), b = triangles.get(3 * t + (i + 1) % 3);
+				if (GeometricPredicates.orient2d(xs.get(a), ys.get(a), xs.get(b), ys.get(b), x, y) < 0) {
+					t = getNeighbor(t, i);
+					if (isGhost(t))
+						return -1;
+					continue walk;
+				}
+			}
+			return t;
+		}
+	}
+
+	/**
+	 * @return true iff (x,y) falls inside this triangulation (in its 2D convex
+	 *         hull).
+	 */
+	public boolean contains(double x, double y) {
+		return locate(x, y) >= 0;
+	}
+
+	/**
+	 * @return z (height) value approximation given by the triangle (x,y) falls
+	 *         in, NaN if (x,y) is outside of the convex hull.
+	 */
+	public double z(double x, double y) {
+		int t = locate(x, y);
+		if (t < 0)
+			return Double.NaN;
+		int a = triangles.get(3 * t), b = triangles.get(3 * t + 1), c = triangles.get(3 * t + 2);
+		double ax = xs.get(a), ay = ys.get(a), bx = xs.get(b), by = ys.get(b), cx = xs.get(c), cy = ys.get(c);
+		double u = GeometricPredicates.orient2d(bx, by, cx, cy, x, y);
+		double v = GeometricPredicates.orient2d(cx, cy, ax, ay, x, y);
+		double w = GeometricPredicates.orient2d(ax, ay, bx, by, x, y);
+		return (u * zs.get(a) + v * zs.get(b) + w * zs.get(c)) / (u + v + w);
+	}
+
+	@Override
+	public String toString() {
+		return "MappedTin [" + vertexCount + " vertices, " + triangleCount + " triangles]";
+	}
+
+	// about the cube root of the triangles, evenly spread over the file
+	private int[] sampleStarts() {
+		int count = Math.min(triangleCount, Math.max(1, (int) Math.cbrt(triangleCount)));
+		int[] result = new int[count];
+		int found = 0;
+		for (int k = 0; k < count; k++) {
+			int t = (int) ((long) k * triangleCount / count);
+			// a ghost triangle has real neighbors
+			int real = isGhost(t) ? getNeighbor(t, 0) : t;
+			if (!isGhost(real))
+				result[found++] = real;
+		}
+		return found == count ? result : Arrays.copyOf(result, found);
+	}
+
+	private int nearestStart(double x, double y) {
+		int best = starts[0];
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int t : starts) {
+			int v = triangles.get(3 * t);
+			double dx = xs.get(v) - x, dy = ys.get(v) - y;
+			double distance = dx * dx + dy * dy;
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = t;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,122 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+
+/**
+ * The candidates of a nearest neighbor search: a binary min-heap of vertex
+ * ids keyed by their squared distance to the query, on primitive arrays, and
+ * the set of ids queued since the last {@link #clear()}, so no vertex is
+ * queued twice. Every entry carries a hint (e.g. a triangle at the vertex) for
+ * the caller. A queue is reused from query to query and is not thread safe.
+ */
+final class NearestQueue<T> {
+
+	// the heap
+	private double[] keys = new double[32];
+	private int[] ids = new int[32];
+	private Object[] hints = new Object[32];
+	private int size;
+
+	// the queued ids
+	private final IntHashSet seen = new IntHashSet();
+
+	// the entry removed by the last poll
+	private int polledId;
+	private double polledKey;
+	private T polledHint;
+
+	/**
+	 * empties the heap and forgets the queued ids.
+	 */
+	void clear() {
+		Arrays.fill(hints, 0, size, null);
+		size = 0;
+		seen.clear();
+		polledHint = null;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * queues id unless it was queued before.
+	 *
+	 * @return false if id was queued before.
+	 */
+	boolean offer(int id, double key, T hint) {
+		if (!seen.add(id)) {
+			return false;
+		}
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+			ids = Arrays.copyOf(ids, 2 * size);
+			hints = Arrays.copyOf(hints, 2 * size);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			keys[i] = keys[parent];
+			ids[i] = ids[parent];
+			hints[i] = hints[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		ids[i] = id;
+		hints[i] = hint;
+		return true;
+	}
+
+	/**
+	 * removes the entry with the smallest key, see {@link #polledId()},
+	 * {@link #polledKey()} and {@link #polledHint()}.
+	 */
+	@SuppressWarnings("unchecked")
+	void poll() {
+		polledId = ids[0];
+		polledKey = keys[0];
+		polledHint = (T) hints[0];
+		int last = --size;
+		double key = keys[last];
+		int id = ids[last];
+		Object hint = hints[last];
+		hints[last] = null;
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			keys[i] = keys[child];
+			ids[i] = ids[child];
+			hints[i] = hints[child];
+			i = child;
+		}
+		if (size > 0) {
+			keys[i] = key;
+			ids[i] = id;
+			hints[i] = hint;
+		}
+	}
+
+	int polledId() {
+		return polledId;
+	}
+
+	double polledKey() {
+		return polledKey;
+	}
+
+	T polledHint() {
+		return polledHint;
+	}
+}
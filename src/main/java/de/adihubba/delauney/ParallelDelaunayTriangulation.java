@@ -0,0 +1,585 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a Delaunay Triangulation with the divide and conquer algorithm of
+ * Guibas & Stolfi (1985) on a {@link ForkJoinPool}. <br>
+ * The points are sorted by x (then y) and recursively split in the middle of
+ * that order. The halves are triangulated independently - in parallel above
+ * {@link #SEQUENTIAL_THRESHOLD} points - and their seams are merged by the
+ * rising bubble of the original algorithm. The result is an
+ * {@link ArrayDelaunayTriangulation} with the same topology the incremental
+ * algorithm produces (up to the choice of diagonals of cocircular points).
+ * <br>
+ * <br>
+ * The edges are kept in an array based quad-edge structure without the dual
+ * rings: directed edge <code>2q</code> and its reverse <code>2q + 1</code>
+ * store their origin and the next/previous edge counterclockwise around that
+ * origin. A subdivision of k points never has more than 3k edges at a time,
+ * so every task owns the edge slots <code>[3 lo, 3 hi)</code> of its point
+ * range and no synchronization is needed. Merges reuse the slots of the
+ * edges they delete.
+ */
+public class ParallelDelaunayTriangulation {
+
+	/** below this number of points a subdivision is triangulated sequentially */
+	private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
+
+	/** below this number of indices the sort runs sequentially */
+	private static final int SORT_THRESHOLD = 1 << 13;
+
+	// the unique points, sorted by x, then by y
+	private final double[] xs;
+	private final double[] ys;
+	// the input index of every point
+	private final int[] vertexToInput;
+
+	// quad-edge structure, see class comment
+	private final int[] org;
+	private final int[] onext;
+	private final int[] oprev;
+
+	private ParallelDelaunayTriangulation(double[] xs, double[] ys, int[] vertexToInput) {
+		this.xs = xs;
+		this.ys = ys;
+		this.vertexToInput = vertexToInput;
+		int edges = 6 * Math.max(xs.length, 1);
+		org = new int[edges];
+		onext = new int[edges];
+		oprev = new int[edges];
+		Arrays.fill(org, -1);
+	}
+
+	/**
+	 * creates a Delaunay Triangulation of the given coordinates on the common
+	 * fork/join pool.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @param zs
+	 *            z-coordinates of the points, may be null
+	 * @return the triangulation, its vertices are ordered by x, then by y.
+	 *         Duplicated points are ignored.
+	 */
+	public static ArrayDelaunayTriangulation triangulate(double[] xs, double[] ys, double[] zs) {
+		return triangulate(xs, ys, zs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * creates a Delaunay Triangulation of the given coordinates on the given
+	 * fork/join pool.
+	 *
+	 * @see #triangulate(double[], double[], double[])
+	 */
+	public static ArrayDelaunayTriangulation triangulate(double[] xs, double[] ys, double[] zs, ForkJoinPool pool) {
+		if (zs != null && zs.length != xs.length) {
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		}
+		return build(xs, ys, pool).toTriangulation(zs);
+	}
+
+	/**
+	 * Triangulates the given coordinates in parallel.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @return the counterclockwise vertex triples of all triangles, the vertex
+	 *         indices refer to the input arrays. Duplicated points are
+	 *         represented by their first occurrence.
+	 * @see ArrayDelaunayTriangulation#triangulate(double[], double[])
+	 */
+	public static int[] triangulateIndices(double[] xs, double[] ys) {
+		ParallelDelaunayTriangulation subdivision = build(xs, ys, ForkJoinPool.commonPool());
+		int[] result = subdivision.toTriangulation(null).getTriangleVertices();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = subdivision.vertexToInput[result[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * sorts the points, drops duplicates (keeping the first occurrence) and
+	 * triangulates them.
+	 */
+	private static ParallelDelaunayTriangulation build(double[] xs, double[] ys, ForkJoinPool pool) {
+		if (ys.length != xs.length) {
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		}
+		int n = xs.length;
+		double[] sortedXs = xs.clone();
+		double[] sortedYs = ys.clone();
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		pool.invoke(new SortTask(sortedXs, sortedYs, order, new double[n], new double[n], new int[n], 0, n));
+
+		int unique = 0;
+		for (int i = 0; i < n; i++) {
+			if (unique > 0 && sortedXs[unique - 1] == sortedXs[i] && sortedYs[unique - 1] == sortedYs[i])
+				continue;
+			sortedXs[unique] = sortedXs[i];
+			sortedYs[unique] = sortedYs[i];
+			order[unique] = order[i];
+			unique++;
+		}
+		ParallelDelaunayTriangulation subdivision = new ParallelDelaunayTriangulation(
+				Arrays.copyOf(sortedXs, unique), Arrays.copyOf(sortedYs, unique), Arrays.copyOf(order, unique));
+		if (unique >= 2) {
+			pool.invoke(subdivision.new Subdivision(0, unique));
+		}
+		return subdivision;
+	}
+
+	/**
+	 * stable parallel merge sort of points by x, then by y. The coordinates
+	 * are moved together with their indices, so the comparisons read memory
+	 * sequentially.
+	 */
+	@SuppressWarnings("serial")
+	private static class SortTask extends RecursiveAction {
+		private final double[] xs, ys, bufferXs, bufferYs;
+		private final int[] order, buffer;
+		private final int from, to;
+
+		SortTask(double[] xs, double[] ys, int[] order, double[] bufferXs, double[] bufferYs, int[] buffer, int from,
+				int to) {
+			this.xs = xs;
+			this.ys = ys;
+			this.order = order;
+			this.bufferXs = bufferXs;
+			this.bufferYs = bufferYs;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SORT_THRESHOLD) {
+				sort(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SortTask(xs, ys, order, bufferXs, bufferYs, buffer, from, mid),
+					new SortTask(xs, ys, order, bufferXs, bufferYs, buffer, mid, to));
+			merge(from, mid, to);
+		}
+
+		private void sort(int lo, int hi) {
+			if (hi - lo < 16) {
+				for (int i = lo + 1; i < hi; i++) {
+					double x = xs[i], y = ys[i];
+					int v = order[i];
+					int j = i - 1;
+					while (j >= lo && compare(xs[j], ys[j], x, y) > 0) {
+						xs[j + 1] = xs[j];
+						ys[j + 1] = ys[j];
+						order[j + 1] = order[j];
+						j--;
+					}
+					xs[j + 1] = x;
+					ys[j + 1] = y;
+					order[j + 1] = v;
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			sort(lo, mid);
+			sort(mid, hi);
+			merge(lo, mid, hi);
+		}
+
+		private void merge(int lo, int mid, int hi) {
+			if (compare(xs[mid - 1], ys[mid - 1], xs[mid], ys[mid]) <= 0)
+				return;
+			System.arraycopy(xs, lo, bufferXs, lo, hi - lo);
+			System.arraycopy(ys, lo, bufferYs, lo, hi - lo);
+			System.arraycopy(order, lo, buffer, lo, hi - lo);
+			int i = lo, j = mid, k = lo;
+			while (i < mid && j < hi) {
+				int s = compare(bufferXs[j], bufferYs[j], bufferXs[i], bufferYs[i]) < 0 ? j++ : i++;
+				xs[k] = bufferXs[s];
+				ys[k] = bufferYs[s];
+				order[k++] = buffer[s];
+			}
+			System.arraycopy(bufferXs, i, xs, k, mid - i);
+			System.arraycopy(bufferYs, i, ys, k, mid - i);
+			System.arraycopy(buffer, i, order, k, mid - i);
+			// the rest of the right half is already in place
+		}
+
+		private static int compare(double x1, double y1, double x2, double y2) {
+			int result = Double.compare(x1, x2);
+			return result != 0 ? result : Double.compare(y1, y2);
+		}
+	}
+
+	/**
+	 * the result of a subdivision: its counterclockwise convex hull edge out
+	 * of the leftmost point and its clockwise hull edge out of the rightmost
+	 * point, together with the edge slots it owns.
+	 */
+	private static final class Hull {
+		private final int ldo, rdo;
+		private final EdgeAllocator edges;
+
+		Hull(int ldo, int rdo, EdgeAllocator edges) {
+			this.ldo = ldo;
+			this.rdo = rdo;
+			this.edges = edges;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private final class Subdivision extends RecursiveTask<Hull> {
+		private final int lo, hi;
+
+		Subdivision(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected Hull compute() {
+			if (hi - lo <= SEQUENTIAL_THRESHOLD) {
+				EdgeAllocator edges = new EdgeAllocator(3 * lo, 3 * hi);
+				long hull = delaunay(lo, hi, edges);
+				return new Hull(first(hull), second(hull), edges);
+			}
+			int mid = (lo + hi) >>> 1;
+			Subdivision left = new Subdivision(lo, mid);
+			left.fork();
+			Hull right = new Subdivision(mid, hi).compute();
+			Hull leftHull = left.join();
+			EdgeAllocator edges = leftHull.edges.join(right.edges);
+			long hull = merge(leftHull.ldo, leftHull.rdo, right.ldo, right.rdo, edges);
+			return new Hull(first(hull), second(hull), edges);
+		}
+	}
+
+	/**
+	 * triangulates the points [lo, hi) sequentially.
+	 *
+	 * @return the hull edges ldo and rdo, see {@link #pack(int, int)}
+	 */
+	private long delaunay(int lo, int hi, EdgeAllocator edges) {
+		int n = hi - lo;
+		if (n == 2) {
+			int a = makeEdge(lo, lo + 1, edges);
+			return pack(a, sym(a));
+		}
+		if (n == 3) {
+			int s1 = lo, s2 = lo + 1, s3 = lo + 2;
+			int a = makeEdge(s1, s2, edges);
+			int b = makeEdge(s2, s3, edges);
+			splice(sym(a), b);
+			if (ccw(s1, s2, s3)) {
+				connect(b, a, edges);
+				return pack(a, sym(b));
+			} else if (ccw(s1, s3, s2)) {
+				int c = connect(b, a, edges);
+				return pack(sym(c), c);
+			}
+			// the three points are collinear
+			return pack(a, sym(b));
+		}
+		int mid = (lo + hi) >>> 1;
+		long left = delaunay(lo, mid, edges);
+		long right = delaunay(mid, hi, edges);
+		return merge(first(left), second(left), first(right), second(right), edges);
+	}
+
+	/**
+	 * merges two adjacent subdivisions.
+	 *
+	 * @return the hull edges ldo and rdo of the merged subdivision
+	 */
+	private long merge(int ldo, int ldi, int rdi, int rdo, EdgeAllocator edges) {
+		// compute the lower common tangent of the two hulls
+		while (true) {
+			if (leftOf(org[rdi], ldi)) {
+				ldi = lnext(ldi);
+			} else if (rightOf(org[ldi], rdi)) {
+				rdi = rprev(rdi);
+			} else {
+				break;
+			}
+		}
+
+		int basel = connect(sym(rdi), ldi, edges);
+		if (org[ldi] == org[ldo])
+			ldo = sym(basel);
+		if (org[rdi] == org[rdo])
+			rdo = basel;
+
+		// rising bubble: add cross edges from bottom to top
+		while (true) {
+			int lcand = onext[sym(basel)];
+			if (valid(lcand, basel)) {
+				while (inCircle(dest(basel), org[basel], dest(lcand), dest(onext[lcand]))) {
+					int t = onext[lcand];
+					deleteEdge(lcand, edges);
+					lcand = t;
+				}
+			}
+			int rcand = oprev[basel];
+			if (valid(rcand, basel)) {
+				while (inCircle(dest(basel), org[basel], dest(rcand), dest(oprev[rcand]))) {
+					int t = oprev[rcand];
+					deleteEdge(rcand, edges);
+					rcand = t;
+				}
+			}
+			boolean leftValid = valid(lcand, basel);
+			boolean rightValid = valid(rcand, basel);
+			if (!leftValid && !rightValid)
+				break;
+			if (!leftValid || (rightValid && inCircle(dest(lcand), org[lcand], org[rcand], dest(rcand)))) {
+				basel = connect(rcand, sym(basel), edges);
+			} else {
+				basel = connect(sym(basel), sym(lcand), edges);
+			}
+		}
+		return pack(ldo, rdo);
+	}
+
+	private int makeEdge(int from, int to, EdgeAllocator edges) {
+		int e = 2 * edges.allocate();
+		int s = e + 1;
+		org[e] = from;
+		org[s] = to;
+		onext[e] = e;
+		oprev[e] = e;
+		onext[s] = s;
+		oprev[s] = s;
+		return e;
+	}
+
+	/**
+	 * exchanges the successors of a and b in their rings around the origin.
+	 * Joins two rings or splits one.
+	 */
+	private void splice(int a, int b) {
+		int an = onext[a], bn = onext[b];
+		onext[a] = bn;
+		onext[b] = an;
+		oprev[bn] = a;
+		oprev[an] = b;
+	}
+
+	/**
+	 * adds an edge from the destination of a to the origin of b.
+	 */
+	private int connect(int a, int b, EdgeAllocator edges) {
+		int e = makeEdge(dest(a), org[b], edges);
+		splice(e, lnext(a));
+		splice(sym(e), b);
+		return e;
+	}
+
+	private void deleteEdge(int e, EdgeAllocator edges) {
+		int s = sym(e);
+		splice(e, oprev[e]);
+		splice(s, oprev[s]);
+		org[e] = -1;
+		org[s] = -1;
+		edges.free(e >> 1);
+	}
+
+	private static int sym(int e) {
+		return e ^ 1;
+	}
+
+	private int dest(int e) {
+		return org[e ^ 1];
+	}
+
+	/** the next edge counterclockwise around the left face of e */
+	private int lnext(int e) {
+		return oprev[e ^ 1];
+	}
+
+	/** the previous edge around the right face of e */
+	private int rprev(int e) {
+		return onext[e ^ 1];
+	}
+
+	private boolean leftOf(int p, int e) {
+		return ccw(p, org[e], dest(e));
+	}
+
+	private boolean rightOf(int p, int e) {
+		return ccw(p, dest(e), org[e]);
+	}
+
+	private boolean valid(int e, int basel) {
+		return rightOf(dest(e), basel);
+	}
+
+	private boolean ccw(int a, int b, int c) {
+		return GeometricPredicates.orient2d(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c]) > 0;
+	}
+
+	/**
+	 * @return true iff d lies strictly inside the circumcircle of the
+	 *         counterclockwise triangle a, b, c.
+	 */
+	private boolean inCircle(int a, int b, int c, int d) {
+		return GeometricPredicates.incircle(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c], xs[d], ys[d]) > 0;
+	}
+
+	private static long pack(int first, int second) {
+		return ((long) first << 32) | (second & 0xFFFFFFFFL);
+	}
+
+	private static int first(long packed) {
+		return (int) (packed >> 32);
+	}
+
+	private static int second(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * converts the quad-edge structure to the half-edge arrays of an
+	 * {@link ArrayDelaunayTriangulation}: every counterclockwise face of three
+	 * edges becomes a triangle, every edge of the outer face a ghost triangle.
+	 */
+	private ArrayDelaunayTriangulation toTriangulation(double[] inputZs) {
+		int n = xs.length;
+		double[] zs = new double[n];
+		if (inputZs != null) {
+			for (int v = 0; v < n; v++) {
+				zs[v] = inputZs[vertexToInput[v]];
+			}
+		}
+		int directedEdges = org.length;
+		int[] halfedgeOf = new int[directedEdges];
+		Arrays.fill(halfedgeOf, -1);
+		int[] triangles = new int[9 * Math.max(n, 1)];
+		int[] halfedges = new int[triangles.length];
+		int count = 0;
+
+		for (int e = 0; e < directedEdges; e++) {
+			if (org[e] < 0 || halfedgeOf[e] >= 0)
+				continue;
+			int e1 = lnext(e), e2 = lnext(e1);
+			if (lnext(e2) == e && ccw(org[e], org[e1], org[e2])) {
+				int t = 3 * count++;
+				halfedgeOf[e] = t;
+				halfedgeOf[e1] = t + 1;
+				halfedgeOf[e2] = t + 2;
+				triangles[t] = org[e];
+				triangles[t + 1] = org[e1];
+				triangles[t + 2] = org[e2];
+			}
+		}
+		if (count == 0) {
+			// all points are collinear
+			return new ArrayDelaunayTriangulation(xs, ys, zs, n, triangles, halfedges, 0);
+		}
+		for (int e = 0; e < directedEdges; e++) {
+			if (org[e] >= 0 && halfedgeOf[e] < 0) {
+				int g = 3 * count++;
+				halfedgeOf[e] = g;
+				triangles[g] = org[e];
+				triangles[g + 1] = dest(e);
+				triangles[g + 2] = ArrayDelaunayTriangulation.GHOST;
+			}
+		}
+		for (int e = 0; e < directedEdges; e++) {
+			if (org[e] < 0)
+				continue;
+			int h = halfedgeOf[e];
+			halfedges[h] = halfedgeOf[sym(e)];
+			if (triangles[h + 2] == ArrayDelaunayTriangulation.GHOST) {
+				// the ghost of the next hull edge (clockwise) shares the edge to the ghost vertex
+				int next = halfedgeOf[lnext(e)];
+				halfedges[h + 1] = next + 2;
+				halfedges[next + 2] = h + 1;
+			}
+		}
+		return new ArrayDelaunayTriangulation(xs, ys, zs, n, triangles, halfedges, count);
+	}
+
+	/**
+	 * hands out the edge slots of a subdivision: first the slots freed by
+	 * deleted edges, then the untouched ranges of the subdivision.
+	 */
+	private final class EdgeAllocator {
+		// untouched slot ranges [start, end)
+		private int[] starts = new int[4];
+		private int[] ends = new int[4];
+		private int ranges;
+		// freed slots, chained through onext
+		private int freeHead = -1;
+		private int freeTail = -1;
+
+		EdgeAllocator(int start, int end) {
+			starts[0] = start;
+			ends[0] = end;
+			ranges = 1;
+		}
+
+		int allocate() {
+			if (freeHead >= 0) {
+				int q = freeHead;
+				freeHead = onext[2 * q];
+				if (freeHead < 0)
+					freeTail = -1;
+				return q;
+			}
+			while (ranges > 0) {
+				int r = ranges - 1;
+				if (starts[r] < ends[r]) {
+					return starts[r]++;
+				}
+				ranges--;
+			}
+			throw new IllegalStateException("subdivision exceeds its edge slots");
+		}
+
+		void free(int q) {
+			onext[2 * q] = -1;
+			if (freeTail >= 0) {
+				onext[2 * freeTail] = q;
+			} else {
+				freeHead = q;
+			}
+			freeTail = q;
+		}
+
+		/**
+		 * @return this allocator, owning the slots of the other one too
+		 */
+		EdgeAllocator join(EdgeAllocator other) {
+			for (int r = 0; r < other.ranges; r++) {
+				if (ranges == starts.length) {
+					starts = Arrays.copyOf(starts, 2 * ranges);
+					ends = Arrays.copyOf(ends, 2 * ranges);
+				}
+				starts[ranges] = other.starts[r];
+				ends[ranges] = other.ends[r];
+				ranges++;
+			}
+			if (other.freeHead >= 0) {
+				if (freeTail >= 0) {
+					onext[2 * freeTail] = other.freeHead;
+				} else {
+					freeHead = other.freeHead;
+				}
+				freeTail = other.freeTail;
+			}
+			return this;
+		}
+	}
+}
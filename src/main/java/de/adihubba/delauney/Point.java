@@ -129,7 +129,8 @@ public class Point implements Comparable<Point>, Serializable {
 	/**
 	 * tests the relation between this point (as a 2D [x,y] point) and a 2D
 	 * segment a,b (the Z values are ignored), returns one of the following:
-	 * LEFT, RIGHT, INFRONTOFA, BEHINDB, ONSEGMENT
+	 * LEFT, RIGHT, INFRONTOFA, BEHINDB, ONSEGMENT <br />
+	 * The side test is exact (see {@link GeometricPredicates}).
 	 * 
 	 * @param a
 	 *            the first point of the segment.
@@ -140,15 +141,14 @@ public class Point implements Comparable<Point>, Serializable {
 	 */
 	public int pointLineTest(Point a, Point b) {
 
-		double dx = b.x - a.x;
-		double dy = b.y - a.y;
-		double res = dy * (x - a.x) - dx * (y - a.y);
-
-		if (res < 0)
+		double orient = GeometricPredicates.orient2d(a.x, a.y, b.x, b.y, x, y);
+		if (orient > 0)
 			return LEFT;
-		if (res > 0)
+		if (orient < 0)
 			return RIGHT;
 
+		double dx = b.x - a.x;
+		double dy = b.y - a.y;
 		if (dx > 0) {
 			if (x < a.x)
 				return INFRONTOFA;
@@ -182,10 +182,7 @@ public class Point implements Comparable<Point>, Serializable {
 	}
 
 	boolean areCollinear(Point a, Point b) {
-		double dx = b.x - a.x;
-		double dy = b.y - a.y;
-		double res = dy * (x - a.x) - dx * (y - a.y);
-		return res == 0.0;
+		return GeometricPredicates.orient2d(a.x, a.y, b.x, b.y, x, y) == 0;
 	}
 
 	/*
@@ -195,15 +192,6 @@ public class Point implements Comparable<Point>, Serializable {
 	 * ajSegment( p1,p2 ); }
 	 */
 
-	Point circumcenter(Point a, Point b) {
-		double u = ((a.x - b.x) * (a.x + b.x) + (a.y - b.y) * (a.y + b.y)) / 2.0f;
-		double v = ((b.x - x) * (b.x + x) + (b.y - y) * (b.y + y)) / 2.0f;
-		double den = (a.x - b.x) * (b.y - y) - (b.x - x) * (a.y - b.y);
-		if (den == 0.0) // oops
-			System.out.println("circumcenter, degenerate case");
-		return new Point((u * (b.y - y) - v * (a.y - b.y)) / den, (v * (a.x - b.x) - u * (b.x - x)) / den);
-	}
-
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,46 @@
+package de.adihubba.delauney;
+
+import java.util.Collection;
+
+/**
+ * A spatial index that finds a good start triangle for the point location
+ * walk of a {@link DelaunayTriangulation}. <br>
+ * The triangulation asks the locator in {@link DelaunayTriangulation#find} and
+ * before every insertion, and reports every insertion and deletion to it. The
+ * returned triangle only has to be close to the query point, the walk does
+ * the rest; returning null falls back to the last updated triangle.
+ *
+ * @see GridIndex
+ * @see QuadtreeLocator
+ * @see DelaunayHierarchyLocator
+ */
+public interface PointLocator {
+
+	/**
+	 * @param p
+	 *            query point.
+	 * @return a live triangle of the triangulation close to p, or null.
+	 */
+	Triangle startTriangle(Point p);
+
+	/**
+	 * called after p was inserted.
+	 *
+	 * @param p
+	 *            the new vertex.
+	 * @param incident
+	 *            a triangle that has p as a corner.
+	 */
+	void pointInserted(Point p, Triangle incident);
+
+	/**
+	 * called after points were deleted.
+	 *
+	 * @param points
+	 *            the deleted vertices.
+	 * @param addedTriangles
+	 *            the triangles that fill the holes the points left, half
+	 *            planes included.
+	 */
+	void pointsDeleted(Collection<Point> points, Collection<Triangle> addedTriangles);
+}
@@ -0,0 +1,347 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A TIN stored as a sequence of refinements: level 0 is the triangulation of
+ * the corners of the convex hull, level l has the first l points of the
+ * greedy insertion order of {@link TinSimplifier} inserted as well, each with
+ * the vertical error the triangulation of that level has. <br>
+ * Every triangle that ever existed during the insertions is stored once, with
+ * the level that created it and the level that destroyed it, in the order
+ * they were created. The triangles of level l are therefore among the
+ * triangles created up to level l, which are a prefix of the list, and a level
+ * is extracted in time proportional to its size (an insertion creates about
+ * six triangles) without triangulating anything. Coarse previews and the
+ * finer levels of the same surface share all of it.
+ */
+public final class ProgressiveTin {
+
+	// the vertices, the hull corners first and then in the order of insertion
+	private final double[] xs, ys, zs;
+	private final int hullCount;
+
+	// errors[l] is the error of level l
+	private final double[] errors;
+
+	// the triangles in the order they were created: 3 vertices each,
+	// counterclockwise, and the level that created and destroyed them
+	private final int[] corners;
+	private final int[] born;
+	private final int[] died;
+
+	// ends[l] is the number of triangles created up to level l
+	private final int[] ends;
+
+	// prefixMin[l] is the smallest error of the levels up to l
+	private final double[] prefixMin;
+
+	private ProgressiveTin(Recorder recorder, double finalError) {
+		int vertexCount = recorder.vertexCount;
+		xs = Arrays.copyOf(recorder.xs, vertexCount);
+		ys = Arrays.copyOf(recorder.ys, vertexCount);
+		zs = Arrays.copyOf(recorder.zs, vertexCount);
+		hullCount = recorder.hullCount;
+		int levels = vertexCount - hullCount + 1;
+		errors = Arrays.copyOf(recorder.errors, levels);
+		errors[levels - 1] = finalError;
+		int triangleCount = recorder.triangleCount;
+		corners = Arrays.copyOf(recorder.corners, 3 * triangleCount);
+		born = Arrays.copyOf(recorder.born, triangleCount);
+		died = Arrays.copyOf(recorder.died, triangleCount);
+		ends = new int[levels];
+		for (int t = 0; t < triangleCount; t++) {
+			ends[born[t]] = t + 1;
+		}
+		for (int l = 1; l < levels; l++) {
+			ends[l] = Math.max(ends[l], ends[l - 1]);
+		}
+		prefixMin = new double[levels];
+		double min = Double.POSITIVE_INFINITY;
+		for (int l = 0; l < levels; l++) {
+			min = Math.min(min, errors[l]);
+			prefixMin[l] = min;
+		}
+	}
+
+	/**
+	 * simplifies the points greedily and records every step. Fewer than three
+	 * points, or collinear ones, give a single level without triangles.
+	 *
+	 * @param xs
+	 *            the x coordinates of the points
+	 * @param ys
+	 *            the y coordinates of the points
+	 * @param zs
+	 *            the heights of the points
+	 * @param maxError
+	 *            the error of the finest level, 0 to refine until all points
+	 *            are on the surface
+	 * @param maxVertices
+	 *            the largest number of vertices of the finest level
+	 * @return the levels.
+	 */
+	public static ProgressiveTin build(double[] xs, double[] ys, double[] zs, double maxError, int maxVertices) {
+		Recorder recorder = new Recorder();
+		if (xs.length == 0) {
+			// nothing to simplify, a single empty level
+			recorder.finish();
+			return new ProgressiveTin(recorder, 0);
+		}
+		TinSimplifier simplifier = new TinSimplifier(xs, ys, zs);
+		simplifier.simplify(maxError, maxVertices, recorder);
+		recorder.finish();
+		return new ProgressiveTin(recorder, simplifier.getError());
+	}
+
+	/**
+	 * @return the number of levels, level 0 is the convex hull and the last
+	 *         level is the finest.
+	 */
+	public int getLevelCount() {
+		return errors.length;
+	}
+
+	/**
+	 * @return the number of vertices of level.
+	 */
+	public int getVertexCount(int level) {
+		checkLevel(level);
+		return hullCount + level;
+	}
+
+	/**
+	 * @return the largest vertical distance of a point to the surface of
+	 *         level.
+	 */
+	public double getError(int level) {
+		checkLevel(level);
+		return errors[level];
+	}
+
+	/**
+	 * @return the coarsest level with an error of at most maxError, the finest
+	 *         level if there is none.
+	 */
+	public int levelForError(double maxError) {
+		int lo = 0, hi = prefixMin.length - 1;
+		if (!(prefixMin[hi] <= maxError))
+			return hi;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (prefixMin[mid] <= maxError) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return the finest level with at most maxVertices vertices, level 0 if
+	 *         even that has more.
+	 */
+	public int levelForVertices(int maxVertices) {
+		return Math.max(0, Math.min(errors.length - 1, maxVertices - hullCount));
+	}
+
+	/**
+	 * @return the number of vertices of the finest level. The vertices of
+	 *         level l are the vertices 0 to {@link #getVertexCount(int)} - 1.
+	 */
+	public int size() {
+		return xs.length;
+	}
+
+	public double getX(int vertex) {
+		return xs[vertex];
+	}
+
+	public double getY(int vertex) {
+		return ys[vertex];
+	}
+
+	public double getZ(int vertex) {
+		return zs[vertex];
+	}
+
+	/**
+	 * @return the number of triangles of level.
+	 */
+	public int getTriangleCount(int level) {
+		checkLevel(level);
+		int count = 0;
+		for (int t = 0; t < ends[level]; t++) {
+			if (died[t] > level)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the triangles of level as vertex indices, triangle i is (3i,
+	 *         3i+1, 3i+2) in counterclockwise order.
+	 */
+	public int[] getTriangles(int level) {
+		checkLevel(level);
+		int[] result = new int[3 * ends[level]];
+		int size = 0;
+		for (int t = 0; t < ends[level]; t++) {
+			if (died[t] > level) {
+				System.arraycopy(corners, 3 * t, result, size, 3);
+				size += 3;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private void checkLevel(int level) {
+		if (level < 0 || level >= errors.length)
+			throw new IllegalArgumentException("there is no level " + level + ", the levels are 0 to "
+					+ (errors.length - 1));
+	}
+
+	/**
+	 * collects the vertices and triangles from the journal of the simplified
+	 * triangulation.
+	 */
+	private static final class Recorder implements TinSimplifier.Recorder {
+
+		double[] xs = new double[16], ys = new double[16], zs = new double[16];
+		int vertexCount;
+		int hullCount;
+		double[] errors = new double[16];
+
+		int[] corners = new int[48];
+		int[] born = new int[16], died = new int[16];
+		int triangleCount;
+
+		private final Map<Point, Integer> ids = new IdentityHashMap<Point, Integer>();
+		// the triangles alive in the triangulation, by their corners
+		private final Map<Key, Integer> alive = new HashMap<Key, Integer>();
+		private DelaunayTriangulation delaunay;
+		private long checkpoint;
+
+		@Override
+		public void started(DelaunayTriangulation delaunay) {
+			this.delaunay = delaunay;
+			for (Iterator<Point> it = delaunay.verticesIterator(); it.hasNext();) {
+				addVertex(it.next());
+			}
+			hullCount = vertexCount;
+			for (Iterator<Triangle> it = delaunay.trianglesIterator(); it.hasNext();) {
+				Triangle t = it.next();
+				if (!t.isHalfplane())
+					addTriangle(t.getA(), t.getB(), t.getC(), 0);
+			}
+			checkpoint = delaunay.journalCheckpoint();
+		}
+
+		@Override
+		public void inserted(Point p, double error) {
+			int level = vertexCount - hullCount;
+			if (level == errors.length)
+				errors = Arrays.copyOf(errors, 2 * level);
+			errors[level] = error;
+			addVertex(p);
+			level++;
+
+			TriangleChanges changes = delaunay.getChangesSince(checkpoint);
+			checkpoint = changes.getTo();
+			delaunay.trimJournal(checkpoint);
+			Point[] destroyed = changes.getDestroyed();
+			for (int i = 0; i < destroyed.length; i += 3) {
+				Integer t = alive.remove(key(destroyed[i], destroyed[i + 1], destroyed[i + 2]));
+				if (t == null)
+					throw new IllegalStateException("the journal destroyed an unknown triangle");
+				died[t] = level;
+			}
+			Point[] created = changes.getCreated();
+			for (int i = 0; i < created.length; i += 3) {
+				addTriangle(created[i], created[i + 1], created[i + 2], level);
+			}
+		}
+
+		void finish() {
+			if (delaunay != null)
+				delaunay.stopJournal();
+			if (errors.length == vertexCount - hullCount)
+				errors = Arrays.copyOf(errors, errors.length + 1);
+			alive.clear();
+			ids.clear();
+		}
+
+		private void addVertex(Point p) {
+			if (vertexCount == xs.length) {
+				xs = Arrays.copyOf(xs, 2 * vertexCount);
+				ys = Arrays.copyOf(ys, 2 * vertexCount);
+				zs = Arrays.copyOf(zs, 2 * vertexCount);
+			}
+			xs[vertexCount] = p.getX();
+			ys[vertexCount] = p.getY();
+			zs[vertexCount] = p.getZ();
+			ids.put(p, vertexCount++);
+		}
+
+		private void addTriangle(Point a, Point b, Point c, int level) {
+			if (triangleCount == born.length) {
+				corners = Arrays.copyOf(corners, 6 * triangleCount);
+				born = Arrays.copyOf(born, 2 * triangleCount);
+				died = Arrays.copyOf(died, 2 * triangleCount);
+			}
+			int t = triangleCount++;
+			corners[3 * t] = ids.get(a);
+			corners[3 * t + 1] = ids.get(b);
+			corners[3 * t + 2] = ids.get(c);
+			born[t] = level;
+			died[t] = Integer.MAX_VALUE;
+			alive.put(key(a, b, c), t);
+		}
+
+		private Key key(Point a, Point b, Point c) {
+			return new Key(ids.get(a), ids.get(b), ids.get(c));
+		}
+	}
+
+	/**
+	 * the corners of a triangle, rotated to start with the smallest.
+	 */
+	private static final class Key {
+
+		final int a, b, c;
+
+		Key(int a, int b, int c) {
+			if (a < b && a < c) {
+				this.a = a;
+				this.b = b;
+				this.c = c;
+			} else if (b < c) {
+				this.a = b;
+				this.b = c;
+				this.c = a;
+			} else {
+				this.a = c;
+				this.b = a;
+				this.c = b;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return (a * 31 + b) * 31 + c;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return a == other.a && b == other.b && c == other.c;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An adaptive quadtree over the vertices of a triangulation for fast point
+ * location. <br>
+ * Every leaf holds up to BUCKET_SIZE vertices, each with a triangle that had
+ * the vertex as a corner when it was inserted; a full leaf is split in four.
+ * So dense clusters get deep cells and empty areas stay coarse, and a query
+ * descends O(log n) levels independent of the point distribution. The query
+ * returns the triangle of the nearest vertex in its leaf (or the last
+ * triangle inserted below the deepest cell containing the query), from which
+ * the walk of the triangulation is short. <br>
+ * The tree grows by adding a new root around the old one, so points outside
+ * the current region never force a rebuild.
+ */
+public class QuadtreeLocator implements PointLocator {
+
+	/** vertices per leaf before it is split */
+	private static final int BUCKET_SIZE = 8;
+
+	/** leaves at this depth are not split any more */
+	private static final int MAX_DEPTH = 64;
+
+	private Node root;
+
+	/**
+	 * creates an empty quadtree, it indexes the vertices reported by
+	 * {@link #pointInserted}.
+	 */
+	public QuadtreeLocator() {
+	}
+
+	/**
+	 * creates a quadtree indexing the current vertices of delaunay.
+	 *
+	 * @param delaunay
+	 *            triangulation to index
+	 */
+	public QuadtreeLocator(DelaunayTriangulation delaunay) {
+		Map<Point, Boolean> indexed = new IdentityHashMap<Point, Boolean>();
+		for (Iterator<Triangle> it = delaunay.trianglesIterator(); it.hasNext();) {
+			Triangle t = it.next();
+			if (!t.isHalfplane()) {
+				insertOnce(t.getA(), t, indexed);
+				insertOnce(t.getB(), t, indexed);
+				insertOnce(t.getC(), t, indexed);
+			}
+		}
+	}
+
+	private void insertOnce(Point p, Triangle t, Map<Point, Boolean> indexed) {
+		if (indexed.put(p, Boolean.TRUE) == null) {
+			insert(p, t);
+		}
+	}
+
+	@Override
+	public Triangle startTriangle(Point p) {
+		if (root == null) {
+			return null;
+		}
+		double x = p.getX();
+		double y = p.getY();
+		Node n = root;
+		Triangle best = live(n.hint);
+		if (!n.contains(x, y)) {
+			return best;
+		}
+		while (n.children != null) {
+			n = n.children[n.quadrant(x, y)];
+			Triangle hint = live(n.hint);
+			if (hint != null) {
+				best = hint;
+			}
+		}
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n.count; i++) {
+			Triangle t = live(n.triangles[i]);
+			if (t != null) {
+				double dx = n.points[i].getX() - x;
+				double dy = n.points[i].getY() - y;
+				double distance = dx * dx + dy * dy;
+				if (distance < bestDistance) {
+					bestDistance = distance;
+					best = t;
+				}
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public void pointInserted(Point p, Triangle incident) {
+		insert(p, incident);
+	}
+
+	@Override
+	public void pointsDeleted(Collection<Point> points, Collection<Triangle> addedTriangles) {
+		if (root == null) {
+			return;
+		}
+		for (Point p : points) {
+			remove(p);
+		}
+		// the corners of the holes lost triangles, hand them the new ones
+		for (Triangle t : addedTriangles) {
+			replace(t.getA(), t);
+			replace(t.getB(), t);
+			if (!t.isHalfplane()) {
+				replace(t.getC(), t);
+			}
+		}
+	}
+
+	private void insert(Point p, Triangle t) {
+		double x = p.getX();
+		double y = p.getY();
+		if (Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y)) {
+			return;
+		}
+		if (root == null) {
+			root = new Node(x - 0.5, y - 0.5, 1);
+		}
+		while (!root.contains(x, y)) {
+			if (!grow(x, y)) {
+				return;
+			}
+		}
+		Node n = root;
+		int depth = 0;
+		while (true) {
+			n.hint = t;
+			if (n.children == null) {
+				if (n.count < BUCKET_SIZE || depth >= MAX_DEPTH) {
+					n.add(p, t);
+					return;
+				}
+				n.split();
+			}
+			n = n.children[n.quadrant(x, y)];
+			depth++;
+		}
+	}
+
+	// doubles the root towards (x, y), false if the size overflows
+	private boolean grow(double x, double y) {
+		double size = root.size;
+		if (Double.isInfinite(2 * size)) {
+			return false;
+		}
+		boolean left = x < root.minX;
+		boolean below = y < root.minY;
+		double minX = left ? root.minX - size : root.minX;
+		double minY = below ? root.minY - size : root.minY;
+		Node parent = new Node(minX, minY, 2 * size);
+		parent.children = new Node[4];
+		int rootQuadrant = (left ? 1 : 0) | (below ? 2 : 0);
+		for (int q = 0; q < 4; q++) {
+			if (q == rootQuadrant) {
+				parent.children[q] = root;
+			} else {
+				parent.children[q] = new Node(minX + ((q & 1) != 0 ? size : 0), minY + ((q & 2) != 0 ? size : 0), size);
+			}
+		}
+		parent.hint = root.hint;
+		root = parent;
+		return true;
+	}
+
+	private Node leafOf(Point p) {
+		double x = p.getX();
+		double y = p.getY();
+		Node n = root;
+		if (!n.contains(x, y)) {
+			return null;
+		}
+		while (n.children != null) {
+			n = n.children[n.quadrant(x, y)];
+		}
+		return n;
+	}
+
+	private void remove(Point p) {
+		Node leaf = leafOf(p);
+		if (leaf != null) {
+			leaf.remove(p);
+		}
+	}
+
+	private void replace(Point p, Triangle t) {
+		Node leaf = leafOf(p);
+		if (leaf != null) {
+			int i = leaf.indexOf(p);
+			if (i >= 0) {
+				leaf.triangles[i] = t;
+			}
+			if (live(leaf.hint) == null) {
+				leaf.hint = t;
+			}
+		}
+	}
+
+	private static Triangle live(Triangle t) {
+		return t != null && t.isLive() ? t : null;
+	}
+
+	/**
+	 * a square cell, a leaf holds the vertices inside it.
+	 */
+	private static final class Node {
+
+		private final double minX, minY, size;
+
+		// null for a leaf, else the quadrants (x low/high, y low/high)
+		private Node[] children;
+
+		// the triangle of the last vertex inserted below this cell
+		private Triangle hint;
+
+		private Point[] points;
+		private Triangle[] triangles;
+		private int count;
+
+		Node(double minX, double minY, double size) {
+			this.minX = minX;
+			this.minY = minY;
+			this.size = size;
+		}
+
+		boolean contains(double x, double y) {
+			return x >= minX && x < minX + size && y >= minY && y < minY + size;
+		}
+
+		int quadrant(double x, double y) {
+			double half = size / 2;
+			return (x >= minX + half ? 1 : 0) | (y >= minY + half ? 2 : 0);
+		}
+
+		void add(Point p, Triangle t) {
+			if (points == null) {
+				points = new Point[BUCKET_SIZE];
+				triangles = new Triangle[BUCKET_SIZE];
+			} else if (count == points.length) {
+				points = Arrays.copyOf(points, 2 * count);
+				triangles = Arrays.copyOf(triangles, 2 * count);
+			}
+			points[count] = p;
+			triangles[count++] = t;
+		}
+
+		int indexOf(Point p) {
+			for (int i = 0; i < count; i++) {
+				if (points[i].equals(p)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void remove(Point p) {
+			int i = indexOf(p);
+			if (i >= 0) {
+				count--;
+				points[i] = points[count];
+				triangles[i] = triangles[count];
+				points[count] = null;
+				triangles[count] = null;
+			}
+		}
+
+		void split() {
+			double half = size / 2;
+			children = new Node[4];
+			for (int q = 0; q < 4; q++) {
+				children[q] = new Node(minX + ((q & 1) != 0 ? half : 0), minY + ((q & 2) != 0 ? half : 0), half);
+			}
+			for (int i = 0; i < count; i++) {
+				Node child = children[quadrant(points[i].getX(), points[i].getY())];
+				child.add(points[i], triangles[i]);
+				child.hint = triangles[i];
+			}
+			points = null;
+			triangles = null;
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+
+/**
+ * The compact variant of {@link ArrayDelaunayTriangulation}: the vertices are
+ * snapped to a square grid of 2^{@link #BITS} x 2^{@link #BITS} cells over the
+ * bounds of the data set, and kept as <code>int</code> grid coordinates and a
+ * <code>float</code> height. A vertex costs 16 bytes instead of 28; the
+ * triangles are stored as half-edges exactly like in
+ * {@link ArrayDelaunayTriangulation}. <br>
+ * On the grid the predicates are evaluated exactly in integer arithmetic: the
+ * orientation in <code>long</code>, the in-circle test in 128 bits (see
+ * {@link Math#multiplyHigh(long, long)}), without the floating point filters
+ * and expansions of {@link GeometricPredicates}. The triangulation is the
+ * Delaunay triangulation of the snapped points, cocircular points are broken
+ * by the same rule as in {@link ArrayDelaunayTriangulation}. <br>
+ * Points snapping to the same cell are duplicates, the first one is kept. 24
+ * bits are a float mantissa, which is all a display surface receives anyway.
+ *
+ * @see ArrayDelaunayTriangulation
+ */
+public final class QuantizedDelaunayTriangulation extends HalfEdgeTriangulation {
+
+	/** the bits of a grid coordinate */
+	public static final int BITS = 24;
+
+	/** the vertex index of the (infinite) ghost vertex of hull triangles */
+	public static final int GHOST = ArrayDelaunayTriangulation.GHOST;
+
+	private static final int MAX_CELL = (1 << BITS) - 1;
+
+	// the grid, a grid coordinate q is the coordinate origin + q * step
+	private final double originX, originY, step;
+
+	// vertex storage
+	private int[] qxs;
+	private int[] qys;
+	private float[] zs;
+
+	// the Bounding Box, on the grid
+	private int minQx = Integer.MAX_VALUE, minQy = Integer.MAX_VALUE, maxQx = Integer.MIN_VALUE,
+			maxQy = Integer.MIN_VALUE;
+	private float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+	/**
+	 * creates an empty triangulation on the grid over bounds.
+	 *
+	 * @param bounds
+	 *            the area the points will be in, the longer side is cut into
+	 *            2^{@link #BITS} - 1 steps.
+	 * @param expectedVertices
+	 *            number of vertices the arrays are presized for.
+	 */
+	public QuantizedDelaunayTriangulation(BoundingBox bounds, int expectedVertices) {
+		super(expectedVertices);
+		if (bounds == null || bounds.isNull())
+			throw new IllegalArgumentException("the grid needs bounds");
+		double extent = Math.max(bounds.getWidth(), bounds.getHeight());
+		if (!(extent < Double.POSITIVE_INFINITY))
+			throw new IllegalArgumentException("the bounds are not finite: " + bounds);
+		originX = bounds.minX();
+		originY = bounds.minY();
+		step = extent > 0 ? extent / MAX_CELL : 1;
+		int capacity = vertexCapacity();
+		qxs = new int[capacity];
+		qys = new int[capacity];
+		zs = new float[capacity];
+	}
+
+	/**
+	 * creates a triangulation of the coordinates on the grid over their
+	 * bounds. Note: points in the same grid cell are duplicates, the points
+	 * are inserted in spatially sorted order.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @param zs
+	 *            z-coordinates of the points, may be null
+	 */
+	public QuantizedDelaunayTriangulation(double[] xs, double[] ys, double[] zs) {
+		this(bounds(xs, ys), xs.length);
+		insertPoints(xs, ys, zs);
+	}
+
+	/**
+	 * Triangulates the given coordinates on the grid over their bounds.
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @return the counterclockwise vertex triples of all triangles, the vertex
+	 *         indices refer to the input arrays. Points in the same grid cell
+	 *         are represented by their first occurrence.
+	 * @see ArrayDelaunayTriangulation#triangulate(double[], double[])
+	 */
+	public static int[] triangulate(double[] xs, double[] ys) {
+		QuantizedDelaunayTriangulation triangulation = new QuantizedDelaunayTriangulation(bounds(xs, ys), xs.length);
+		int[] inputToVertex = triangulation.insertPoints(xs, ys, null);
+		int[] vertexToInput = new int[triangulation.vertexCount];
+		for (int i = xs.length - 1; i >= 0; i--) {
+			vertexToInput[inputToVertex[i]] = i;
+		}
+		int[] result = triangulation.getTriangleVertices();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = vertexToInput[result[i]];
+		}
+		return result;
+	}
+
+	private static BoundingBox bounds(double[] xs, double[] ys) {
+		if (ys.length != xs.length)
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < xs.length; i++) {
+			minX = Math.min(minX, xs[i]);
+			maxX = Math.max(maxX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		if (xs.length == 0) {
+			minX = maxX = minY = maxY = 0;
+		}
+		return new BoundingBox(minX, maxX, minY, maxY, 0, 0);
+	}
+
+	/**
+	 * @return the width of a grid cell.
+	 */
+	public double getStep() {
+		return step;
+	}
+
+	/**
+	 * insert the points to this triangulation in biased randomized Hilbert
+	 * order (see {@link SpatialSort}).
+	 *
+	 * @param xs
+	 *            x-coordinates of the points
+	 * @param ys
+	 *            y-coordinates of the points
+	 * @param zs
+	 *            z-coordinates of the points, may be null
+	 * @return the vertex index of every input point (points in the same grid
+	 *         cell share the index of the same vertex).
+	 */
+	public int[] insertPoints(double[] xs, double[] ys, double[] zs) {
+		if (ys.length != xs.length || (zs != null && zs.length != xs.length)) {
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		}
+		int[] inputToVertex = new int[xs.length];
+		for (int i : SpatialSort.brioOrder(xs, ys)) {
+			inputToVertex[i] = insertPoint(xs[i], ys[i], zs == null ? 0 : zs[i]);
+		}
+		return inputToVertex;
+	}
+
+	/**
+	 * insert the point to this triangulation.
+	 *
+	 * @return the index of the new vertex, or the index of the existing vertex
+	 *         in the same grid cell.
+	 * @throws IllegalArgumentException
+	 *             if the point is outside of the grid
+	 */
+	public int insertPoint(double x, double y, double z) {
+		long gx = toGrid(x, originX), gy = toGrid(y, originY);
+		if (Double.isNaN(x) || Double.isNaN(y) || gx < 0 || gx > MAX_CELL || gy < 0 || gy > MAX_CELL)
+			throw new IllegalArgumentException("the point (" + x + ", " + y + ") is outside of the grid");
+		return insert(gx, gy, z);
+	}
+
+	/**
+	 * finds the triangle the query point falls in, the query is snapped to
+	 * the grid. If the point is outside of the convex hull a ghost triangle is
+	 * returned.
+	 *
+	 * @return the index of the triangle, -1 if there are no triangles yet
+	 *         (less than three not collinear vertices).
+	 */
+	@Override
+	public int locate(double x, double y) {
+		if (allCollinear)
+			return -1;
+		// outside of the grid is outside of the hull, a cell beyond the
+		// border is as good as the exact position
+		double qx = Math.max(-1, Math.min(MAX_CELL + 1, toGrid(x, originX)));
+		double qy = Math.max(-1, Math.min(MAX_CELL + 1, toGrid(y, originY)));
+		return walk(lastTriangle, qx, qy, nextSeed());
+	}
+
+	@Override
+	public double getX(int vertex) {
+		return originX + qxs[vertex] * step;
+	}
+
+	@Override
+	public double getY(int vertex) {
+		return originY + qys[vertex] * step;
+	}
+
+	@Override
+	public double getZ(int vertex) {
+		return zs[vertex];
+	}
+
+	/**
+	 * @return the x coordinate of vertex on the grid.
+	 */
+	public int getGridX(int vertex) {
+		return qxs[vertex];
+	}
+
+	/**
+	 * @return the y coordinate of vertex on the grid.
+	 */
+	public int getGridY(int vertex) {
+		return qys[vertex];
+	}
+
+	/**
+	 * @return The bounding rectange between the minimum and maximum
+	 *         coordinates of the vertices
+	 */
+	public BoundingBox getBoundingBox() {
+		if (vertexCount == 0)
+			return null;
+		return new BoundingBox(originX + minQx * step, originX + maxQx * step, originY + minQy * step,
+				originY + maxQy * step, minZ, maxZ);
+	}
+
+	/**
+	 * copies this triangulation, with the vertices taken off the grid, into an
+	 * {@link ArrayDelaunayTriangulation} with the same vertex and triangle
+	 * indices.
+	 */
+	public ArrayDelaunayTriangulation toArrayTriangulation() {
+		double[] xs = new double[vertexCount];
+		double[] ys = new double[vertexCount];
+		double[] zs = new double[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			xs[v] = getX(v);
+			ys[v] = getY(v);
+			zs[v] = getZ(v);
+		}
+		return new ArrayDelaunayTriangulation(xs, ys, zs, vertexCount, Arrays.copyOf(triangles, 3 * triangleCount),
+				Arrays.copyOf(halfedges, 3 * triangleCount), triangleCount);
+	}
+
+	private long toGrid(double c, double origin) {
+		return Math.round((c - origin) / step);
+	}
+
+	@Override
+	void growVertices(int capacity) {
+		qxs = Arrays.copyOf(qxs, capacity);
+		qys = Arrays.copyOf(qys, capacity);
+		zs = Arrays.copyOf(zs, capacity);
+	}
+
+	@Override
+	void setVertex(int v, double x, double y, double z) {
+		int qx = (int) x, qy = (int) y;
+		qxs[v] = qx;
+		qys[v] = qy;
+		zs[v] = (float) z;
+		minQx = Math.min(minQx, qx);
+		maxQx = Math.max(maxQx, qx);
+		minQy = Math.min(minQy, qy);
+		maxQy = Math.max(maxQy, qy);
+		minZ = Math.min(minZ, zs[v]);
+		maxZ = Math.max(maxZ, zs[v]);
+	}
+
+	@Override
+	double vertexX(int vertex) {
+		return qxs[vertex];
+	}
+
+	@Override
+	double vertexY(int vertex) {
+		return qys[vertex];
+	}
+
+	/**
+	 * @return a positive value if (qx, qy) lies left of the directed line
+	 *         from vertex a to vertex b, a negative value if it lies right of
+	 *         it and 0 if the points are collinear. Exact, the grid
+	 *         coordinates keep the products below 2^50.
+	 */
+	@Override
+	double orient(int a, int b, double qx, double qy) {
+		long ax = qxs[a], ay = qys[a];
+		return (qxs[b] - ax) * ((long) qy - ay) - (qys[b] - ay) * ((long) qx - ax);
+	}
+
+	/**
+	 * @return the sign of the in-circle determinant, positive if d is inside
+	 *         the circle through the counterclockwise a, b, c. The lifted
+	 *         coordinates and the 2x2 minors stay below 2^50, their products
+	 *         are summed in 128 bits.
+	 */
+	@Override
+	double incircle(int a, int b, int c, int d) {
+		long dx = qxs[d], dy = qys[d];
+		long adx = qxs[a] - dx, ady = qys[a] - dy;
+		long bdx = qxs[b] - dx, bdy = qys[b] - dy;
+		long cdx = qxs[c] - dx, cdy = qys[c] - dy;
+		long alift = adx * adx + ady * ady;
+		long blift = bdx * bdx + bdy * bdy;
+		long clift = cdx * cdx + cdy * cdy;
+		long bc = bdx * cdy - cdx * bdy;
+		long ca = cdx * ady - adx * cdy;
+		long ab = adx * bdy - bdx * ady;
+
+		long lo = alift * bc;
+		long hi = Math.multiplyHigh(alift, bc);
+		long term = blift * ca;
+		long sum = lo + term;
+		hi += Math.multiplyHigh(blift, ca) + (Long.compareUnsigned(sum, lo) < 0 ? 1 : 0);
+		lo = sum;
+		term = clift * ab;
+		sum = lo + term;
+		hi += Math.multiplyHigh(clift, ab) + (Long.compareUnsigned(sum, lo) < 0 ? 1 : 0);
+		lo = sum;
+		if (hi != 0)
+			return hi < 0 ? -1 : 1;
+		return lo == 0 ? 0 : 1;
+	}
+}
@@ -0,0 +1,185 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The copy of a {@link DelaunayTriangulation} its snapshots are made of. <br>
+ * The copy has the layout of {@link ArrayDelaunayTriangulation}: vertex v is
+ * slot v of the {@link VertexRegistry}, triangle t is slot t of the
+ * {@link TriangleRegistry}, and the triangles are stored as vertex triples and
+ * half-edges. The arrays are cut into blocks of BLOCK_SIZE vertices or
+ * triangles. A snapshot copies only the lists of blocks; afterwards all blocks
+ * are shared, and a shared block is copied before it is written again. <br>
+ * Every snapshot first writes what changed since the previous one: the slots
+ * the registries report as changed, the neighbors of the changed triangles
+ * (whose half-edges point into them) and the triangles around the vertices
+ * that moved to another slot (whose vertex triples refer to them).
+ */
+final class SnapshotStore {
+
+	static final int BLOCK_SHIFT = 8;
+	static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+	// the vertex blocks
+	private double[][] xs = new double[16][];
+	private double[][] ys = new double[16][];
+	private double[][] zs = new double[16][];
+	private boolean[] vertexBlockShared = new boolean[16];
+	private int vertexCount;
+
+	// the triangle blocks, 3 entries per triangle
+	private int[][] triangles = new int[16][];
+	private int[][] halfedges = new int[16][];
+	private boolean[] triangleBlockShared = new boolean[16];
+	private int triangleCount;
+
+	// the point in every vertex slot as of the last snapshot, to find the
+	// points that moved
+	private Point[] points = new Point[BLOCK_SIZE];
+
+	// false until the vertices were written once
+	private boolean verticesComplete;
+
+	// false until the triangles were written once, and again while all
+	// vertices are collinear: the next snapshot writes all triangles
+	private boolean trianglesComplete;
+
+	/**
+	 * writes the changes of delaunay and freezes the current state.
+	 */
+	TriangulationSnapshot snapshot(DelaunayTriangulation delaunay) {
+		update(delaunay);
+		int vertexBlocks = blocks(vertexCount);
+		int triangleBlocks = blocks(triangleCount);
+		TriangulationSnapshot snapshot = new TriangulationSnapshot(Arrays.copyOf(xs, vertexBlocks),
+				Arrays.copyOf(ys, vertexBlocks), Arrays.copyOf(zs, vertexBlocks), vertexCount,
+				Arrays.copyOf(triangles, triangleBlocks), Arrays.copyOf(halfedges, triangleBlocks), triangleCount,
+				delaunay.getModeCounter(), delaunay.getBoundingBox());
+		Arrays.fill(vertexBlockShared, 0, vertexBlocks, true);
+		Arrays.fill(triangleBlockShared, 0, triangleBlocks, true);
+		return snapshot;
+	}
+
+	private void update(DelaunayTriangulation delaunay) {
+		VertexRegistry vertices = delaunay.getVertexRegistry();
+		TriangleRegistry registry = delaunay.getTriangleRegistry();
+		BitSet changedVertices = vertices.takeChanges();
+		BitSet changedTriangles = registry.takeChanges();
+
+		int oldVertexCount = vertexCount;
+		vertexCount = vertices.size();
+		if (points.length < vertexCount) {
+			points = Arrays.copyOf(points, Math.max(vertexCount, 2 * points.length));
+		}
+		if (!verticesComplete) {
+			changedVertices.set(0, vertexCount);
+			verticesComplete = true;
+		}
+		List<Point> moved = new ArrayList<Point>();
+		for (int v = changedVertices.nextSetBit(0); v >= 0 && v < vertexCount; v = changedVertices.nextSetBit(v + 1)) {
+			Point p = vertices.get(v);
+			if (v < oldVertexCount && points[v] != p) {
+				moved.add(p);
+			}
+			points[v] = p;
+			writeVertex(v, p);
+		}
+		if (vertexCount < oldVertexCount) {
+			Arrays.fill(points, vertexCount, oldVertexCount, null);
+		}
+
+		if (!delaunay.hasFiniteTriangles()) {
+			triangleCount = 0;
+			trianglesComplete = false;
+			return;
+		}
+		triangleCount = registry.size();
+		if (!trianglesComplete || changedTriangles.cardinality() > triangleCount / 4) {
+			for (Triangle t : registry) {
+				writeTriangle(t, vertices);
+			}
+			trianglesComplete = true;
+			return;
+		}
+		if (!moved.isEmpty()) {
+			Point[] ps = moved.toArray(new Point[moved.size()]);
+			Triangle[] incident = delaunay.incidentTriangles(ps);
+			for (int i = 0; i < ps.length; i++) {
+				Triangle t = incident[i];
+				do {
+					changedTriangles.set(t.getLiveIndex());
+					t = t.neighbor(ps[i]);
+				} while (t != incident[i]);
+			}
+		}
+		BitSet dirty = (BitSet) changedTriangles.clone();
+		for (int s = changedTriangles.nextSetBit(0); s >= 0 && s < triangleCount; s = changedTriangles.nextSetBit(s + 1)) {
+			Triangle t = registry.get(s);
+			for (int i = 0; i < 3; i++) {
+				dirty.set(t.edgeNeighbor(i).getLiveIndex());
+			}
+		}
+		for (int s = dirty.nextSetBit(0); s >= 0 && s < triangleCount; s = dirty.nextSetBit(s + 1)) {
+			writeTriangle(registry.get(s), vertices);
+		}
+	}
+
+	private void writeVertex(int v, Point p) {
+		int b = v >>> BLOCK_SHIFT;
+		if (b >= xs.length) {
+			int length = Math.max(b + 1, 2 * xs.length);
+			xs = Arrays.copyOf(xs, length);
+			ys = Arrays.copyOf(ys, length);
+			zs = Arrays.copyOf(zs, length);
+			vertexBlockShared = Arrays.copyOf(vertexBlockShared, length);
+		}
+		if (xs[b] == null) {
+			xs[b] = new double[BLOCK_SIZE];
+			ys[b] = new double[BLOCK_SIZE];
+			zs[b] = new double[BLOCK_SIZE];
+		} else if (vertexBlockShared[b]) {
+			xs[b] = xs[b].clone();
+			ys[b] = ys[b].clone();
+			zs[b] = zs[b].clone();
+			vertexBlockShared[b] = false;
+		}
+		int i = v & BLOCK_MASK;
+		xs[b][i] = p.getX();
+		ys[b][i] = p.getY();
+		zs[b][i] = p.getZ();
+	}
+
+	private void writeTriangle(Triangle t, VertexRegistry vertices) {
+		int s = t.getLiveIndex();
+		int b = s >>> BLOCK_SHIFT;
+		if (b >= triangles.length) {
+			int length = Math.max(b + 1, 2 * triangles.length);
+			triangles = Arrays.copyOf(triangles, length);
+			halfedges = Arrays.copyOf(halfedges, length);
+			triangleBlockShared = Arrays.copyOf(triangleBlockShared, length);
+		}
+		if (triangles[b] == null) {
+			triangles[b] = new int[3 * BLOCK_SIZE];
+			halfedges[b] = new int[3 * BLOCK_SIZE];
+		} else if (triangleBlockShared[b]) {
+			triangles[b] = triangles[b].clone();
+			halfedges[b] = halfedges[b].clone();
+			triangleBlockShared[b] = false;
+		}
+		int e = 3 * (s & BLOCK_MASK);
+		for (int i = 0; i < 3; i++) {
+			Point p = t.corner(i);
+			triangles[b][e + i] = p == null ? ArrayDelaunayTriangulation.GHOST : vertices.indexOf(p);
+			Triangle n = t.edgeNeighbor(i);
+			halfedges[b][e + i] = 3 * n.getLiveIndex() + n.edgeIndex(t.corner(i + 1), p);
+		}
+	}
+
+	private static int blocks(int count) {
+		return (count + BLOCK_MASK) >>> BLOCK_SHIFT;
+	}
+}
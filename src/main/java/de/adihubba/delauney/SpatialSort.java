@@ -0,0 +1,146 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Orders points for a fast incremental construction of a Delaunay
+ * Triangulation. <br>
+ * The order is a biased randomized insertion order (BRIO, Amenta, Choi &
+ * Rote 2003): the points are split into rounds of doubling size by random
+ * sampling and every round is sorted along a Hilbert curve. The random rounds
+ * keep the triangulation well shaped (no long collinear chains at the start,
+ * no degenerated walks), the Hilbert order inside the rounds keeps every
+ * point close to the previous one, so point location walks only a few
+ * triangles from the last inserted point.
+ */
+public class SpatialSort {
+
+	/** bits per axis of the Hilbert grid */
+	private static final int HILBERT_ORDER = 16;
+
+	/** rounds smaller than this are merged into the first round */
+	private static final int MIN_ROUND_SIZE = 64;
+
+	/** seed of the random rounds, fixed so the result is reproducible */
+	private static final long SEED = 0x5DEECE66DL;
+
+	private SpatialSort() {
+	}
+
+	/**
+	 * @return the points in BRIO order.
+	 */
+	public static List<Point> brioOrder(Collection<Point> points) {
+		int n = points.size();
+		Point[] input = points.toArray(new Point[n]);
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		int count = 0;
+		for (Point p : input) {
+			if (p != null) {
+				input[count] = p;
+				xs[count] = p.getX();
+				ys[count] = p.getY();
+				count++;
+			}
+		}
+		int[] order = brioOrder(xs, ys, count);
+		List<Point> result = new ArrayList<Point>(count);
+		for (int i : order) {
+			result.add(input[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the indices of the given coordinates in BRIO order.
+	 */
+	public static int[] brioOrder(double[] xs, double[] ys) {
+		return brioOrder(xs, ys, xs.length);
+	}
+
+	private static int[] brioOrder(double[] xs, double[] ys, int n) {
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		// random permutation, split into rounds of doubling size
+		Random random = new Random(SEED);
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		int end = n;
+		while (end > 0) {
+			int start = end / 2 < MIN_ROUND_SIZE ? 0 : end / 2;
+			hilbertSort(xs, ys, order, start, end);
+			end = start;
+		}
+		return order;
+	}
+
+	/**
+	 * sorts the indices order[from, to) along a Hilbert curve through the
+	 * bounding box of the referenced points.
+	 */
+	public static void hilbertSort(double[] xs, double[] ys, int[] order, int from, int to) {
+		if (to - from < 2)
+			return;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			int p = order[i];
+			minX = Math.min(minX, xs[p]);
+			maxX = Math.max(maxX, xs[p]);
+			minY = Math.min(minY, ys[p]);
+			maxY = Math.max(maxY, ys[p]);
+		}
+		int cells = (1 << HILBERT_ORDER) - 1;
+		double scaleX = maxX > minX ? cells / (maxX - minX) : 0;
+		double scaleY = maxY > minY ? cells / (maxY - minY) : 0;
+
+		// hilbert index in the upper 32, point index in the lower 31 bits
+		long[] keys = new long[to - from];
+		for (int i = from; i < to; i++) {
+			int p = order[i];
+			int hx = (int) ((xs[p] - minX) * scaleX);
+			int hy = (int) ((ys[p] - minY) * scaleY);
+			keys[i - from] = (hilbertIndex(hx, hy) << 31) | p;
+		}
+		Arrays.sort(keys);
+		for (int i = from; i < to; i++) {
+			order[i] = (int) (keys[i - from] & Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @return the distance of the grid cell (x, y) along the Hilbert curve of
+	 *         order {@value #HILBERT_ORDER}.
+	 */
+	static long hilbertIndex(int x, int y) {
+		int n = 1 << HILBERT_ORDER;
+		long d = 0;
+		for (int s = n >>> 1; s > 0; s >>>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+}
@@ -0,0 +1,64 @@
+package de.adihubba.delauney;
+
+/**
+ * A regular grid of columns x rows tiles over a bounding rectangle. Tile
+ * indices run row by row. Coordinates outside of the rectangle belong to the
+ * nearest tile on the border.
+ */
+final class TileGrid {
+
+	final double minX, maxX, minY, maxY;
+	final int columns, rows;
+
+	TileGrid(double minX, double maxX, double minY, double maxY, int columns, int rows) {
+		if (columns <= 0 || rows <= 0)
+			throw new IllegalArgumentException("the grid needs at least one tile: " + columns + " x " + rows);
+		if (!(minX < maxX) || !(minY < maxY))
+			throw new IllegalArgumentException("the bounds of the grid have no area: [" + minX + ", " + maxX + "] x ["
+					+ minY + ", " + maxY + "]");
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	int size() {
+		return columns * rows;
+	}
+
+	int column(double x) {
+		int c = (int) Math.floor((x - minX) / (maxX - minX) * columns);
+		return Math.max(0, Math.min(columns - 1, c));
+	}
+
+	int row(double y) {
+		int r = (int) Math.floor((y - minY) / (maxY - minY) * rows);
+		return Math.max(0, Math.min(rows - 1, r));
+	}
+
+	int tile(double x, double y) {
+		return row(y) * columns + column(x);
+	}
+
+	int tile(int column, int row) {
+		return row * columns + column;
+	}
+
+	double tileMinX(int column) {
+		return minX + (maxX - minX) * column / columns;
+	}
+
+	double tileMaxX(int column) {
+		return column == columns - 1 ? maxX : tileMinX(column + 1);
+	}
+
+	double tileMinY(int row) {
+		return minY + (maxY - minY) * row / rows;
+	}
+
+	double tileMaxY(int row) {
+		return row == rows - 1 ? maxY : tileMinY(row + 1);
+	}
+}
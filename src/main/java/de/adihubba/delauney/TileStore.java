@@ -0,0 +1,378 @@
+package de.adihubba.delauney;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The triangles of a triangulation too large for the heap, stored tile by
+ * tile in a directory, see {@link TiledTriangulationBuilder}. Only the index
+ * (the grid and the number and bounds of the triangles of every tile) is held
+ * in memory; the tiles are read on request. <br>
+ * Every triangle is stored once, in the tile that contains its centroid, so
+ * a triangle may stick out of its tile. Its corners are stored with their
+ * coordinates and with a vertex id, which is the same in every tile: the
+ * meshes of neighboring tiles can be joined by these ids. <br>
+ * The files are little-endian. <code>index.bin</code> holds the ints
+ * {@link #MAGIC}, {@link #VERSION}, columns and rows, the doubles minX, maxX,
+ * minY and maxY of the grid and then for every tile (row by row) the number of
+ * triangles as an int and the bounds of the triangles as the doubles minX,
+ * maxX, minY and maxY (NaN for empty tiles). <code>tile-c-r.bin</code> holds
+ * the triangles of the tile in column c and row r, each as three vertex ids
+ * (ints) and the x, y and z of the three corners (doubles), counterclockwise.
+ * <br>
+ * A store is immutable and may be read from several threads.
+ */
+public final class TileStore {
+
+	/** the first int of the index, the bytes "TILE" */
+	public static final int MAGIC = 0x454C4954;
+
+	/** the version of the format written by {@link TiledTriangulationBuilder} */
+	public static final int VERSION = 1;
+
+	static final String INDEX_FILE = "index.bin";
+
+	// bytes of a triangle in a tile file: 3 ids and 3 x 3 coordinates
+	static final int TRIANGLE_SIZE = 3 * 4 + 9 * 8;
+
+	// bytes of the index header and of the entry of a tile
+	static final int HEADER_SIZE = 4 * 4 + 4 * 8;
+	static final int ENTRY_SIZE = 4 + 4 * 8;
+
+	private final Path directory;
+	private final TileGrid grid;
+	private final int[] triangleCounts;
+	private final double[] minXs, maxXs, minYs, maxYs;
+
+	private TileStore(Path directory, TileGrid grid, int[] triangleCounts, double[] minXs, double[] maxXs,
+			double[] minYs, double[] maxYs) {
+		this.directory = directory;
+		this.grid = grid;
+		this.triangleCounts = triangleCounts;
+		this.minXs = minXs;
+		this.maxXs = maxXs;
+		this.minYs = minYs;
+		this.maxYs = maxYs;
+	}
+
+	/**
+	 * opens the store in directory.
+	 *
+	 * @throws IOException
+	 *             if the index can not be read
+	 * @throws UnsupportedFormatException
+	 *             if the index is no tile index of a known version
+	 */
+	public static TileStore open(Path directory) throws IOException {
+		Path file = directory.resolve(INDEX_FILE);
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				throw new UnsupportedFormatException(file + " is too short for a tile index: " + size + " bytes");
+			}
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != MAGIC) {
+				throw new UnsupportedFormatException(file + " is no tile index");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new UnsupportedFormatException(file + " has the unsupported version " + version);
+			}
+			int columns = buffer.getInt();
+			int rows = buffer.getInt();
+			long expected = HEADER_SIZE + (long) ENTRY_SIZE * columns * rows;
+			if (columns <= 0 || rows <= 0 || size != expected) {
+				throw new UnsupportedFormatException(file + " has " + size + " bytes, the header expects " + expected);
+			}
+			double minX = buffer.getDouble(), maxX = buffer.getDouble();
+			double minY = buffer.getDouble(), maxY = buffer.getDouble();
+			TileGrid grid = new TileGrid(minX, maxX, minY, maxY, columns, rows);
+			int tiles = grid.size();
+			int[] counts = new int[tiles];
+			double[] minXs = new double[tiles], maxXs = new double[tiles];
+			double[] minYs = new double[tiles], maxYs = new double[tiles];
+			for (int i = 0; i < tiles; i++) {
+				counts[i] = buffer.getInt();
+				minXs[i] = buffer.getDouble();
+				maxXs[i] = buffer.getDouble();
+				minYs[i] = buffer.getDouble();
+				maxYs[i] = buffer.getDouble();
+			}
+			return new TileStore(directory, grid, counts, minXs, maxXs, minYs, maxYs);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * writes the index of a store.
+	 */
+	static void writeIndex(Path directory, TileGrid grid, int[] counts, double[] minXs, double[] maxXs,
+			double[] minYs, double[] maxYs) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * grid.size()).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(grid.columns).putInt(grid.rows);
+		buffer.putDouble(grid.minX).putDouble(grid.maxX).putDouble(grid.minY).putDouble(grid.maxY);
+		for (int i = 0; i < grid.size(); i++) {
+			buffer.putInt(counts[i]).putDouble(minXs[i]).putDouble(maxXs[i]).putDouble(minYs[i]).putDouble(maxYs[i]);
+		}
+		buffer.flip();
+		write(directory.resolve(INDEX_FILE), buffer);
+	}
+
+	static void write(Path file, ByteBuffer buffer) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	static Path tileFile(Path directory, int column, int row) {
+		return directory.resolve("tile-" + column + "-" + row + ".bin");
+	}
+
+	public int getColumns() {
+		return grid.columns;
+	}
+
+	public int getRows() {
+		return grid.rows;
+	}
+
+	/**
+	 * @return the rectangle the grid divides, the points may reach beyond it.
+	 */
+	public BoundingBox getGridBounds() {
+		return new BoundingBox(grid.minX, grid.maxX, grid.minY, grid.maxY, 0, 0);
+	}
+
+	/**
+	 * @return the number of triangles of all tiles.
+	 */
+	public long getTriangleCount() {
+		long count = 0;
+		for (int c : triangleCounts) {
+			count += c;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of triangles of the tile.
+	 */
+	public int getTriangleCount(int column, int row) {
+		return triangleCounts[index(column, row)];
+	}
+
+	/**
+	 * @return the bounds of the triangles of the tile, null if it has none.
+	 */
+	public BoundingBox getTriangleBounds(int column, int row) {
+		int i = index(column, row);
+		if (triangleCounts[i] == 0) {
+			return null;
+		}
+		return new BoundingBox(minXs[i], maxXs[i], minYs[i], maxYs[i], 0, 0);
+	}
+
+	/**
+	 * reads the triangles of a tile.
+	 *
+	 * @throws IOException
+	 *             if the tile can not be read
+	 */
+	public Tile readTile(int column, int row) throws IOException {
+		int count = triangleCounts[index(column, row)];
+		int[] ids = new int[3 * count];
+		double[] coordinates = new double[9 * count];
+		if (count > 0) {
+			Path file = tileFile(directory, column, row);
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				long size = (long) TRIANGLE_SIZE * count;
+				if (channel.size() != size) {
+					throw new UnsupportedFormatException(file + " has " + channel.size() + " bytes, the index expects " + size);
+				}
+				ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+				for (int t = 0; t < count; t++) {
+					for (int i = 0; i < 3; i++) {
+						ids[3 * t + i] = buffer.getInt();
+					}
+					for (int i = 0; i < 9; i++) {
+						coordinates[9 * t + i] = buffer.getDouble();
+					}
+				}
+			} finally {
+				channel.close();
+			}
+		}
+		return new Tile(column, row, count, ids, coordinates);
+	}
+
+	/**
+	 * reads every tile with a triangle overlapping box, row by row, and passes
+	 * it to action; only one tile is held at a time.
+	 *
+	 * @return the number of tiles passed to action.
+	 * @throws IOException
+	 *             if a tile can not be read
+	 */
+	public int forEachTileIn(BoundingBox box, Consumer<Tile> action) throws IOException {
+		int tiles = 0;
+		for (int row = 0; row < grid.rows; row++) {
+			for (int column = 0; column < grid.columns; column++) {
+				int i = grid.tile(column, row);
+				if (triangleCounts[i] > 0 && minXs[i] <= box.maxX() && maxXs[i] >= box.minX() && minYs[i] <= box.maxY()
+						&& maxYs[i] >= box.minY()) {
+					action.accept(readTile(column, row));
+					tiles++;
+				}
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * interpolates the height at (x, y). Every tile whose triangles cover
+	 * (x, y) is read until one has a triangle containing it, so this is
+	 * meant for single queries; many queries should read the tiles with
+	 * {@link #readTile(int, int)} and use {@link Tile#z(double, double)}.
+	 *
+	 * @return the height, NaN outside of the triangulation.
+	 * @throws IOException
+	 *             if a tile can not be read
+	 */
+	public double z(double x, double y) throws IOException {
+		// the tile of (x, y) first, most triangles stay in their tile
+		int home = grid.tile(x, y);
+		int tiles = grid.size();
+		for (int k = 0; k < tiles; k++) {
+			int i = k == 0 ? home : (k <= home ? k - 1 : k);
+			if (triangleCounts[i] > 0 && minXs[i] <= x && x <= maxXs[i] && minYs[i] <= y && y <= maxYs[i]) {
+				double z = readTile(i % grid.columns, i / grid.columns).z(x, y);
+				if (!Double.isNaN(z)) {
+					return z;
+				}
+			}
+		}
+		return Double.NaN;
+	}
+
+	private int index(int column, int row) {
+		if (column < 0 || column >= grid.columns || row < 0 || row >= grid.rows) {
+			throw new IndexOutOfBoundsException("tile (" + column + ", " + row + ") of " + grid.columns + " x " + grid.rows);
+		}
+		return grid.tile(column, row);
+	}
+
+	/**
+	 * The triangles of one tile.
+	 */
+	public static final class Tile {
+
+		private final int column, row;
+		private final int size;
+		private final int[] ids;
+		private final double[] coordinates;
+
+		Tile(int column, int row, int size, int[] ids, double[] coordinates) {
+			this.column = column;
+			this.row = row;
+			this.size = size;
+			this.ids = ids;
+			this.coordinates = coordinates;
+		}
+
+		public int getColumn() {
+			return column;
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		/**
+		 * @return the number of triangles.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return the id of the i-th (0, 1 or 2) corner of triangle t.
+		 */
+		public int getVertexId(int t, int i) {
+			return ids[3 * t + i];
+		}
+
+		public double getX(int t, int i) {
+			return coordinates[9 * t + 3 * i];
+		}
+
+		public double getY(int t, int i) {
+			return coordinates[9 * t + 3 * i + 1];
+		}
+
+		public double getZ(int t, int i) {
+			return coordinates[9 * t + 3 * i + 2];
+		}
+
+		/**
+		 * interpolates the height at (x, y) on the triangles of this tile.
+		 *
+		 * @return the height, NaN if no triangle of this tile contains (x, y).
+		 */
+		public double z(double x, double y) {
+			for (int t = 0; t < size; t++) {
+				int k = 9 * t;
+				double ax = coordinates[k], ay = coordinates[k + 1];
+				double bx = coordinates[k + 3], by = coordinates[k + 4];
+				double cx = coordinates[k + 6], cy = coordinates[k + 7];
+				double u = GeometricPredicates.orient2d(bx, by, cx, cy, x, y);
+				double v = GeometricPredicates.orient2d(cx, cy, ax, ay, x, y);
+				double w = GeometricPredicates.orient2d(ax, ay, bx, by, x, y);
+				if (u >= 0 && v >= 0 && w >= 0) {
+					return (u * coordinates[k + 2] + v * coordinates[k + 5] + w * coordinates[k + 8]) / (u + v + w);
+				}
+			}
+			return Double.NaN;
+		}
+
+		/**
+		 * materializes the triangles; corners with the same id share one
+		 * {@link Point}.
+		 */
+		public List<Triangle> getTriangulation() {
+			Map<Integer, Point> points = new HashMap<Integer, Point>();
+			List<Triangle> result = new ArrayList<Triangle>(size);
+			Point[] corners = new Point[3];
+			for (int t = 0; t < size; t++) {
+				for (int i = 0; i < 3; i++) {
+					Point p = points.get(ids[3 * t + i]);
+					if (p == null) {
+						p = new Point(getX(t, i), getY(t, i), getZ(t, i));
+						points.put(ids[3 * t + i], p);
+					}
+					corners[i] = p;
+				}
+				result.add(new Triangle(corners[0], corners[1], corners[2]));
+			}
+			return result;
+		}
+	}
+}
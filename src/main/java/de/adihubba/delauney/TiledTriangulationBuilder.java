@@ -0,0 +1,664 @@
+package de.adihubba.delauney;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the Delaunay triangulation of more points than fit into the heap,
+ * tile by tile, into a {@link TileStore}. <br>
+ * The points are spilled to one file per tile of a regular grid as they are
+ * added. Then every tile is triangulated together with a ring of
+ * neighboring tiles (by an {@link ArrayDelaunayTriangulation}), and a local
+ * triangle is kept only if it is certainly a triangle of the whole
+ * triangulation: its circumcircle (for a ghost triangle the half plane beyond
+ * its hull edge) must not reach the points of any tile that was not loaded,
+ * judged by the convex hull of their points and, where that is not enough, by
+ * the points themselves. The corners of the convex hulls of some tiles that
+ * were not loaded are added to the local triangulation as well: those of the
+ * tiles holding a corner of the hull of all points, and those of the tiles
+ * the triangles of a failed try reached. The long slivers along the hull and
+ * across empty regions mostly end in them, so these do not force the border
+ * tiles to load their whole row. If a triangle overlapping the tile fails
+ * and reached no new tile, the ring is doubled and the tile triangulated
+ * again; in the worst case (very uneven data) all tiles are loaded. <br>
+ * As the kept triangles are those of the whole triangulation and overlap the
+ * tile completely, the seams between the tiles match without any stitching
+ * pass: every triangle is stored by the tile containing its centroid, and all
+ * tiles see the same triangles along their borders. Cocircular points are
+ * triangulated the same way in every tile, as the array triangulation breaks
+ * the ties by the coordinates only. <br>
+ * Memory is bounded by the points of the loaded ring, 9 tiles in the usual
+ * case, so the tiles should hold some ten thousand points each. A vertex id
+ * of the store is the position of the point in the order the points were
+ * added, counted per tile; duplicated points get the id of one of them.
+ */
+public final class TiledTriangulationBuilder {
+
+	// bytes of a point in a spill file: x, y and z
+	private static final int POINT_SIZE = 3 * 8;
+
+	// bytes buffered per tile before they are appended to its spill file
+	private static final int SPILL_BUFFER_SIZE = 1 << 13;
+
+	// relative margin around a tile, a centroid on the border of a tile may
+	// be computed just outside of it
+	private static final double TILE_MARGIN = 1e-9;
+
+	private final Path directory;
+	private final TileGrid grid;
+
+	// the buffered points and the number and bounds of the points per tile
+	private final ByteBuffer[] spills;
+	// true once the spill file of the tile was written by this builder, a
+	// file left over from an earlier one is truncated by the first flush
+	private final boolean[] flushed;
+	private final int[] counts;
+	private final double[] minXs, maxXs, minYs, maxYs;
+	private long size;
+
+	// the convex hull of the points of every tile, counterclockwise as x, y
+	// pairs, with the heights and ids of its corners; known once build has
+	// started
+	private double[][] hulls;
+	private double[][] hullZs;
+	private int[][] hullIds;
+
+	// the tiles holding a corner of the convex hull of all points
+	private boolean[] outerTiles;
+	private boolean built;
+
+	/**
+	 * @param directory
+	 *            an existing directory for the spill files and the store
+	 * @param bounds
+	 *            the rectangle divided into tiles, points outside of it go to
+	 *            the tiles on its border
+	 * @param columns
+	 *            the number of tile columns
+	 * @param rows
+	 *            the number of tile rows
+	 */
+	public TiledTriangulationBuilder(Path directory, BoundingBox bounds, int columns, int rows) {
+		this.directory = directory;
+		grid = new TileGrid(bounds.minX(), bounds.maxX(), bounds.minY(), bounds.maxY(), columns, rows);
+		int tiles = grid.size();
+		spills = new ByteBuffer[tiles];
+		flushed = new boolean[tiles];
+		counts = new int[tiles];
+		minXs = new double[tiles];
+		maxXs = new double[tiles];
+		minYs = new double[tiles];
+		maxYs = new double[tiles];
+		Arrays.fill(minXs, Double.POSITIVE_INFINITY);
+		Arrays.fill(maxXs, Double.NEGATIVE_INFINITY);
+		Arrays.fill(minYs, Double.POSITIVE_INFINITY);
+		Arrays.fill(maxYs, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * adds a point, it is written to the spill file of its tile.
+	 *
+	 * @throws IOException
+	 *             if the spill file can not be written
+	 */
+	public void addPoint(double x, double y, double z) throws IOException {
+		if (built)
+			throw new IllegalStateException("the triangulation was built already");
+		if (Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y))
+			throw new IllegalArgumentException("no finite point: (" + x + ", " + y + ")");
+		if (size == Integer.MAX_VALUE)
+			throw new IllegalStateException("too many points, the vertex ids are ints");
+		int tile = grid.tile(x, y);
+		ByteBuffer spill = spills[tile];
+		if (spill == null) {
+			spill = spills[tile] = ByteBuffer.allocate(SPILL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		} else if (spill.remaining() < POINT_SIZE) {
+			flush(tile);
+		}
+		spill.putDouble(x).putDouble(y).putDouble(z);
+		counts[tile]++;
+		minXs[tile] = Math.min(minXs[tile], x);
+		maxXs[tile] = Math.max(maxXs[tile], x);
+		minYs[tile] = Math.min(minYs[tile], y);
+		maxYs[tile] = Math.max(maxYs[tile], y);
+		size++;
+	}
+
+	/**
+	 * adds the points, see {@link #addPoint(double, double, double)}.
+	 *
+	 * @param zs
+	 *            the heights, may be null
+	 */
+	public void addPoints(double[] xs, double[] ys, double[] zs) throws IOException {
+		if (ys.length != xs.length || (zs != null && zs.length != xs.length))
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		for (int i = 0; i < xs.length; i++) {
+			addPoint(xs[i], ys[i], zs == null ? 0 : zs[i]);
+		}
+	}
+
+	/**
+	 * @return the number of points added.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * triangulates all tiles, writes the store and deletes the spill files.
+	 *
+	 * @return the store
+	 * @throws IOException
+	 *             if a file can not be read or written
+	 */
+	public TileStore build() throws IOException {
+		if (built)
+			throw new IllegalStateException("the triangulation was built already");
+		built = true;
+		int tiles = grid.size();
+		for (int tile = 0; tile < tiles; tile++) {
+			if (spills[tile] != null) {
+				flush(tile);
+				spills[tile] = null;
+			}
+		}
+		// the first vertex id of every tile
+		int[] offsets = new int[tiles];
+		for (int tile = 1; tile < tiles; tile++) {
+			offsets[tile] = offsets[tile - 1] + counts[tile - 1];
+		}
+		computeHulls(offsets);
+		// the bounds of all points, the tiles on the border of the grid reach
+		// out to them
+		double dataMinX = grid.minX, dataMaxX = grid.maxX, dataMinY = grid.minY, dataMaxY = grid.maxY;
+		for (int tile = 0; tile < tiles; tile++) {
+			if (counts[tile] > 0) {
+				dataMinX = Math.min(dataMinX, minXs[tile]);
+				dataMaxX = Math.max(dataMaxX, maxXs[tile]);
+				dataMinY = Math.min(dataMinY, minYs[tile]);
+				dataMaxY = Math.max(dataMaxY, maxYs[tile]);
+			}
+		}
+
+		int[] triangleCounts = new int[tiles];
+		double[] boundsMinX = new double[tiles], boundsMaxX = new double[tiles];
+		double[] boundsMinY = new double[tiles], boundsMaxY = new double[tiles];
+		for (int row = 0; row < grid.rows; row++) {
+			for (int column = 0; column < grid.columns; column++) {
+				double x0 = column == 0 ? dataMinX : grid.tileMinX(column);
+				double x1 = column == grid.columns - 1 ? dataMaxX : grid.tileMaxX(column);
+				double y0 = row == 0 ? dataMinY : grid.tileMinY(row);
+				double y1 = row == grid.rows - 1 ? dataMaxY : grid.tileMaxY(row);
+				double mx = TILE_MARGIN * (x1 - x0), my = TILE_MARGIN * (y1 - y0);
+				TileTriangles result = triangulateTile(column, row, x0 - mx, x1 + mx, y0 - my, y1 + my, offsets);
+				int tile = grid.tile(column, row);
+				triangleCounts[tile] = result.size;
+				boundsMinX[tile] = result.minX;
+				boundsMaxX[tile] = result.maxX;
+				boundsMinY[tile] = result.minY;
+				boundsMaxY[tile] = result.maxY;
+				result.buffer.flip();
+				TileStore.write(TileStore.tileFile(directory, column, row), result.buffer);
+			}
+		}
+		TileStore.writeIndex(directory, grid, triangleCounts, boundsMinX, boundsMaxX, boundsMinY, boundsMaxY);
+		for (int tile = 0; tile < tiles; tile++) {
+			Files.deleteIfExists(spillFile(tile));
+		}
+		return TileStore.open(directory);
+	}
+
+	/**
+	 * triangulates the tile with growing rings of neighbors until all local
+	 * triangles overlapping the rectangle x0..x1, y0..y1 are certain.
+	 */
+	private TileTriangles triangulateTile(int column, int row, double x0, double x1, double y0, double y1, int[] offsets)
+			throws IOException {
+		int tile = grid.tile(column, row);
+		boolean[] loaded = new boolean[grid.size()];
+		// the tiles whose hull corners are added and the tiles reached by the
+		// triangles that failed
+		boolean[] extraTiles = outerTiles.clone();
+		boolean[] reached = new boolean[grid.size()];
+		for (int ring = 1;;) {
+			int c0 = Math.max(0, column - ring), c1 = Math.min(grid.columns - 1, column + ring);
+			int r0 = Math.max(0, row - ring), r1 = Math.min(grid.rows - 1, row + ring);
+			boolean all = c0 == 0 && r0 == 0 && c1 == grid.columns - 1 && r1 == grid.rows - 1;
+
+			// the points of the ring, with their vertex ids
+			int count = 0;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					loaded[grid.tile(c, r)] = true;
+					count += counts[grid.tile(c, r)];
+				}
+			}
+			int extra = 0;
+			for (int t = 0; t < extraTiles.length; t++) {
+				if (extraTiles[t] && !loaded[t])
+					extra += hullIds[t].length;
+			}
+			double[] xs = new double[count + extra], ys = new double[count + extra], zs = new double[count + extra];
+			int[] ids = new int[count + extra];
+			int k = 0;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					int t = grid.tile(c, r);
+					readSpill(t, xs, ys, zs, k);
+					for (int i = 0; i < counts[t]; i++) {
+						ids[k + i] = offsets[t] + i;
+					}
+					k += counts[t];
+				}
+			}
+			for (int t = 0; t < extraTiles.length; t++) {
+				if (extraTiles[t] && !loaded[t]) {
+					for (int i = 0; i < hullIds[t].length; i++) {
+						xs[k] = hulls[t][2 * i];
+						ys[k] = hulls[t][2 * i + 1];
+						zs[k] = hullZs[t][i];
+						ids[k++] = hullIds[t][i];
+					}
+				}
+			}
+			count = k;
+
+			ArrayDelaunayTriangulation local = new ArrayDelaunayTriangulation(count);
+			int[] inputToVertex = local.insertPoints(xs, ys, zs);
+			if (local.trianglesSize() == 0) {
+				if (all)
+					return new TileTriangles(0);
+				ring *= 2;
+				continue;
+			}
+			// a duplicated point is represented by its smallest id
+			int[] vertexToInput = new int[local.size()];
+			Arrays.fill(vertexToInput, -1);
+			for (int i = 0; i < count; i++) {
+				int v = inputToVertex[i];
+				if (vertexToInput[v] < 0 || ids[i] < ids[vertexToInput[v]])
+					vertexToInput[v] = i;
+			}
+
+			TileTriangles result = new TileTriangles(local.trianglesSize() / 2 / ((r1 - r0 + 1) * (c1 - c0 + 1)) + 16);
+			boolean certain = true;
+			Arrays.fill(reached, false);
+			Probes probes = new Probes(count);
+			for (int t = 0; t < local.trianglesSize(); t++) {
+				int a = local.getTriangleVertex(t, 0), b = local.getTriangleVertex(t, 1);
+				double ax = local.getX(a), ay = local.getY(a), bx = local.getX(b), by = local.getY(b);
+				if (local.isGhost(t)) {
+					// the half plane left of a -> b is outside of the hull
+					if (overlapsHalfplane(ax, ay, bx, by, x0, x1, y0, y1) && halfplaneReaches(ax, ay, bx, by, loaded,
+							reached))
+						certain = false;
+					continue;
+				}
+				int c = local.getTriangleVertex(t, 2);
+				double cx = local.getX(c), cy = local.getY(c);
+				if (!overlapsTriangle(ax, ay, bx, by, cx, cy, x0, x1, y0, y1))
+					continue;
+				if (circleReaches(ax, ay, bx, by, cx, cy, loaded, probes, reached)) {
+					certain = false;
+				} else if (certain && grid.tile((ax + bx + cx) / 3, (ay + by + cy) / 3) == tile) {
+					int ia = vertexToInput[a], ib = vertexToInput[b], ic = vertexToInput[c];
+					result.add(ids[ia], xs[ia], ys[ia], zs[ia], ids[ib], xs[ib], ys[ib], zs[ib], ids[ic], xs[ic], ys[ic],
+							zs[ic]);
+				}
+			}
+			if (certain || all)
+				return result;
+			// the corners of the reached tiles may end the triangles that
+			// failed, if they were all added already the ring grows
+			boolean more = false;
+			for (int t = 0; t < reached.length; t++) {
+				if (reached[t] && !extraTiles[t]) {
+					extraTiles[t] = true;
+					more = true;
+				}
+			}
+			if (!more)
+				ring *= 2;
+		}
+	}
+
+	// true if a point of a tile that is not loaded may lie in the
+	// circumcircle of a, b, c; all those tiles are marked as reached
+	private boolean circleReaches(double ax, double ay, double bx, double by, double cx, double cy,
+			boolean[] loaded, Probes probes, boolean[] reached) throws IOException {
+		Circumcircle circle = new Circumcircle(ax, ay, bx, by, cx, cy);
+		if (!circle.isFinite())
+			return markUnloaded(loaded, reached);
+		double mx = circle.getCenterX(), my = circle.getCenterY();
+		// the whole exact circle, for the candidate tiles and the coarse hulls
+		double r = circle.getOuterRadius();
+		int c0 = grid.column(mx - r), c1 = grid.column(mx + r);
+		int r0 = grid.row(my - r), r1 = grid.row(my + r);
+		boolean reaches = false;
+		for (int row = r0; row <= r1; row++) {
+			for (int column = c0; column <= c1; column++) {
+				int t = grid.tile(column, row);
+				if (loaded[t] || counts[t] == 0)
+					continue;
+				if (circle.reaches(minXs[t], maxXs[t], minYs[t], maxYs[t]) && hullReaches(hulls[t], mx, my, r * r)
+						&& pointsReach(t, ax, ay, bx, by, cx, cy, probes)) {
+					reached[t] = true;
+					reaches = true;
+				}
+			}
+		}
+		return reaches;
+	}
+
+	/**
+	 * returns true if a point of the tile other than a, b or c may lie in or
+	 * on the circumcircle of the counterclockwise triangle abc. The hull of a
+	 * tile is a coarse guess for the long slivers along the hull of all points
+	 * (and for the hull vertices of the tile, which are on the circles
+	 * of their own triangles), so the points are read and tested one by one,
+	 * as long as the probes have room for them.
+	 */
+	private boolean pointsReach(int tile, double ax, double ay, double bx, double by, double cx, double cy,
+			Probes probes) throws IOException {
+		double[] points = probes.points.get(tile);
+		if (points == null) {
+			int n = counts[tile];
+			if (n > probes.remaining)
+				return true;
+			probes.remaining -= n;
+			double[] xs = new double[n], ys = new double[n], zs = new double[n];
+			readSpill(tile, xs, ys, zs, 0);
+			points = new double[2 * n];
+			for (int i = 0; i < n; i++) {
+				points[2 * i] = xs[i];
+				points[2 * i + 1] = ys[i];
+			}
+			probes.points.put(tile, points);
+		}
+		for (int i = 0; i < points.length; i += 2) {
+			double x = points[i], y = points[i + 1];
+			if (x == ax && y == ay || x == bx && y == by || x == cx && y == cy)
+				continue;
+			if (GeometricPredicates.incircle(ax, ay, bx, by, cx, cy, x, y) >= 0)
+				return true;
+		}
+		return false;
+	}
+
+	// true if a point of a tile that is not loaded lies left of a -> b, all
+	// those tiles are marked as reached; a point on the segment lies in the
+	// circumcircle of the triangle of the edge, a point on the line beyond it
+	// changes nothing
+	private boolean halfplaneReaches(double ax, double ay, double bx, double by, boolean[] loaded,
+			boolean[] reached) {
+		boolean reaches = false;
+		for (int t = 0; t < grid.size(); t++) {
+			if (!loaded[t] && counts[t] > 0
+					&& overlapsHalfplane(ax, ay, bx, by, minXs[t], maxXs[t], minYs[t], maxYs[t])) {
+				double[] hull = hulls[t];
+				for (int i = 0; i < hull.length; i += 2) {
+					if (GeometricPredicates.orient2d(ax, ay, bx, by, hull[i], hull[i + 1]) > 0) {
+						reached[t] = true;
+						reaches = true;
+						break;
+					}
+				}
+			}
+		}
+		return reaches;
+	}
+
+	// true if the disk around (mx, my) with the squared radius r2 meets the
+	// convex polygon
+	private static boolean hullReaches(double[] hull, double mx, double my, double r2) {
+		boolean inside = hull.length >= 6;
+		for (int i = 0; i < hull.length; i += 2) {
+			int j = (i + 2) % hull.length;
+			double ax = hull[i], ay = hull[i + 1], bx = hull[j], by = hull[j + 1];
+			double dx = bx - ax, dy = by - ay;
+			double l2 = dx * dx + dy * dy;
+			double s = l2 == 0 ? 0 : Math.max(0, Math.min(1, ((mx - ax) * dx + (my - ay) * dy) / l2));
+			double ex = ax + s * dx - mx, ey = ay + s * dy - my;
+			if (ex * ex + ey * ey <= r2)
+				return true;
+			if (GeometricPredicates.orient2d(ax, ay, bx, by, mx, my) < 0)
+				inside = false;
+		}
+		return inside;
+	}
+
+	// the hulls of the tiles and the tiles on the hull of all points
+	private void computeHulls(int[] offsets) throws IOException {
+		int tiles = grid.size();
+		hulls = new double[tiles][];
+		hullZs = new double[tiles][];
+		hullIds = new int[tiles][];
+		outerTiles = new boolean[tiles];
+		double[] cornerXs = new double[64], cornerYs = new double[64];
+		int[] cornerTiles = new int[64];
+		int corners = 0;
+		for (int tile = 0; tile < tiles; tile++) {
+			if (counts[tile] == 0)
+				continue;
+			double[] xs = new double[counts[tile]], ys = new double[counts[tile]], zs = new double[counts[tile]];
+			readSpill(tile, xs, ys, zs, 0);
+			int[] hull = convexHull(xs, ys);
+			hulls[tile] = new double[2 * hull.length];
+			hullZs[tile] = new double[hull.length];
+			hullIds[tile] = new int[hull.length];
+			if (corners + hull.length > cornerTiles.length) {
+				int capacity = 2 * (corners + hull.length);
+				cornerXs = Arrays.copyOf(cornerXs, capacity);
+				cornerYs = Arrays.copyOf(cornerYs, capacity);
+				cornerTiles = Arrays.copyOf(cornerTiles, capacity);
+			}
+			for (int i = 0; i < hull.length; i++) {
+				hulls[tile][2 * i] = xs[hull[i]];
+				hulls[tile][2 * i + 1] = ys[hull[i]];
+				hullZs[tile][i] = zs[hull[i]];
+				hullIds[tile][i] = offsets[tile] + hull[i];
+				cornerXs[corners] = xs[hull[i]];
+				cornerYs[corners] = ys[hull[i]];
+				cornerTiles[corners++] = tile;
+			}
+		}
+		// the hull of all points is the hull of the corners of the tile hulls
+		int[] hull = convexHull(Arrays.copyOf(cornerXs, corners), Arrays.copyOf(cornerYs, corners));
+		for (int i = 0; i < hull.length; i++) {
+			outerTiles[cornerTiles[hull[i]]] = true;
+		}
+	}
+
+	/**
+	 * @return the indices of the corners of the convex hull,
+	 *         counterclockwise (monotone chain), each once; duplicated points
+	 *         are represented by the first one.
+	 */
+	static int[] convexHull(final double[] xs, final double[] ys) {
+		Integer[] order = new Integer[xs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int c = Double.compare(xs[a], xs[b]);
+				return c != 0 ? c : Double.compare(ys[a], ys[b]);
+			}
+		});
+		int[] hull = new int[2 * order.length + 1];
+		int k = 0;
+		// the lower hull from left to right, then the upper hull back
+		for (int pass = 0; pass < 2; pass++) {
+			int start = k;
+			for (int n = 0; n < order.length; n++) {
+				int i = order[pass == 0 ? n : order.length - 1 - n];
+				if (k > start && xs[hull[k - 1]] == xs[i] && ys[hull[k - 1]] == ys[i])
+					continue;
+				while (k >= start + 2) {
+					double o = GeometricPredicates.orient2d(xs[hull[k - 2]], ys[hull[k - 2]], xs[hull[k - 1]],
+							ys[hull[k - 1]], xs[i], ys[i]);
+					if (o > 0)
+						break;
+					k--;
+				}
+				hull[k++] = i;
+			}
+			// the last point starts the other half
+			k--;
+		}
+		// all points collinear (or a single one): both halves hold the same
+		// points
+		boolean[] taken = new boolean[xs.length];
+		int size = 0;
+		for (int i = 0; i < Math.max(k, 1); i++) {
+			if (!taken[hull[i]]) {
+				taken[hull[i]] = true;
+				hull[size++] = hull[i];
+			}
+		}
+		return Arrays.copyOf(hull, size);
+	}
+
+	// marks the tiles that are not loaded as reached, true if there is one
+	private boolean markUnloaded(boolean[] loaded, boolean[] reached) {
+		boolean reaches = false;
+		for (int t = 0; t < loaded.length; t++) {
+			if (!loaded[t] && counts[t] > 0) {
+				reached[t] = true;
+				reaches = true;
+			}
+		}
+		return reaches;
+	}
+
+	// true if a corner of the rectangle lies left of a -> b or on the line
+	private static boolean overlapsHalfplane(double ax, double ay, double bx, double by, double x0, double x1,
+			double y0, double y1) {
+		return GeometricPredicates.orient2d(ax, ay, bx, by, x0, y0) >= 0
+				|| GeometricPredicates.orient2d(ax, ay, bx, by, x1, y0) >= 0
+				|| GeometricPredicates.orient2d(ax, ay, bx, by, x0, y1) >= 0
+				|| GeometricPredicates.orient2d(ax, ay, bx, by, x1, y1) >= 0;
+	}
+
+	// separating axes: the axes of the rectangle and the edges of the
+	// counterclockwise triangle
+	private static boolean overlapsTriangle(double ax, double ay, double bx, double by, double cx, double cy,
+			double x0, double x1, double y0, double y1) {
+		if (Math.max(ax, Math.max(bx, cx)) < x0 || Math.min(ax, Math.min(bx, cx)) > x1
+				|| Math.max(ay, Math.max(by, cy)) < y0 || Math.min(ay, Math.min(by, cy)) > y1)
+			return false;
+		return !separates(ax, ay, bx, by, x0, x1, y0, y1) && !separates(bx, by, cx, cy, x0, x1, y0, y1)
+				&& !separates(cx, cy, ax, ay, x0, x1, y0, y1);
+	}
+
+	// true if the whole rectangle lies right of the edge p -> q
+	private static boolean separates(double px, double py, double qx, double qy, double x0, double x1, double y0,
+			double y1) {
+		double dx = qx - px, dy = qy - py;
+		// the corner furthest to the left of the edge
+		double x = dy < 0 ? x1 : x0;
+		double y = dx > 0 ? y1 : y0;
+		return GeometricPredicates.orient2d(px, py, qx, qy, x, y) < 0;
+	}
+
+	private Path spillFile(int tile) {
+		return directory.resolve("points-" + tile + ".bin");
+	}
+
+	private void flush(int tile) throws IOException {
+		ByteBuffer spill = spills[tile];
+		spill.flip();
+		FileChannel channel = FileChannel.open(spillFile(tile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				flushed[tile] ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+		flushed[tile] = true;
+		try {
+			while (spill.hasRemaining()) {
+				channel.write(spill);
+			}
+		} finally {
+			channel.close();
+		}
+		spill.clear();
+	}
+
+	// reads the points of the tile into the arrays from offset on
+	private void readSpill(int tile, double[] xs, double[] ys, double[] zs, int offset) throws IOException {
+		if (counts[tile] == 0)
+			return;
+		FileChannel channel = FileChannel.open(spillFile(tile), StandardOpenOption.READ);
+		try {
+			DoubleBuffer values = channel.map(MapMode.READ_ONLY, 0, (long) POINT_SIZE * counts[tile])
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			for (int i = offset; i < offset + counts[tile]; i++) {
+				xs[i] = values.get();
+				ys[i] = values.get();
+				zs[i] = values.get();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * the points of not loaded tiles read while a local triangulation is
+	 * checked, at most as many as were loaded.
+	 */
+	private static final class Probes {
+
+		final Map<Integer, double[]> points = new HashMap<Integer, double[]>();
+		int remaining;
+
+		Probes(int remaining) {
+			this.remaining = remaining;
+		}
+	}
+
+	/**
+	 * the triangles kept for a tile, in the layout of a tile file, and their
+	 * bounds.
+	 */
+	private static final class TileTriangles {
+
+		private ByteBuffer buffer;
+		private int size;
+		private double minX = Double.NaN, maxX = Double.NaN, minY = Double.NaN, maxY = Double.NaN;
+
+		TileTriangles(int expected) {
+			buffer = ByteBuffer.allocate(TileStore.TRIANGLE_SIZE * expected).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		void add(int ia, double ax, double ay, double az, int ib, double bx, double by, double bz, int ic, double cx,
+				double cy, double cz) {
+			if (buffer.remaining() < TileStore.TRIANGLE_SIZE) {
+				ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.flip();
+				buffer = larger.put(buffer);
+			}
+			buffer.putInt(ia).putInt(ib).putInt(ic);
+			buffer.putDouble(ax).putDouble(ay).putDouble(az);
+			buffer.putDouble(bx).putDouble(by).putDouble(bz);
+			buffer.putDouble(cx).putDouble(cy).putDouble(cz);
+			if (size++ == 0) {
+				minX = maxX = ax;
+				minY = maxY = ay;
+			}
+			minX = Math.min(minX, Math.min(ax, Math.min(bx, cx)));
+			maxX = Math.max(maxX, Math.max(ax, Math.max(bx, cx)));
+			minY = Math.min(minY, Math.min(ay, Math.min(by, cy)));
+			maxY = Math.max(maxY, Math.max(ay, Math.max(by, cy)));
+		}
+	}
+}
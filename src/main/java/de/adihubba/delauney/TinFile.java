@@ -0,0 +1,347 @@
+package de.adihubba.delauney;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes triangulations in a compact binary format, so a large
+ * triangulation can be built once and opened later without recomputing it.
+ * <br>
+ * All values are little-endian. The file starts with a header of four ints:
+ * the magic number {@link #MAGIC}, the format {@link #VERSION}, the number of
+ * vertices n and the number of triangles m (ghost triangles included, 0 if all
+ * vertices are collinear). The header is followed by flat arrays, each
+ * starting on a multiple of 8 bytes:
+ * <ul>
+ * <li>n doubles: the x-coordinates of the vertices</li>
+ * <li>n doubles: the y-coordinates</li>
+ * <li>n doubles: the z-coordinates</li>
+ * <li>3 * m ints: the counterclockwise vertex triples of the triangles, a
+ * ghost triangle (the half plane of {@link DelaunayTriangulation}) has
+ * {@link ArrayDelaunayTriangulation#GHOST} as its third vertex</li>
+ * <li>3 * m ints: the neighbors as half-edges: entry 3 * t + i is the twin of
+ * the edge from vertex i to vertex i + 1 of triangle t, so the neighbor is
+ * triangle entry / 3</li>
+ * </ul>
+ * This is the memory layout of {@link ArrayDelaunayTriangulation}, so nothing
+ * has to be recomputed when a file is opened. {@link #map(Path)} serves the
+ * triangulation straight from the file through {@link FileChannel#map},
+ * without copying it to the heap. {@link #readArray(Path)} and
+ * {@link #read(Path)} read the arrays into a triangulation that can be
+ * changed. The content is not validated beyond the header and the file
+ * length.
+ */
+public final class TinFile {
+
+	/** the first int of every file, the bytes "DTIN" */
+	public static final int MAGIC = 0x4E495444;
+
+	/** the version of the format written by this class */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	// size of the buffer the arrays are written and read through
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private TinFile() {
+	}
+
+	/**
+	 * writes the triangulation to file, an existing file is replaced.
+	 *
+	 * @param triangulation
+	 *            the triangulation to write
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void write(ArrayDelaunayTriangulation triangulation, Path file) throws IOException {
+		write(file, triangulation.getXs(), triangulation.getYs(), triangulation.getZs(), triangulation.size(),
+				triangulation.getTriangles(), triangulation.getHalfedges(), triangulation.trianglesSize());
+	}
+
+	/**
+	 * writes the triangulation to file, an existing file is replaced. The
+	 * half planes are written as ghost triangles.
+	 *
+	 * @param triangulation
+	 *            the triangulation to write
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void write(DelaunayTriangulation triangulation, Path file) throws IOException {
+		write(ArrayDelaunayTriangulation.copyOf(triangulation), file);
+	}
+
+	/**
+	 * writes the snapshot to file, an existing file is replaced.
+	 *
+	 * @param snapshot
+	 *            the snapshot to write
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void write(TriangulationSnapshot snapshot, Path file) throws IOException {
+		write(snapshot.toArrayTriangulation(), file);
+	}
+
+	/**
+	 * maps a triangulation written by one of the write methods into memory.
+	 * Only the header is read, the vertices and triangles are served from the
+	 * mapping and paged in by the operating system on access. No array of the
+	 * size of the triangulation is allocated on the heap.
+	 *
+	 * @param file
+	 *            the file to map
+	 * @return a read-only view of the triangulation
+	 * @throws IOException
+	 *             if the file can not be read
+	 * @throws UnsupportedFormatException
+	 *             if the file is no triangulation of a known version
+	 */
+	public static MappedTin map(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			Content header = readHeader(channel, file);
+			long vertexBytes = 8L * header.vertexCount;
+			long triangleBytes = 12L * header.triangleCount;
+			long position = HEADER_SIZE;
+			DoubleBuffer xs = map(channel, position, vertexBytes).asDoubleBuffer();
+			position += vertexBytes;
+			DoubleBuffer ys = map(channel, position, vertexBytes).asDoubleBuffer();
+			position += vertexBytes;
+			DoubleBuffer zs = map(channel, position, vertexBytes).asDoubleBuffer();
+			position += vertexBytes;
+			IntBuffer triangles = map(channel, position, triangleBytes).asIntBuffer();
+			position += triangleBytes;
+			IntBuffer halfedges = map(channel, position, triangleBytes).asIntBuffer();
+			// the mappings stay valid after the channel is closed
+			return new MappedTin(header.vertexCount, header.triangleCount, xs, ys, zs, triangles, halfedges);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * opens a triangulation written by one of the write methods.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the triangulation
+	 * @throws IOException
+	 *             if the file can not be read
+	 * @throws UnsupportedFormatException
+	 *             if the file is no triangulation of a known version
+	 */
+	public static ArrayDelaunayTriangulation readArray(Path file) throws IOException {
+		Content content = readContent(file);
+		return new ArrayDelaunayTriangulation(content.xs, content.ys, content.zs, content.vertexCount,
+				content.triangles, content.halfedges, content.triangleCount);
+	}
+
+	/**
+	 * opens a triangulation written by one of the write methods as a graph of
+	 * {@link Point} and {@link Triangle} objects. The triangles are linked
+	 * from the stored neighbors, no point is inserted again.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the triangulation
+	 * @throws IOException
+	 *             if the file can not be read
+	 * @throws UnsupportedFormatException
+	 *             if the file is no triangulation of a known version
+	 */
+	public static DelaunayTriangulation read(Path file) throws IOException {
+		Content content = readContent(file);
+		Point[] points = new Point[content.vertexCount];
+		for (int v = 0; v < points.length; v++) {
+			points[v] = new Point(content.xs[v], content.ys[v], content.zs[v]);
+		}
+		Triangle[] triangles = new Triangle[content.triangleCount];
+		int[] vs = content.triangles;
+		for (int t = 0; t < triangles.length; t++) {
+			int e = 3 * t;
+			if (vs[e + 2] == ArrayDelaunayTriangulation.GHOST) {
+				triangles[t] = new Triangle(points[vs[e]], points[vs[e + 1]]);
+			} else {
+				triangles[t] = new Triangle(points[vs[e]], points[vs[e + 1]], points[vs[e + 2]]);
+			}
+		}
+		int[] halfedges = content.halfedges;
+		for (int e = 0; e < 3 * triangles.length; e++) {
+			triangles[e / 3].setEdgeNeighbor(e % 3, triangles[halfedges[e] / 3]);
+		}
+		return new DelaunayTriangulation(points, triangles);
+	}
+
+	private static void write(Path file, double[] xs, double[] ys, double[] zs, int vertexCount, int[] triangles,
+			int[] halfedges, int triangleCount) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(vertexCount).putInt(triangleCount);
+			buffer.flip();
+			writeFully(channel, buffer);
+			writeDoubles(channel, buffer, xs, vertexCount);
+			writeDoubles(channel, buffer, ys, vertexCount);
+			writeDoubles(channel, buffer, zs, vertexCount);
+			writeInts(channel, buffer, triangles, 3 * triangleCount);
+			writeInts(channel, buffer, halfedges, 3 * triangleCount);
+			// the int arrays may end on an odd multiple of 4 bytes
+			if (triangleCount % 2 != 0) {
+				buffer.clear();
+				buffer.putInt(0);
+				buffer.flip();
+				writeFully(channel, buffer);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int count)
+			throws IOException {
+		for (int i = 0; i < count;) {
+			int n = Math.min(count - i, buffer.capacity() / 8);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(values, i, n);
+			buffer.limit(8 * n);
+			writeFully(channel, buffer);
+			i += n;
+		}
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+		for (int i = 0; i < count;) {
+			int n = Math.min(count - i, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.asIntBuffer().put(values, i, n);
+			buffer.limit(4 * n);
+			writeFully(channel, buffer);
+			i += n;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static Content readContent(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			// the arrays end up on the heap anyway, a mapping would only hold them twice
+			Content content = readHeader(channel, file);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(HEADER_SIZE);
+			content.xs = readDoubles(channel, buffer, content.vertexCount);
+			content.ys = readDoubles(channel, buffer, content.vertexCount);
+			content.zs = readDoubles(channel, buffer, content.vertexCount);
+			content.triangles = readInts(channel, buffer, 3 * content.triangleCount);
+			content.halfedges = readInts(channel, buffer, 3 * content.triangleCount);
+			return content;
+		} finally {
+			channel.close();
+		}
+	}
+
+	// checks the header and the length of the file, returns the counts
+	private static Content readHeader(FileChannel channel, Path file) throws IOException {
+		long size = channel.size();
+		if (size < HEADER_SIZE) {
+			throw new UnsupportedFormatException(file + " is too short for a triangulation: " + size + " bytes");
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC) {
+			throw new UnsupportedFormatException(file + " is no triangulation");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new UnsupportedFormatException(file + " has the unsupported version " + version);
+		}
+		Content content = new Content();
+		content.vertexCount = header.getInt();
+		content.triangleCount = header.getInt();
+		long expected = HEADER_SIZE + 24L * content.vertexCount + 24L * content.triangleCount
+				+ (content.triangleCount % 2 != 0 ? 4 : 0);
+		if (content.vertexCount < 0 || content.triangleCount < 0 || size != expected) {
+			throw new UnsupportedFormatException(file + " has " + size + " bytes, the header expects " + expected);
+		}
+		return content;
+	}
+
+	private static double[] readDoubles(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+		double[] values = new double[count];
+		for (int i = 0; i < count;) {
+			int n = Math.min(count - i, buffer.capacity() / 8);
+			buffer.clear();
+			buffer.limit(8 * n);
+			readFully(channel, buffer, -1);
+			buffer.flip();
+			buffer.asDoubleBuffer().get(values, i, n);
+			i += n;
+		}
+		return values;
+	}
+
+	private static int[] readInts(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+		int[] values = new int[count];
+		for (int i = 0; i < count;) {
+			int n = Math.min(count - i, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.limit(4 * n);
+			readFully(channel, buffer, -1);
+			buffer.flip();
+			buffer.asIntBuffer().get(values, i, n);
+			i += n;
+		}
+		return values;
+	}
+
+	// reads until buffer is full, at position or at the position of the channel if position < 0
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = position < 0 ? channel.read(buffer) : channel.read(buffer, position + buffer.position());
+			if (n < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * the arrays of a file.
+	 */
+	private static final class Content {
+
+		private double[] xs, ys, zs;
+		private int vertexCount;
+		private int[] triangles, halfedges;
+		private int triangleCount;
+	}
+}
@@ -0,0 +1,427 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resamples a triangulated irregular network on a regular grid. <br>
+ * The grid has columns x rows cells over [minX, maxX] x [minY, maxY], the
+ * value of a cell is the height of the TIN at the centre of the cell, NaN if
+ * the centre is outside of the convex hull. The result is row-major: cell
+ * (column, row) is at index row * columns + column, row 0 is at minY. <br>
+ * Every triangle is scan converted over the cells it covers instead of
+ * locating every cell on its own: the triangles are bucketed into bands of
+ * BAND_ROWS rows, the bands are filled in parallel and within a band every
+ * triangle walks its rows and interpolates its plane along the span of
+ * columns it covers. The span ends on an edge are computed the same way for
+ * both triangles of the edge, so adjacent triangles leave no gaps.
+ */
+public class TinRasterizer {
+
+	/** rows of the grid filled by one task */
+	private static final int BAND_ROWS = 16;
+
+	private final double minX, maxX, minY, maxY;
+	private final int columns, rows;
+	private final double cellWidth, cellHeight;
+
+	/**
+	 * @param minX
+	 *            left border of the grid.
+	 * @param maxX
+	 *            right border of the grid.
+	 * @param minY
+	 *            lower border of the grid.
+	 * @param maxY
+	 *            upper border of the grid.
+	 * @param columns
+	 *            number of cells in x direction.
+	 * @param rows
+	 *            number of cells in y direction.
+	 */
+	public TinRasterizer(double minX, double maxX, double minY, double maxY, int columns, int rows) {
+		if (columns <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("the grid needs at least one cell: " + columns + " x " + rows);
+		}
+		if ((long) columns * rows > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("the grid has too many cells: " + columns + " x " + rows);
+		}
+		if (!(minX < maxX) || !(minY < maxY)) {
+			throw new IllegalArgumentException("empty grid area: [" + minX + ", " + maxX + "] x [" + minY + ", " + maxY + "]");
+		}
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+		this.columns = columns;
+		this.rows = rows;
+		this.cellWidth = (maxX - minX) / columns;
+		this.cellHeight = (maxY - minY) / rows;
+	}
+
+	/**
+	 * creates a grid over the x/y extent of box.
+	 */
+	public TinRasterizer(BoundingBox box, int columns, int rows) {
+		this(box.minX(), box.maxX(), box.minY(), box.maxY(), columns, rows);
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public double getCellWidth() {
+		return cellWidth;
+	}
+
+	public double getCellHeight() {
+		return cellHeight;
+	}
+
+	/**
+	 * @return the x-coordinate of the centre of the cells in column.
+	 */
+	public double getCellCenterX(int column) {
+		return minX + (column + 0.5) * cellWidth;
+	}
+
+	/**
+	 * @return the y-coordinate of the centre of the cells in row.
+	 */
+	public double getCellCenterY(int row) {
+		return minY + (row + 0.5) * cellHeight;
+	}
+
+	@Override
+	public String toString() {
+		return "TinRasterizer [" + columns + " x " + rows + " over [" + minX + ", " + maxX + "] x [" + minY + ", " + maxY + "]]";
+	}
+
+	/**
+	 * resamples the triangulation on the common fork join pool.
+	 */
+	public double[] rasterize(DelaunayTriangulation delaunay) {
+		double[] out = new double[columns * rows];
+		rasterize(delaunay, out, ForkJoinPool.commonPool());
+		return out;
+	}
+
+	/**
+	 * resamples the triangulation on the common fork join pool.
+	 */
+	public float[] rasterizeFloat(DelaunayTriangulation delaunay) {
+		float[] out = new float[columns * rows];
+		rasterize(delaunay, out, ForkJoinPool.commonPool());
+		return out;
+	}
+
+	/**
+	 * resamples the triangulation into out, which needs columns * rows
+	 * entries. The triangulation must not be changed during the call.
+	 */
+	public void rasterize(DelaunayTriangulation delaunay, double[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(delaunay), out, null).run(pool);
+	}
+
+	/**
+	 * resamples the triangulation into out, which needs columns * rows
+	 * entries. The triangulation must not be changed during the call.
+	 */
+	public void rasterize(DelaunayTriangulation delaunay, float[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(delaunay), null, out).run(pool);
+	}
+
+	/**
+	 * resamples the triangulation on the common fork join pool.
+	 */
+	public double[] rasterize(ArrayDelaunayTriangulation delaunay) {
+		double[] out = new double[columns * rows];
+		rasterize(delaunay, out, ForkJoinPool.commonPool());
+		return out;
+	}
+
+	/**
+	 * resamples the triangulation on the common fork join pool.
+	 */
+	public float[] rasterizeFloat(ArrayDelaunayTriangulation delaunay) {
+		float[] out = new float[columns * rows];
+		rasterize(delaunay, out, ForkJoinPool.commonPool());
+		return out;
+	}
+
+	/**
+	 * resamples the triangulation into out, which needs columns * rows
+	 * entries. The triangulation must not be changed during the call.
+	 */
+	public void rasterize(ArrayDelaunayTriangulation delaunay, double[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(delaunay), out, null).run(pool);
+	}
+
+	/**
+	 * resamples the triangulation into out, which needs columns * rows
+	 * entries. The triangulation must not be changed during the call.
+	 */
+	public void rasterize(ArrayDelaunayTriangulation delaunay, float[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(delaunay), null, out).run(pool);
+	}
+
+	/**
+	 * resamples a triangle mesh given as vertex arrays and index triples into
+	 * out, which needs columns * rows entries. The triangles may have any
+	 * orientation but must not overlap.
+	 *
+	 * @param xs
+	 *            x-coordinates of the vertices.
+	 * @param ys
+	 *            y-coordinates of the vertices.
+	 * @param zs
+	 *            heights of the vertices.
+	 * @param triangles
+	 *            triangle i has the vertices (3i, 3i+1, 3i+2).
+	 */
+	public void rasterize(double[] xs, double[] ys, double[] zs, int[] triangles, double[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(xs, ys, zs, triangles), out, null).run(pool);
+	}
+
+	/**
+	 * float version of {@link #rasterize(double[], double[], double[], int[], double[], ForkJoinPool)}.
+	 */
+	public void rasterize(double[] xs, double[] ys, double[] zs, int[] triangles, float[] out, ForkJoinPool pool) {
+		checkOutput(out.length);
+		new Raster(this, coordinates(xs, ys, zs, triangles), null, out).run(pool);
+	}
+
+	private void checkOutput(int length) {
+		if (length < columns * rows) {
+			throw new IllegalArgumentException("out is smaller than the grid: " + length + " < " + columns * rows);
+		}
+	}
+
+	// the finite triangles as (x, y, z) of their three corners, 9 per triangle
+	private static double[] coordinates(DelaunayTriangulation delaunay) {
+		double[] coords = new double[9 * delaunay.trianglesSize()];
+		int k = 0;
+		for (Iterator<Triangle> it = delaunay.trianglesIterator(); it.hasNext();) {
+			Triangle t = it.next();
+			if (!t.isHalfplane()) {
+				k = put(coords, k, t.getA());
+				k = put(coords, k, t.getB());
+				k = put(coords, k, t.getC());
+			}
+		}
+		return k == coords.length ? coords : Arrays.copyOf(coords, k);
+	}
+
+	private static int put(double[] coords, int k, Point p) {
+		coords[k] = p.getX();
+		coords[k + 1] = p.getY();
+		coords[k + 2] = p.getZ();
+		return k + 3;
+	}
+
+	private static double[] coordinates(ArrayDelaunayTriangulation delaunay) {
+		int[] triangles = delaunay.getTriangleVertices();
+		double[] coords = new double[3 * triangles.length];
+		for (int i = 0, k = 0; i < triangles.length; i++, k += 3) {
+			coords[k] = delaunay.getX(triangles[i]);
+			coords[k + 1] = delaunay.getY(triangles[i]);
+			coords[k + 2] = delaunay.getZ(triangles[i]);
+		}
+		return coords;
+	}
+
+	private static double[] coordinates(double[] xs, double[] ys, double[] zs, int[] triangles) {
+		if (xs.length != ys.length || xs.length != zs.length) {
+			throw new IllegalArgumentException("xs, ys and zs differ in length: " + xs.length + ", " + ys.length + ", " + zs.length);
+		}
+		if (triangles.length % 3 != 0) {
+			throw new IllegalArgumentException("triangles is no list of triples: " + triangles.length);
+		}
+		double[] coords = new double[3 * triangles.length];
+		for (int i = 0, k = 0; i < triangles.length; i++, k += 3) {
+			coords[k] = xs[triangles[i]];
+			coords[k + 1] = ys[triangles[i]];
+			coords[k + 2] = zs[triangles[i]];
+		}
+		return coords;
+	}
+
+	/**
+	 * @return the x-coordinate of the segment (ax, ay)-(bx, by) at y, computed
+	 *         the same way whatever the order of the end points.
+	 */
+	private static double edgeX(double ax, double ay, double bx, double by, double y) {
+		if (ay > by || (ay == by && ax > bx)) {
+			double tx = ax, ty = ay;
+			ax = bx;
+			ay = by;
+			bx = tx;
+			by = ty;
+		}
+		if (y == ay) {
+			return ax;
+		}
+		if (y == by) {
+			return bx;
+		}
+		return ax + (y - ay) * ((bx - ax) / (by - ay));
+	}
+
+	/**
+	 * one rasterization: the triangles bucketed by bands and the output.
+	 */
+	private static final class Raster {
+
+		private final TinRasterizer grid;
+		private final double[] coords;
+		private final double[] outDouble;
+		private final float[] outFloat;
+
+		// the rows [firstRow[i], lastRow[i]] have their centres in triangle i
+		private final int[] firstRow, lastRow;
+
+		// the triangles touching band b are bandTriangles[bandStart[b],
+		// bandStart[b + 1])
+		private final int[] bandStart;
+		private final int[] bandTriangles;
+
+		Raster(TinRasterizer grid, double[] coords, double[] outDouble, float[] outFloat) {
+			this.grid = grid;
+			this.coords = coords;
+			this.outDouble = outDouble;
+			this.outFloat = outFloat;
+			int n = coords.length / 9;
+			int bands = (grid.rows + BAND_ROWS - 1) / BAND_ROWS;
+			firstRow = new int[n];
+			lastRow = new int[n];
+			bandStart = new int[bands + 1];
+			for (int i = 0; i < n; i++) {
+				int k = 9 * i;
+				double lowY = Math.min(coords[k + 1], Math.min(coords[k + 4], coords[k + 7]));
+				double highY = Math.max(coords[k + 1], Math.max(coords[k + 4], coords[k + 7]));
+				firstRow[i] = (int) Math.max(0, Math.ceil((lowY - grid.minY) / grid.cellHeight - 0.5));
+				lastRow[i] = (int) Math.min(grid.rows - 1, Math.floor((highY - grid.minY) / grid.cellHeight - 0.5));
+				if (!(lowY < highY)) {
+					// degenerate or NaN, no area to fill
+					lastRow[i] = -1;
+				}
+				for (int b = firstRow[i] / BAND_ROWS; b <= lastRow[i] / BAND_ROWS && lastRow[i] >= firstRow[i]; b++) {
+					bandStart[b + 1]++;
+				}
+			}
+			for (int b = 0; b < bands; b++) {
+				bandStart[b + 1] += bandStart[b];
+			}
+			bandTriangles = new int[bandStart[bands]];
+			int[] next = Arrays.copyOf(bandStart, bands);
+			for (int i = 0; i < n; i++) {
+				for (int b = firstRow[i] / BAND_ROWS; b <= lastRow[i] / BAND_ROWS && lastRow[i] >= firstRow[i]; b++) {
+					bandTriangles[next[b]++] = i;
+				}
+			}
+		}
+
+		void run(ForkJoinPool pool) {
+			pool.invoke(new BandTask(this, 0, bandStart.length - 1));
+		}
+
+		void fillBand(int band) {
+			int fromRow = band * BAND_ROWS;
+			int toRow = Math.min(grid.rows, fromRow + BAND_ROWS) - 1;
+			int from = fromRow * grid.columns;
+			int to = (toRow + 1) * grid.columns;
+			if (outDouble != null) {
+				Arrays.fill(outDouble, from, to, Double.NaN);
+			} else {
+				Arrays.fill(outFloat, from, to, Float.NaN);
+			}
+			for (int j = bandStart[band]; j < bandStart[band + 1]; j++) {
+				int i = bandTriangles[j];
+				fillTriangle(i, Math.max(fromRow, firstRow[i]), Math.min(toRow, lastRow[i]));
+			}
+		}
+
+		// scan converts triangle i over the rows [fromRow, toRow]
+		private void fillTriangle(int i, int fromRow, int toRow) {
+			int k = 9 * i;
+			double x1 = coords[k], y1 = coords[k + 1], z1 = coords[k + 2];
+			double x2 = coords[k + 3], y2 = coords[k + 4], z2 = coords[k + 5];
+			double x3 = coords[k + 6], y3 = coords[k + 7], z3 = coords[k + 8];
+			double det = (x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1);
+			if (det == 0 || Double.isNaN(det)) {
+				return;
+			}
+			double dzdx = ((z2 - z1) * (y3 - y1) - (z3 - z1) * (y2 - y1)) / det;
+			double dzdy = ((x2 - x1) * (z3 - z1) - (x3 - x1) * (z2 - z1)) / det;
+			// sort the corners by y: (lx, ly) <= (mx, my) <= (hx, hy)
+			double lx = x1, ly = y1, mx = x2, my = y2, hx = x3, hy = y3, t;
+			if (ly > my) {
+				t = lx; lx = mx; mx = t;
+				t = ly; ly = my; my = t;
+			}
+			if (my > hy) {
+				t = mx; mx = hx; hx = t;
+				t = my; my = hy; hy = t;
+			}
+			if (ly > my) {
+				t = lx; lx = mx; mx = t;
+				t = ly; ly = my; my = t;
+			}
+			int columns = grid.columns;
+			for (int row = fromRow; row <= toRow; row++) {
+				double y = grid.getCellCenterY(row);
+				double xa = edgeX(lx, ly, hx, hy, y);
+				double xb = y <= my && my > ly ? edgeX(lx, ly, mx, my, y) : edgeX(mx, my, hx, hy, y);
+				double left = Math.min(xa, xb);
+				double right = Math.max(xa, xb);
+				int firstColumn = (int) Math.max(0, Math.ceil((left - grid.minX) / grid.cellWidth - 0.5));
+				int lastColumn = (int) Math.min(columns - 1, Math.floor((right - grid.minX) / grid.cellWidth - 0.5));
+				double rowZ = z1 + dzdy * (y - y1);
+				int offset = row * columns;
+				if (outDouble != null) {
+					for (int column = firstColumn; column <= lastColumn; column++) {
+						outDouble[offset + column] = rowZ + dzdx * (grid.getCellCenterX(column) - x1);
+					}
+				} else {
+					for (int column = firstColumn; column <= lastColumn; column++) {
+						outFloat[offset + column] = (float) (rowZ + dzdx * (grid.getCellCenterX(column) - x1));
+					}
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class BandTask extends RecursiveAction {
+
+		private final Raster raster;
+		private final int firstBand, lastBand;
+
+		BandTask(Raster raster, int firstBand, int lastBand) {
+			this.raster = raster;
+			this.firstBand = firstBand;
+			this.lastBand = lastBand;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastBand - firstBand == 1) {
+				raster.fillBand(firstBand);
+				return;
+			}
+			int middle = (firstBand + lastBand) >>> 1;
+			invokeAll(new BandTask(raster, firstBand, middle), new BandTask(raster, middle, lastBand));
+		}
+	}
+}
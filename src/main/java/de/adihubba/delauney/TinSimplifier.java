@@ -0,0 +1,362 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Simplifies a large set of height points to a smaller TIN by greedy
+ * insertion: starting with the corners of the convex hull, the point with the
+ * largest vertical error against the current triangulation is inserted,
+ * until no point is off by more than maxError or the triangulation has
+ * maxVertices vertices. <br>
+ * Every triangle owns the points inside of it and knows the worst of them (by
+ * {@link Triangle#zValue(double, double)}), a priority queue holds the
+ * triangles by that error. Inserting a point only replaces the triangles
+ * whose circumcircle contains it: their points are handed to the new
+ * triangles around the point and only these are measured again, so a
+ * simplification to k vertices costs about n log k point tests. The points
+ * are copied in the order of a Hilbert curve, which keeps these tests within
+ * the cache.
+ */
+public final class TinSimplifier {
+
+	// the points in Hilbert order, so the points of a triangle are close in
+	// memory as well
+	private final double[] xs, ys, zs;
+
+	// the error of the last simplification
+	private double error = Double.NaN;
+
+	/**
+	 * @param xs
+	 *            the x coordinates of the points
+	 * @param ys
+	 *            the y coordinates of the points
+	 * @param zs
+	 *            the heights of the points
+	 */
+	public TinSimplifier(double[] xs, double[] ys, double[] zs) {
+		if (ys.length != xs.length || zs.length != xs.length)
+			throw new IllegalArgumentException("coordinate arrays differ in length");
+		int n = xs.length;
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		SpatialSort.hilbertSort(xs, ys, order, 0, n);
+		this.xs = new double[n];
+		this.ys = new double[n];
+		this.zs = new double[n];
+		for (int i = 0; i < n; i++) {
+			this.xs[i] = xs[order[i]];
+			this.ys[i] = ys[order[i]];
+			this.zs[i] = zs[order[i]];
+		}
+	}
+
+	/**
+	 * builds the simplified triangulation.
+	 *
+	 * @param maxError
+	 *            the largest vertical distance a point may have to the result
+	 * @param maxVertices
+	 *            the largest number of vertices of the result; the corners of
+	 *            the convex hull are always included
+	 * @return the triangulation of the chosen points.
+	 */
+	public DelaunayTriangulation simplify(double maxError, int maxVertices) {
+		return simplify(maxError, maxVertices, null);
+	}
+
+	/**
+	 * like {@link #simplify(double, int)}, and tells the recorder about every
+	 * step.
+	 */
+	DelaunayTriangulation simplify(double maxError, int maxVertices, Recorder recorder) {
+		if (!(maxError >= 0))
+			throw new IllegalArgumentException("the error bound has to be at least 0: " + maxError);
+		int[] hull;
+		if (xs.length < 3) {
+			// no hull to compute, none or all of the points are its corners
+			hull = new int[xs.length];
+			for (int i = 0; i < hull.length; i++) {
+				hull[i] = i;
+			}
+		} else {
+			hull = TiledTriangulationBuilder.convexHull(xs, ys);
+		}
+		List<Point> corners = new ArrayList<Point>(hull.length);
+		for (int i : hull) {
+			corners.add(new Point(xs[i], ys[i], zs[i]));
+		}
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(corners);
+		if (recorder != null)
+			recorder.started(delaunay);
+		if (hull.length < 3) {
+			// too few or collinear points, there is no surface to approximate
+			error = 0;
+			return delaunay;
+		}
+
+		Map<Triangle, Bucket> buckets = new IdentityHashMap<Triangle, Bucket>();
+		PriorityQueue<Bucket> queue = new PriorityQueue<Bucket>(11, new Comparator<Bucket>() {
+			@Override
+			public int compare(Bucket b1, Bucket b2) {
+				return Double.compare(b2.error, b1.error);
+			}
+		});
+		Triangle t = null;
+		for (int i = 0; i < xs.length; i++) {
+			t = delaunay.find(new Point(xs[i], ys[i]), t);
+			if (t.isHalfplane())
+				throw new IllegalStateException("the point " + i + " is outside of the hull");
+			Bucket bucket = buckets.get(t);
+			if (bucket == null) {
+				bucket = new Bucket(t);
+				buckets.put(t, bucket);
+			}
+			bucket.add(i);
+		}
+		for (Bucket bucket : buckets.values()) {
+			if (bucket.measure(xs, ys, zs))
+				queue.add(bucket);
+		}
+
+		error = 0;
+		List<Triangle> targets = new ArrayList<Triangle>();
+		Fan fan = new Fan();
+		ArrayDeque<Triangle> front = new ArrayDeque<Triangle>();
+		while (!queue.isEmpty()) {
+			Bucket worst = queue.poll();
+			if (buckets.get(worst.triangle) != worst)
+				continue; // outdated
+			if (worst.error <= maxError || delaunay.size() >= maxVertices) {
+				error = worst.error;
+				break;
+			}
+			int w = worst.points[worst.worst];
+			Point p = new Point(xs[w], ys[w], zs[w]);
+
+			// the triangles the insertion replaces, they give up their points
+			targets.clear();
+			front.push(worst.triangle);
+			targets.add(worst.triangle);
+			while (!front.isEmpty()) {
+				Triangle c = front.pop();
+				for (int i = 0; i < 3; i++) {
+					Triangle n = c.edgeNeighbor(i);
+					if (!n.isHalfplane() && !targets.contains(n) && n.circumcircleContains(p)) {
+						targets.add(n);
+						front.push(n);
+					}
+				}
+			}
+			List<Bucket> orphans = new ArrayList<Bucket>(targets.size());
+			for (Triangle c : targets) {
+				Bucket bucket = buckets.remove(c);
+				if (bucket != null)
+					orphans.add(bucket);
+			}
+
+			Triangle star = delaunay.insertPoint(p, worst.triangle);
+			if (recorder != null)
+				recorder.inserted(p, worst.error);
+			fan.clear();
+			Triangle c = star;
+			do {
+				if (!c.isHalfplane()) {
+					fan.add(c);
+					if (!targets.contains(c))
+						targets.add(c);
+				}
+				c = c.neighbor(p);
+			} while (c != star);
+			fan.freeze(p);
+
+			// hand the points to the triangles around p, or to the replaced
+			// triangles the insertion kept after all
+			for (Bucket orphan : orphans) {
+				for (int k = 0; k < orphan.size; k++) {
+					int i = orphan.points[k];
+					if (i == w)
+						continue;
+					Triangle owner = fan.owner(xs[i], ys[i]);
+					if (owner == null)
+						owner = owner(targets, xs[i], ys[i]);
+					if (owner == null)
+						owner = delaunay.find(new Point(xs[i], ys[i]), star);
+					Bucket bucket = buckets.get(owner);
+					if (bucket == null) {
+						bucket = new Bucket(owner);
+						buckets.put(owner, bucket);
+					}
+					bucket.add(i);
+				}
+			}
+			for (Triangle target : targets) {
+				Bucket bucket = buckets.get(target);
+				if (bucket != null && bucket.measure(xs, ys, zs))
+					queue.add(bucket);
+			}
+		}
+		return delaunay;
+	}
+
+	/**
+	 * @return the largest vertical error of a point against the last result
+	 *         of {@link #simplify(double, int)}, NaN before.
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * follows a simplification, see {@link ProgressiveTin}.
+	 */
+	interface Recorder {
+
+		/**
+		 * the triangulation of the hull corners is built, nothing was inserted
+		 * yet.
+		 */
+		void started(DelaunayTriangulation delaunay);
+
+		/**
+		 * p was inserted.
+		 *
+		 * @param error
+		 *            the error of the triangulation before p
+		 */
+		void inserted(Point p, double error);
+	}
+
+	private static Triangle owner(List<Triangle> triangles, double x, double y) {
+		Point q = new Point(x, y);
+		for (Triangle t : triangles) {
+			if (t.isLive() && !t.isHalfplane() && t.contains(q))
+				return t;
+		}
+		return null;
+	}
+
+	/**
+	 * the triangles around a new vertex p. A point is found by the wedge
+	 * between the edges from p it is in, then checked against the third edge.
+	 */
+	private static final class Fan {
+
+		Triangle[] triangles = new Triangle[16];
+		int size;
+
+		// p and the corners after it of every triangle, counterclockwise
+		double px, py;
+		double[] us = new double[32], vs = new double[32];
+
+		void clear() {
+			Arrays.fill(triangles, 0, size, null);
+			size = 0;
+		}
+
+		void add(Triangle t) {
+			if (size == triangles.length) {
+				triangles = Arrays.copyOf(triangles, 2 * size);
+				us = Arrays.copyOf(us, 4 * size);
+				vs = Arrays.copyOf(vs, 4 * size);
+			}
+			triangles[size++] = t;
+		}
+
+		void freeze(Point p) {
+			px = p.getX();
+			py = p.getY();
+			for (int j = 0; j < size; j++) {
+				Triangle t = triangles[j];
+				int k = t.getA() == p ? 0 : t.getB() == p ? 1 : 2;
+				Point u = t.corner(k + 1), v = t.corner(k + 2);
+				us[2 * j] = u.getX();
+				us[2 * j + 1] = u.getY();
+				vs[2 * j] = v.getX();
+				vs[2 * j + 1] = v.getY();
+			}
+		}
+
+		/**
+		 * @return the triangle containing (x, y), null if it is none of the
+		 *         fan.
+		 */
+		Triangle owner(double x, double y) {
+			for (int j = 0; j < size; j++) {
+				double ux = us[2 * j], uy = us[2 * j + 1], vx = vs[2 * j], vy = vs[2 * j + 1];
+				if (GeometricPredicates.orient2d(px, py, ux, uy, x, y) >= 0
+						&& GeometricPredicates.orient2d(vx, vy, px, py, x, y) >= 0) {
+					return GeometricPredicates.orient2d(ux, uy, vx, vy, x, y) >= 0 ? triangles[j] : null;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * the points inside of a triangle and the worst of them.
+	 */
+	private static final class Bucket {
+
+		final Triangle triangle;
+		int[] points = new int[4];
+		int size;
+
+		// the position of the point with the largest error, and the error
+		int worst;
+		double error;
+
+		Bucket(Triangle triangle) {
+			this.triangle = triangle;
+		}
+
+		void add(int i) {
+			if (size == points.length) {
+				int[] grown = new int[2 * size];
+				System.arraycopy(points, 0, grown, 0, size);
+				points = grown;
+			}
+			points[size++] = i;
+		}
+
+		/**
+		 * drops the points on the corners (they can not be inserted again) and
+		 * finds the worst of the others.
+		 *
+		 * @return true if there is a point left.
+		 */
+		boolean measure(double[] xs, double[] ys, double[] zs) {
+			int kept = 0;
+			worst = -1;
+			error = -1;
+			for (int k = 0; k < size; k++) {
+				int i = points[k];
+				double x = xs[i], y = ys[i];
+				if (isCorner(triangle.getA(), x, y) || isCorner(triangle.getB(), x, y)
+						|| isCorner(triangle.getC(), x, y))
+					continue;
+				double e = Math.abs(zs[i] - triangle.zValue(x, y));
+				if (e > error) {
+					error = e;
+					worst = kept;
+				}
+				points[kept++] = i;
+			}
+			size = kept;
+			return size > 0;
+		}
+
+		private static boolean isCorner(Point p, double x, double y) {
+			return p.getX() == x && p.getY() == y;
+		}
+	}
+}
@@ -10,7 +10,6 @@ import java.io.Serializable;
 public class Triangle implements Serializable {
 	private Point a, b, c;
 	private Triangle abTriangle, bcTriangle, caTriangle;
-	private Circle circum;
 
 	private int mc = 0;
 
@@ -20,6 +19,13 @@ public class Triangle implements Serializable {
 	// tag - for bfs algorithms
 	private boolean mark = false;
 
+	// slot + 1 in the live triangle registry of the triangulation, 0 if none
+	private transient int liveSlot;
+
+	// the plane through the corners, computed on the first z query and
+	// dropped when a corner changes
+	private transient Plane plane;
+
 	/**
 	 * constructs a triangle form 3 point - store it in counterclockwised order.
 	 */
@@ -35,7 +41,6 @@ public class Triangle implements Serializable {
 			b = C;
 			c = B;
 		}
-		circumcircle();
 	}
 
 	/**
@@ -127,8 +132,12 @@ public class Triangle implements Serializable {
 		return neighbor;
 	}
 
+	/**
+	 * computes the circumcircle of this triangle. Note: the circle is not
+	 * stored, the Delaunay tests use {@link #circumcircleContains(Point)}.
+	 */
 	Circle circumcircle() {
-
+		Circle circum;
 		double u = ((a.getX() - b.getX()) * (a.getX() + b.getX()) + (a.getY() - b.getY()) * (a.getY() + b.getY())) / 2.0f;
 		double v = ((b.getX() - c.getX()) * (b.getX() + c.getX()) + (b.getY() - c.getY()) * (b.getY() + c.getY())) / 2.0f;
 		double den = (a.getX() - b.getX()) * (b.getY() - c.getY()) - (b.getX() - c.getX()) * (a.getY() - b.getY());
@@ -143,9 +152,17 @@ public class Triangle implements Serializable {
 		return circum;
 	}
 
+	/**
+	 * @return true iff p lies strictly inside the circumcircle of this
+	 *         triangle, decided by the exact in-circle predicate. A degenerate
+	 *         (collinear) triangle is considered to contain every point.
+	 */
 	boolean circumcircleContains(Point p) {
-
-		return circum.radius() > circum.center().distance2(p);
+		double orient = GeometricPredicates.orient2d(a, b, c);
+		if (orient == 0)
+			return true;
+		double incircle = GeometricPredicates.incircle(a, b, c, p);
+		return orient > 0 ? incircle > 0 : incircle < 0;
 	}
 
 	@Override
@@ -257,16 +274,73 @@ public class Triangle implements Serializable {
 	 * @return the Z value of this plane implies by this triangle 3 points.
 	 */
 	public double zValue(Point q) {
-		if (q == null || this.halfplane)
+		if (q == null)
 			throw new RuntimeException("*** ERR wrong parameters, can't approximate the z value ..***: " + q);
+		return zValue(q.getX(), q.getY());
+	}
+
+	/**
+	 * compute the Z value for x, y on the plane of this triangle. The plane
+	 * coefficients are computed once and cached; after changing the z value
+	 * of a corner call {@link #invalidatePlane()}.
+	 * 
+	 * @param x
+	 *            x-coordinate of the query point.
+	 * @param y
+	 *            y-coordinate of the query point.
+	 * @return the Z value of this plane implies by this triangle 3 points.
+	 */
+	public double zValue(double x, double y) {
+		if (this.halfplane)
+			throw new RuntimeException("*** ERR wrong parameters, can't approximate the z value ..***: " + x + ", " + y);
 		/* incase the query point is on one of the points */
-		if (q.getX() == a.getX() && q.getY() == a.getY())
+		if (x == a.getX() && y == a.getY())
 			return a.getZ();
-		if (q.getX() == b.getX() && q.getY() == b.getY())
+		if (x == b.getX() && y == b.getY())
 			return b.getZ();
-		if (q.getX() == c.getX() && q.getY() == c.getY())
+		if (x == c.getX() && y == c.getY())
 			return c.getZ();
+		Plane p = plane;
+		if (p == null) {
+			p = new Plane(a, b, c);
+			plane = p;
+		}
+		if (p.degenerate)
+			return zValueOfLines(new Point(x, y));
+		return p.z0 + p.dzdx * (x - p.x0) + p.dzdy * (y - p.y0);
+	}
 
+	/**
+	 * like {@link #zValue(double, double)}, but neither reads nor fills the
+	 * cached plane. For readers racing with a writer, which must not leave a
+	 * plane of half changed corners behind.
+	 */
+	double zValueUncached(double x, double y) {
+		Point a = this.a, b = this.b, c = this.c;
+		if (x == a.getX() && y == a.getY())
+			return a.getZ();
+		if (x == b.getX() && y == b.getY())
+			return b.getZ();
+		if (x == c.getX() && y == c.getY())
+			return c.getZ();
+		Plane p = new Plane(a, b, c);
+		if (p.degenerate)
+			return zValueOfLines(new Point(x, y));
+		return p.z0 + p.dzdx * (x - p.x0) + p.dzdy * (y - p.y0);
+	}
+
+	/**
+	 * drops the cached plane, needed if the z value of a corner was changed.
+	 */
+	public void invalidatePlane() {
+		plane = null;
+	}
+
+	/*
+	 * the z value by intersecting the line a,q with the line b,c, also works
+	 * for triangles without a plane (collinear corners).
+	 */
+	private double zValueOfLines(Point q) {
 		/*
 		 * plane: aX + bY + c = Z: 2D line: y= mX + k
 		 */
@@ -335,7 +409,7 @@ public class Triangle implements Serializable {
 	 * 
 	 */
 	public double getZ(double x, double y) {
-		return zValue(new Point(x, y));
+		return zValue(x, y);
 	}
 
 	/**
@@ -352,6 +426,79 @@ public class Triangle implements Serializable {
 		return new Point(q.getX(), q.getY(), z);
 	}
 	
+	/**
+	 * @return corner i (mod 3), null for the corner at infinity of a half
+	 *         plane. A half plane (a, b) is handled as the triangle (a, b,
+	 *         infinity).
+	 */
+	Point corner(int i) {
+		switch (i % 3) {
+		case 0:
+			return a;
+		case 1:
+			return b;
+		default:
+			return halfplane ? null : c;
+		}
+	}
+
+	/**
+	 * @return the neighbor across the edge from corner i to corner i + 1.
+	 */
+	Triangle edgeNeighbor(int i) {
+		switch (i) {
+		case 0:
+			return abTriangle;
+		case 1:
+			return bcTriangle;
+		default:
+			return caTriangle;
+		}
+	}
+
+	void setEdgeNeighbor(int i, Triangle n) {
+		switch (i) {
+		case 0:
+			abTriangle = n;
+			break;
+		case 1:
+			bcTriangle = n;
+			break;
+		default:
+			caTriangle = n;
+			break;
+		}
+	}
+
+	/**
+	 * @return the index of the edge from -&gt; to, -1 if this has no such
+	 *         edge.
+	 */
+	int edgeIndex(Point from, Point to) {
+		for (int i = 0; i < 3; i++) {
+			if (corner(i) == from && corner(i + 1) == to) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	int getLiveIndex() {
+		return liveSlot - 1;
+	}
+
+	void setLiveIndex(int liveIndex) {
+		this.liveSlot = liveIndex + 1;
+	}
+
+	/**
+	 * @return true if this triangle is part of a triangulation, false if it
+	 *         was deleted.
+	 */
+	boolean isLive() {
+		return liveSlot > 0;
+	}
+
 	public boolean isMark() {
 		return mark;
 	}
@@ -378,6 +525,7 @@ public class Triangle implements Serializable {
 
 	public void setHalfplane(boolean halfplane) {
 		this.halfplane = halfplane;
+		this.plane = null;
 	}
 
 	public void setMc(int mc) {
@@ -426,6 +574,7 @@ public class Triangle implements Serializable {
 
 	public void setA(Point a) {
 		this.a = a;
+		this.plane = null;
 	}
 
 	/**
@@ -437,6 +586,7 @@ public class Triangle implements Serializable {
 
 	public void setB(Point b) {
 		this.b = b;
+		this.plane = null;
 	}
 
 	/**
@@ -448,5 +598,29 @@ public class Triangle implements Serializable {
 
 	public void setC(Point c) {
 		this.c = c;
+		this.plane = null;
+	}
+
+	/**
+	 * z = z0 + dzdx * (x - x0) + dzdy * (y - y0), anchored at the corner a to
+	 * keep the precision for large coordinates. The fields are final, so a
+	 * plane computed by one thread is safely seen by the others.
+	 */
+	private static final class Plane {
+
+		private final double x0, y0, z0, dzdx, dzdy;
+		private final boolean degenerate;
+
+		Plane(Point a, Point b, Point c) {
+			x0 = a.getX();
+			y0 = a.getY();
+			z0 = a.getZ();
+			double x2 = b.getX() - x0, y2 = b.getY() - y0, z2 = b.getZ() - z0;
+			double x3 = c.getX() - x0, y3 = c.getY() - y0, z3 = c.getZ() - z0;
+			double det = x2 * y3 - x3 * y2;
+			degenerate = det == 0;
+			dzdx = (z2 * y3 - z3 * y2) / det;
+			dzdy = (x2 * z3 - x3 * z2) / det;
+		}
 	}
 }
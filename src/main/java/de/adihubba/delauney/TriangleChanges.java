@@ -0,0 +1,81 @@
+package de.adihubba.delauney;
+
+/**
+ * The net change of the finite triangles of a triangulation between a
+ * checkpoint and a later position of its journal. <br>
+ * Triangles are given as flat vertex arrays: triangle i is (3i, 3i+1, 3i+2)
+ * in counterclockwise order. A triangle that was created and destroyed again
+ * in between is in neither array, and so is a triangle that was destroyed
+ * and created again.
+ */
+public final class TriangleChanges {
+
+	private final long from;
+	private final long to;
+	private final Point[] created;
+	private final Point[] destroyed;
+
+	TriangleChanges(long from, long to, Point[] created, Point[] destroyed) {
+		this.from = from;
+		this.to = to;
+		this.created = created;
+		this.destroyed = destroyed;
+	}
+
+	/**
+	 * @return the checkpoint the changes are counted from.
+	 */
+	public long getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the journal position the changes are counted to, use it as the
+	 *         next checkpoint.
+	 */
+	public long getTo() {
+		return to;
+	}
+
+	/**
+	 * @return the number of triangles that exist now but not at the
+	 *         checkpoint.
+	 */
+	public int getCreatedCount() {
+		return created.length / 3;
+	}
+
+	/**
+	 * @return the number of triangles that existed at the checkpoint but not
+	 *         now.
+	 */
+	public int getDestroyedCount() {
+		return destroyed.length / 3;
+	}
+
+	/**
+	 * @return the vertices of the created triangles, 3 per triangle.
+	 */
+	public Point[] getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the vertices of the destroyed triangles, 3 per triangle.
+	 */
+	public Point[] getDestroyed() {
+		return destroyed;
+	}
+
+	/**
+	 * @return true if the triangulation did not change.
+	 */
+	public boolean isEmpty() {
+		return created.length == 0 && destroyed.length == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "TriangleChanges [from=" + from + ", to=" + to + ", created=" + getCreatedCount() + ", destroyed=" + getDestroyedCount() + "]";
+	}
+}
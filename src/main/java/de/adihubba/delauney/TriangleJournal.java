@@ -0,0 +1,166 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the finite triangles a triangulation creates and destroys. <br>
+ * Every entry is a vertex triple plus whether the triangle appeared or
+ * disappeared. Triangles are changed in place by the engine (a flip rewrites
+ * two triangles), so an entry is recorded before a triangle is changed
+ * (destroyed) and after it got its new vertices (created). Positions are
+ * absolute, they stay valid when older entries are trimmed.
+ */
+class TriangleJournal {
+
+	private static final int MIN_CAPACITY = 64;
+
+	// absolute position of the first stored entry
+	private long base;
+
+	// 3 vertices per entry and the kind of the entry
+	private Point[] vertices = new Point[3 * MIN_CAPACITY];
+	private boolean[] created = new boolean[MIN_CAPACITY];
+	private int count;
+
+	/**
+	 * @return the position after the last entry.
+	 */
+	long position() {
+		return base + count;
+	}
+
+	void created(Triangle t) {
+		record(t, true);
+	}
+
+	void destroyed(Triangle t) {
+		record(t, false);
+	}
+
+	private void record(Triangle t, boolean isCreated) {
+		if (t.isHalfplane()) {
+			return;
+		}
+		if (count == created.length) {
+			created = Arrays.copyOf(created, 2 * count);
+			vertices = Arrays.copyOf(vertices, 6 * count);
+		}
+		int i = 3 * count;
+		vertices[i] = t.getA();
+		vertices[i + 1] = t.getB();
+		vertices[i + 2] = t.getC();
+		created[count++] = isCreated;
+	}
+
+	/**
+	 * forgets the entries before position.
+	 */
+	void trim(long position) {
+		checkPosition(position);
+		int drop = (int) (position - base);
+		System.arraycopy(created, drop, created, 0, count - drop);
+		System.arraycopy(vertices, 3 * drop, vertices, 0, 3 * (count - drop));
+		Arrays.fill(vertices, 3 * (count - drop), 3 * count, null);
+		count -= drop;
+		base = position;
+	}
+
+	/**
+	 * @return the net change from position to the current position.
+	 */
+	TriangleChanges changesSince(long position) {
+		checkPosition(position);
+		// +1 for every creation, -1 for every destruction of the same triangle
+		Map<Key, int[]> balance = new LinkedHashMap<Key, int[]>();
+		for (int e = (int) (position - base); e < count; e++) {
+			Key key = new Key(vertices[3 * e], vertices[3 * e + 1], vertices[3 * e + 2]);
+			int[] b = balance.get(key);
+			if (b == null) {
+				b = new int[1];
+				balance.put(key, b);
+			}
+			b[0] += created[e] ? 1 : -1;
+		}
+		int createdCount = 0, destroyedCount = 0;
+		for (int[] b : balance.values()) {
+			if (b[0] > 0) {
+				createdCount++;
+			} else if (b[0] < 0) {
+				destroyedCount++;
+			}
+		}
+		Point[] createdVertices = new Point[3 * createdCount];
+		Point[] destroyedVertices = new Point[3 * destroyedCount];
+		int c = 0, d = 0;
+		for (Map.Entry<Key, int[]> entry : balance.entrySet()) {
+			int b = entry.getValue()[0];
+			if (b > 0) {
+				c = entry.getKey().copyTo(createdVertices, c);
+			} else if (b < 0) {
+				d = entry.getKey().copyTo(destroyedVertices, d);
+			}
+		}
+		return new TriangleChanges(position, position(), createdVertices, destroyedVertices);
+	}
+
+	private void checkPosition(long position) {
+		if (position < base || position > base + count) {
+			throw new IllegalArgumentException("journal position " + position + " is not in [" + base + ", " + position() + "]");
+		}
+	}
+
+	/**
+	 * a counterclockwise vertex triple, rotated to start at its smallest
+	 * vertex so every rotation of a triangle has the same key. The vertices
+	 * of a triangulation are unique instances, so they are compared by
+	 * identity.
+	 */
+	private static final class Key {
+
+		private final Point a, b, c;
+
+		Key(Point a, Point b, Point c) {
+			if (a.compareTo(b) > 0 || a.compareTo(c) > 0) {
+				if (b.compareTo(c) < 0) {
+					Point t = a;
+					a = b;
+					b = c;
+					c = t;
+				} else {
+					Point t = a;
+					a = c;
+					c = b;
+					b = t;
+				}
+			}
+			this.a = a;
+			this.b = b;
+			this.c = c;
+		}
+
+		int copyTo(Point[] target, int i) {
+			target[i] = a;
+			target[i + 1] = b;
+			target[i + 2] = c;
+			return i + 3;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(a);
+			h = 31 * h + System.identityHashCode(b);
+			return 31 * h + System.identityHashCode(c);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return a == other.a && b == other.b && c == other.c;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package de.adihubba.delauney;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The live triangles of a triangulation, including the infinite faces. <br>
+ * The triangles are kept in a dense array; every triangle knows its slot, so
+ * adding and removing are O(1) (removing moves the last triangle into the
+ * hole) and enumerating is a plain array scan. <br>
+ * Once {@link #trackChanges()} was called the registry also collects the
+ * slots that got another triangle, see {@link #takeChanges()}.
+ */
+class TriangleRegistry implements Iterable<Triangle> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private Triangle[] triangles;
+	private int size;
+
+	// changes on every add and remove, checked by the iterators
+	private int modCount;
+
+	// the slots changed since the last takeChanges, null if not tracked
+	private BitSet changed;
+
+	TriangleRegistry() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of triangles that fit without growing.
+	 */
+	TriangleRegistry(int expectedSize) {
+		triangles = new Triangle[Math.max(expectedSize, MIN_CAPACITY)];
+	}
+
+	/**
+	 * @return the number of live triangles.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the triangle in slot index.
+	 */
+	Triangle get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+		return triangles[index];
+	}
+
+	/**
+	 * adds a newly created triangle.
+	 *
+	 * @return t
+	 */
+	Triangle add(Triangle t) {
+		if (t.getLiveIndex() >= 0) {
+			throw new IllegalArgumentException("triangle is already registered: " + t);
+		}
+		if (size == triangles.length) {
+			triangles = Arrays.copyOf(triangles, size * 2);
+		}
+		t.setLiveIndex(size);
+		if (changed != null) {
+			changed.set(size);
+		}
+		triangles[size++] = t;
+		modCount++;
+		return t;
+	}
+
+	/**
+	 * removes a triangle that is no longer part of the triangulation.
+	 *
+	 * @return true if t was registered.
+	 */
+	boolean remove(Triangle t) {
+		int index = t.getLiveIndex();
+		if (index < 0 || index >= size || triangles[index] != t) {
+			return false;
+		}
+		int last = --size;
+		if (index != last) {
+			Triangle moved = triangles[last];
+			moved.setLiveIndex(index);
+			triangles[index] = moved;
+			if (changed != null) {
+				changed.set(index);
+			}
+		}
+		triangles[last] = null;
+		t.setLiveIndex(-1);
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * removes all triangles.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			triangles[i].setLiveIndex(-1);
+			triangles[i] = null;
+		}
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * starts collecting the changed slots: from now on the slots of added
+	 * triangles, of moved triangles and of the triangles passed to
+	 * {@link #touch(Triangle)} are collected.
+	 */
+	void trackChanges() {
+		if (changed == null) {
+			changed = new BitSet();
+		}
+	}
+
+	/**
+	 * marks the slot of t as changed, for triangles changed in place.
+	 */
+	void touch(Triangle t) {
+		if (changed != null && t.getLiveIndex() >= 0) {
+			changed.set(t.getLiveIndex());
+		}
+	}
+
+	/**
+	 * @return the slots changed since the last call (some may be beyond the
+	 *         size by now), and starts collecting anew.
+	 */
+	BitSet takeChanges() {
+		BitSet result = changed;
+		changed = new BitSet();
+		return result;
+	}
+
+	/**
+	 * @return a copy of the live triangles.
+	 */
+	List<Triangle> toList() {
+		return new ArrayList<Triangle>(Arrays.asList(triangles).subList(0, size));
+	}
+
+	/**
+	 * @return an iterator over the live triangles. It fails with a
+	 *         ConcurrentModificationException if the triangulation is
+	 *         changed during the iteration and does not support remove.
+	 */
+	@Override
+	public Iterator<Triangle> iterator() {
+		return new Iterator<Triangle>() {
+
+			private final int expectedModCount = modCount;
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Triangle next() {
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return triangles[next++];
+			}
+		};
+	}
+}
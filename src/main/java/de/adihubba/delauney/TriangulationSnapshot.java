@@ -0,0 +1,165 @@
+package de.adihubba.delauney;
+
+/**
+ * An immutable state of a {@link DelaunayTriangulation}, see
+ * {@link DelaunayTriangulation#snapshot()}. <br>
+ * Vertices and triangles are numbered like in {@link ArrayDelaunayTriangulation}:
+ * vertex v is the v-th vertex of
+ * {@link DelaunayTriangulation#verticesIterator()} at the time of the
+ * snapshot, every triangle is stored counterclockwise and the half planes are
+ * ghost triangles with the {@link ArrayDelaunayTriangulation#GHOST} vertex at
+ * their third position. There are no triangles while all vertices are
+ * collinear. <br>
+ * The data lives in blocks shared with the triangulation and other
+ * snapshots, which are never written again; so a snapshot can be read from
+ * any thread without locking.
+ */
+public final class TriangulationSnapshot {
+
+	private static final int SHIFT = SnapshotStore.BLOCK_SHIFT;
+	private static final int MASK = SnapshotStore.BLOCK_MASK;
+
+	private final double[][] xs, ys, zs;
+	private final int vertexCount;
+	private final int[][] triangles, halfedges;
+	private final int triangleCount;
+	private final int modCount;
+	private final BoundingBox boundingBox;
+
+	TriangulationSnapshot(double[][] xs, double[][] ys, double[][] zs, int vertexCount, int[][] triangles,
+			int[][] halfedges, int triangleCount, int modCount, BoundingBox boundingBox) {
+		this.xs = xs;
+		this.ys = ys;
+		this.zs = zs;
+		this.vertexCount = vertexCount;
+		this.triangles = triangles;
+		this.halfedges = halfedges;
+		this.triangleCount = triangleCount;
+		this.modCount = modCount;
+		this.boundingBox = boundingBox;
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int size() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return the number of triangles, ghost triangles included.
+	 */
+	public int trianglesSize() {
+		return triangleCount;
+	}
+
+	/**
+	 * returns the changes counter of the triangulation at the time of the
+	 * snapshot, see {@link DelaunayTriangulation#getModeCounter()}.
+	 */
+	public int getModeCounter() {
+		return modCount;
+	}
+
+	/**
+	 * @return the bounding box of the vertices, null if there are none.
+	 */
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	public double getX(int vertex) {
+		checkVertex(vertex);
+		return xs[vertex >>> SHIFT][vertex & MASK];
+	}
+
+	public double getY(int vertex) {
+		checkVertex(vertex);
+		return ys[vertex >>> SHIFT][vertex & MASK];
+	}
+
+	public double getZ(int vertex) {
+		checkVertex(vertex);
+		return zs[vertex >>> SHIFT][vertex & MASK];
+	}
+
+	/**
+	 * returns true iff the triangle is a ghost triangle outside of the hull.
+	 */
+	public boolean isGhost(int t) {
+		return getTriangleVertex(t, 2) == ArrayDelaunayTriangulation.GHOST;
+	}
+
+	/**
+	 * returns the i-th (0, 1 or 2) vertex of the triangle t.
+	 */
+	public int getTriangleVertex(int t, int i) {
+		checkTriangle(t);
+		return triangles[t >>> SHIFT][3 * (t & MASK) + i];
+	}
+
+	/**
+	 * returns the triangle sharing the i-th edge (0: ab, 1: bc, 2: ca) of the
+	 * triangle t.
+	 */
+	public int getNeighbor(int t, int i) {
+		checkTriangle(t);
+		return halfedges[t >>> SHIFT][3 * (t & MASK) + i] / 3;
+	}
+
+	/**
+	 * @return the counterclockwise vertex triples of all real triangles.
+	 */
+	public int[] getTriangleVertices() {
+		int count = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isGhost(t))
+				count++;
+		}
+		int[] result = new int[3 * count];
+		int k = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isGhost(t)) {
+				System.arraycopy(triangles[t >>> SHIFT], 3 * (t & MASK), result, k, 3);
+				k += 3;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * copies the snapshot into a new (mutable) array triangulation, e.g. to
+	 * write it with {@link TinFile}. The numbering of vertices and triangles
+	 * stays the same.
+	 */
+	public ArrayDelaunayTriangulation toArrayTriangulation() {
+		double[] flatXs = new double[vertexCount];
+		double[] flatYs = new double[vertexCount];
+		double[] flatZs = new double[vertexCount];
+		for (int b = 0; b < xs.length; b++) {
+			int length = Math.min(SnapshotStore.BLOCK_SIZE, vertexCount - (b << SHIFT));
+			System.arraycopy(xs[b], 0, flatXs, b << SHIFT, length);
+			System.arraycopy(ys[b], 0, flatYs, b << SHIFT, length);
+			System.arraycopy(zs[b], 0, flatZs, b << SHIFT, length);
+		}
+		int[] flatTriangles = new int[3 * triangleCount];
+		int[] flatHalfedges = new int[3 * triangleCount];
+		for (int b = 0; b < triangles.length; b++) {
+			int length = 3 * Math.min(SnapshotStore.BLOCK_SIZE, triangleCount - (b << SHIFT));
+			System.arraycopy(triangles[b], 0, flatTriangles, 3 * (b << SHIFT), length);
+			System.arraycopy(halfedges[b], 0, flatHalfedges, 3 * (b << SHIFT), length);
+		}
+		return new ArrayDelaunayTriangulation(flatXs, flatYs, flatZs, vertexCount, flatTriangles, flatHalfedges,
+				triangleCount);
+	}
+
+	private void checkVertex(int vertex) {
+		if (vertex < 0 || vertex >= vertexCount)
+			throw new IndexOutOfBoundsException("vertex: " + vertex + ", size: " + vertexCount);
+	}
+
+	private void checkTriangle(int t) {
+		if (t < 0 || t >= triangleCount)
+			throw new IndexOutOfBoundsException("triangle: " + t + ", size: " + triangleCount);
+	}
+}
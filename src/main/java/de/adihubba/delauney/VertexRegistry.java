@@ -0,0 +1,303 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The set of vertices of a triangulation. <br>
+ * Duplicates are found by an open addressing hash table (linear probing) on
+ * the bit patterns of the x and y coordinates, the same key
+ * {@link Point#equals(Object)} uses; 0.0 and -0.0 are one key, so two points
+ * at the same location are never both inserted. The table holds the
+ * coordinate bits inline, so a lookup neither boxes nor follows a pointer to
+ * the stored points. <br>
+ * The points themselves are kept in a dense array in insertion order, which
+ * is also the iteration order. Removing a point moves the last point into its
+ * place. <br>
+ * Once {@link #trackChanges()} was called the registry also collects the
+ * indices that got another point, see {@link #takeChanges()}.
+ */
+class VertexRegistry implements Iterable<Point> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/** marks a free slot of the hash table */
+	private static final int FREE = -1;
+
+	// the hash table: coordinate bits and index into points, FREE if unused
+	private long[] keyX;
+	private long[] keyY;
+	private int[] slotIndex;
+	private int mask;
+
+	// the points in insertion order
+	private Point[] points;
+	private int size;
+
+	// the indices changed since the last takeChanges, null if not tracked
+	private BitSet changed;
+
+	VertexRegistry() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of points that fit without growing the table.
+	 */
+	VertexRegistry(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		allocateTable(capacity);
+		points = new Point[Math.max(expectedSize, MIN_CAPACITY)];
+	}
+
+	/**
+	 * @return the number of points in the registry.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the i-th point in iteration order.
+	 */
+	Point get(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("index: " + i + ", size: " + size);
+		}
+		return points[i];
+	}
+
+	/**
+	 * @return true if a point with the coordinates of p is in the registry.
+	 */
+	boolean contains(Point p) {
+		return find(p.getX(), p.getY()) >= 0;
+	}
+
+	/**
+	 * @return the stored point at the coordinates of p, null if there is none.
+	 */
+	Point lookup(Point p) {
+		int slot = find(p.getX(), p.getY());
+		return slot < 0 ? null : points[slotIndex[slot]];
+	}
+
+	/**
+	 * @return the position of the point at the coordinates of p in iteration
+	 *         order, -1 if there is none.
+	 */
+	int indexOf(Point p) {
+		int slot = find(p.getX(), p.getY());
+		return slot < 0 ? -1 : slotIndex[slot];
+	}
+
+	/**
+	 * adds p unless a point with the same coordinates is already stored.
+	 *
+	 * @return true if p was added.
+	 */
+	boolean add(Point p) {
+		long bx = bits(p.getX());
+		long by = bits(p.getY());
+		int slot = hash(bx, by) & mask;
+		while (slotIndex[slot] != FREE) {
+			if (keyX[slot] == bx && keyY[slot] == by) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == points.length) {
+			points = Arrays.copyOf(points, size * 2);
+		}
+		keyX[slot] = bx;
+		keyY[slot] = by;
+		slotIndex[slot] = size;
+		if (changed != null) {
+			changed.set(size);
+		}
+		points[size++] = p;
+		if (2 * size > mask + 1) {
+			rehash((mask + 1) << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * removes the point with the coordinates of p.
+	 *
+	 * @return true if such a point was stored.
+	 */
+	boolean remove(Point p) {
+		int slot = find(p.getX(), p.getY());
+		if (slot < 0) {
+			return false;
+		}
+		int index = slotIndex[slot];
+		deleteSlot(slot);
+		int last = --size;
+		if (index != last) {
+			Point moved = points[last];
+			points[index] = moved;
+			slotIndex[find(moved.getX(), moved.getY())] = index;
+			if (changed != null) {
+				changed.set(index);
+			}
+		}
+		points[last] = null;
+		return true;
+	}
+
+	/**
+	 * starts collecting the changed indices: from now on the indices of added
+	 * points, of moved points and of the points passed to
+	 * {@link #touch(Point)} are collected.
+	 */
+	void trackChanges() {
+		if (changed == null) {
+			changed = new BitSet();
+		}
+	}
+
+	/**
+	 * marks the index of the stored point at the coordinates of p as
+	 * changed, for points changed in place.
+	 */
+	void touch(Point p) {
+		if (changed != null) {
+			int index = indexOf(p);
+			if (index >= 0) {
+				changed.set(index);
+			}
+		}
+	}
+
+	/**
+	 * @return the indices changed since the last call (some may be beyond
+	 *         the size by now), and starts collecting anew.
+	 */
+	BitSet takeChanges() {
+		BitSet result = changed;
+		changed = new BitSet();
+		return result;
+	}
+
+	/**
+	 * removes all points.
+	 */
+	void clear() {
+		Arrays.fill(slotIndex, FREE);
+		Arrays.fill(points, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * @return an iterator over the points in insertion order; it does not
+	 *         support remove.
+	 */
+	@Override
+	public Iterator<Point> iterator() {
+		return new Iterator<Point>() {
+
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Point next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return points[next++];
+			}
+		};
+	}
+
+	private int find(double x, double y) {
+		long bx = bits(x);
+		long by = bits(y);
+		int slot = hash(bx, by) & mask;
+		while (slotIndex[slot] != FREE) {
+			if (keyX[slot] == bx && keyY[slot] == by) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * frees the slot and shifts the following entries of the probe sequence
+	 * back, so no tombstones are needed.
+	 */
+	private void deleteSlot(int slot) {
+		int gap = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			if (slotIndex[i] == FREE) {
+				break;
+			}
+			int home = hash(keyX[i], keyY[i]) & mask;
+			// the entry may fill the gap if its home is not inside (gap, i]
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keyX[gap] = keyX[i];
+				keyY[gap] = keyY[i];
+				slotIndex[gap] = slotIndex[i];
+				gap = i;
+			}
+		}
+		slotIndex[gap] = FREE;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldX = keyX;
+		long[] oldY = keyY;
+		int[] oldIndex = slotIndex;
+		allocateTable(capacity);
+		for (int i = 0; i < oldIndex.length; i++) {
+			if (oldIndex[i] != FREE) {
+				int slot = hash(oldX[i], oldY[i]) & mask;
+				while (slotIndex[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				keyX[slot] = oldX[i];
+				keyY[slot] = oldY[i];
+				slotIndex[slot] = oldIndex[i];
+			}
+		}
+	}
+
+	private void allocateTable(int capacity) {
+		keyX = new long[capacity];
+		keyY = new long[capacity];
+		slotIndex = new int[capacity];
+		Arrays.fill(slotIndex, FREE);
+		mask = capacity - 1;
+	}
+
+	private static long bits(double v) {
+		// 0.0 and -0.0 are the same location
+		return Double.doubleToLongBits(v == 0 ? 0.0 : v);
+	}
+
+	private static int hash(long bx, long by) {
+		// murmur3 finalizer on the combined bits, grid coordinates differ only
+		// in a few mantissa bits
+		long h = bx * 0x9E3779B97F4A7C15L + by;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB93FE1A85EC9L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -0,0 +1,516 @@
+package de.adihubba.delauney;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Voronoi diagram of the vertices of a triangulation, all cells at once.
+ * <br>
+ * The corners of the cells are the circumcentres of the triangles, each is
+ * computed once and shared by the three cells around it. Cell v is stored as
+ * the Delaunay neighbors of site v in counterclockwise order, together with
+ * the triangle between neighbor i and neighbor i + 1, whose circumcentre is
+ * corner i of the cell. All cells share three flat arrays: an offset per cell
+ * into an array of neighbor indices and an array of triangle indices. <br>
+ * The cell of a vertex on the convex hull is unbounded: the gap between its
+ * last and its first neighbor lies outside the hull and has no corner, so
+ * such a cell has one corner less than neighbors. If all sites are collinear
+ * there are no triangles, every cell is a strip between the bisectors to its
+ * neighbors on the line. <br>
+ * The centres and the cells are extracted in parallel over ranges of
+ * triangles and sites. The diagram is a snapshot, it does not follow later
+ * changes of the triangulation.
+ */
+public class VoronoiDiagram {
+
+	/** triangles or sites handled by one task */
+	private static final int CHUNK_SIZE = 1 << 12;
+
+	private static final int NO_CORNER = -1;
+
+	private final int siteCount;
+	private final double[] siteXs, siteYs;
+
+	// the circumcentre of every triangle, NaN for the ghost triangles
+	private final double[] centerXs, centerYs;
+
+	// cell v has the neighbors cellNeighbors[cellOffsets[v] .. cellOffsets[v + 1])
+	// and the corners at the centres of the triangles cellCorners[...] of the
+	// same range, NO_CORNER for the gap of an unbounded cell
+	private final int[] cellOffsets;
+	private int[] cellNeighbors;
+	private int[] cellCorners;
+
+	/**
+	 * extracts the diagram on the common fork join pool.
+	 */
+	public VoronoiDiagram(ArrayDelaunayTriangulation delaunay) {
+		this(delaunay, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * extracts the diagram on pool. The triangulation must not be changed
+	 * during the call.
+	 *
+	 * @param delaunay
+	 *            the triangulation, cell v is the cell of its vertex v
+	 * @param pool
+	 *            the pool the extraction runs on
+	 */
+	public VoronoiDiagram(ArrayDelaunayTriangulation delaunay, ForkJoinPool pool) {
+		siteCount = delaunay.size();
+		siteXs = Arrays.copyOf(delaunay.getXs(), siteCount);
+		siteYs = Arrays.copyOf(delaunay.getYs(), siteCount);
+		int triangleCount = delaunay.trianglesSize();
+		centerXs = new double[triangleCount];
+		centerYs = new double[triangleCount];
+		cellOffsets = new int[siteCount + 1];
+		if (triangleCount == 0) {
+			linkCollinear();
+		} else {
+			extract(delaunay.getTriangles(), delaunay.getHalfedges(), triangleCount, pool);
+		}
+	}
+
+	/**
+	 * extracts the diagram on the common fork join pool.
+	 */
+	public VoronoiDiagram(DelaunayTriangulation delaunay) {
+		this(delaunay, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * extracts the diagram on pool. The triangulation must not be changed
+	 * during the call.
+	 *
+	 * @param delaunay
+	 *            the triangulation, cell v is the cell of the v-th vertex of
+	 *            {@link DelaunayTriangulation#verticesIterator()}
+	 * @param pool
+	 *            the pool the extraction runs on
+	 */
+	public VoronoiDiagram(DelaunayTriangulation delaunay, ForkJoinPool pool) {
+		this(ArrayDelaunayTriangulation.copyOf(delaunay), pool);
+	}
+
+	private void extract(final int[] triangles, final int[] halfedges, int triangleCount, ForkJoinPool pool) {
+		new Pass() {
+			@Override
+			void run(int from, int to) {
+				for (int t = from; t < to; t++) {
+					computeCenter(triangles, t);
+				}
+			}
+		}.invoke(pool, triangleCount);
+
+		// an outgoing half-edge of every site
+		final int[] siteEdges = new int[siteCount];
+		for (int e = 0; e < 3 * triangleCount; e++) {
+			if (triangles[e] != ArrayDelaunayTriangulation.GHOST) {
+				siteEdges[triangles[e]] = e;
+			}
+		}
+		new Pass() {
+			@Override
+			void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					cellOffsets[v + 1] = walkCell(triangles, halfedges, siteEdges[v], -1);
+				}
+			}
+		}.invoke(pool, siteCount);
+		for (int v = 0; v < siteCount; v++) {
+			cellOffsets[v + 1] += cellOffsets[v];
+		}
+		cellNeighbors = new int[cellOffsets[siteCount]];
+		cellCorners = new int[cellOffsets[siteCount]];
+		new Pass() {
+			@Override
+			void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					walkCell(triangles, halfedges, siteEdges[v], cellOffsets[v]);
+					rotateGapToEnd(cellOffsets[v], cellOffsets[v + 1]);
+				}
+			}
+		}.invoke(pool, siteCount);
+	}
+
+	private void computeCenter(int[] triangles, int t) {
+		int a = triangles[3 * t], b = triangles[3 * t + 1], c = triangles[3 * t + 2];
+		if (c == ArrayDelaunayTriangulation.GHOST) {
+			centerXs[t] = Double.NaN;
+			centerYs[t] = Double.NaN;
+			return;
+		}
+		double bx = siteXs[b] - siteXs[a], by = siteYs[b] - siteYs[a];
+		double cx = siteXs[c] - siteXs[a], cy = siteYs[c] - siteYs[a];
+		double b2 = bx * bx + by * by;
+		double c2 = cx * cx + cy * cy;
+		double d = 2 * (bx * cy - by * cx);
+		centerXs[t] = siteXs[a] + (cy * b2 - by * c2) / d;
+		centerYs[t] = siteYs[a] + (bx * c2 - cx * b2) / d;
+	}
+
+	/*
+	 * turns counterclockwise around the start of the half-edge start. Writes
+	 * the neighbors and corners from position out on, unless out is negative.
+	 * The ghost vertex is skipped, the two ghost triangles at a hull vertex
+	 * give a single gap. Returns the number of neighbors.
+	 */
+	private int walkCell(int[] triangles, int[] halfedges, int start, int out) {
+		int count = 0;
+		int e = start;
+		do {
+			int neighbor = triangles[next(e)];
+			if (neighbor != ArrayDelaunayTriangulation.GHOST) {
+				if (out >= 0) {
+					int t = e / 3;
+					cellNeighbors[out + count] = neighbor;
+					cellCorners[out + count] = triangles[3 * t + 2] == ArrayDelaunayTriangulation.GHOST ? NO_CORNER : t;
+				}
+				count++;
+			}
+			e = halfedges[prev(e)];
+		} while (e != start);
+		return count;
+	}
+
+	// rotates the cell stored at [from, to) so the gap, if any, is last
+	private void rotateGapToEnd(int from, int to) {
+		int gap = -1;
+		for (int k = from; k < to; k++) {
+			if (cellCorners[k] == NO_CORNER) {
+				gap = k;
+				break;
+			}
+		}
+		if (gap < 0 || gap == to - 1) {
+			return;
+		}
+		int shift = to - 1 - gap;
+		rotate(cellNeighbors, from, to, shift);
+		rotate(cellCorners, from, to, shift);
+	}
+
+	// moves every entry of [from, to) shift positions to the right, cyclically
+	private static void rotate(int[] values, int from, int to, int shift) {
+		int[] copy = Arrays.copyOfRange(values, from, to);
+		int length = to - from;
+		for (int i = 0; i < length; i++) {
+			values[from + (i + shift) % length] = copy[i];
+		}
+	}
+
+	// the neighbors of collinear sites are the previous and next site on the
+	// line
+	private void linkCollinear() {
+		Integer[] order = new Integer[siteCount];
+		for (int v = 0; v < siteCount; v++) {
+			order[v] = v;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer v, Integer w) {
+				int c = Double.compare(siteXs[v], siteXs[w]);
+				return c != 0 ? c : Double.compare(siteYs[v], siteYs[w]);
+			}
+		});
+		int[] previous = new int[siteCount];
+		int[] following = new int[siteCount];
+		for (int i = 0; i < siteCount; i++) {
+			previous[order[i]] = i > 0 ? order[i - 1] : -1;
+			following[order[i]] = i < siteCount - 1 ? order[i + 1] : -1;
+		}
+		for (int v = 0; v < siteCount; v++) {
+			cellOffsets[v + 1] = cellOffsets[v] + (previous[v] >= 0 ? 1 : 0) + (following[v] >= 0 ? 1 : 0);
+		}
+		cellNeighbors = new int[cellOffsets[siteCount]];
+		cellCorners = new int[cellOffsets[siteCount]];
+		Arrays.fill(cellCorners, NO_CORNER);
+		for (int v = 0; v < siteCount; v++) {
+			int k = cellOffsets[v];
+			if (previous[v] >= 0) {
+				cellNeighbors[k++] = previous[v];
+			}
+			if (following[v] >= 0) {
+				cellNeighbors[k] = following[v];
+			}
+		}
+	}
+
+	/**
+	 * @return the number of cells, one per vertex of the triangulation.
+	 */
+	public int size() {
+		return siteCount;
+	}
+
+	public double getSiteX(int cell) {
+		return siteXs[cell];
+	}
+
+	public double getSiteY(int cell) {
+		return siteYs[cell];
+	}
+
+	/**
+	 * @return true if the cell reaches to infinity: its site is on the convex
+	 *         hull or all sites are collinear.
+	 */
+	public boolean isUnbounded(int cell) {
+		int end = cellOffsets[cell + 1];
+		return end == cellOffsets[cell] || cellCorners[end - 1] == NO_CORNER;
+	}
+
+	/**
+	 * @return the number of Delaunay neighbors of the site, which is the
+	 *         number of edges of its cell.
+	 */
+	public int getNeighborCount(int cell) {
+		return cellOffsets[cell + 1] - cellOffsets[cell];
+	}
+
+	/**
+	 * @return neighbor i of the site in counterclockwise order, the edge
+	 *         between corner i - 1 and corner i of the cell lies on the
+	 *         bisector of the site and this neighbor.
+	 */
+	public int getNeighbor(int cell, int i) {
+		return cellNeighbors[cellOffsets[cell] + i];
+	}
+
+	/**
+	 * @return the number of corners of the cell. An unbounded cell has
+	 *         corners 0 to count - 1 along its finite part, followed by the
+	 *         gap to infinity.
+	 */
+	public int getCornerCount(int cell) {
+		int count = getNeighborCount(cell);
+		while (count > 0 && cellCorners[cellOffsets[cell] + count - 1] == NO_CORNER) {
+			count--;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the x-coordinate of corner i of the cell, counterclockwise.
+	 */
+	public double getCornerX(int cell, int i) {
+		return centerXs[cellCorners[cellOffsets[cell] + i]];
+	}
+
+	/**
+	 * @return the y-coordinate of corner i of the cell, counterclockwise.
+	 */
+	public double getCornerY(int cell, int i) {
+		return centerYs[cellCorners[cellOffsets[cell] + i]];
+	}
+
+	/**
+	 * @return the corners of the cell in counterclockwise order, see
+	 *         {@link #getCornerCount(int)}.
+	 */
+	public Point[] getCell(int cell) {
+		Point[] corners = new Point[getCornerCount(cell)];
+		for (int i = 0; i < corners.length; i++) {
+			corners[i] = new Point(getCornerX(cell, i), getCornerY(cell, i));
+		}
+		return corners;
+	}
+
+	/**
+	 * @return the area of the cell, positive infinity if it is unbounded.
+	 */
+	public double getCellArea(int cell) {
+		if (isUnbounded(cell)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		int from = cellOffsets[cell], to = cellOffsets[cell + 1];
+		double x0 = siteXs[cell], y0 = siteYs[cell];
+		double area = 0;
+		for (int k = from; k < to; k++) {
+			int t = cellCorners[k], u = cellCorners[k + 1 < to ? k + 1 : from];
+			area += (centerXs[t] - x0) * (centerYs[u] - y0) - (centerXs[u] - x0) * (centerYs[t] - y0);
+		}
+		return area / 2;
+	}
+
+	/**
+	 * computes the areas of all cells on the common fork join pool, see
+	 * {@link #getCellArea(int)}.
+	 */
+	public double[] getCellAreas() {
+		return getCellAreas(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * computes the areas of all cells on pool, see {@link #getCellArea(int)}.
+	 */
+	public double[] getCellAreas(ForkJoinPool pool) {
+		final double[] areas = new double[siteCount];
+		new Pass() {
+			@Override
+			void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					areas[v] = getCellArea(v);
+				}
+			}
+		}.invoke(pool, siteCount);
+		return areas;
+	}
+
+	/**
+	 * computes the areas of all cells clipped to box on the common fork join
+	 * pool, see {@link #getCellAreas(BoundingBox, ForkJoinPool)}.
+	 */
+	public double[] getCellAreas(BoundingBox box) {
+		return getCellAreas(box, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * computes the areas of all cells clipped to the x/y extent of box, so
+	 * the cells on the hull get finite areas as well. The box is cut by the
+	 * bisector to every neighbor of the site; the cells of sites outside of
+	 * the box may have no area.
+	 *
+	 * @param box
+	 *            the clip region
+	 * @param pool
+	 *            the pool the computation runs on
+	 * @return the clipped area of every cell
+	 */
+	public double[] getCellAreas(BoundingBox box, ForkJoinPool pool) {
+		final double minX = box.minX(), minY = box.minY(), maxX = box.maxX(), maxY = box.maxY();
+		final double[] areas = new double[siteCount];
+		new Pass() {
+			@Override
+			void run(int from, int to) {
+				Polygon polygon = new Polygon();
+				for (int v = from; v < to; v++) {
+					polygon.reset(minX, minY, maxX, maxY);
+					for (int k = cellOffsets[v]; k < cellOffsets[v + 1] && polygon.size > 0; k++) {
+						int w = cellNeighbors[k];
+						polygon.clip(siteXs[v], siteYs[v], siteXs[w], siteYs[w]);
+					}
+					areas[v] = polygon.area();
+				}
+			}
+		}.invoke(pool, siteCount);
+		return areas;
+	}
+
+	private static int next(int e) {
+		return e % 3 == 2 ? e - 2 : e + 1;
+	}
+
+	private static int prev(int e) {
+		return e % 3 == 0 ? e + 2 : e - 1;
+	}
+
+	/**
+	 * a convex polygon, cut down by half planes.
+	 */
+	private static final class Polygon {
+
+		private double[] xs = new double[16], ys = new double[16];
+		private double[] nextXs = new double[16], nextYs = new double[16];
+		private int size;
+
+		void reset(double minX, double minY, double maxX, double maxY) {
+			xs[0] = minX;
+			ys[0] = minY;
+			xs[1] = maxX;
+			ys[1] = minY;
+			xs[2] = maxX;
+			ys[2] = maxY;
+			xs[3] = minX;
+			ys[3] = maxY;
+			size = 4;
+		}
+
+		// keeps the part closer to (vx, vy) than to (wx, wy)
+		void clip(double vx, double vy, double wx, double wy) {
+			double nx = wx - vx, ny = wy - vy;
+			double mx = (vx + wx) / 2, my = (vy + wy) / 2;
+			if (nextXs.length < size + 1) {
+				nextXs = new double[2 * (size + 1)];
+				nextYs = new double[2 * (size + 1)];
+			}
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				int j = i + 1 < size ? i + 1 : 0;
+				double si = (xs[i] - mx) * nx + (ys[i] - my) * ny;
+				double sj = (xs[j] - mx) * nx + (ys[j] - my) * ny;
+				if (si <= 0) {
+					nextXs[count] = xs[i];
+					nextYs[count++] = ys[i];
+				}
+				if ((si < 0 && sj > 0) || (si > 0 && sj < 0)) {
+					double f = si / (si - sj);
+					nextXs[count] = xs[i] + f * (xs[j] - xs[i]);
+					nextYs[count++] = ys[i] + f * (ys[j] - ys[i]);
+				}
+			}
+			double[] swap = xs;
+			xs = nextXs;
+			nextXs = swap;
+			swap = ys;
+			ys = nextYs;
+			nextYs = swap;
+			size = count;
+		}
+
+		double area() {
+			if (size < 3) {
+				return 0;
+			}
+			double area = 0;
+			for (int i = 1; i + 1 < size; i++) {
+				area += (xs[i] - xs[0]) * (ys[i + 1] - ys[0]) - (xs[i + 1] - xs[0]) * (ys[i] - ys[0]);
+			}
+			return area / 2;
+		}
+	}
+
+	/**
+	 * work on the index range [0, count), split into chunks that run in
+	 * parallel.
+	 */
+	private abstract static class Pass {
+
+		/**
+		 * handles the indices [from, to).
+		 */
+		abstract void run(int from, int to);
+
+		void invoke(ForkJoinPool pool, int count) {
+			if (count > 0) {
+				pool.invoke(new PassTask(this, 0, count));
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class PassTask extends RecursiveAction {
+
+		private final Pass pass;
+		private final int from, to;
+
+		PassTask(Pass pass, int from, int to) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				pass.run(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new PassTask(pass, from, middle), new PassTask(pass, middle, to));
+		}
+	}
+}
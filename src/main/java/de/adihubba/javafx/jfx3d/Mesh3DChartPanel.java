@@ -3,7 +3,10 @@ package de.adihubba.javafx.jfx3d;
 
 import java.awt.BorderLayout;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import javafx.application.Platform;
@@ -30,8 +33,10 @@ import javafx.scene.transform.Rotate;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
-import de.adihubba.delauney.DelaunayTriangulation;
+import de.adihubba.delauney.ParallelDelaunayTriangulation;
 import de.adihubba.delauney.Point;
+import de.adihubba.delauney.QuantizedDelaunayTriangulation;
+import de.adihubba.delauney.TinSimplifier;
 import de.adihubba.delauney.Triangle;
 import de.adihubba.ObjectUtils;
 
@@ -61,6 +66,12 @@ public class Mesh3DChartPanel extends JPanel {
     private int                                size                = 400;
     private int                                imageSize           = 800;
 
+    // more data points than this are simplified to this many vertices before the triangulation is drawn, 0 draws all points
+    private int                                maxVertices         = 0;
+
+    // triangulate on a 24 bit grid with float heights, the precision the mesh gets anyway, at half the memory per vertex
+    private boolean                            quantized           = false;
+
     // initial rotation
     private final Rotate                       rotateX             = new Rotate(0, Rotate.X_AXIS);
     private final Rotate                       rotateY             = new Rotate(0, Rotate.Y_AXIS);
@@ -157,6 +168,14 @@ public class Mesh3DChartPanel extends JPanel {
         this.imageSize = imageSize;
     }
 
+    public void setMaxVertices(int maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+
+    public void setQuantized(boolean quantized) {
+        this.quantized = quantized;
+    }
+
     public void setAxisTitleX(String axisTitleX) {
         this.axisTitleX = axisTitleX;
     }
@@ -189,20 +208,28 @@ public class Mesh3DChartPanel extends JPanel {
         MeshCalculationComposite calculationObject = MeshCalculationComposite.of(dataPoints, size);
 
         // convert input for delauney algorithm
-        List<Point> normalizedOldPoints = new ArrayList<Point>(calculationObject.getNormalizedPoints().size());
-        for (Point3D point : calculationObject.getNormalizedPoints()) {
-            normalizedOldPoints.add(delauneyModifier.convertPoint3d4Delauney(point));
+        List<Point3D> normalizedPoints = calculationObject.getNormalizedPoints();
+        double[] xs = new double[normalizedPoints.size()];
+        double[] ys = new double[xs.length];
+        double[] zs = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            Point point = delauneyModifier.convertPoint3d4Delauney(normalizedPoints.get(i));
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            zs[i] = point.getZ();
         }
 
-        // convert output of delauney algorithm back to triangle objects
-        List<Triangle> triangulation = new DelaunayTriangulation(normalizedOldPoints).getTriangulation();
-        for (Triangle triangle : triangulation) {
-            if (!triangle.isHalfplane()) {
-                calculationObject.addTriangle3D(Triangle3D.of(
-                        delauneyModifier.convertPointFromDelauney(triangle.getA()), 
-                        delauneyModifier.convertPointFromDelauney(triangle.getB()), 
-                        delauneyModifier.convertPointFromDelauney(triangle.getC())));
-            }
+        // triangulate on all cores (or simplify a large input to the points that matter most), the faces are triples of indices into the normalized points
+        int[] faces;
+        if (maxVertices > 0 && xs.length > maxVertices) {
+            faces = indicesOf(new TinSimplifier(xs, ys, zs).simplify(0, maxVertices).getTriangulation(), normalizedPoints);
+        } else if (quantized) {
+            faces = QuantizedDelaunayTriangulation.triangulate(xs, ys);
+        } else {
+            faces = ParallelDelaunayTriangulation.triangulateIndices(xs, ys);
+        }
+        for (int i = 0; i < faces.length; i += 3) {
+            calculationObject.addTriangle3D(Triangle3D.of(normalizedPoints.get(faces[i]), normalizedPoints.get(faces[i + 1]), normalizedPoints.get(faces[i + 2])));
         }
 
         // create axis walls
@@ -240,12 +267,8 @@ public class Mesh3DChartPanel extends JPanel {
         }
 
         //add faces
-        List<Point3D> normalizedPoints = calculationObject.getNormalizedPoints();
-        for (Triangle3D triangle : calculationObject.getTriangle3DList()) {
-            int faceIndex1 = normalizedPoints.indexOf(triangle.getP0());
-            int faceIndex2 = normalizedPoints.indexOf(triangle.getP1());
-            int faceIndex3 = normalizedPoints.indexOf(triangle.getP2());
-            mesh.getFaces().addAll(faceIndex1, faceIndex1, faceIndex2, faceIndex2, faceIndex3, faceIndex3);
+        for (int i = 0; i < faces.length; i += 3) {
+            mesh.getFaces().addAll(faces[i], faces[i], faces[i + 1], faces[i + 1], faces[i + 2], faces[i + 2]);
         }
 
         // image/diffuseMap
@@ -296,6 +319,24 @@ public class Mesh3DChartPanel extends JPanel {
         updateControlPanel();
     }
 
+    // the indices of the corners of all real triangles in points, the corners are converted back from the delauney coordinates
+    private int[] indicesOf(List<Triangle> triangulation, List<Point3D> points) {
+        Map<Point3D, Integer> indices = new HashMap<>(2 * points.size());
+        for (int i = points.size() - 1; i >= 0; i--) {
+            indices.put(points.get(i), i);
+        }
+        int[] faces = new int[3 * triangulation.size()];
+        int size = 0;
+        for (Triangle triangle : triangulation) {
+            if (!triangle.isHalfplane()) {
+                faces[size++] = indices.get(delauneyModifier.convertPointFromDelauney(triangle.getA()));
+                faces[size++] = indices.get(delauneyModifier.convertPointFromDelauney(triangle.getB()));
+                faces[size++] = indices.get(delauneyModifier.convertPointFromDelauney(triangle.getC()));
+            }
+        }
+        return Arrays.copyOf(faces, size);
+    }
+
     private void mouseDragged(MouseEvent me) {
         mousePosX = me.getSceneX();
         mousePosY = me.getSceneY();
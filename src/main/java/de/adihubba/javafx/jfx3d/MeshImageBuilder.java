@@ -1,16 +1,17 @@
 package de.adihubba.javafx.jfx3d;
 
 
-import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
+import de.adihubba.delauney.TinRasterizer;
+
 
 /**
  * MeshImageBuilder creates an colored image which will be used as diffuse map
@@ -29,7 +30,13 @@ public class MeshImageBuilder {
         PixelWriter pw = img.getPixelWriter();
         final double factor = (double) calculationObject.getSize() / (double) imageSize;
 
-        IntStream.range(0, imageSize).forEach(x -> IntStream.range(0, imageSize).parallel().forEach(y -> pw.setColor(x, y, calculateColor(0, x, y, factor, calculationObject))));
+        // pixel (x, y) shows the height (y value) of the mesh at (x * factor, y * factor) in the x/z plane
+        double[] heights = rasterizeHeights(calculationObject, factor);
+        for (int y = 0; y < imageSize; y++) {
+            for (int x = 0; x < imageSize; x++) {
+                pw.setColor(x, y, calculateColor(0, x, y, heights, calculationObject));
+            }
+        }
 
         // save image for testing purposes
         //        try {
@@ -40,39 +47,65 @@ public class MeshImageBuilder {
         return img;
     }
 
-    private Color calculateColor(int recursionDepth, int x, int y, double factor, MeshCalculationComposite calculationObject) {
+    /**
+     * samples the y value of the mesh for every pixel, NaN where no triangle covers the pixel.
+     */
+    private double[] rasterizeHeights(MeshCalculationComposite calculationObject, double factor) {
+        List<Triangle3D> triangles = calculationObject.getTriangle3DList();
+        double[] xs = new double[3 * triangles.size()];
+        double[] zs = new double[xs.length];
+        double[] ys = new double[xs.length];
+        int[] vertices = new int[xs.length];
+        int i = 0;
+        for (Triangle3D triangle : triangles) {
+            for (Point3D point : new Point3D[] { triangle.getP0(), triangle.getP1(), triangle.getP2() }) {
+                xs[i] = point.getX();
+                zs[i] = point.getZ();
+                ys[i] = point.getY();
+                vertices[i] = i;
+                i++;
+            }
+        }
+
+        // the cell centres of the grid are the sample points x * factor and y * factor
+        double half = 0.5 * factor;
+        TinRasterizer rasterizer = new TinRasterizer(-half, imageSize * factor - half, -half, imageSize * factor - half, imageSize, imageSize);
+        double[] heights = new double[imageSize * imageSize];
+        rasterizer.rasterize(xs, zs, ys, vertices, heights, ForkJoinPool.commonPool());
+        return heights;
+    }
+
+    private Color calculateColor(int recursionDepth, int x, int y, double[] heights, MeshCalculationComposite calculationObject) {
         if (recursionDepth >= 2) {
             return transparentColor;
         }
-        final Point2D point2Calculate = new Point2D(x * factor, y * factor);
-
-        Optional<Triangle3D> triangleMatch = calculationObject.getTriangle3DList().stream().filter(t -> MeshImageBuilder.isPointInTriangle(point2Calculate, t.getP0(), t.getP1(), t.getP2())).findFirst();
-        if (triangleMatch.isPresent()) {
-            Triangle3D triangle = triangleMatch.get();
-            double calculatedYValue = MeshImageBuilder.calculateYValueInTriangle(point2Calculate, triangle.getP0(), triangle.getP1(), triangle.getP2());
-            return getColor(calculatedYValue, calculationObject);
+        if (x >= 0 && y >= 0 && x < imageSize && y < imageSize) {
+            double calculatedYValue = heights[y * imageSize + x];
+            if (!Double.isNaN(calculatedYValue)) {
+                return getColor(calculatedYValue, calculationObject);
+            }
         }
 
         // check neighboor pixel
         Color result = null;
         if (x == 0) {
-            result = calculateColor(recursionDepth + 1, x + 1, y, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x + 1, y, heights, calculationObject);
         } else if (y == 0) {
-            result = calculateColor(recursionDepth + 1, x, y + 1, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x, y + 1, heights, calculationObject);
         } else {
-            result = calculateColor(recursionDepth + 1, x, y + 1, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x, y + 1, heights, calculationObject);
             if (result != transparentColor) {
                 return result;
             }
-            result = calculateColor(recursionDepth + 1, x + 1, y, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x + 1, y, heights, calculationObject);
             if (result != transparentColor) {
                 return result;
             }
-            result = calculateColor(recursionDepth + 1, x - 1, y, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x - 1, y, heights, calculationObject);
             if (result != transparentColor) {
                 return result;
             }
-            result = calculateColor(recursionDepth + 1, x, y - 1, factor, calculationObject);
+            result = calculateColor(recursionDepth + 1, x, y - 1, heights, calculationObject);
             if (result != transparentColor) {
                 return result;
             }
@@ -89,38 +122,4 @@ public class MeshImageBuilder {
         return Color.rgb(hsb.getRed(), hsb.getGreen(), hsb.getBlue());
     }
 
-    /**
-     * Calculates the z value of an given 3d triangle and a 2d point, where x and y coordinates are in this triangle
-     * http://math.stackexchange.com/a/851752
-     */
-    public static double calculateZValueInTriangle(Point2D p, Point3D p0, Point3D p1, Point3D p2) {
-        double divider = ((p1.getX() - p0.getX()) * (p2.getY() - p0.getY())) - ((p2.getX() - p0.getX()) * (p1.getY() - p0.getY()));
-        double z = p0.getZ() + (((((p1.getX() - p0.getX()) * (p2.getZ() - p0.getZ())) - ((p2.getX() - p0.getX()) * (p1.getZ() - p0.getZ()))) / divider) * (p.getY() - p0.getY()))
-                - (((((p1.getY() - p0.getY()) * (p2.getZ() - p0.getZ())) - ((p2.getY() - p0.getY()) * (p1.getZ() - p0.getZ()))) / divider) * (p.getX() - p0.getX()));
-        return z;
-    }
-
-    /**
-     * Calculates the y value of an given 3d triangle and a 2d point, where x and z coordinates are in this triangle
-     */
-    public static double calculateYValueInTriangle(Point2D p, Point3D p0, Point3D p1, Point3D p2) {
-        double divider = ((p1.getZ() - p0.getZ()) * (p2.getX() - p0.getX())) - ((p1.getX() - p0.getX()) * (p2.getZ() - p0.getZ()));
-        double y = p0.getY() + (((((p1.getY() - p0.getY()) * (p2.getX() - p0.getX())) - ((p1.getX() - p0.getX()) * (p2.getY() - p0.getY()))) / divider) * (p.getY() - p0.getZ()))
-                - (((((p1.getY() - p0.getY()) * (p2.getZ() - p0.getZ())) - ((p2.getY() - p0.getY()) * (p1.getZ() - p0.getZ()))) / divider) * (p.getX() - p0.getX()));
-        return y;
-    }
-
-    /**
-     * method returns true, if point p is in the triangle. Method uses barycentric coordinate system.
-     * https://stackoverflow.com/questions/2049582/how-to-determine-a-point-in-a-triangle
-     */
-    public static boolean isPointInTriangle(Point2D p, Point3D p0, Point3D p1, Point3D p2) {
-        double area = 0.5 * (-p1.getZ() * p2.getX() + p0.getZ() * (-p1.getX() + p2.getX()) + p0.getX() * (p1.getZ() - p2.getZ()) + p1.getX() * p2.getZ());
-        int sign = area < 0.0 ? -1 : 1;
-        double s = (p0.getZ() * p2.getX() - p0.getX() * p2.getZ() + (p2.getZ() - p0.getZ()) * p.getX() + (p0.getX() - p2.getX()) * p.getY()) * sign;
-        double t = (p0.getX() * p1.getZ() - p0.getZ() * p1.getX() + (p0.getZ() - p1.getZ()) * p.getX() + (p1.getX() - p0.getX()) * p.getY()) * sign;
-
-        return s > 0.0 && t > 0.0 && (s + t) < 2.0 * area * sign;
-    }
-
 }
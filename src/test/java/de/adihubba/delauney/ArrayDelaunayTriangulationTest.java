@@ -0,0 +1,108 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ArrayDelaunayTriangulationTest {
+
+	@Test
+	public void testDelaunayProperty() {
+		Random random = new Random(1);
+		for (int trial = 0; trial < 250; trial++) {
+			double[][] c = Triangulations.coordinates(random, trial % Triangulations.KINDS, 3 + random.nextInt(trial
+					< 200 ? 60 : 400));
+			Triangulations.assertDelaunay(new ArrayDelaunayTriangulation(c[0], c[1], null), c[0], c[1]);
+		}
+	}
+
+	@Test
+	public void testIncrementalInsertion() {
+		Random random = new Random(1);
+		for (int kind = 0; kind < Triangulations.KINDS; kind++) {
+			double[][] c = Triangulations.coordinates(random, kind, 300);
+			ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation();
+			for (int i = 0; i < c[0].length; i++) {
+				triangulation.insertPoint(c[0][i], c[1][i], 0);
+			}
+			Triangulations.assertDelaunay(triangulation, c[0], c[1]);
+		}
+	}
+
+	@Test
+	public void testCocircularTies() {
+		// every cell of the lattice is cocircular, the diagonals must not depend on the order
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 12; i++) {
+			for (int j = 0; j < 12; j++) {
+				points.add(new Point(i, j));
+			}
+		}
+		Set<String> first = null;
+		Random random = new Random(7);
+		for (int round = 0; round < 20; round++) {
+			Collections.shuffle(points, random);
+			ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation();
+			for (Point p : points) {
+				triangulation.insertPoint(p.getX(), p.getY(), 0);
+			}
+			Set<String> triangles = Triangulations.triangles(triangulation);
+			assertEquals(2 * 11 * 11, triangles.size());
+			if (first == null) {
+				first = triangles;
+			} else {
+				assertEquals("round " + round, first, triangles);
+			}
+		}
+	}
+
+	@Test
+	public void testSameAsObjectEngine() {
+		Random random = new Random(4);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 5000);
+		List<Point> points = Triangulations.points(c[0], c[1]);
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+		Set<String> expected = Triangulations.triangles(delaunay);
+		assertEquals(expected, Triangulations.triangles(new ArrayDelaunayTriangulation(c[0], c[1], null)));
+		assertEquals(expected, Triangulations.triangles(new ArrayDelaunayTriangulation(points)));
+		assertEquals(expected, Triangulations.triangles(ArrayDelaunayTriangulation.copyOf(delaunay)));
+
+		// the indices of triangulate refer to the input
+		int[] indices = ArrayDelaunayTriangulation.triangulate(c[0], c[1]);
+		Set<String> triangles = new HashSet<String>();
+		for (int i = 0; i < indices.length; i += 3) {
+			triangles.add(Triangulations.key(points.get(indices[i]), points.get(indices[i + 1]), points
+					.get(indices[i + 2])));
+		}
+		assertEquals(expected, triangles);
+	}
+
+	@Test
+	public void testZ() {
+		Random random = new Random(4);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 2000);
+		List<Point> points = Triangulations.points(c[0], c[1]);
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+		ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(points);
+		double[] xs = new double[1000], ys = new double[1000], out = new double[1000];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextDouble() * 1.2 - 0.1;
+			ys[i] = random.nextDouble() * 1.2 - 0.1;
+		}
+		triangulation.z(xs, ys, out);
+		for (int i = 0; i < xs.length; i++) {
+			// the surface is the plane z = x + 2y
+			double z = delaunay.z(xs[i], ys[i]);
+			assertEquals(z, triangulation.z(xs[i], ys[i]), 1e-9);
+			assertEquals(z, out[i], 1e-9);
+			assertEquals(delaunay.contains(xs[i], ys[i]), triangulation.contains(xs[i], ys[i]));
+		}
+	}
+}
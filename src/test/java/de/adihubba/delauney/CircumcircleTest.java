@@ -0,0 +1,59 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CircumcircleTest {
+
+	@Test
+	public void testTouchingBoxes() {
+		// the unit circle
+		Circumcircle circle = new Circumcircle(1, 0, 0, 1, -1, 0);
+		assertTrue(circle.isFinite());
+		assertTrue(circle.reaches(1, 2, -1, 1));
+		assertFalse(circle.reaches(Math.nextUp(1.0), 2, -1, 1));
+		assertTrue(circle.reaches(-3, -1, 0, 0));
+		assertFalse(circle.reaches(-3, Math.nextDown(-1.0), 0, 0));
+		assertTrue(circle.reaches(0.5, 0.5, 0.5, 0.5));
+		assertTrue(circle.reaches(Double.NEGATIVE_INFINITY, -1, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+		assertFalse(circle.reaches(2, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void testFlatTriangles() {
+		Circumcircle circle = new Circumcircle(0, 0, 1, 1, 2, 2);
+		assertFalse(circle.isFinite());
+		assertTrue(circle.reaches(100, 101, -50, -49));
+	}
+
+	@Test
+	public void testPointsSameAsIncircle() {
+		Random random = new Random(21);
+		for (int i = 0; i < 100000; i++) {
+			// slivers far from the origin, with points near their circles
+			double base = 1e6 * random.nextDouble();
+			double ax = base, ay = base, bx = base + random.nextInt(1000), by = base + random.nextInt(3);
+			double cx = base + random.nextInt(1000), cy = base + random.nextInt(3);
+			double orientation = GeometricPredicates.orient2d(ax, ay, bx, by, cx, cy);
+			if (orientation == 0)
+				continue;
+			Circumcircle circle = new Circumcircle(ax, ay, bx, by, cx, cy);
+			double angle = random.nextDouble() * 2 * Math.PI;
+			// just inside, on or just outside of the circle through a
+			double r = Math.hypot(circle.getCenterX() - ax, circle.getCenterY() - ay)
+					* (1 + (random.nextInt(5) - 2) * 1e-13);
+			double x = circle.getCenterX() + r * Math.cos(angle), y = circle.getCenterY() + r * Math.sin(angle);
+			double incircle = GeometricPredicates.incircle(ax, ay, bx, by, cx, cy, x, y);
+			assertEquals(orientation > 0 ? incircle >= 0 : incircle <= 0, circle.reaches(x, x, y, y));
+		}
+		// a point on the circle of a right triangle
+		Circumcircle circle = new Circumcircle(0, 0, 4, 0, 0, 3);
+		assertTrue(circle.reaches(4, 4, 3, 3));
+		assertFalse(circle.reaches(Math.nextUp(4.0), 5, 3, 3));
+	}
+}
@@ -0,0 +1,146 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class ConcurrentDelaunayTriangulationTest {
+
+	private static final int READERS = 2;
+
+	@Test
+	public void testReadersDuringInserts() throws InterruptedException {
+		Random random = new Random(19);
+		// the corners fix the hull, every later point is on the plane z = x + 2y
+		final ConcurrentDelaunayTriangulation concurrent = new ConcurrentDelaunayTriangulation();
+		concurrent.insertPoints(Triangulations.points(new double[] { 0, 1, 1, 0 }, new double[] { 0, 0, 1, 1 }), false);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 10000);
+		final List<Point> points = Triangulations.points(c[0], c[1]);
+
+		int queries = runReaders(concurrent, new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < points.size(); i += 100) {
+					concurrent.insertPoints(points.subList(i, i + 100), false);
+				}
+			}
+		});
+		assertTrue(queries > 0);
+		assertEquals(points.size() + 4, concurrent.size());
+		final List<Point> all = new ArrayList<Point>(points);
+		all.addAll(Triangulations.points(new double[] { 0, 1, 1, 0 }, new double[] { 0, 0, 1, 1 }));
+		concurrent.read(new Function<DelaunayTriangulation, Void>() {
+			@Override
+			public Void apply(DelaunayTriangulation delaunay) {
+				Triangulations.assertDelaunay(delaunay, all);
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testReadersDuringDeletes() throws InterruptedException {
+		Random random = new Random(19);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 10000);
+		final List<Point> points = Triangulations.points(c[0], c[1]);
+		final List<Point> corners = Triangulations.points(new double[] { 0, 1, 1, 0 }, new double[] { 0, 0, 1, 1 });
+		List<Point> all = new ArrayList<Point>(points);
+		all.addAll(corners);
+		final ConcurrentDelaunayTriangulation concurrent = new ConcurrentDelaunayTriangulation(
+				new DelaunayTriangulation(all));
+
+		runReaders(concurrent, new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < points.size(); i += 200) {
+					List<Point> batch = points.subList(i, i + 200);
+					assertEquals(batch.size(), concurrent.deletePoints(batch));
+					concurrent.insertPoints(batch, true);
+					Point p = batch.get(0);
+					// the heights stay on the plane
+					concurrent.updateZ(p.getX(), p.getY(), p.getZ());
+				}
+			}
+		});
+		assertEquals(all.size(), concurrent.size());
+		assertEquals(all.size(), concurrent.snapshot().size());
+	}
+
+	@Test
+	public void testCollinearAndEmpty() {
+		ConcurrentDelaunayTriangulation concurrent = new ConcurrentDelaunayTriangulation();
+		assertEquals(0, concurrent.size());
+		assertTrue(Double.isNaN(concurrent.z(0, 0)));
+		assertEquals(0, concurrent.locate(0, 0).length);
+		concurrent.insertPoint(new Point(0, 0, 0));
+		concurrent.insertPoint(new Point(1, 1, 0));
+		assertFalse(concurrent.contains(0.5, 0.5));
+		assertTrue(Double.isNaN(concurrent.z(0.5, 0.5)));
+		concurrent.insertPoint(new Point(1, 0, 1));
+		assertTrue(concurrent.contains(0.5, 0.25));
+		assertEquals(0.25, concurrent.z(0.5, 0.25), 1e-12);
+		// the hull edge facing a point outside
+		assertEquals(2, concurrent.locate(0.5, -1).length);
+		assertTrue(Double.isNaN(concurrent.z(0.5, -1)));
+		assertNull(concurrent.updateZ(7, 7, 0));
+	}
+
+	// queries the unit square until writer is done, returns the query count
+	private static int runReaders(final ConcurrentDelaunayTriangulation concurrent, Runnable writer)
+			throws InterruptedException {
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final int[] counts = new int[READERS];
+		Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			final int reader = r;
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(reader);
+					try {
+						while (!done.get()) {
+							double x = random.nextDouble(), y = random.nextDouble();
+							assertEquals(x + 2 * y, concurrent.z(x, y), 1e-9);
+							Point[] corners = concurrent.locate(x, y);
+							assertEquals(Arrays.toString(corners), 3, corners.length);
+							assertTrue(concurrent.contains(x, y));
+							// outside of the unit square, outside of the hull
+							assertTrue(Double.isNaN(concurrent.z(x + 1.5, y)));
+							counts[reader]++;
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			readers[r].start();
+		}
+		try {
+			writer.run();
+		} finally {
+			done.set(true);
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		}
+		if (failure.get() != null)
+			throw new AssertionError("reader failed", failure.get());
+		int queries = 0;
+		for (int count : counts) {
+			queries += count;
+		}
+		return queries;
+	}
+}
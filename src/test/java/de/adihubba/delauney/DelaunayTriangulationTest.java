@@ -0,0 +1,431 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class DelaunayTriangulationTest {
+
+	@Test
+	public void testDelaunayProperty() {
+		Random random = new Random(11);
+		for (int trial = 0; trial < 250; trial++) {
+			int kind = trial % Triangulations.KINDS;
+			double[][] c = Triangulations.coordinates(random, kind, 3 + random.nextInt(trial < 200 ? 80 : 400));
+			// the object engine has no triangles for collinear points
+			if (Triangulations.allCollinear(c[0], c[1]))
+				continue;
+			List<Point> points = Triangulations.points(c[0], c[1]);
+			Triangulations.assertDelaunay(new DelaunayTriangulation(points), points);
+		}
+	}
+
+	@Test
+	public void testSpatiallySortedInsertion() {
+		Random random = new Random(3);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 5000);
+		List<Point> points = Triangulations.points(c[0], c[1]);
+		DelaunayTriangulation sorted = new DelaunayTriangulation();
+		sorted.insertPoints(points, true);
+		Triangulations.assertDelaunay(sorted, points);
+		assertEquals(Triangulations.triangles(new DelaunayTriangulation(points)), Triangulations.triangles(sorted));
+	}
+
+	@Test
+	public void testNonFiniteCoordinates() {
+		for (double bad : new double[] { Double.NaN, Double.POSITIVE_INFINITY }) {
+			DelaunayTriangulation delaunay = new DelaunayTriangulation();
+			ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation();
+			for (double[] p : new double[][] { { 0, 0 }, { 1, 0 }, { 0, 1 }, { bad, 0 } }) {
+				delaunay.insertPoint(new Point(p[0], p[1]));
+				triangulation.insertPoint(p[0], p[1], 0);
+			}
+			assertEquals(4, delaunay.size());
+			assertEquals(4, triangulation.size());
+		}
+	}
+
+	@Test
+	public void testDeleteAndReinsert() {
+		Random random = new Random(11);
+		for (int locator = 0; locator < 4; locator++) {
+			List<Point> remaining = new ArrayList<Point>();
+			for (int i = 0; i < 1000; i++) {
+				remaining.add(new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble()));
+			}
+			DelaunayTriangulation delaunay = new DelaunayTriangulation(remaining);
+			if (locator == 1)
+				delaunay.setPointLocator(new QuadtreeLocator(delaunay));
+			if (locator == 2)
+				delaunay.setPointLocator(new DelaunayHierarchyLocator(delaunay));
+			if (locator == 3)
+				delaunay.indexData(20, 20);
+			long checkpoint = delaunay.journalCheckpoint();
+			Set<String> before = Triangulations.triangles(delaunay);
+			for (int round = 0; !remaining.isEmpty(); round++) {
+				if (round % 5 == 4) {
+					deleteBox(delaunay, remaining, random);
+				} else {
+					int k = round % 3 == 0 ? 1 : round % 3 == 1 ? 1 + random.nextInt(40) : Math.max(1,
+							remaining.size() / 4);
+					Collections.shuffle(remaining, random);
+					List<Point> deleted = new ArrayList<Point>();
+					for (Point p : remaining.subList(0, Math.min(k, remaining.size()))) {
+						deleted.add(new Point(p.getX(), p.getY()));
+					}
+					assertEquals(deleted.size(), delaunay.deletePoints(deleted));
+					remaining.subList(0, deleted.size()).clear();
+				}
+				assertEquals(remaining.size(), delaunay.size());
+				if (remaining.size() >= 3) {
+					Triangulations.assertDelaunay(delaunay, remaining);
+					assertEquals("round " + round, Triangulations.triangles(new DelaunayTriangulation(remaining)),
+							Triangulations.triangles(delaunay));
+				}
+				// the journal holds the difference to the last checkpoint
+				TriangleChanges changes = delaunay.getChangesSince(checkpoint);
+				Set<String> now = Triangulations.triangles(delaunay);
+				Set<String> created = new HashSet<String>(now), destroyed = new HashSet<String>(before);
+				created.removeAll(before);
+				destroyed.removeAll(now);
+				assertEquals(created, keys(changes.getCreated()));
+				assertEquals(destroyed, keys(changes.getDestroyed()));
+				checkpoint = changes.getTo();
+				before = now;
+
+				if (round % 4 == 3) {
+					for (int i = 0; i < 20; i++) {
+						Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, 0);
+						delaunay.insertPoint(p);
+						remaining.add(p);
+					}
+					Triangulations.assertDelaunay(delaunay, remaining);
+					before = Triangulations.triangles(delaunay);
+					checkpoint = delaunay.journalCheckpoint();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDeleteOnGrid() {
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 40; i++) {
+			for (int j = 0; j < 40; j++) {
+				points.add(new Point(i, j, i * j));
+			}
+		}
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+		delaunay.setPointLocator(new QuadtreeLocator(delaunay));
+		deleteBox(delaunay, points, new BoundingBox(10, 20, 10, 25, 0, 0));
+		deleteBox(delaunay, points, new BoundingBox(-1, 5, -1, 5, 0, 0));
+		deleteBox(delaunay, points, new BoundingBox(30, 50, -5, 50, 0, 0));
+		Triangulations.assertDelaunay(delaunay, points);
+		for (Iterator<Point> it = points.iterator(); it.hasNext();) {
+			Point p = it.next();
+			if ((p.getX() * 7 + p.getY()) % 5 == 0) {
+				delaunay.deletePoint(new Point(p.getX(), p.getY()));
+				it.remove();
+			}
+		}
+		// the grid is cocircular everywhere, so any Delaunay triangulation of the rest will do
+		Triangulations.assertDelaunay(delaunay, points);
+	}
+
+	@Test
+	public void testJournal() {
+		Random random = new Random(11);
+		for (int round = 0; round < 20; round++) {
+			boolean grid = random.nextBoolean();
+			DelaunayTriangulation delaunay = new DelaunayTriangulation();
+			long checkpoint = -1;
+			Set<String> before = null;
+			int n = 5 + random.nextInt(1000);
+			for (int i = 0; i < n; i++) {
+				delaunay.insertPoint(grid ? new Point(random.nextInt(15), random.nextInt(15), 0) : new Point(random
+						.nextDouble(), random.nextDouble(), 0));
+				if (i == 2 + round % 5) {
+					checkpoint = delaunay.journalCheckpoint();
+					before = Triangulations.triangles(delaunay);
+				} else if (checkpoint >= 0 && (random.nextInt(50) == 0 || i == n - 1)) {
+					TriangleChanges changes = delaunay.getChangesSince(checkpoint);
+					Set<String> expected = new HashSet<String>(before);
+					Point[] destroyed = changes.getDestroyed(), created = changes.getCreated();
+					for (int k = 0; k < destroyed.length; k += 3) {
+						assertTrue(expected.remove(Triangulations.key(destroyed[k], destroyed[k + 1], destroyed[k + 2])));
+					}
+					for (int k = 0; k < created.length; k += 3) {
+						assertTrue(expected.add(Triangulations.key(created[k], created[k + 1], created[k + 2])));
+					}
+					before = Triangulations.triangles(delaunay);
+					assertEquals(expected, before);
+					if (random.nextBoolean())
+						delaunay.trimJournal(checkpoint);
+					checkpoint = changes.getTo();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testZOutsideOfTheHull() {
+		DelaunayTriangulation delaunay = new DelaunayTriangulation();
+		assertTrue(Double.isNaN(delaunay.z(1, 1)));
+		for (int i = 0; i < 9; i++) {
+			delaunay.insertPoint(new Point(i % 3, i / 3, i));
+		}
+		double[] out = new double[2];
+		delaunay.z(new double[] { 10, 1 }, new double[] { 10, 1 }, out);
+		assertTrue(Double.isNaN(delaunay.z(10, 10)));
+		assertTrue(Double.isNaN(out[0]));
+		assertEquals(4, out[1], 1e-12);
+		assertEquals(4, delaunay.z(1, 1), 1e-12);
+		assertFalse(delaunay.contains(10, 10));
+	}
+
+	@Test
+	public void testUpdateZ() {
+		DelaunayTriangulation delaunay = new DelaunayTriangulation();
+		for (int i = 0; i < 9; i++) {
+			delaunay.insertPoint(new Point(i % 3, i / 3, i));
+		}
+		assertNotNull(delaunay.updateZ(2, 2, 3));
+		assertEquals(7, delaunay.getBoundingBox().getMaxPoint().getZ(), 0);
+		assertEquals(3, delaunay.z(2, 2), 0);
+		delaunay.updateZ(new double[] { 0, 1 }, new double[] { 0, 2 }, new double[] { 5, 20 });
+		BoundingBox box = delaunay.getBoundingBox();
+		assertEquals(1, box.getMinPoint().getZ(), 0);
+		assertEquals(20, box.getMaxPoint().getZ(), 0);
+		assertEquals(box.getMinPoint().getZ(), delaunay.snapshot().getBoundingBox().getMinPoint().getZ(), 0);
+		assertEquals(box.getMaxPoint().getZ(), delaunay.snapshot().getBoundingBox().getMaxPoint().getZ(), 0);
+	}
+
+	@Test
+	public void testNearestVertices() {
+		Random random = new Random(17);
+		for (int kind : new int[] { Triangulations.UNIFORM, Triangulations.SMALL_GRID, Triangulations.COLLINEAR_START }) {
+			double[][] c = Triangulations.coordinates(random, kind, 2000);
+			List<Point> points = new ArrayList<Point>(new HashSet<Point>(Triangulations.points(c[0], c[1])));
+			DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+			double scale = kind == Triangulations.UNIFORM ? 1 : 8;
+			double[] xs = new double[300], ys = new double[300];
+			for (int i = 0; i < xs.length; i++) {
+				// inside and outside of the hull
+				xs[i] = (random.nextDouble() * 1.4 - 0.2) * scale;
+				ys[i] = (random.nextDouble() * 1.4 - 0.2) * scale;
+			}
+			Point[][] batch = delaunay.findNearestVerticesAll(xs, ys, 10);
+			Point[] nearest = delaunay.findNearestVertexAll(xs, ys);
+			for (int i = 0; i < xs.length; i++) {
+				double[] expected = sortedDistances(points, xs[i], ys[i]);
+				Point[] found = delaunay.findNearestVertices(xs[i], ys[i], 10);
+				assertEquals(10, found.length);
+				// ties on the grid may be broken either way, the distances are exact
+				for (int j = 0; j < found.length; j++) {
+					assertEquals("query " + i + " neighbor " + j, expected[j], distance(found[j], xs[i], ys[i]), 0);
+					assertEquals(expected[j], distance(batch[i][j], xs[i], ys[i]), 0);
+				}
+				assertEquals(10, new HashSet<Point>(Arrays.asList(found)).size());
+				assertEquals(expected[0], distance(nearest[i], xs[i], ys[i]), 0);
+				assertEquals(expected[0], distance(delaunay.findClosePoint(new Point(xs[i], ys[i])), xs[i], ys[i]), 0);
+			}
+		}
+
+		DelaunayTriangulation small = new DelaunayTriangulation();
+		assertEquals(null, small.findNearestVertex(0, 0));
+		small.insertPoint(new Point(1, 1));
+		small.insertPoint(new Point(2, 1));
+		assertEquals(2, small.findNearestVertices(5, 5, 10).length);
+		assertEquals(new Point(2, 1), small.findNearestVertex(5, 5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoNearestVertices() {
+		new DelaunayTriangulation().findNearestVertices(0, 0, 0);
+	}
+
+	@Test
+	public void testRangeQueries() {
+		Random random = new Random(18);
+		for (int kind : new int[] { Triangulations.UNIFORM, Triangulations.SMALL_GRID, Triangulations.ROW_GRID }) {
+			double[][] c = Triangulations.coordinates(random, kind, 3000);
+			List<Point> points = Triangulations.points(c[0], c[1]);
+			for (boolean quadtree : new boolean[] { false, true }) {
+				DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+				if (quadtree)
+					delaunay.setPointLocator(new QuadtreeLocator(delaunay));
+				BoundingBox all = delaunay.getBoundingBox();
+				for (int k = 0; k < 200; k++) {
+					double x = all.minX() - 0.3 * all.getWidth() + random.nextDouble() * 1.6 * all.getWidth();
+					double y = all.minY() - 0.3 * all.getHeight() + random.nextDouble() * 1.6 * all.getHeight();
+					// boxes of up to a third of the extent, some of them only a line
+					double w = k % 10 == 0 ? 0 : random.nextDouble() * all.getWidth() / 3;
+					double h = random.nextDouble() * all.getHeight() / 3;
+					BoundingBox box = new BoundingBox(x, x + w, y, y + h, 0, 0);
+
+					final Set<Point> vertices = new HashSet<Point>();
+					int vertexCount = delaunay.forEachVertexIn(box, new Consumer<Point>() {
+						@Override
+						public void accept(Point p) {
+							assertTrue("reported once", vertices.add(p));
+						}
+					});
+					Set<Point> expectedVertices = new HashSet<Point>();
+					for (Point p : points) {
+						if (p.getX() >= box.minX() && p.getX() <= box.maxX() && p.getY() >= box.minY()
+								&& p.getY() <= box.maxY())
+							expectedVertices.add(p);
+					}
+					assertEquals(box.toString(), expectedVertices, vertices);
+					assertEquals(vertices.size(), vertexCount);
+
+					final Set<Triangle> triangles = new HashSet<Triangle>();
+					int triangleCount = delaunay.forEachTriangleIn(box, new Consumer<Triangle>() {
+						@Override
+						public void accept(Triangle t) {
+							assertTrue("reported once", triangles.add(t));
+						}
+					});
+					Set<Triangle> expectedTriangles = new HashSet<Triangle>();
+					for (Triangle t : delaunay.getTriangulation()) {
+						if (!t.isHalfplane() && overlaps(t, box))
+							expectedTriangles.add(t);
+					}
+					assertEquals(box.toString(), expectedTriangles, triangles);
+					assertEquals(triangles.size(), triangleCount);
+				}
+			}
+		}
+		assertEquals(0, new DelaunayTriangulation().forEachVertexIn(new BoundingBox(0, 1, 0, 1, 0, 0),
+				new Consumer<Point>() {
+					@Override
+					public void accept(Point p) {
+					}
+				}));
+	}
+
+	@Test
+	public void testStreaming() {
+		Random random = new Random(2);
+		for (int kind : new int[] { Triangulations.UNIFORM, Triangulations.ROW_GRID }) {
+			double[][] c = Triangulations.coordinates(random, kind, 5000);
+			List<Point> points = Triangulations.points(c[0], c[1]);
+			Set<String> expected = Triangulations.triangles(new DelaunayTriangulation(points));
+			List<Point> sorted = new ArrayList<Point>(points);
+			Collections.sort(sorted);
+			final List<String> finalized = new ArrayList<String>();
+			Consumer<Triangle> sink = new Consumer<Triangle>() {
+				@Override
+				public void accept(Triangle t) {
+					finalized.add(Triangulations.key(t.getA(), t.getB(), t.getC()));
+				}
+			};
+			DelaunayTriangulation delaunay = new DelaunayTriangulation();
+			for (int i = 0; i < sorted.size(); i++) {
+				delaunay.insertPoint(sorted.get(i));
+				if (i % 500 == 499 && i + 1 < sorted.size())
+					delaunay.finalizeTriangles(sorted.get(i + 1).getX(), sink);
+			}
+
+			// queries into the finalized part answer NaN or null
+			BoundingBox box = delaunay.getBoundingBox();
+			double[] xs = new double[2000], ys = new double[2000], out = new double[2000];
+			for (int i = 0; i < xs.length; i++) {
+				xs[i] = box.minX() + random.nextDouble() * box.getWidth();
+				ys[i] = box.minY() + random.nextDouble() * box.getHeight();
+			}
+			delaunay.z(xs, ys, out);
+			Triangle[] found = delaunay.findAll(xs, ys);
+			for (int i = 0; i < xs.length; i++) {
+				assertEquals(Double.doubleToLongBits(delaunay.z(xs[i], ys[i])), Double.doubleToLongBits(out[i]));
+				if (found[i] == null)
+					assertTrue(Double.isNaN(out[i]));
+			}
+			assertEquals(xs.length, delaunay.findNearestVertexAll(xs, ys).length);
+
+			delaunay.finalizeAll(sink);
+			assertEquals("no triangle twice", finalized.size(), new HashSet<String>(finalized).size());
+			assertEquals(expected, new HashSet<String>(finalized));
+		}
+	}
+
+	private static Set<String> keys(Point[] corners) {
+		Set<String> result = new HashSet<String>();
+		for (int i = 0; i < corners.length; i += 3) {
+			result.add(Triangulations.key(corners[i], corners[i + 1], corners[i + 2]));
+		}
+		return result;
+	}
+
+	private static void deleteBox(DelaunayTriangulation delaunay, List<Point> remaining, Random random) {
+		double x = random.nextDouble() * 110 - 5, y = random.nextDouble() * 110 - 5;
+		deleteBox(delaunay, remaining, new BoundingBox(x, x + random.nextDouble() * 30, y, y + random.nextDouble()
+				* 30, 0, 0));
+	}
+
+	private static void deleteBox(DelaunayTriangulation delaunay, List<Point> remaining, BoundingBox box) {
+		int inside = 0;
+		for (Iterator<Point> it = remaining.iterator(); it.hasNext();) {
+			Point p = it.next();
+			if (p.getX() >= box.minX() && p.getX() <= box.maxX() && p.getY() >= box.minY() && p.getY() <= box.maxY()) {
+				it.remove();
+				inside++;
+			}
+		}
+		assertEquals(inside, delaunay.deleteRegion(box));
+	}
+
+	private static double[] sortedDistances(List<Point> points, double x, double y) {
+		double[] distances = new double[points.size()];
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = distance(points.get(i), x, y);
+		}
+		Arrays.sort(distances);
+		return distances;
+	}
+
+	private static double distance(Point p, double x, double y) {
+		return Math.hypot(p.getX() - x, p.getY() - y);
+	}
+
+	// separating axis test of a counterclockwise triangle and a box, borders
+	// included
+	private static boolean overlaps(Triangle t, BoundingBox box) {
+		Point[] corners = { t.getA(), t.getB(), t.getC() };
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (Point p : corners) {
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		if (maxX < box.minX() || minX > box.maxX() || maxY < box.minY() || minY > box.maxY())
+			return false;
+		Point[] boxCorners = { new Point(box.minX(), box.minY()), new Point(box.maxX(), box.minY()),
+				new Point(box.maxX(), box.maxY()), new Point(box.minX(), box.maxY()) };
+		for (int i = 0; i < 3; i++) {
+			boolean separated = true;
+			for (Point q : boxCorners) {
+				if (GeometricPredicates.orient2d(corners[i], corners[(i + 1) % 3], q) >= 0)
+					separated = false;
+			}
+			if (separated)
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,124 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GeometricPredicatesTest {
+
+	private static final int CASES = 20000;
+
+	@Test
+	public void testRandomPoints() {
+		Random random = new Random(7);
+		for (int i = 0; i < CASES; i++) {
+			double[] p = new double[8];
+			for (int k = 0; k < p.length; k++) {
+				p[k] = random.nextDouble();
+			}
+			assertSigns(p);
+		}
+	}
+
+	@Test
+	public void testNearlyCollinearPoints() {
+		Random random = new Random(7);
+		for (int i = 0; i < CASES; i++) {
+			// points on a line through (0.5, 0.5), the last one a few ulps off
+			double s = random.nextDouble() * 1e-3, t = random.nextDouble(), u = random.nextDouble() * 3;
+			double cx = Math.nextUp(0.5 + u), cy = 0.5 + u * 1.7;
+			if (random.nextBoolean())
+				cy = Math.nextDown(cy);
+			double angle = random.nextDouble() * 2 * Math.PI;
+			assertSigns(new double[] { 0.5 + s, 0.5 + s * 1.7, 0.5 + t, 0.5 + t * 1.7, cx, cy, 0.5 + Math.cos(angle),
+					0.5 + Math.sin(angle) });
+		}
+	}
+
+	@Test
+	public void testCocircularGridPoints() {
+		Random random = new Random(7);
+		for (int i = 0; i < CASES; i++) {
+			double[] p = new double[8];
+			for (int k = 0; k < p.length; k++) {
+				p[k] = random.nextInt(4) * 0.1;
+			}
+			assertSigns(p);
+		}
+	}
+
+	@Test
+	public void testNearlyCocircularPoints() {
+		Random random = new Random(7);
+		for (int i = 0; i < CASES; i++) {
+			// a unit circle far from the origin
+			double[] p = new double[8];
+			for (int k = 0; k < p.length; k += 2) {
+				double angle = random.nextDouble() * 2 * Math.PI;
+				p[k] = 1e3 + Math.cos(angle);
+				p[k + 1] = Math.sin(angle);
+			}
+			assertSigns(p);
+		}
+	}
+
+	@Test
+	public void testNonFiniteCoordinates() {
+		// the expansions are skipped, the result is the one of plain floating point
+		assertTrue(Double.isNaN(GeometricPredicates.incircle(0, 0, 1, 0, 0, 1, Double.NaN, 0)));
+		assertTrue(Double.isNaN(GeometricPredicates.orient2d(0, 0, 1, 1, Double.NaN, 0)));
+		for (double bad : new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e200 }) {
+			assertEquals(Double.doubleToLongBits(plainIncircle(0, 0, 1, 0, 0, 1, bad, 0)), Double
+					.doubleToLongBits(GeometricPredicates.incircle(0, 0, 1, 0, 0, 1, bad, 0)));
+			assertEquals(Double.doubleToLongBits(plainIncircle(bad, 0, 1, 0, 0, 1, 0.25, 0.25)), Double
+					.doubleToLongBits(GeometricPredicates.incircle(bad, 0, 1, 0, 0, 1, 0.25, 0.25)));
+			assertEquals(Double.doubleToLongBits((0 - bad) * (0 - bad) - (0 - bad) * (1 - bad)), Double
+					.doubleToLongBits(GeometricPredicates.orient2d(0, 0, 1, 0, bad, bad)));
+		}
+	}
+
+	private static double plainIncircle(double ax, double ay, double bx, double by, double cx, double cy, double dx,
+			double dy) {
+		double adx = ax - dx, ady = ay - dy, bdx = bx - dx, bdy = by - dy, cdx = cx - dx, cdy = cy - dy;
+		return (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy) + (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy)
+				+ (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+	}
+
+	// compares the signs of the predicates with the exact ones of the points
+	// a, b, c, d as x, y pairs
+	private static void assertSigns(double[] p) {
+		assertEquals("orient2d", orient(p), (int) Math.signum(GeometricPredicates.orient2d(p[0], p[1], p[2], p[3],
+				p[4], p[5])));
+		assertEquals("incircle", incircle(p), (int) Math.signum(GeometricPredicates.incircle(p[0], p[1], p[2], p[3],
+				p[4], p[5], p[6], p[7])));
+	}
+
+	private static int orient(double[] p) {
+		BigDecimal acx = exact(p[0]).subtract(exact(p[4])), acy = exact(p[1]).subtract(exact(p[5]));
+		BigDecimal bcx = exact(p[2]).subtract(exact(p[4])), bcy = exact(p[3]).subtract(exact(p[5]));
+		return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+	}
+
+	private static int incircle(double[] p) {
+		BigDecimal[] d = new BigDecimal[6];
+		for (int i = 0; i < 3; i++) {
+			d[2 * i] = exact(p[2 * i]).subtract(exact(p[6]));
+			d[2 * i + 1] = exact(p[2 * i + 1]).subtract(exact(p[7]));
+		}
+		BigDecimal a2 = d[0].multiply(d[0]).add(d[1].multiply(d[1]));
+		BigDecimal b2 = d[2].multiply(d[2]).add(d[3].multiply(d[3]));
+		BigDecimal c2 = d[4].multiply(d[4]).add(d[5].multiply(d[5]));
+		BigDecimal bc = d[2].multiply(d[5]).subtract(d[4].multiply(d[3]));
+		BigDecimal ca = d[4].multiply(d[1]).subtract(d[0].multiply(d[5]));
+		BigDecimal ab = d[0].multiply(d[3]).subtract(d[2].multiply(d[1]));
+		return a2.multiply(bc).add(b2.multiply(ca)).add(c2.multiply(ab)).signum();
+	}
+
+	private static BigDecimal exact(double value) {
+		return new BigDecimal(value);
+	}
+}
@@ -0,0 +1,103 @@
+package de.adihubba.delauney;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the insertion of uniform, clustered and gridded points into the
+ * object and the array engine, in the caller order and spatially sorted, and
+ * measures the bytes allocated per inserted point. Run it with the number of
+ * points as argument (default 100000); every measurement is repeated and the
+ * last run is printed.
+ */
+public class InsertionBenchmark {
+
+	private static final String[] INPUTS = { "uniform", "clustered", "grid" };
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		System.out.println("input      legacy caller  legacy brio  array caller  array brio");
+		for (String input : INPUTS) {
+			double[][] c = coordinates(input, n);
+			List<Point> points = points(c);
+			double[] times = new double[4];
+			for (int run = 0; run < RUNS; run++) {
+				long t0 = System.nanoTime();
+				new DelaunayTriangulation().insertPoints(points, false);
+				long t1 = System.nanoTime();
+				new DelaunayTriangulation().insertPoints(points, true);
+				long t2 = System.nanoTime();
+				ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(n);
+				for (int i = 0; i < n; i++) {
+					triangulation.insertPoint(c[0][i], c[1][i], 0);
+				}
+				long t3 = System.nanoTime();
+				new ArrayDelaunayTriangulation(c[0], c[1], null);
+				long t4 = System.nanoTime();
+				times = new double[] { (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6, (t4 - t3) / 1e6 };
+			}
+			System.out.printf("%-10s %11.0f ms %9.0f ms %10.0f ms %8.0f ms%n", input, times[0], times[1], times[2],
+					times[3]);
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("the allocated bytes of a thread are not available");
+			return;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		System.out.println();
+		System.out.println("input      bytes/insert  time");
+		for (String input : new String[] { "uniform", "grid" }) {
+			List<Point> ordered = SpatialSort.brioOrder(points(coordinates(input, n)));
+			double bytes = 0, time = 0;
+			for (int run = 0; run < RUNS; run++) {
+				DelaunayTriangulation delaunay = new DelaunayTriangulation();
+				System.gc();
+				long thread = Thread.currentThread().getId();
+				long b0 = allocations.getThreadAllocatedBytes(thread);
+				long t0 = System.nanoTime();
+				for (Point p : ordered) {
+					delaunay.insertPoint(p);
+				}
+				long t1 = System.nanoTime();
+				bytes = (allocations.getThreadAllocatedBytes(thread) - b0) / (double) ordered.size();
+				time = (t1 - t0) / 1e6;
+			}
+			System.out.printf("%-10s %12.0f  %.0f ms%n", input, bytes, time);
+		}
+	}
+
+	private static double[][] coordinates(String input, int n) {
+		Random random = new Random(3);
+		int side = (int) Math.sqrt(n);
+		double[] xs = new double[n], ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			if (input.equals("uniform")) {
+				xs[i] = random.nextDouble();
+				ys[i] = random.nextDouble();
+			} else if (input.equals("clustered")) {
+				int cluster = random.nextInt(10);
+				xs[i] = (cluster * 0.37) % 1 + random.nextGaussian() * 0.01;
+				ys[i] = (cluster * 0.61) % 1 + random.nextGaussian() * 0.01;
+			} else {
+				// rows of an integer grid, in row order
+				xs[i] = i % side;
+				ys[i] = i / side;
+			}
+		}
+		return new double[][] { xs, ys };
+	}
+
+	private static List<Point> points(double[][] c) {
+		List<Point> points = new ArrayList<Point>(c[0].length);
+		for (int i = 0; i < c[0].length; i++) {
+			points.add(new Point(c[0][i], c[1][i], 0));
+		}
+		return points;
+	}
+}
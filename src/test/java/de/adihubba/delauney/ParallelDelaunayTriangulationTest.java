@@ -0,0 +1,63 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ParallelDelaunayTriangulationTest {
+
+	@Test
+	public void testDelaunayProperty() {
+		Random random = new Random(2);
+		for (int trial = 0; trial < 250; trial++) {
+			int n = 2 + random.nextInt(trial < 200 ? 60 : 400);
+			double[][] c = Triangulations.coordinates(random, trial % Triangulations.KINDS, n);
+			ArrayDelaunayTriangulation triangulation = ParallelDelaunayTriangulation.triangulate(c[0], c[1], null);
+			Triangulations.assertDelaunay(triangulation, c[0], c[1]);
+
+			// the merged triangulation takes further points
+			double[] xs = Arrays.copyOf(c[0], n + 20), ys = Arrays.copyOf(c[1], n + 20);
+			for (int i = n; i < n + 20; i++) {
+				xs[i] = random.nextDouble() * 8;
+				ys[i] = random.nextDouble() * 8;
+				triangulation.insertPoint(xs[i], ys[i], 0);
+			}
+			Triangulations.assertDelaunay(triangulation, xs, ys);
+		}
+	}
+
+	@Test
+	public void testSameAsSequential() {
+		Random random = new Random(2);
+		// beyond the sequential threshold, so the seams are merged
+		for (int n : new int[] { 10000, 60000 }) {
+			for (int kind : new int[] { Triangulations.UNIFORM, Triangulations.ROW_GRID }) {
+				double[][] c = Triangulations.coordinates(random, kind, n);
+				ArrayDelaunayTriangulation triangulation = ParallelDelaunayTriangulation.triangulate(c[0], c[1], null);
+				if (kind == Triangulations.UNIFORM) {
+					// unique in general position
+					assertEquals(Triangulations.triangles(ArrayDelaunayTriangulation.triangulate(c[0], c[1])),
+							Triangulations.triangles(ParallelDelaunayTriangulation.triangulateIndices(c[0], c[1])));
+				} else {
+					Triangulations.assertDelaunay(triangulation, c[0], c[1]);
+				}
+				assertEquals(2 * triangulation.size() - 2 - hullSize(triangulation), realTriangles(triangulation));
+				for (int i = 0; i < 1000; i++) {
+					assertTrue(triangulation.contains(c[0][i], c[1][i]));
+				}
+			}
+		}
+	}
+
+	private static int hullSize(ArrayDelaunayTriangulation triangulation) {
+		return triangulation.trianglesSize() - realTriangles(triangulation);
+	}
+
+	private static int realTriangles(ArrayDelaunayTriangulation triangulation) {
+		return triangulation.getTriangleVertices().length / 3;
+	}
+}
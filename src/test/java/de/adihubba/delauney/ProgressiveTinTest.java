@@ -0,0 +1,83 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ProgressiveTinTest {
+
+	@Test
+	public void testLevels() {
+		double[][] terrain = TinSimplifierTest.terrain(new Random(5), 20000);
+		ProgressiveTin tin = ProgressiveTin.build(terrain[0], terrain[1], terrain[2], 0.5, 3000);
+		int finest = tin.getLevelCount() - 1;
+		TinSimplifier simplifier = new TinSimplifier(terrain[0], terrain[1], terrain[2]);
+		assertEquals(simplifier.simplify(0.5, 3000).size(), tin.getVertexCount(finest));
+		assertEquals(simplifier.getError(), tin.getError(finest), 0);
+
+		for (int level : new int[] { 0, 1, 2, 10, finest / 3, finest / 2, finest }) {
+			// a level is the triangulation of its vertices
+			List<Point> points = new ArrayList<Point>();
+			for (int v = 0; v < tin.getVertexCount(level); v++) {
+				points.add(new Point(tin.getX(v), tin.getY(v), tin.getZ(v)));
+			}
+			DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+			int[] triangles = tin.getTriangles(level);
+			Set<String> keys = new HashSet<String>();
+			for (int i = 0; i < triangles.length; i += 3) {
+				keys.add(Triangulations.key(points.get(triangles[i]), points.get(triangles[i + 1]), points
+						.get(triangles[i + 2])));
+			}
+			assertEquals(triangles.length / 3, tin.getTriangleCount(level));
+			assertEquals("level " + level, Triangulations.triangles(delaunay), keys);
+
+			double error = 0;
+			for (int i = 0; i < terrain[0].length; i++) {
+				error = Math.max(error, Math.abs(delaunay.z(terrain[0][i], terrain[1][i]) - terrain[2][i]));
+			}
+			assertEquals("level " + level, tin.getError(level), error, 0);
+		}
+
+		int level = tin.levelForError(5);
+		assertTrue(tin.getError(level) <= 5);
+		for (int coarser = 0; coarser < level; coarser++) {
+			assertTrue(tin.getError(coarser) > 5);
+		}
+		assertEquals(1000, tin.getVertexCount(tin.levelForVertices(1000)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCollinear() {
+		double[] xs = { 0, 1, 2, 3 };
+		ProgressiveTin tin = ProgressiveTin.build(xs, xs, new double[4], 0, 10);
+		assertEquals(1, tin.getLevelCount());
+		assertEquals(0, tin.getTriangles(0).length);
+		tin.getTriangles(1);
+	}
+
+	@Test
+	public void testFewPoints() {
+		for (int n = 0; n < 3; n++) {
+			double[] xs = new double[n], ys = new double[n];
+			for (int i = 0; i < n; i++) {
+				xs[i] = i;
+				ys[i] = i * i;
+			}
+			ProgressiveTin tin = ProgressiveTin.build(xs, ys, new double[n], 0, 10);
+			assertEquals(1, tin.getLevelCount());
+			assertEquals(n, tin.size());
+			assertEquals(n, tin.getVertexCount(0));
+			assertEquals(0, tin.getError(0), 0);
+			assertEquals(0, tin.getTriangles(0).length);
+			assertEquals(0, tin.levelForError(1));
+			assertEquals(0, tin.levelForVertices(10));
+		}
+	}
+}
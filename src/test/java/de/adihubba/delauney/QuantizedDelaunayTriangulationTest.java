@@ -0,0 +1,84 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantizedDelaunayTriangulationTest {
+
+	@Test
+	public void testSameAsArrayEngineOnTheGrid() {
+		Random random = new Random(5);
+		for (int kind = 0; kind < Triangulations.KINDS; kind++) {
+			double[][] c = Triangulations.coordinates(random, kind, 20000);
+			double[] zs = new double[c[0].length];
+			QuantizedDelaunayTriangulation quantized = new QuantizedDelaunayTriangulation(c[0], c[1], zs);
+
+			// the array engine on the snapped coordinates, in the same order
+			ArrayDelaunayTriangulation reference = new ArrayDelaunayTriangulation(quantized.size());
+			for (int v = 0; v < quantized.size(); v++) {
+				assertEquals(v, reference.insertPoint(quantized.getGridX(v), quantized.getGridY(v), 0));
+			}
+			assertEquals(Triangulations.triangles(reference.getTriangleVertices()), Triangulations.triangles(quantized
+					.getTriangleVertices()));
+		}
+	}
+
+	@Test
+	public void testTriangulate() {
+		Random random = new Random(1);
+		double[] xs = new double[2000], ys = new double[2000];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextDouble() * 400;
+			ys[i] = random.nextDouble() * 400;
+		}
+		assertEquals(Triangulations.triangles(ArrayDelaunayTriangulation.triangulate(xs, ys)), Triangulations
+				.triangles(QuantizedDelaunayTriangulation.triangulate(xs, ys)));
+	}
+
+	@Test
+	public void testZ() {
+		Random random = new Random(5);
+		double[] xs = new double[5000], ys = new double[5000], zs = new double[5000];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextDouble() * 1000;
+			ys[i] = random.nextDouble() * 1000;
+			zs[i] = 50 * Math.sin(xs[i] / 80) * Math.cos(ys[i] / 120);
+		}
+		QuantizedDelaunayTriangulation quantized = new QuantizedDelaunayTriangulation(xs, ys, zs);
+		ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(xs, ys, zs);
+		for (int i = 0; i < 2000; i++) {
+			double x = random.nextDouble() * 1000, y = random.nextDouble() * 1000;
+			double z = triangulation.z(x, y);
+			if (!Double.isNaN(z) && !Double.isNaN(quantized.z(x, y)))
+				assertEquals(z, quantized.z(x, y), 1);
+		}
+		assertTrue(Double.isNaN(quantized.z(-10, -10)));
+		assertFalse(quantized.contains(-1e300, 0));
+	}
+
+	@Test
+	public void testSmallInputs() {
+		QuantizedDelaunayTriangulation quantized = new QuantizedDelaunayTriangulation(new double[] { 0, 1, 2, 3, 1 },
+				new double[] { 0, 1, 2, 3, 0 }, new double[5]);
+		assertEquals(5, quantized.size());
+		assertTrue(quantized.contains(0.9, 0.5));
+		assertFalse(quantized.contains(5, 5));
+		assertEquals(quantized.trianglesSize(), quantized.toArrayTriangulation().trianglesSize());
+
+		QuantizedDelaunayTriangulation collinear = new QuantizedDelaunayTriangulation(new double[] { 0, 1, 2 },
+				new double[] { 0, 0, 0 }, null);
+		assertEquals(3, collinear.size());
+		assertEquals(0, collinear.getTriangulation().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInsertOutsideOfTheBounds() {
+		new QuantizedDelaunayTriangulation(new double[] { 0, 1, 0 }, new double[] { 0, 0, 1 }, null).insertPoint(10,
+				0, 0);
+	}
+}
@@ -0,0 +1,123 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TiledTriangulationBuilderTest {
+
+	@Test
+	public void testUniform() throws IOException {
+		Random random = new Random(1);
+		double[] xs = new double[20000], ys = new double[20000];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextDouble() * 1000;
+			ys[i] = random.nextDouble() * 1000;
+		}
+		assertSameAsGlobal(xs, ys, new BoundingBox(0, 1000, 0, 1000, 0, 0), 6, 6);
+	}
+
+	@Test
+	public void testGrid() throws IOException {
+		// cocircular everywhere, tile borders on grid lines and duplicates
+		Random random = new Random(1);
+		int side = 120;
+		double[] xs = new double[side * side + 300], ys = new double[side * side + 300];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = i < side * side ? i % side : random.nextInt(side);
+			ys[i] = i < side * side ? i / side : random.nextInt(side);
+		}
+		assertSameAsGlobal(xs, ys, new BoundingBox(0, side - 1, 0, side - 1, 0, 0), 7, 5);
+	}
+
+	@Test
+	public void testClusters() throws IOException {
+		// empty regions and points outside of the bounds
+		Random random = new Random(1);
+		double[] xs = new double[20000], ys = new double[20000];
+		for (int i = 0; i < xs.length; i++) {
+			int cluster = random.nextInt(5);
+			xs[i] = cluster * 230 + random.nextGaussian() * 20;
+			ys[i] = (cluster % 2) * 600 + random.nextGaussian() * 20;
+		}
+		assertSameAsGlobal(xs, ys, new BoundingBox(100, 800, 100, 500, 0, 0), 8, 6);
+	}
+
+	@Test
+	public void testCollinear() throws IOException {
+		double[] xs = new double[500], ys = new double[500];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = i;
+			ys[i] = 2 * i;
+		}
+		assertSameAsGlobal(xs, ys, new BoundingBox(0, 500, 0, 1000, 0, 0), 4, 4);
+	}
+
+	private static void assertSameAsGlobal(double[] xs, double[] ys, BoundingBox bounds, int columns, int rows)
+			throws IOException {
+		double[] zs = new double[xs.length];
+		for (int i = 0; i < zs.length; i++) {
+			zs[i] = xs[i] * 0.5 + ys[i] * 2;
+		}
+		Path directory = Files.createTempDirectory("tiles");
+		try {
+			// spill files left over from an earlier build
+			for (int tile = 0; tile < columns * rows; tile += 3) {
+				Files.write(directory.resolve("points-" + tile + ".bin"), new byte[24 * 1000 + 7]);
+			}
+			TiledTriangulationBuilder builder = new TiledTriangulationBuilder(directory, bounds, columns, rows);
+			builder.addPoints(xs, ys, zs);
+			TileStore store = builder.build();
+
+			ArrayDelaunayTriangulation global = new ArrayDelaunayTriangulation(xs, ys, zs);
+			Set<String> tiled = new HashSet<String>();
+			for (int row = 0; row < store.getRows(); row++) {
+				for (int column = 0; column < store.getColumns(); column++) {
+					TileStore.Tile tile = store.readTile(column, row);
+					for (int t = 0; t < tile.size(); t++) {
+						assertTrue("stored once", tiled.add(Triangulations.key(corner(tile, t, 0), corner(tile, t, 1),
+								corner(tile, t, 2))));
+					}
+				}
+			}
+			assertEquals(Triangulations.triangles(global), tiled);
+
+			Random random = new Random(5);
+			for (int i = 0; i < 200; i++) {
+				double x = bounds.minX() + random.nextDouble() * bounds.getWidth();
+				double y = bounds.minY() + random.nextDouble() * bounds.getHeight();
+				assertEquals(global.z(x, y), store.z(x, y), 1e-6);
+			}
+			DirectoryStream<Path> files = Files.newDirectoryStream(directory, "points-*");
+			try {
+				assertFalse("spill files are deleted", files.iterator().hasNext());
+			} finally {
+				files.close();
+			}
+		} finally {
+			DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+			try {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			} finally {
+				files.close();
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static Point corner(TileStore.Tile tile, int t, int i) {
+		return new Point(tile.getX(t, i), tile.getY(t, i));
+	}
+}
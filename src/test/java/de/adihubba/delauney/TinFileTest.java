@@ -0,0 +1,146 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TinFileTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(8);
+		Path file = Files.createTempFile("tin", ".bin");
+		try {
+			for (int kind = 0; kind < Triangulations.KINDS; kind++) {
+				// odd and even triangle counts, the int arrays are padded differently
+				for (int n : new int[] { 2, 3, 4, 500, 501 }) {
+					double[][] c = Triangulations.coordinates(random, kind, n);
+					double[] zs = new double[n];
+					for (int i = 0; i < n; i++) {
+						zs[i] = random.nextDouble();
+					}
+					ArrayDelaunayTriangulation written = new ArrayDelaunayTriangulation(c[0], c[1], zs);
+					TinFile.write(written, file);
+					assertSame(written, TinFile.readArray(file));
+					assertSame(written, TinFile.map(file));
+					if (written.trianglesSize() > 0) {
+						assertEquals(Triangulations.triangles(written), Triangulations.triangles(TinFile.read(file)));
+					}
+				}
+			}
+
+			// the object triangulation is written with its half planes as ghosts
+			double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 2000);
+			List<Point> points = Triangulations.points(c[0], c[1]);
+			DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+			TinFile.write(delaunay, file);
+			DelaunayTriangulation read = TinFile.read(file);
+			assertEquals(delaunay.size(), read.size());
+			assertEquals(Triangulations.triangles(delaunay), Triangulations.triangles(read));
+			Triangulations.assertDelaunay(read, points);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testMappedQueries() throws IOException {
+		Random random = new Random(8);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 20000);
+		ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(Triangulations.points(c[0], c[1]));
+		Path file = Files.createTempFile("tin", ".bin");
+		try {
+			TinFile.write(triangulation, file);
+			MappedTin mapped = TinFile.map(file);
+			for (int i = 0; i < 5000; i++) {
+				double x = random.nextDouble() * 1.2 - 0.1, y = random.nextDouble() * 1.2 - 0.1;
+				double z = triangulation.z(x, y);
+				assertEquals(triangulation.contains(x, y), mapped.contains(x, y));
+				if (Double.isNaN(z)) {
+					assertTrue(Double.isNaN(mapped.z(x, y)));
+				} else {
+					// the plane z = x + 2y
+					assertEquals(z, mapped.z(x, y), 1e-9);
+					int t = mapped.locate(x, y);
+					assertTrue(!mapped.isGhost(t));
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testInvalidFiles() throws IOException {
+		Path file = Files.createTempFile("tin", ".bin");
+		try {
+			assertUnsupported(file);
+			Files.write(file, new byte[40]);
+			assertUnsupported(file);
+			TinFile.write(new ArrayDelaunayTriangulation(new double[] { 0, 1, 0 }, new double[] { 0, 0, 1 }, null), file);
+			byte[] bytes = Files.readAllBytes(file);
+			Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+			assertUnsupported(file);
+			bytes[4] = 2;
+			Files.write(file, bytes);
+			assertUnsupported(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void assertUnsupported(Path file) throws IOException {
+		try {
+			TinFile.readArray(file);
+			fail("read " + file);
+		} catch (UnsupportedFormatException expected) {
+		}
+		try {
+			TinFile.map(file);
+			fail("mapped " + file);
+		} catch (UnsupportedFormatException expected) {
+		}
+	}
+
+	private static void assertSame(ArrayDelaunayTriangulation expected, ArrayDelaunayTriangulation actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.trianglesSize(), actual.trianglesSize());
+		for (int v = 0; v < expected.size(); v++) {
+			assertEquals(expected.getX(v), actual.getX(v), 0);
+			assertEquals(expected.getY(v), actual.getY(v), 0);
+			assertEquals(expected.getZ(v), actual.getZ(v), 0);
+		}
+		for (int t = 0; t < expected.trianglesSize(); t++) {
+			for (int i = 0; i < 3; i++) {
+				assertEquals(expected.getTriangleVertex(t, i), actual.getTriangleVertex(t, i));
+				assertEquals(expected.getNeighbor(t, i), actual.getNeighbor(t, i));
+			}
+		}
+	}
+
+	private static void assertSame(ArrayDelaunayTriangulation expected, MappedTin actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.trianglesSize(), actual.trianglesSize());
+		for (int v = 0; v < expected.size(); v++) {
+			assertEquals(expected.getX(v), actual.getX(v), 0);
+			assertEquals(expected.getY(v), actual.getY(v), 0);
+			assertEquals(expected.getZ(v), actual.getZ(v), 0);
+		}
+		for (int t = 0; t < expected.trianglesSize(); t++) {
+			assertEquals(expected.isGhost(t), actual.isGhost(t));
+			for (int i = 0; i < 3; i++) {
+				assertEquals(expected.getTriangleVertex(t, i), actual.getTriangleVertex(t, i));
+				assertEquals(expected.getNeighbor(t, i), actual.getNeighbor(t, i));
+			}
+		}
+	}
+}
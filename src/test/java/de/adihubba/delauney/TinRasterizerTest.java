@@ -0,0 +1,93 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TinRasterizerTest {
+
+	@Test
+	public void testSameAsZ() {
+		Random random = new Random(6);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 3000);
+		double[] zs = new double[c[0].length];
+		for (int i = 0; i < zs.length; i++) {
+			zs[i] = Math.sin(7 * c[0][i]) * Math.cos(5 * c[1][i]);
+		}
+		ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(c[0], c[1], zs);
+		List<Point> points = Triangulations.points(c[0], c[1]);
+		for (int i = 0; i < zs.length; i++) {
+			points.get(i).setZ(zs[i]);
+		}
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+
+		// more columns than rows and a box wider than high, so swapped borders show
+		TinRasterizer rasterizer = new TinRasterizer(-0.1, 1.1, -0.3, 1.2, 157, 131);
+		double[] raster = rasterizer.rasterize(triangulation);
+		double[] objects = rasterizer.rasterize(delaunay);
+		float[] floats = rasterizer.rasterizeFloat(triangulation);
+		int inside = 0;
+		for (int row = 0; row < rasterizer.getRows(); row++) {
+			for (int column = 0; column < rasterizer.getColumns(); column++) {
+				int cell = row * rasterizer.getColumns() + column;
+				double z = triangulation.z(rasterizer.getCellCenterX(column), rasterizer.getCellCenterY(row));
+				if (Double.isNaN(z)) {
+					assertTrue("cell " + column + ", " + row, Double.isNaN(raster[cell]));
+					assertTrue(Double.isNaN(objects[cell]));
+					assertTrue(Float.isNaN(floats[cell]));
+				} else {
+					inside++;
+					assertEquals("cell " + column + ", " + row, z, raster[cell], 1e-9);
+					assertEquals(z, objects[cell], 1e-9);
+					assertEquals(z, floats[cell], 1e-6);
+				}
+			}
+		}
+		assertTrue(inside > rasterizer.getColumns() * rasterizer.getRows() / 2);
+	}
+
+	@Test
+	public void testCellCenters() {
+		TinRasterizer rasterizer = new TinRasterizer(new BoundingBox(0, 10, 2, 3, 0, 0), 10, 4);
+		assertEquals(1, rasterizer.getCellWidth(), 0);
+		assertEquals(0.25, rasterizer.getCellHeight(), 0);
+		assertEquals(0.5, rasterizer.getCellCenterX(0), 0);
+		assertEquals(9.5, rasterizer.getCellCenterX(9), 0);
+		assertEquals(2.125, rasterizer.getCellCenterY(0), 0);
+		assertEquals(2.875, rasterizer.getCellCenterY(3), 0);
+	}
+
+	@Test
+	public void testNoGapsAlongEdges() {
+		// the shared diagonal runs through the centres of the cells
+		double[] xs = { 0, 4, 4, 0 }, ys = { 0, 0, 4, 4 }, zs = { 0, 4, 12, 8 };
+		int[] triangles = { 0, 1, 2, 0, 2, 3 };
+		TinRasterizer rasterizer = new TinRasterizer(0, 4, 0, 4, 4, 4);
+		double[] out = new double[16];
+		rasterizer.rasterize(xs, ys, zs, triangles, out, ForkJoinPool.commonPool());
+		for (int row = 0; row < 4; row++) {
+			for (int column = 0; column < 4; column++) {
+				double value = out[row * 4 + column];
+				assertFalse("cell " + column + ", " + row, Double.isNaN(value));
+				assertEquals(rasterizer.getCellCenterX(column) + 2 * rasterizer.getCellCenterY(row), value, 1e-12);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyArea() {
+		new TinRasterizer(0, -1, 0, 1, 10, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutputTooSmall() {
+		new TinRasterizer(0, 1, 0, 1, 10, 10).rasterize(new double[3], new double[3], new double[3], new int[0],
+				new double[99], ForkJoinPool.commonPool());
+	}
+}
@@ -0,0 +1,69 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TinSimplifierTest {
+
+	@Test
+	public void testMaxError() {
+		double[][] terrain = terrain(new Random(5), 50000);
+		TinSimplifier simplifier = new TinSimplifier(terrain[0], terrain[1], terrain[2]);
+		DelaunayTriangulation simplified = simplifier.simplify(1, Integer.MAX_VALUE);
+		assertTrue(simplifier.getError() <= 1);
+		assertEquals(simplifier.getError(), maxError(simplified, terrain), 0);
+	}
+
+	@Test
+	public void testMaxVertices() {
+		double[][] terrain = terrain(new Random(5), 50000);
+		TinSimplifier simplifier = new TinSimplifier(terrain[0], terrain[1], terrain[2]);
+		DelaunayTriangulation simplified = simplifier.simplify(0, 2000);
+		assertEquals(2000, simplified.size());
+		assertEquals(simplifier.getError(), maxError(simplified, terrain), 0);
+	}
+
+	@Test
+	public void testCollinear() {
+		double[] xs = { 0, 1, 2, 3 };
+		assertEquals(2, new TinSimplifier(xs, xs, new double[4]).simplify(0, 10).size());
+	}
+
+	@Test
+	public void testFewPoints() {
+		for (int n = 0; n < 3; n++) {
+			double[] xs = new double[n], ys = new double[n], zs = new double[n];
+			for (int i = 0; i < n; i++) {
+				xs[i] = i;
+				ys[i] = i * i;
+				zs[i] = i;
+			}
+			TinSimplifier simplifier = new TinSimplifier(xs, ys, zs);
+			assertEquals(n, simplifier.simplify(0, 10).size());
+			assertEquals(0, simplifier.getError(), 0);
+		}
+	}
+
+	// heights of a terrain over a square
+	static double[][] terrain(Random random, int n) {
+		double[] xs = new double[n], ys = new double[n], zs = new double[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = random.nextDouble() * 1000;
+			ys[i] = random.nextDouble() * 1000;
+			zs[i] = 50 * Math.sin(xs[i] / 80) * Math.cos(ys[i] / 120) + 10 * Math.sin(xs[i] / 13 + ys[i] / 17);
+		}
+		return new double[][] { xs, ys, zs };
+	}
+
+	private static double maxError(DelaunayTriangulation simplified, double[][] terrain) {
+		double error = 0;
+		for (int i = 0; i < terrain[0].length; i++) {
+			error = Math.max(error, Math.abs(simplified.z(terrain[0][i], terrain[1][i]) - terrain[2][i]));
+		}
+		return error;
+	}
+}
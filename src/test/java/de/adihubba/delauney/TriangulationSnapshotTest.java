@@ -0,0 +1,98 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TriangulationSnapshotTest {
+
+	@Test
+	public void testSnapshotEqualsRebuild() {
+		Random random = new Random(3);
+		DelaunayTriangulation delaunay = new DelaunayTriangulation();
+		List<TriangulationSnapshot> snapshots = new ArrayList<TriangulationSnapshot>();
+		List<ArrayDelaunayTriangulation> copies = new ArrayList<ArrayDelaunayTriangulation>();
+		for (int i = 0; i < 3; i++) {
+			delaunay.insertPoint(new Point(i, i, 1));
+		}
+		snapshots.add(delaunay.snapshot());
+		copies.add(ArrayDelaunayTriangulation.copyOf(delaunay));
+		List<Point> points = new ArrayList<Point>();
+		for (int round = 0; round < 40; round++) {
+			int kind = random.nextInt(4);
+			if (kind == 0 || points.size() < 100) {
+				for (int i = random.nextInt(2000); i >= 0; i--) {
+					Point p = new Point(random.nextInt(100000) / 100.0, random.nextInt(100000) / 100.0, random
+							.nextDouble());
+					delaunay.insertPoint(p);
+					points.add(p);
+				}
+			} else if (kind == 1) {
+				List<Point> deleted = new ArrayList<Point>();
+				for (int i = random.nextInt(200); i >= 0 && !points.isEmpty(); i--) {
+					deleted.add(points.remove(random.nextInt(points.size())));
+				}
+				delaunay.deletePoints(deleted);
+			} else if (kind == 2) {
+				double x = random.nextDouble() * 900, y = random.nextDouble() * 900;
+				delaunay.deleteRegion(new BoundingBox(x, x + 50, y, y + 50, 0, 0));
+				points.clear();
+				for (Iterator<Point> it = delaunay.verticesIterator(); it.hasNext();) {
+					points.add(it.next());
+				}
+			} else {
+				for (int i = 0; i < 100; i++) {
+					Point p = points.get(random.nextInt(points.size()));
+					delaunay.updateZ(p.getX(), p.getY(), random.nextDouble());
+				}
+			}
+			if (random.nextInt(3) == 0) {
+				delaunay.deletePoints(new ArrayList<Point>(points));
+				points.clear();
+			}
+			snapshots.add(delaunay.snapshot());
+			copies.add(ArrayDelaunayTriangulation.copyOf(delaunay));
+		}
+		// the older snapshots did not change with the triangulation
+		for (int i = 0; i < snapshots.size(); i++) {
+			assertSame(copies.get(i), snapshots.get(i).toArrayTriangulation(), "snapshot " + i);
+			assertSame(snapshots.get(i).toArrayTriangulation(), snapshots.get(i), "snapshot " + i);
+		}
+	}
+
+	private static void assertSame(ArrayDelaunayTriangulation expected, ArrayDelaunayTriangulation actual,
+			String what) {
+		assertEquals(what, expected.size(), actual.size());
+		assertEquals(what, expected.trianglesSize(), actual.trianglesSize());
+		for (int v = 0; v < expected.size(); v++) {
+			assertEquals(what, expected.getX(v), actual.getX(v), 0);
+			assertEquals(what, expected.getY(v), actual.getY(v), 0);
+			assertEquals(what, expected.getZ(v), actual.getZ(v), 0);
+		}
+		for (int t = 0; t < expected.trianglesSize(); t++) {
+			for (int i = 0; i < 3; i++) {
+				assertEquals(what, expected.getTriangleVertex(t, i), actual.getTriangleVertex(t, i));
+				assertEquals(what, expected.getNeighbor(t, i), actual.getNeighbor(t, i));
+			}
+		}
+	}
+
+	private static void assertSame(ArrayDelaunayTriangulation expected, TriangulationSnapshot actual, String what) {
+		assertEquals(what, expected.size(), actual.size());
+		assertEquals(what, expected.trianglesSize(), actual.trianglesSize());
+		for (int v = 0; v < expected.size(); v++) {
+			assertEquals(what, expected.getZ(v), actual.getZ(v), 0);
+		}
+		for (int t = 0; t < expected.trianglesSize(); t++) {
+			for (int i = 0; i < 3; i++) {
+				assertEquals(what, expected.getTriangleVertex(t, i), actual.getTriangleVertex(t, i));
+				assertEquals(what, expected.getNeighbor(t, i), actual.getNeighbor(t, i));
+			}
+		}
+	}
+}
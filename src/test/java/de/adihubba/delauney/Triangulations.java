@@ -0,0 +1,217 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The test inputs and the checks shared by the triangulation tests.
+ */
+final class Triangulations {
+
+	/** the kinds of input, see {@link #coordinates(Random, int, int)} */
+	static final int UNIFORM = 0, SMALL_GRID = 1, ROW_GRID = 2, CIRCLE = 3, COLLINEAR_START = 4, KINDS = 5;
+
+	private Triangulations() {
+	}
+
+	/**
+	 * @return the x and y coordinates of n points of the kind: uniform in the
+	 *         unit square, on a small grid (duplicates and cocircular
+	 *         points), a grid in row order, on a circle or starting with a
+	 *         long collinear run.
+	 */
+	static double[][] coordinates(Random random, int kind, int n) {
+		double[] xs = new double[n], ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			switch (kind) {
+			case UNIFORM:
+				xs[i] = random.nextDouble();
+				ys[i] = random.nextDouble();
+				break;
+			case SMALL_GRID:
+				xs[i] = random.nextInt(8);
+				ys[i] = random.nextInt(8);
+				break;
+			case ROW_GRID:
+				xs[i] = i % 12;
+				ys[i] = i / 12;
+				break;
+			case CIRCLE:
+				double angle = random.nextInt(64) * Math.PI / 32;
+				xs[i] = 3 + Math.cos(angle);
+				ys[i] = 7 + Math.sin(angle);
+				break;
+			default:
+				xs[i] = random.nextInt(5) * 0.5;
+				ys[i] = i < n / 2 ? 0 : random.nextInt(4);
+			}
+		}
+		return new double[][] { xs, ys };
+	}
+
+	static List<Point> points(double[] xs, double[] ys) {
+		List<Point> points = new ArrayList<Point>(xs.length);
+		for (int i = 0; i < xs.length; i++) {
+			points.add(new Point(xs[i], ys[i], xs[i] + 2 * ys[i]));
+		}
+		return points;
+	}
+
+	static boolean allCollinear(double[] xs, double[] ys) {
+		for (int i = 2; i < xs.length; i++) {
+			if (GeometricPredicates.orient2d(xs[0], ys[0], xs[1], ys[1], xs[i], ys[i]) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * checks that the triangulation of the points is linked both ways,
+	 * counterclockwise, Delaunay and has 2n - 2 - h triangles.
+	 */
+	static void assertDelaunay(DelaunayTriangulation delaunay, Collection<Point> points) {
+		Set<Point> distinct = new HashSet<Point>(points);
+		assertEquals("vertices", distinct.size(), delaunay.size());
+		int real = 0, halfplanes = 0;
+		for (Triangle t : delaunay.getTriangulation()) {
+			for (Triangle u : new Triangle[] { t.getAbTriangle(), t.getBcTriangle(), t.getCaTriangle() }) {
+				assertTrue("neighbors are linked both ways",
+						u == null || u.getAbTriangle() == t || u.getBcTriangle() == t || u.getCaTriangle() == t);
+			}
+			if (t.isHalfplane()) {
+				halfplanes++;
+				continue;
+			}
+			real++;
+			assertTrue("counterclockwise " + t, GeometricPredicates.orient2d(t.getA(), t.getB(), t.getC()) > 0);
+			for (Point p : distinct) {
+				if (!t.isCorner(p) && GeometricPredicates.incircle(t.getA(), t.getB(), t.getC(), p) > 0)
+					fail(p + " in the circumcircle of " + t);
+			}
+		}
+		assertEquals("Euler", 2 * distinct.size() - 2 - halfplanes, real);
+		for (Point p : distinct) {
+			assertTrue("contains " + p, delaunay.contains(p));
+		}
+	}
+
+	/**
+	 * checks that the triangulation of the coordinates is linked both ways,
+	 * counterclockwise, Delaunay and has 2n - 2 - h triangles.
+	 */
+	static void assertDelaunay(ArrayDelaunayTriangulation triangulation, double[] xs, double[] ys) {
+		Set<Point> distinct = new HashSet<Point>(points(xs, ys));
+		assertEquals("vertices", distinct.size(), triangulation.size());
+		if (triangulation.trianglesSize() == 0)
+			return;
+		int real = 0, ghosts = 0;
+		for (int t = 0; t < triangulation.trianglesSize(); t++) {
+			for (int i = 0; i < 3; i++) {
+				int u = triangulation.getNeighbor(t, i);
+				assertTrue("neighbors are linked both ways", triangulation.getNeighbor(u, 0) == t
+						|| triangulation.getNeighbor(u, 1) == t || triangulation.getNeighbor(u, 2) == t);
+			}
+			if (triangulation.isGhost(t)) {
+				ghosts++;
+				continue;
+			}
+			real++;
+			int a = triangulation.getTriangleVertex(t, 0), b = triangulation.getTriangleVertex(t, 1);
+			int c = triangulation.getTriangleVertex(t, 2);
+			double ax = triangulation.getX(a), ay = triangulation.getY(a), bx = triangulation.getX(b);
+			double by = triangulation.getY(b), cx = triangulation.getX(c), cy = triangulation.getY(c);
+			assertTrue("counterclockwise", GeometricPredicates.orient2d(ax, ay, bx, by, cx, cy) > 0);
+			// locally Delaunay at every edge is Delaunay for a valid triangulation
+			for (int i = 0; i < 3; i++) {
+				int u = triangulation.getNeighbor(t, i);
+				if (triangulation.isGhost(u))
+					continue;
+				for (int j = 0; j < 3; j++) {
+					int v = triangulation.getTriangleVertex(u, j);
+					if (v != a && v != b && v != c && GeometricPredicates.incircle(ax, ay, bx, by, cx, cy,
+							triangulation.getX(v), triangulation.getY(v)) > 0)
+						fail("vertex " + v + " in the circumcircle of triangle " + t);
+				}
+			}
+		}
+		assertEquals("Euler", 2 * triangulation.size() - 2 - ghosts, real);
+		// batched, single walks from the last insertion are slow on long strips
+		int[] located = triangulation.locateAll(xs, ys);
+		for (int i = 0; i < xs.length; i++) {
+			assertTrue("contains " + xs[i] + ", " + ys[i], located[i] >= 0 && !triangulation.isGhost(located[i]));
+		}
+	}
+
+	/**
+	 * @return the finite triangles as strings of their corners, each rotated
+	 *         to start with the smallest.
+	 */
+	static Set<String> triangles(DelaunayTriangulation delaunay) {
+		Set<String> result = new HashSet<String>();
+		for (Triangle t : delaunay.getTriangulation()) {
+			if (!t.isHalfplane())
+				result.add(key(t.getA(), t.getB(), t.getC()));
+		}
+		return result;
+	}
+
+	/**
+	 * @see #triangles(DelaunayTriangulation)
+	 */
+	static Set<String> triangles(ArrayDelaunayTriangulation triangulation) {
+		Set<String> result = new HashSet<String>();
+		for (int t = 0; t < triangulation.trianglesSize(); t++) {
+			if (!triangulation.isGhost(t)) {
+				Point[] corners = new Point[3];
+				for (int i = 0; i < 3; i++) {
+					int v = triangulation.getTriangleVertex(t, i);
+					corners[i] = new Point(triangulation.getX(v), triangulation.getY(v));
+				}
+				result.add(key(corners[0], corners[1], corners[2]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the vertex triples as strings, each rotated to start with the
+	 *         smallest index.
+	 */
+	static Set<String> triangles(int[] vertices) {
+		Set<String> result = new HashSet<String>();
+		for (int i = 0; i < vertices.length; i += 3) {
+			int a = vertices[i], b = vertices[i + 1], c = vertices[i + 2];
+			if (b < a && b < c) {
+				result.add(b + " " + c + " " + a);
+			} else if (c < a && c < b) {
+				result.add(c + " " + a + " " + b);
+			} else {
+				result.add(a + " " + b + " " + c);
+			}
+		}
+		return result;
+	}
+
+	static String key(Point a, Point b, Point c) {
+		Point[] corners = { a, b, c };
+		int first = 0;
+		for (int i = 1; i < 3; i++) {
+			if (corners[i].compareTo(corners[first]) < 0)
+				first = i;
+		}
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			Point p = corners[(first + i) % 3];
+			key.append(p.getX()).append(',').append(p.getY()).append(';');
+		}
+		return key.toString();
+	}
+}
@@ -0,0 +1,167 @@
+package de.adihubba.delauney;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class VoronoiDiagramTest {
+
+	@Test
+	public void testCellsMatchTriangulation() {
+		Random random = new Random(16);
+		for (int kind = 0; kind < Triangulations.KINDS; kind++) {
+			double[][] c = Triangulations.coordinates(random, kind, 3000);
+			ArrayDelaunayTriangulation triangulation = new ArrayDelaunayTriangulation(c[0], c[1], null);
+			if (triangulation.trianglesSize() == 0)
+				continue;
+			VoronoiDiagram voronoi = new VoronoiDiagram(triangulation, new ForkJoinPool(3));
+			assertEquals(triangulation.size(), voronoi.size());
+
+			Set<String> edges = new HashSet<String>();
+			Set<Integer> hull = new HashSet<Integer>();
+			for (int t = 0; t < triangulation.trianglesSize(); t++) {
+				for (int i = 0; i < 3; i++) {
+					int a = triangulation.getTriangleVertex(t, i), b = triangulation.getTriangleVertex(t, (i + 1) % 3);
+					if (a != ArrayDelaunayTriangulation.GHOST && b != ArrayDelaunayTriangulation.GHOST) {
+						edges.add(a + " " + b);
+					} else if (triangulation.isGhost(t)) {
+						hull.add(a == ArrayDelaunayTriangulation.GHOST ? b : a);
+					}
+				}
+			}
+
+			int neighbors = 0;
+			for (int v = 0; v < voronoi.size(); v++) {
+				assertEquals(triangulation.getX(v), voronoi.getSiteX(v), 0);
+				assertEquals(triangulation.getY(v), voronoi.getSiteY(v), 0);
+				assertEquals("cell " + v, hull.contains(v), voronoi.isUnbounded(v));
+				int count = voronoi.getNeighborCount(v);
+				neighbors += count;
+				assertEquals(voronoi.isUnbounded(v) ? count - 1 : count, voronoi.getCornerCount(v));
+				for (int i = 0; i < count; i++) {
+					assertTrue("edge " + v + " " + voronoi.getNeighbor(v, i),
+							edges.contains(v + " " + voronoi.getNeighbor(v, i)));
+				}
+				// corner i is the circumcentre of the site and its neighbors i and i + 1
+				for (int i = 0; i < voronoi.getCornerCount(v); i++) {
+					double x = voronoi.getCornerX(v, i), y = voronoi.getCornerY(v, i);
+					double r = distance(x, y, voronoi.getSiteX(v), voronoi.getSiteY(v));
+					for (int w : new int[] { voronoi.getNeighbor(v, i), voronoi.getNeighbor(v, (i + 1) % count) }) {
+						assertEquals(r, distance(x, y, voronoi.getSiteX(w), voronoi.getSiteY(w)), 1e-9 * (1 + r));
+					}
+				}
+				if (!voronoi.isUnbounded(v)) {
+					assertTrue(voronoi.getCellArea(v) > 0);
+				}
+			}
+			assertEquals("every edge once from each side", edges.size(), neighbors);
+		}
+	}
+
+	@Test
+	public void testNearestSite() {
+		Random random = new Random(16);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 2000);
+		VoronoiDiagram voronoi = new ArrayDelaunayTriangulation(c[0], c[1], null).calcVoronoiDiagram();
+		for (int k = 0; k < 2000; k++) {
+			double x = random.nextDouble(), y = random.nextDouble();
+			int nearest = 0;
+			for (int v = 1; v < voronoi.size(); v++) {
+				if (distance(x, y, voronoi.getSiteX(v), voronoi.getSiteY(v)) < distance(x, y, voronoi.getSiteX(nearest),
+						voronoi.getSiteY(nearest)))
+					nearest = v;
+			}
+			if (voronoi.isUnbounded(nearest))
+				continue;
+			Point[] cell = voronoi.getCell(nearest);
+			for (int i = 0; i < cell.length; i++) {
+				Point a = cell[i], b = cell[(i + 1) % cell.length];
+				assertTrue("in the cell of " + nearest, (b.getX() - a.getX()) * (y - a.getY())
+						- (b.getY() - a.getY()) * (x - a.getX()) >= -1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testAreas() {
+		Random random = new Random(16);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 5000);
+		VoronoiDiagram voronoi = new VoronoiDiagram(new ArrayDelaunayTriangulation(c[0], c[1], null));
+		double[] areas = voronoi.getCellAreas();
+		double[] clipped = voronoi.getCellAreas(new BoundingBox(0, 1, 0, 1, 0, 0));
+		double sum = 0;
+		for (int v = 0; v < voronoi.size(); v++) {
+			assertEquals(voronoi.getCellArea(v), areas[v], 0);
+			sum += clipped[v];
+			if (voronoi.isUnbounded(v)) {
+				assertTrue(Double.isInfinite(areas[v]));
+			} else if (inside(voronoi.getCell(v), 0, 1)) {
+				assertEquals(areas[v], clipped[v], 1e-12);
+			}
+		}
+		// the clipped cells tile the box
+		assertEquals(1, sum, 1e-9);
+	}
+
+	@Test
+	public void testObjectTriangulation() {
+		Random random = new Random(16);
+		double[][] c = Triangulations.coordinates(random, Triangulations.UNIFORM, 1000);
+		List<Point> points = Triangulations.points(c[0], c[1]);
+		DelaunayTriangulation delaunay = new DelaunayTriangulation(points);
+		VoronoiDiagram voronoi = delaunay.calcVoronoiDiagram();
+		assertEquals(points.size(), voronoi.size());
+		// cell v belongs to the v-th vertex of the iterator
+		int v = 0;
+		double sum = 0;
+		double[] clipped = voronoi.getCellAreas(new BoundingBox(0, 1, 0, 1, 0, 0));
+		for (Iterator<Point> it = delaunay.verticesIterator(); it.hasNext(); v++) {
+			Point p = it.next();
+			assertEquals(p.getX(), voronoi.getSiteX(v), 0);
+			assertEquals(p.getY(), voronoi.getSiteY(v), 0);
+			sum += clipped[v];
+		}
+		assertEquals(1, sum, 1e-9);
+	}
+
+	@Test
+	public void testCollinear() {
+		VoronoiDiagram voronoi = new ArrayDelaunayTriangulation(new double[] { 2, 0, 1 }, new double[] { 2, 0, 1 },
+				null).calcVoronoiDiagram();
+		assertEquals(3, voronoi.size());
+		for (int v = 0; v < 3; v++) {
+			assertTrue(voronoi.isUnbounded(v));
+			assertEquals(0, voronoi.getCornerCount(v));
+		}
+		for (int v = 0; v < 3; v++) {
+			// the middle site (1, 1) has a neighbor on either side
+			boolean middle = voronoi.getSiteX(v) == 1;
+			assertEquals(middle ? 2 : 1, voronoi.getNeighborCount(v));
+			for (int i = 0; i < voronoi.getNeighborCount(v); i++) {
+				assertEquals(middle ? 1 : 0, Math.abs(voronoi.getSiteX(voronoi.getNeighbor(v, i)) - 1), 0);
+			}
+		}
+		double[] clipped = voronoi.getCellAreas(new BoundingBox(0, 2, 0, 2, 0, 0));
+		assertEquals(4, clipped[0] + clipped[1] + clipped[2], 1e-12);
+	}
+
+	private static boolean inside(Point[] cell, double min, double max) {
+		for (Point p : cell) {
+			if (p.getX() < min || p.getX() > max || p.getY() < min || p.getY() > max)
+				return false;
+		}
+		return true;
+	}
+
+	private static double distance(double x0, double y0, double x1, double y1) {
+		return Math.hypot(x1 - x0, y1 - y0);
+	}
+}